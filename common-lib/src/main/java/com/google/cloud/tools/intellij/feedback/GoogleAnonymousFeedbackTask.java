@@ -17,12 +17,15 @@
 package com.google.cloud.tools.intellij.feedback;
 
 import com.android.tools.idea.diagnostics.error.AnonymousFeedback;
+import com.google.cloud.tools.intellij.util.SocketConnectivityProbe;
 import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.Consumer;
 import com.intellij.util.net.HttpConfigurable;
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Map;
@@ -34,7 +37,6 @@ public class GoogleAnonymousFeedbackTask extends Task.Backgroundable {
 
   @VisibleForTesting static final String CT4IJ_PRODUCT = "Cloud Tools for IntelliJ";
   @VisibleForTesting static final String CT4IJ_PACKAGE_NAME = "com.google.gct.idea";
-  private static final FeedbackSender DEFAULT_FEEDBACK_SENDER = new NetworkFeedbackSender();
   private final Consumer<String> callback;
   private final Consumer<Exception> errorCallback;
   private final Throwable throwable;
@@ -66,7 +68,7 @@ public class GoogleAnonymousFeedbackTask extends Task.Backgroundable {
         appVersion,
         callback,
         errorCallback,
-        DEFAULT_FEEDBACK_SENDER);
+        DefaultFeedbackSenderHolder.INSTANCE);
   }
 
   @VisibleForTesting
@@ -117,6 +119,10 @@ public class GoogleAnonymousFeedbackTask extends Task.Backgroundable {
   /** Interface for sending feedback crash reports. */
   interface FeedbackSender {
 
+    /**
+     * Sends a report, and returns its token, or {@code null} if it was queued to be sent later.
+     */
+    @Nullable
     String sendFeedback(
         String feedbackProduct,
         String feedbackPackageName,
@@ -128,6 +134,24 @@ public class GoogleAnonymousFeedbackTask extends Task.Backgroundable {
         throws IOException;
   }
 
+  /**
+   * Creates the default sender on first use. Reports that cannot be sent while offline are spooled
+   * in the system directory and sent once the network is back.
+   */
+  private static class DefaultFeedbackSenderHolder {
+
+    private static final String FEEDBACK_HOST_URL = "https://www.google.com";
+    private static final String SPOOL_FILE_PATH = "cloud-tools/feedback.spool";
+    private static final long MAX_SPOOL_BYTES = 4 * 1024 * 1024;
+
+    static final FeedbackSender INSTANCE =
+        new SpooledFeedbackSender(
+            new NetworkFeedbackSender(),
+            new SocketConnectivityProbe(FEEDBACK_HOST_URL),
+            new File(PathManager.getSystemPath(), SPOOL_FILE_PATH),
+            MAX_SPOOL_BYTES);
+  }
+
   private static class ProxyHttpConnectionFactory extends AnonymousFeedback.HttpConnectionFactory {
 
     @Override
@@ -101,14 +101,20 @@ public class GoogleFeedbackErrorReporter extends ErrorReportSubmitter {
         new Consumer<String>() {
           @Override
           public void consume(String token) {
+            // without a token, the report was queued to be sent once we are back online
+            boolean queued = token == null;
             final SubmittedReportInfo reportInfo =
                 new SubmittedReportInfo(
-                    null, "Issue " + token, SubmittedReportInfo.SubmissionStatus.NEW_ISSUE);
+                    null,
+                    queued ? null : "Issue " + token,
+                    SubmittedReportInfo.SubmissionStatus.NEW_ISSUE);
             callback.consume(reportInfo);
 
+            String message =
+                queued ? ErrorReporterBundle.message("error.googlefeedback.queued") : "Submitted";
             ReportMessages.GROUP
                 .createNotification(
-                    ReportMessages.ERROR_REPORT, "Submitted", NotificationType.INFORMATION, null)
+                    ReportMessages.ERROR_REPORT, message, NotificationType.INFORMATION, null)
                 .setImportant(false)
                 .notify(project);
           }
@@ -143,7 +149,9 @@ public class GoogleFeedbackErrorReporter extends ErrorReportSubmitter {
             successCallback,
             errorCallback);
     if (project == null) {
-      task.run(new EmptyProgressIndicator());
+      // without a project there is no progress UI, but the caller must not wait on the network
+      ApplicationManager.getApplication()
+          .executeOnPooledThread(() -> task.run(new EmptyProgressIndicator()));
     } else {
       ProgressManager.getInstance().run(task);
     }
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.feedback;
+
+import com.google.cloud.tools.intellij.feedback.GoogleAnonymousFeedbackTask.FeedbackSender;
+import com.google.cloud.tools.intellij.util.ConnectivityProbe;
+import com.google.cloud.tools.intellij.util.OfflineSpool;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sends feedback through another {@link FeedbackSender}, and keeps reports that cannot be sent
+ * because we are offline in an {@link OfflineSpool}, to be sent once the network is back. Reports
+ * that the server rejects are not kept, as sending them again would not help.
+ */
+class SpooledFeedbackSender implements FeedbackSender {
+
+  // bounds the cause chain of a report, which may be cyclic
+  private static final int MAX_CAUSES = 32;
+
+  private final FeedbackSender delegate;
+  private final ConnectivityProbe probe;
+  private final OfflineSpool spool;
+
+  SpooledFeedbackSender(
+      @NotNull FeedbackSender delegate,
+      @NotNull ConnectivityProbe probe,
+      @NotNull File spoolFile,
+      long maxSpoolBytes) {
+    this.delegate = delegate;
+    this.probe = probe;
+    spool = new OfflineSpool(spoolFile, maxSpoolBytes, probe, this::replay);
+  }
+
+  /**
+   * Sends the report, or spools it if we are offline.
+   *
+   * @return the token of the sent report, or {@code null} if it was spooled
+   * @throws IOException if the report was rejected, or we are offline and it could not be spooled
+   */
+  @Override
+  @Nullable
+  public String sendFeedback(
+      String feedbackProduct,
+      String feedbackPackageName,
+      Throwable cause,
+      String errorMessage,
+      String errorDescription,
+      String applicationVersion,
+      Map<String, String> keyValues)
+      throws IOException {
+    if (probe.isOnline()) {
+      try {
+        return delegate.sendFeedback(
+            feedbackProduct,
+            feedbackPackageName,
+            cause,
+            errorMessage,
+            errorDescription,
+            applicationVersion,
+            keyValues);
+      } catch (IOException ex) {
+        if (!OfflineSpool.isConnectivityFailure(ex) && probe.isOnline()) {
+          throw ex;
+        }
+        // the server could not be reached, so the report is spooled below
+      }
+    }
+    boolean spooled =
+        spool.append(
+            encode(
+                feedbackProduct,
+                feedbackPackageName,
+                cause,
+                errorMessage,
+                errorDescription,
+                applicationVersion,
+                keyValues));
+    if (!spooled) {
+      throw new IOException(ErrorReporterBundle.message("error.googlefeedback.offline"));
+    }
+    return null;
+  }
+
+  /** Sends a spooled report. Called by the spool once we are back online. */
+  @VisibleForTesting
+  void replay(@NotNull byte[] record) throws IOException {
+    String feedbackProduct;
+    String feedbackPackageName;
+    String errorMessage;
+    String errorDescription;
+    String applicationVersion;
+    Throwable cause = null;
+    Map<String, String> keyValues = new LinkedHashMap<>();
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+      feedbackProduct = readString(in);
+      feedbackPackageName = readString(in);
+      errorMessage = readString(in);
+      errorDescription = readString(in);
+      applicationVersion = readString(in);
+      cause = readCause(in);
+      int paramCount = in.readInt();
+      for (int i = 0; i < paramCount; i++) {
+        keyValues.put(readString(in), readString(in));
+      }
+    } catch (IOException ex) {
+      // a malformed record will never be sent, so it should not be retried
+      throw new IllegalArgumentException("malformed feedback record", ex);
+    }
+    delegate.sendFeedback(
+        feedbackProduct,
+        feedbackPackageName,
+        cause,
+        errorMessage,
+        errorDescription,
+        applicationVersion,
+        keyValues);
+  }
+
+  /**
+   * Encodes a report. Of the cause, the description and the complete stack trace of every
+   * throwable in its cause chain are kept, as those are all that a report carries of it.
+   */
+  @VisibleForTesting
+  static byte[] encode(
+      String feedbackProduct,
+      String feedbackPackageName,
+      @Nullable Throwable cause,
+      String errorMessage,
+      String errorDescription,
+      String applicationVersion,
+      @Nullable Map<String, String> keyValues) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      writeString(out, feedbackProduct);
+      writeString(out, feedbackPackageName);
+      writeString(out, errorMessage);
+      writeString(out, errorDescription);
+      writeString(out, applicationVersion);
+      writeCause(out, cause);
+      if (keyValues == null) {
+        out.writeInt(0);
+      } else {
+        out.writeInt(keyValues.size());
+        for (Map.Entry<String, String> entry : keyValues.entrySet()) {
+          writeString(out, entry.getKey());
+          writeString(out, entry.getValue());
+        }
+      }
+    } catch (IOException ex) {
+      // cannot happen when writing to memory
+      throw new IllegalStateException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void writeCause(@NotNull DataOutputStream out, @Nullable Throwable cause)
+      throws IOException {
+    List<Throwable> chain = new ArrayList<>();
+    Set<Throwable> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (Throwable throwable = cause;
+        throwable != null && chain.size() < MAX_CAUSES && seen.add(throwable);
+        throwable = throwable.getCause()) {
+      chain.add(throwable);
+    }
+
+    out.writeInt(chain.size());
+    for (Throwable throwable : chain) {
+      writeString(out, throwable.toString());
+      StackTraceElement[] stackTrace = throwable.getStackTrace();
+      out.writeInt(stackTrace.length);
+      for (StackTraceElement frame : stackTrace) {
+        writeString(out, frame.getClassName());
+        writeString(out, frame.getMethodName());
+        writeString(out, frame.getFileName());
+        out.writeInt(frame.getLineNumber());
+      }
+    }
+  }
+
+  @Nullable
+  private static Throwable readCause(@NotNull DataInputStream in) throws IOException {
+    int chainLength = in.readInt();
+    if (chainLength < 0 || chainLength > MAX_CAUSES) {
+      throw new IOException("invalid cause chain length " + chainLength);
+    }
+    String[] descriptions = new String[chainLength];
+    StackTraceElement[][] stackTraces = new StackTraceElement[chainLength][];
+    for (int i = 0; i < chainLength; i++) {
+      descriptions[i] = readString(in);
+      int frameCount = in.readInt();
+      if (frameCount < 0) {
+        throw new IOException("invalid stack trace length " + frameCount);
+      }
+      List<StackTraceElement> frames = new ArrayList<>();
+      for (int j = 0; j < frameCount; j++) {
+        frames.add(
+            new StackTraceElement(readString(in), readString(in), readString(in), in.readInt()));
+      }
+      stackTraces[i] = frames.toArray(new StackTraceElement[frames.size()]);
+    }
+
+    // the innermost cause is created first, so that every throwable gets its cause on creation
+    SpooledThrowable cause = null;
+    for (int i = chainLength - 1; i >= 0; i--) {
+      cause = new SpooledThrowable(descriptions[i], stackTraces[i], cause);
+    }
+    return cause;
+  }
+
+  private static void writeString(@NotNull DataOutputStream out, @Nullable String value)
+      throws IOException {
+    // writeUTF is limited to 64K, which stack traces may exceed
+    if (value == null) {
+      out.writeInt(-1);
+    } else {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      out.writeInt(bytes.length);
+      out.write(bytes);
+    }
+  }
+
+  @Nullable
+  private static String readString(@NotNull DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Stands in for the original cause of a spooled report. */
+  @VisibleForTesting
+  static final class SpooledThrowable extends Throwable {
+
+    private final String description;
+    private final StackTraceElement[] stackTrace;
+
+    SpooledThrowable(
+        @Nullable String description,
+        @NotNull StackTraceElement[] stackTrace,
+        @Nullable SpooledThrowable cause) {
+      super(description, cause, false /* enableSuppression */, false /* writableStackTrace */);
+      this.description = description;
+      this.stackTrace = stackTrace;
+    }
+
+    @Override
+    public StackTraceElement[] getStackTrace() {
+      return stackTrace.clone();
+    }
+
+    @Override
+    public String toString() {
+      return description;
+    }
+  }
+}
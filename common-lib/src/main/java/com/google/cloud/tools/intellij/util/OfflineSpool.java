@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An append-only, size-capped file of records that could not be delivered yet, e.g. because the
+ * network is down.
+ *
+ * <p>Spooled records are delivered in order from a single background thread. While the {@link
+ * ConnectivityProbe} reports that we are offline nothing is sent at all; deliveries that fail
+ * because the destination cannot be reached are retried with exponential backoff. Records that the
+ * destination rejects, and records that would grow the file beyond its cap, are dropped.
+ */
+public class OfflineSpool {
+
+  private static final Logger LOGGER = Logger.getInstance(OfflineSpool.class);
+  private static final long INITIAL_RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(30);
+  private static final long MAX_RETRY_DELAY_MS = TimeUnit.HOURS.toMillis(1);
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+  // each record is prefixed with its length
+  private static final int RECORD_HEADER_BYTES = 4;
+
+  private final File file;
+  private final long maxBytes;
+  private final ConnectivityProbe probe;
+  private final Delivery delivery;
+  private final ScheduledThreadPoolExecutor flusher;
+  // guarded by this
+  private boolean flushScheduled;
+  private long retryDelayMs = INITIAL_RETRY_DELAY_MS;
+
+  /**
+   * Creates a spool backed by {@code file}. Records left over from a previous session are
+   * delivered in the background.
+   */
+  public OfflineSpool(
+      @NotNull File file,
+      long maxBytes,
+      @NotNull ConnectivityProbe probe,
+      @NotNull Delivery delivery) {
+    this.file = file;
+    this.maxBytes = maxBytes;
+    this.probe = probe;
+    this.delivery = delivery;
+    flusher =
+        new ScheduledThreadPoolExecutor(
+            1,
+            ConcurrencyUtil.newNamedThreadFactory(
+                "offline spool flusher", true /* isDaemon */, Thread.MIN_PRIORITY));
+    flusher.setKeepAliveTime(IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    flusher.allowCoreThreadTimeOut(true);
+
+    synchronized (this) {
+      List<byte[]> records = readRecords();
+      if (getSize(records) != file.length()) {
+        // drop a tail that was cut short, e.g. by a crash while appending
+        rewrite(records);
+      }
+      if (!records.isEmpty()) {
+        scheduleFlush();
+      }
+    }
+  }
+
+  /**
+   * Delivers the record right away if we are online and nothing is spooled before it, and spools
+   * it otherwise. May block on the connectivity probe or the delivery, so it must be called from a
+   * background thread.
+   *
+   * @return false if the record was spooled
+   */
+  public boolean send(@NotNull byte[] record) {
+    if (isEmpty() && probe.isOnline()) {
+      try {
+        delivery.deliver(record);
+        return true;
+      } catch (IOException ex) {
+        if (!isUnreachable(ex)) {
+          LOGGER.debug("Dropped a record that was rejected", ex);
+          return true;
+        }
+        LOGGER.debug("Delivery failed, spooling the record", ex);
+      }
+    }
+    append(record);
+    return false;
+  }
+
+  /**
+   * Appends the record to the spool file and schedules a background flush.
+   *
+   * @return false if the record was dropped, because the spool is full or cannot be written
+   */
+  public synchronized boolean append(@NotNull byte[] record) {
+    long size = file.exists() ? file.length() : 0;
+    if (size + RECORD_HEADER_BYTES + record.length > maxBytes) {
+      LOGGER.debug("Dropped a record because " + file + " is full");
+      return false;
+    }
+    File parent = file.getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      LOGGER.debug("Cannot create " + parent);
+      return false;
+    }
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+      out.writeInt(record.length);
+      out.write(record);
+    } catch (IOException ex) {
+      LOGGER.debug("Cannot append to " + file, ex);
+      return false;
+    }
+    scheduleFlush();
+    return true;
+  }
+
+  /** Returns true if no records are waiting to be delivered. */
+  public synchronized boolean isEmpty() {
+    return !file.exists() || file.length() == 0;
+  }
+
+  /**
+   * Delivers spooled records in order and removes the delivered ones from the file. Called on the
+   * flusher thread.
+   */
+  @VisibleForTesting
+  void flush() {
+    List<byte[]> records;
+    synchronized (this) {
+      flushScheduled = false;
+      records = readRecords();
+    }
+    if (records.isEmpty()) {
+      return;
+    }
+    if (!probe.isOnline()) {
+      retryLater();
+      return;
+    }
+
+    // the number of records at the head of the spool that are done with, delivered or dropped
+    int delivered = 0;
+    for (byte[] record : records) {
+      try {
+        delivery.deliver(record);
+      } catch (IOException ex) {
+        if (isUnreachable(ex)) {
+          LOGGER.debug("Delivery of spooled records failed", ex);
+          break;
+        }
+        // the record is rejected rather than undeliverable, so retrying would not help
+        LOGGER.debug("Dropped a spooled record that was rejected", ex);
+      } catch (RuntimeException ex) {
+        LOGGER.debug("Dropped a spooled record that could not be delivered", ex);
+      }
+      delivered++;
+    }
+
+    synchronized (this) {
+      // records appended in the meantime are kept, as they are behind the ones we read
+      List<byte[]> current = readRecords();
+      rewrite(current.subList(Math.min(delivered, current.size()), current.size()));
+      if (delivered < records.size()) {
+        retryLater();
+      } else {
+        retryDelayMs = INITIAL_RETRY_DELAY_MS;
+      }
+    }
+  }
+
+  /**
+   * Returns true if {@code ex} means that the destination could not be reached, e.g. because the
+   * network is down, so that the same request may succeed later. Any other failure, like a request
+   * that the destination rejects, would happen again on every retry.
+   */
+  public static boolean isConnectivityFailure(@NotNull IOException ex) {
+    // SocketTimeoutException is an InterruptedIOException, and ConnectException, a reset
+    // connection and NoRouteToHostException are SocketExceptions
+    return ex instanceof UnknownHostException
+        || ex instanceof SocketException
+        || ex instanceof InterruptedIOException;
+  }
+
+  private boolean isUnreachable(@NotNull IOException ex) {
+    return isConnectivityFailure(ex) || !probe.isOnline();
+  }
+
+  private synchronized void retryLater() {
+    scheduleFlush();
+    retryDelayMs = Math.min(retryDelayMs * 2, MAX_RETRY_DELAY_MS);
+  }
+
+  // must hold the lock
+  private void scheduleFlush() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      flusher.schedule(this::flush, retryDelayMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Reads all complete records. A truncated or corrupt tail is ignored. */
+  // must hold the lock
+  @NotNull
+  private List<byte[]> readRecords() {
+    List<byte[]> records = new ArrayList<>();
+    if (!file.exists()) {
+      return records;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (true) {
+        int length = in.readInt();
+        if (length < 0 || length > maxBytes) {
+          LOGGER.debug("Ignoring the corrupt tail of " + file);
+          break;
+        }
+        byte[] record = new byte[length];
+        in.readFully(record);
+        records.add(record);
+      }
+    } catch (EOFException ex) {
+      // end of the file, or a record that was cut short
+    } catch (IOException ex) {
+      LOGGER.debug("Cannot read " + file, ex);
+    }
+    return records;
+  }
+
+  // must hold the lock
+  private void rewrite(@NotNull List<byte[]> records) {
+    if (records.isEmpty()) {
+      if (file.exists() && !file.delete()) {
+        LOGGER.debug("Cannot delete " + file);
+      }
+      return;
+    }
+    File temp = new File(file.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+        for (byte[] record : records) {
+          out.writeInt(record.length);
+          out.write(record);
+        }
+      }
+      Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException ex) {
+      LOGGER.debug("Cannot rewrite " + file, ex);
+    }
+  }
+
+  private static long getSize(@NotNull List<byte[]> records) {
+    long size = 0;
+    for (byte[] record : records) {
+      size += RECORD_HEADER_BYTES + record.length;
+    }
+    return size;
+  }
+
+  /** Sends one spooled record to its destination. */
+  public interface Delivery {
+
+    /**
+     * Delivers the record. Throws an {@link IOException} for which {@link
+     * #isConnectivityFailure} is true if the destination could not be reached and the record
+     * should be retried, or any other exception if the record is rejected and should be dropped.
+     */
+    void deliver(@NotNull byte[] record) throws IOException;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Probes connectivity by opening a TCP connection with a short timeout to the host of a URL, or to
+ * the proxy the IDE would use for it. The answer is cached for a while, so that a dead network
+ * costs at most one short timeout per interval.
+ */
+public class SocketConnectivityProbe implements ConnectivityProbe {
+
+  private static final Logger LOGGER = Logger.getInstance(SocketConnectivityProbe.class);
+  private static final int CONNECT_TIMEOUT_MS = 1500;
+  private static final long CACHE_DURATION_MS = 30 * 1000;
+
+  private final URI uri;
+  // guarded by this
+  private boolean online;
+  private long checkedAtMs;
+  private boolean checked;
+
+  /** Creates a probe for the host and port of {@code url}, e.g. "https://www.google.com". */
+  public SocketConnectivityProbe(@NotNull String url) {
+    uri = URI.create(url);
+  }
+
+  @Override
+  public synchronized boolean isOnline() {
+    long now = System.currentTimeMillis();
+    if (!checked || now - checkedAtMs > CACHE_DURATION_MS) {
+      online = probe();
+      checked = true;
+      checkedAtMs = now;
+    }
+    return online;
+  }
+
+  private boolean probe() {
+    SocketAddress address = getProbeAddress();
+    try (Socket socket = new Socket(Proxy.NO_PROXY)) {
+      socket.connect(address, CONNECT_TIMEOUT_MS);
+      return true;
+    } catch (IOException ex) {
+      LOGGER.debug("connectivity probe to " + address + " failed", ex);
+      return false;
+    }
+  }
+
+  @NotNull
+  private SocketAddress getProbeAddress() {
+    // The IDE installs a proxy selector that follows its HTTP proxy settings.
+    ProxySelector selector = ProxySelector.getDefault();
+    if (selector != null) {
+      List<Proxy> proxies = selector.select(uri);
+      if (proxies != null) {
+        for (Proxy proxy : proxies) {
+          if (proxy.type() != Proxy.Type.DIRECT && proxy.address() != null) {
+            return proxy.address();
+          }
+        }
+      }
+    }
+    int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(uri.getScheme()) ? 443 : 80);
+    return new InetSocketAddress(uri.getHost(), port);
+  }
+}
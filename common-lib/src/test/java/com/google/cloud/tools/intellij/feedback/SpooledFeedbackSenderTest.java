@@ -0,0 +1,188 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.feedback;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.intellij.feedback.GoogleAnonymousFeedbackTask.FeedbackSender;
+import com.google.cloud.tools.intellij.util.ConnectivityProbe;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/** Test cases for {@link SpooledFeedbackSender}. */
+@RunWith(MockitoJUnitRunner.class)
+public class SpooledFeedbackSenderTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Throwable cause =
+      new IllegalStateException("cause", new IOException("root cause"));
+  private final Map<String, String> keyValues = ImmutableMap.of("key", "value");
+  @Mock private FeedbackSender mockDelegate;
+  @Mock private ConnectivityProbe mockProbe;
+  private File spoolFile;
+  private SpooledFeedbackSender sender;
+
+  @Before
+  public void setUp() throws IOException {
+    spoolFile = new File(temporaryFolder.newFolder(), "feedback.spool");
+    sender = new SpooledFeedbackSender(mockDelegate, mockProbe, spoolFile, 1024 * 1024);
+  }
+
+  @Test
+  public void testSendFeedback_online_sendsThroughDelegate() throws IOException {
+    when(mockProbe.isOnline()).thenReturn(true);
+    when(mockDelegate.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues))
+        .thenReturn("token");
+
+    assertEquals(
+        "token",
+        sender.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues));
+    assertFalse(spoolFile.exists());
+  }
+
+  @Test
+  public void testSendFeedback_offline_spoolsWithoutSending() throws IOException {
+    when(mockProbe.isOnline()).thenReturn(false);
+
+    assertNull(sender.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues));
+
+    verify(mockDelegate, never())
+        .sendFeedback(
+            anyString(),
+            anyString(),
+            any(Throwable.class),
+            anyString(),
+            anyString(),
+            anyString(),
+            anyMapOf(String.class, String.class));
+    assertTrue(spoolFile.length() > 0);
+  }
+
+  @Test
+  public void testSendFeedback_unreachable_spools() throws IOException {
+    when(mockProbe.isOnline()).thenReturn(true);
+    when(mockDelegate.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues))
+        .thenThrow(new ConnectException("connection refused"));
+
+    assertNull(sender.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues));
+
+    assertTrue(spoolFile.length() > 0);
+  }
+
+  @Test
+  public void testSendFeedback_rejected_throwsWithoutSpooling() throws IOException {
+    IOException rejection = new IOException("Server returned HTTP response code: 400");
+    when(mockProbe.isOnline()).thenReturn(true);
+    when(mockDelegate.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues))
+        .thenThrow(rejection);
+
+    try {
+      sender.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues);
+      fail();
+    } catch (IOException expected) {
+      assertSame(rejection, expected);
+    }
+
+    assertFalse(spoolFile.exists());
+  }
+
+  @Test
+  public void testSendFeedback_offline_spoolFull_throws() throws IOException {
+    sender = new SpooledFeedbackSender(mockDelegate, mockProbe, spoolFile, 16);
+    when(mockProbe.isOnline()).thenReturn(false);
+
+    try {
+      sender.sendFeedback("product", "package", cause, "message", null, "1.0", keyValues);
+      fail();
+    } catch (IOException expected) {
+      assertEquals(
+          ErrorReporterBundle.message("error.googlefeedback.offline"), expected.getMessage());
+    }
+  }
+
+  @Test
+  public void testReplay_restoresReport() throws IOException {
+    byte[] record =
+        SpooledFeedbackSender.encode(
+            "product", "package", cause, "message", null, "1.0", keyValues);
+
+    sender.replay(record);
+
+    ArgumentCaptor<Throwable> causeCaptor = ArgumentCaptor.forClass(Throwable.class);
+    verify(mockDelegate)
+        .sendFeedback(
+            eq("product"),
+            eq("package"),
+            causeCaptor.capture(),
+            eq("message"),
+            (String) isNull(),
+            eq("1.0"),
+            eq(keyValues));
+    Throwable replayedCause = causeCaptor.getValue();
+    assertEquals(cause.toString(), replayedCause.toString());
+    assertArrayEquals(cause.getStackTrace(), replayedCause.getStackTrace());
+    assertEquals(cause.getCause().toString(), replayedCause.getCause().toString());
+    assertArrayEquals(cause.getCause().getStackTrace(), replayedCause.getCause().getStackTrace());
+    assertNull(replayedCause.getCause().getCause());
+  }
+
+  @Test
+  public void testReplay_withoutCause() throws IOException {
+    sender.replay(
+        SpooledFeedbackSender.encode(
+            "product", "package", null, "message", "description", "1.0", null));
+
+    ArgumentCaptor<Throwable> causeCaptor = ArgumentCaptor.forClass(Throwable.class);
+    verify(mockDelegate)
+        .sendFeedback(
+            eq("product"),
+            eq("package"),
+            causeCaptor.capture(),
+            eq("message"),
+            eq("description"),
+            eq("1.0"),
+            eq(ImmutableMap.<String, String>of()));
+    assertNull(causeCaptor.getValue());
+  }
+}
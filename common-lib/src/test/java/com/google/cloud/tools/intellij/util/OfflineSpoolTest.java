@@ -0,0 +1,205 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Test cases for {@link OfflineSpool}. */
+public class OfflineSpoolTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final List<String> delivered = new ArrayList<>();
+  private boolean online = true;
+  private String failOn;
+  private String rejectOn;
+  private File spoolFile;
+
+  @Before
+  public void setUp() throws IOException {
+    spoolFile = new File(temporaryFolder.newFolder(), "test.spool");
+  }
+
+  @Test
+  public void testSend_online_deliversImmediately() {
+    OfflineSpool spool = createSpool(1024);
+
+    assertTrue(spool.send(bytes("a")));
+
+    assertEquals(1, delivered.size());
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testSend_offline_spoolsAndFlushesOnceOnline() {
+    OfflineSpool spool = createSpool(1024);
+    online = false;
+
+    assertFalse(spool.send(bytes("a")));
+    assertFalse(spool.send(bytes("b")));
+    spool.flush();
+    assertTrue(delivered.isEmpty());
+
+    online = true;
+    spool.flush();
+
+    assertEquals(2, delivered.size());
+    assertEquals("a", delivered.get(0));
+    assertEquals("b", delivered.get(1));
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testSend_keepsOrderBehindSpooledRecords() {
+    OfflineSpool spool = createSpool(1024);
+    online = false;
+    spool.send(bytes("a"));
+
+    online = true;
+    assertFalse(spool.send(bytes("b")));
+    spool.flush();
+
+    assertEquals(2, delivered.size());
+    assertEquals("a", delivered.get(0));
+    assertEquals("b", delivered.get(1));
+  }
+
+  @Test
+  public void testFlush_failedDeliveryKeepsUndeliveredRecords() {
+    OfflineSpool spool = createSpool(1024);
+    spool.append(bytes("a"));
+    spool.append(bytes("b"));
+    spool.append(bytes("c"));
+
+    failOn = "b";
+    spool.flush();
+    assertEquals(1, delivered.size());
+    assertFalse(spool.isEmpty());
+
+    failOn = null;
+    spool.flush();
+
+    assertEquals(3, delivered.size());
+    assertEquals("b", delivered.get(1));
+    assertEquals("c", delivered.get(2));
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testFlush_dropsRejectedRecords() {
+    OfflineSpool spool = createSpool(1024);
+    spool.append(bytes("a"));
+    spool.append(bytes("b"));
+    spool.append(bytes("c"));
+
+    rejectOn = "a";
+    spool.flush();
+
+    assertEquals(2, delivered.size());
+    assertEquals("b", delivered.get(0));
+    assertEquals("c", delivered.get(1));
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testSend_rejectedRecordIsNotSpooled() {
+    OfflineSpool spool = createSpool(1024);
+    rejectOn = "a";
+
+    assertTrue(spool.send(bytes("a")));
+
+    assertTrue(delivered.isEmpty());
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testAppend_dropsRecordsBeyondTheCap() {
+    OfflineSpool spool = createSpool(20);
+
+    assertTrue(spool.append(bytes("0123456789")));
+    assertFalse(spool.append(bytes("0123456789")));
+    spool.flush();
+
+    assertEquals(1, delivered.size());
+  }
+
+  @Test
+  public void testConstructor_recoversRecordsAndDropsTruncatedTail() throws IOException {
+    OfflineSpool previous = createSpool(1024);
+    online = false;
+    previous.append(bytes("a"));
+    try (FileOutputStream out = new FileOutputStream(spoolFile, true)) {
+      // a length prefix without its record, as left by a crash while appending
+      out.write(new byte[] {0, 0, 0, 5, 'x'});
+    }
+
+    online = true;
+    OfflineSpool spool = createSpool(1024);
+    spool.flush();
+
+    assertEquals(1, delivered.size());
+    assertEquals("a", delivered.get(0));
+    assertTrue(spool.isEmpty());
+  }
+
+  @Test
+  public void testAppend_emptyRecordRoundTrips() {
+    OfflineSpool spool = createSpool(1024);
+    spool.append(new byte[0]);
+    spool.flush();
+
+    assertEquals(1, delivered.size());
+    assertArrayEquals(new byte[0], bytes(delivered.get(0)));
+  }
+
+  private OfflineSpool createSpool(long maxBytes) {
+    return new OfflineSpool(
+        spoolFile,
+        maxBytes,
+        () -> online,
+        record -> {
+          String value = new String(record, StandardCharsets.UTF_8);
+          if (value.equals(failOn)) {
+            throw new ConnectException("network is down");
+          }
+          if (value.equals(rejectOn)) {
+            throw new IOException("bad request");
+          }
+          delivered.add(value);
+        });
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.stats;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Joiner.MapJoiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.escape.CharEscaperBuilder;
+import com.google.common.escape.Escaper;
+
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the allocation and time per hit of {@link AnalyticsPayloadEncoder} with the list based
+ * encoding it replaced. Run with {@code ./gradlew :google-account-plugin:jmh}, which enables the
+ * GC profiler; compare the {@code gc.alloc.rate.norm} (bytes per operation) of both benchmarks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsPayloadEncoderBenchmark {
+
+  private static final String ANALYTICS_ID = "UA-12345-6";
+  private static final String CLIENT_ID = "8f14e45f-ceea-467e-a9b8-e3b2c1d0a9f7";
+  private static final Map<String, String> SYSTEM_METADATA =
+      ImmutableMap.of(
+          "applicationName", "idea",
+          "applicationVersion", "2016.3.4",
+          "jdkVersion", "1.8.0_112",
+          "operatingSystem", "Linux4.8.0",
+          "pluginVersion", "17.2.1");
+
+  private static final MapJoiner METADATA_JOINER =
+      Joiner.on(',').useForNull("null").withKeyValueSeparator("=");
+  private static final Escaper METADATA_ESCAPER =
+      new CharEscaperBuilder()
+          .addEscape(',', "\\,")
+          .addEscape('=', "\\=")
+          .addEscape('\\', "\\\\")
+          .toEscaper();
+  private static final ImmutableList<BasicNameValuePair> ANALYTICS_BASE_DATA =
+      ImmutableList.of(
+          new BasicNameValuePair("v", "1"),
+          new BasicNameValuePair("t", "pageview"),
+          new BasicNameValuePair("ni", "0"),
+          new BasicNameValuePair("cid", CLIENT_ID),
+          new BasicNameValuePair("dh", "virtual.intellij"));
+
+  private AnalyticsPayloadEncoder encoder;
+  private String systemMetadataKeyValues;
+  private UsageEvent event;
+  private ByteArrayOutputStream buffer;
+
+  @Setup
+  public void setUp() {
+    encoder = new AnalyticsPayloadEncoder(ANALYTICS_ID, CLIENT_ID, SYSTEM_METADATA);
+    systemMetadataKeyValues =
+        METADATA_JOINER.join(
+            SYSTEM_METADATA
+                .entrySet()
+                .stream()
+                .collect(
+                    Collectors.toMap(
+                        entry -> METADATA_ESCAPER.escape(entry.getKey()),
+                        entry -> METADATA_ESCAPER.escape(entry.getValue()))));
+    event =
+        new UsageEvent(
+            "com.google.cloud.tools",
+            "appengine.deploy",
+            ImmutableMap.of("environment", "flex", "status", "success"));
+    buffer = new ByteArrayOutputStream(UsageEventQueue.MAX_HIT_BYTES);
+  }
+
+  /** The encoder used by the tracker, writing into a buffer that is reused across hits. */
+  @Benchmark
+  public ByteArrayOutputStream preEncoded() {
+    buffer.reset();
+    encoder.encode(event, 1, buffer);
+    return buffer;
+  }
+
+  /** The encoding the tracker used before, including the conversion to bytes for the batch. */
+  @Benchmark
+  public byte[] legacy() {
+    List<BasicNameValuePair> postData = Lists.newArrayList(ANALYTICS_BASE_DATA);
+    postData.add(new BasicNameValuePair("tid", ANALYTICS_ID));
+    postData.add(new BasicNameValuePair("cd19", event.getCategory()));
+    postData.add(new BasicNameValuePair("cd20", event.getAction()));
+    postData.add(new BasicNameValuePair("cd16", "0"));
+    postData.add(new BasicNameValuePair("cd17", "0"));
+    String virtualPageUrl = "/virtual/" + event.getCategory() + "/" + event.getAction();
+    postData.add(new BasicNameValuePair("dp", virtualPageUrl));
+    postData.add(new BasicNameValuePair("cd21", "1"));
+    Map<String, String> escapedMap =
+        event
+            .getMetadata()
+            .entrySet()
+            .stream()
+            .collect(
+                Collectors.toMap(
+                    entry -> METADATA_ESCAPER.escape(entry.getKey()),
+                    entry -> METADATA_ESCAPER.escape(entry.getValue())));
+    String fullMetadataString = systemMetadataKeyValues + "," + METADATA_JOINER.join(escapedMap);
+    postData.add(new BasicNameValuePair("dt", fullMetadataString));
+    return URLEncodedUtils.format(postData, StandardCharsets.UTF_8)
+        .getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.login;
+
+import com.google.api.client.googleapis.auth.oauth2.GoogleRefreshTokenRequest;
+import com.google.api.client.googleapis.auth.oauth2.GoogleTokenResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gdt.eclipse.login.common.GoogleLoginState;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out OAuth access tokens for signed in users without asking the token server every time.
+ *
+ * <p>Each user's token is kept until shortly before it expires. A token that was used since it was
+ * issued is renewed in the background ahead of its expiry, so that repeated operations, like a
+ * series of git fetches, do not wait on a refresh. Tokens of users that stop using them are left to
+ * expire.
+ */
+public class AccessTokenCache {
+
+  private static final Logger LOG = Logger.getInstance(AccessTokenCache.class);
+
+  // A token is renewed in the background this long before it expires.
+  private static final long RENEW_AHEAD_MS = TimeUnit.MINUTES.toMillis(5);
+  // A cached token is only handed out while it stays valid for at least this long.
+  private static final long MIN_REMAINING_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final long RETRY_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+  private final TokenFetcher fetcher;
+  private final LongSupplier clock;
+  private final ScheduledExecutorService renewer;
+  private final ConcurrentMap<String, UserToken> tokens = new ConcurrentHashMap<>();
+
+  public AccessTokenCache() {
+    this(AccessTokenCache::requestToken, System::currentTimeMillis, createRenewer());
+  }
+
+  @VisibleForTesting
+  AccessTokenCache(
+      @NotNull TokenFetcher fetcher,
+      @NotNull LongSupplier clock,
+      @NotNull ScheduledExecutorService renewer) {
+    this.fetcher = fetcher;
+    this.clock = clock;
+    this.renewer = renewer;
+  }
+
+  public static AccessTokenCache getInstance() {
+    return ServiceManager.getService(AccessTokenCache.class);
+  }
+
+  /**
+   * Returns an access token of the user, asking the token server only if there is no cached token
+   * that stays valid for a while.
+   *
+   * @return the token, or {@code null} if the user is not signed in
+   */
+  @Nullable
+  public String getAccessToken(@NotNull CredentialedUser user) throws IOException {
+    GoogleLoginState state = user.getGoogleLoginState();
+    if (state == null || state.fetchOAuth2RefreshToken() == null) {
+      return null;
+    }
+
+    UserToken token = tokens.computeIfAbsent(user.getEmail(), email -> new UserToken(state));
+    // Callers for the same user wait for one refresh rather than each making their own.
+    synchronized (token) {
+      long now = clock.getAsLong();
+      if (token.state != state
+          || !Objects.equals(token.refreshToken, state.fetchOAuth2RefreshToken())) {
+        // the user signed in again
+        token.reset(state);
+      }
+      if (token.accessToken == null || token.expiresAtMs - now < MIN_REMAINING_MS) {
+        token.update(fetcher.fetch(state), now);
+        scheduleRenewal(user.getEmail(), token);
+      } else {
+        // only a cached token handed out again counts as a use, not the fetch that issued it
+        token.lastUsedMs = now;
+      }
+      return token.accessToken;
+    }
+  }
+
+  /**
+   * Renews the user's token if it was used since it was issued. Runs on the renewer thread, and
+   * does nothing if the token was reset or another renewal was scheduled since this one.
+   */
+  private void renew(@NotNull String email, @NotNull UserToken token, long generation) {
+    GoogleLoginState state;
+    String refreshToken;
+    synchronized (token) {
+      if (token.generation != generation) {
+        return;
+      }
+      token.renewal = null;
+      if (token.lastUsedMs < token.issuedAtMs) {
+        // nobody needed the current token, so nobody is likely to need the next one soon
+        return;
+      }
+      state = token.state;
+      refreshToken = token.refreshToken;
+    }
+
+    // The current token stays valid meanwhile, so callers are not held up by the request.
+    Token renewed;
+    long now = clock.getAsLong();
+    try {
+      renewed = fetcher.fetch(state);
+    } catch (IOException ex) {
+      LOG.info("Could not renew the access token of " + email + ": " + ex.getMessage());
+      synchronized (token) {
+        if (token.generation == generation
+            && clock.getAsLong() + RETRY_DELAY_MS < token.expiresAtMs) {
+          scheduleRenewal(email, token, RETRY_DELAY_MS);
+        }
+      }
+      return;
+    }
+
+    synchronized (token) {
+      if (token.generation == generation
+          && token.state == state
+          && Objects.equals(token.refreshToken, refreshToken)) {
+        token.update(renewed, now);
+        scheduleRenewal(email, token);
+      }
+    }
+  }
+
+  // Must be called while holding the token's lock.
+  private void scheduleRenewal(@NotNull String email, @NotNull UserToken token) {
+    scheduleRenewal(
+        email, token, Math.max(0, token.expiresAtMs - RENEW_AHEAD_MS - clock.getAsLong()));
+  }
+
+  // Replaces any pending renewal of the token, so each user has at most one renewal chain. Must be
+  // called while holding the token's lock.
+  private void scheduleRenewal(@NotNull String email, @NotNull UserToken token, long delayMs) {
+    token.cancelRenewal();
+    long generation = token.generation;
+    token.renewal =
+        renewer.schedule(
+            () -> renew(email, token, generation), delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  @NotNull
+  private static ScheduledExecutorService createRenewer() {
+    ScheduledThreadPoolExecutor renewer =
+        new ScheduledThreadPoolExecutor(
+            1,
+            ConcurrencyUtil.newNamedThreadFactory(
+                "access token renewer", true /* isDaemon */, Thread.MIN_PRIORITY));
+    renewer.setKeepAliveTime(IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    renewer.allowCoreThreadTimeOut(true);
+    return renewer;
+  }
+
+  // Asks the token server for a new access token. Unlike GoogleLoginState, this tells how long the
+  // token is valid.
+  @NotNull
+  private static Token requestToken(@NotNull GoogleLoginState state) throws IOException {
+    GoogleTokenResponse response =
+        new GoogleRefreshTokenRequest(
+                HttpTransportProvider.getTransport(),
+                JacksonFactory.getDefaultInstance(),
+                state.fetchOAuth2RefreshToken(),
+                state.fetchOAuth2ClientId(),
+                state.fetchOAuth2ClientSecret())
+            .execute();
+    Long expiresInSeconds = response.getExpiresInSeconds();
+    return new Token(
+        response.getAccessToken(),
+        TimeUnit.SECONDS.toMillis(expiresInSeconds != null ? expiresInSeconds : 0));
+  }
+
+  /** Gets a new access token for a signed in user. */
+  @VisibleForTesting
+  interface TokenFetcher {
+
+    @NotNull
+    Token fetch(@NotNull GoogleLoginState state) throws IOException;
+  }
+
+  /** An access token and how long it is valid from the time it was requested. */
+  @VisibleForTesting
+  static final class Token {
+
+    private final String accessToken;
+    private final long expiresInMs;
+
+    Token(@NotNull String accessToken, long expiresInMs) {
+      this.accessToken = accessToken;
+      this.expiresInMs = expiresInMs;
+    }
+  }
+
+  // The token of one user. Its fields are guarded by the object itself.
+  private static final class UserToken {
+
+    // Bumped whenever the pending renewal is cancelled or replaced, so that a renewal task that
+    // already started, and could not be cancelled, knows to drop out.
+    private long generation;
+    private ScheduledFuture<?> renewal;
+
+    private GoogleLoginState state;
+    private String refreshToken;
+    private String accessToken;
+    private long issuedAtMs;
+    private long expiresAtMs;
+    private long lastUsedMs;
+
+    private UserToken(@NotNull GoogleLoginState state) {
+      reset(state);
+    }
+
+    private void reset(@NotNull GoogleLoginState state) {
+      cancelRenewal();
+      this.state = state;
+      refreshToken = state.fetchOAuth2RefreshToken();
+      accessToken = null;
+      expiresAtMs = 0;
+    }
+
+    private void cancelRenewal() {
+      generation++;
+      if (renewal != null) {
+        renewal.cancel(false /* mayInterruptIfRunning */);
+        renewal = null;
+      }
+    }
+
+    private void update(@NotNull Token token, long requestedAtMs) {
+      accessToken = token.accessToken;
+      issuedAtMs = requestedAtMs;
+      expiresAtMs = requestedAtMs + token.expiresInMs;
+    }
+  }
+}
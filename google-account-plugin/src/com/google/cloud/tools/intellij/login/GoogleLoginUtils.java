@@ -18,7 +18,6 @@ package com.google.cloud.tools.intellij.login;
 
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.oauth2.Oauth2;
 import com.google.api.services.oauth2.model.Userinfoplus;
@@ -83,7 +82,7 @@ public class GoogleLoginUtils {
   public static void getUserInfo(@NotNull final Credential credential,
       final IUserPropertyCallback callback) {
     final Oauth2 userInfoService =
-        new Oauth2.Builder(new NetHttpTransport(), new JacksonFactory(), credential)
+        new Oauth2.Builder(HttpTransportProvider.getTransport(), new JacksonFactory(), credential)
             .setApplicationName(
                 ServiceManager.getService(AccountPluginInfoService.class).getUserAgent())
             .build();
@@ -146,7 +145,7 @@ public class GoogleLoginUtils {
     Credential cred =
         new GoogleCredential.Builder()
             .setJsonFactory(new JacksonFactory())
-            .setTransport(new NetHttpTransport())
+            .setTransport(HttpTransportProvider.getTransport())
             .setClientSecrets(clientId, clientSecret)
             .build();
     cred.setAccessToken(accessToken);
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.login;
+
+import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+/**
+ * Provides the {@link HttpTransport} that all Google API clients of the plugins are built from.
+ *
+ * <p>Creating a trusted transport loads the Google trust store and creates a new SSL context, and
+ * connections from different SSL contexts can neither be kept alive for one another nor resume
+ * each other's TLS sessions. Sharing one transport lets the JDK keep-alive cache reuse open
+ * connections to each Google API host, up to its per-host limit, and lets new connections resume
+ * earlier TLS sessions.
+ */
+public final class HttpTransportProvider {
+
+  private static final Logger LOG = Logger.getInstance(HttpTransportProvider.class);
+
+  private HttpTransportProvider() {
+  }
+
+  /**
+   * Returns the shared transport. It is thread safe, so clients for any user can use it.
+   */
+  @NotNull
+  public static HttpTransport getTransport() {
+    return TransportHolder.TRANSPORT;
+  }
+
+  // Loads the trust store on first use rather than when the plugin starts.
+  private static final class TransportHolder {
+
+    private static final HttpTransport TRANSPORT = createTransport();
+
+    private static HttpTransport createTransport() {
+      try {
+        return GoogleNetHttpTransport.newTrustedTransport();
+      } catch (GeneralSecurityException ex) {
+        LOG.warn("Could not load the Google trust store, using the default one instead.", ex);
+      } catch (IOException ex) {
+        LOG.warn("Could not load the Google trust store, using the default one instead.", ex);
+      }
+      return new NetHttpTransport();
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.stats;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Joiner.MapJoiner;
+import com.google.common.escape.CharEscaperBuilder;
+import com.google.common.escape.Escaper;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes usage events as form encoded Measurement Protocol hits.
+ *
+ * <p>Everything that is the same for all hits, such as the property and client IDs and the
+ * system metadata, is encoded once up front. Per-event fields are escaped and form encoded
+ * character by character straight into the caller's buffer, so encoding a hit allocates nothing
+ * once the buffer has grown to size.
+ *
+ * <p>For the semantics of each parameter, consult the followings:
+ *
+ * <ul>
+ *   <li>https://github.com/google/cloud-reporting/blob/master/src/main/java/com/google/cloud/metrics/MetricsUtils.java#L183
+ *   <li>https://developers.google.com/analytics/devguides/collection/protocol/v1/reference
+ * </ul>
+ */
+class AnalyticsPayloadEncoder {
+
+  private static final MapJoiner METADATA_JOINER =
+      Joiner.on(',').useForNull("null").withKeyValueSeparator("=");
+  private static final Escaper METADATA_ESCAPER =
+      new CharEscaperBuilder()
+          .addEscape(',', "\\,")
+          .addEscape('=', "\\=")
+          .addEscape('\\', "\\\\")
+          .toEscaper();
+  private static final String PROTOCOL_VERSION_KEY = "v";
+  private static final String UNIQUE_CLIENT_ID_KEY = "cid";
+  private static final String IS_NON_INTERACTIVE_KEY = "ni";
+  private static final String HIT_TYPE_KEY = "t";
+  private static final String PAGE_VIEW_VALUE = "pageview";
+  private static final String PROPERTY_ID_KEY = "tid";
+  private static final String EVENT_TYPE_KEY = "cd19";
+  private static final String EVENT_NAME_KEY = "cd20";
+  private static final String IS_INTERNAL_USER_KEY = "cd16";
+  private static final String IS_USER_SIGNED_IN_KEY = "cd17";
+  private static final String PAGE_URL_KEY = "dp";
+  private static final String IS_VIRTUAL_KEY = "cd21";
+  private static final String PAGE_TITLE_KEY = "dt";
+  private static final String PAGE_HOST_KEY = "dh";
+  private static final String PAGE_HOST_VALUE = "virtual.intellij";
+  private static final String VIRTUAL_PAGE_URL_PREFIX = "/virtual/";
+  private static final String STRING_FALSE_VALUE = "0";
+  private static final String STRING_TRUE_VALUE = "1";
+  private static final String EVENT_COUNT_KEY = "eventCount";
+
+  // Characters that are not percent encoded in form fields, as in URLEncodedUtils.
+  private static final boolean[] UNRESERVED = new boolean[128];
+  private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      UNRESERVED[c] = true;
+      UNRESERVED[Character.toUpperCase(c)] = true;
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for (char c : "_-!.~'()*".toCharArray()) {
+      UNRESERVED[c] = true;
+    }
+  }
+
+  private final byte[] prefix;
+  private final byte[] eventNameField;
+  private final byte[] pageUrlField;
+  private final byte[] pageUrlSeparator;
+  private final byte[] pageTitleField;
+  private final byte[] eventCountField;
+
+  /**
+   * Creates an encoder for hits to one Analytics property, and encodes their constant fields.
+   *
+   * @param analyticsId the ID of the Analytics property that hits are sent to
+   * @param clientId the anonymous ID of this installation
+   * @param systemMetadata metadata sent with every hit, unescaped
+   */
+  AnalyticsPayloadEncoder(
+      @Nullable String analyticsId,
+      @NotNull String clientId,
+      @NotNull Map<String, String> systemMetadata) {
+    // Apparently the hit type should always be of type 'pageview'.
+    StringBuilder base = new StringBuilder();
+    appendField(base, PROTOCOL_VERSION_KEY, "1");
+    appendField(base, HIT_TYPE_KEY, PAGE_VIEW_VALUE);
+    appendField(base, IS_NON_INTERACTIVE_KEY, STRING_FALSE_VALUE);
+    appendField(base, UNIQUE_CLIENT_ID_KEY, clientId);
+    appendField(base, PAGE_HOST_KEY, PAGE_HOST_VALUE);
+    appendField(base, PROPERTY_ID_KEY, analyticsId);
+    base.append('&').append(EVENT_TYPE_KEY).append('=');
+    // drop the separator in front of the first field
+    prefix = toBytes(base.substring(1));
+
+    eventNameField = toBytes("&" + EVENT_NAME_KEY + "=");
+
+    StringBuilder pageUrl = new StringBuilder();
+    appendField(pageUrl, IS_INTERNAL_USER_KEY, STRING_FALSE_VALUE);
+    appendField(pageUrl, IS_USER_SIGNED_IN_KEY, STRING_FALSE_VALUE);
+    appendField(pageUrl, PAGE_URL_KEY, VIRTUAL_PAGE_URL_PREFIX);
+    pageUrlField = toBytes(pageUrl);
+    pageUrlSeparator = toBytes(formEncode("/"));
+
+    Map<String, String> escapedSystemMetadata = new LinkedHashMap<>();
+    for (Map.Entry<String, String> entry : systemMetadata.entrySet()) {
+      escapedSystemMetadata.put(
+          METADATA_ESCAPER.escape(entry.getKey()), METADATA_ESCAPER.escape(entry.getValue()));
+    }
+    StringBuilder pageTitle = new StringBuilder();
+    // I think 'virtual' indicates these don't correspond to real web pages.
+    appendField(pageTitle, IS_VIRTUAL_KEY, STRING_TRUE_VALUE);
+    appendField(pageTitle, PAGE_TITLE_KEY, METADATA_JOINER.join(escapedSystemMetadata));
+    pageTitleField = toBytes(pageTitle);
+    eventCountField = toBytes(formEncode("," + EVENT_COUNT_KEY + "="));
+  }
+
+  /**
+   * Appends the hit for an event that was queued {@code count} times since the last flush.
+   * Identical events are sent once, with their count added to the metadata.
+   */
+  void encode(@NotNull UsageEvent event, int count, @NotNull ByteArrayOutputStream out) {
+    out.write(prefix, 0, prefix.length);
+    writeFormEncoded(event.getCategory(), out);
+    out.write(eventNameField, 0, eventNameField.length);
+    writeFormEncoded(event.getAction(), out);
+
+    // Virtual page information
+    out.write(pageUrlField, 0, pageUrlField.length);
+    writeFormEncoded(event.getCategory(), out);
+    out.write(pageUrlSeparator, 0, pageUrlSeparator.length);
+    writeFormEncoded(event.getAction(), out);
+
+    out.write(pageTitleField, 0, pageTitleField.length);
+    for (Map.Entry<String, String> entry : event.getMetadata().entrySet()) {
+      writePercentEncoded(',', out);
+      writeMetadataEscaped(entry.getKey(), out);
+      writePercentEncoded('=', out);
+      writeMetadataEscaped(entry.getValue(), out);
+    }
+    if (count > 1) {
+      out.write(eventCountField, 0, eventCountField.length);
+      writeDecimal(count, out);
+    }
+  }
+
+  private static void writeMetadataEscaped(
+      @NotNull CharSequence value, @NotNull ByteArrayOutputStream out) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ',' || c == '=' || c == '\\') {
+        writePercentEncoded('\\', out);
+      }
+      i = writeFormEncoded(value, i, out);
+    }
+  }
+
+  private static void writeFormEncoded(
+      @NotNull CharSequence value, @NotNull ByteArrayOutputStream out) {
+    for (int i = 0; i < value.length(); i++) {
+      i = writeFormEncoded(value, i, out);
+    }
+  }
+
+  /**
+   * Form encodes the UTF-8 bytes of the character at {@code index}, and returns the index of the
+   * last character consumed, which is past {@code index} for a surrogate pair.
+   */
+  private static int writeFormEncoded(
+      @NotNull CharSequence value, int index, @NotNull ByteArrayOutputStream out) {
+    char c = value.charAt(index);
+    if (c < 0x80) {
+      if (UNRESERVED[c]) {
+        out.write(c);
+      } else if (c == ' ') {
+        out.write('+');
+      } else {
+        writePercentEncoded(c, out);
+      }
+    } else if (c < 0x800) {
+      writePercentEncoded(0xC0 | (c >> 6), out);
+      writePercentEncoded(0x80 | (c & 0x3F), out);
+    } else if (Character.isHighSurrogate(c)
+        && index + 1 < value.length()
+        && Character.isLowSurrogate(value.charAt(index + 1))) {
+      int codePoint = Character.toCodePoint(c, value.charAt(++index));
+      writePercentEncoded(0xF0 | (codePoint >> 18), out);
+      writePercentEncoded(0x80 | ((codePoint >> 12) & 0x3F), out);
+      writePercentEncoded(0x80 | ((codePoint >> 6) & 0x3F), out);
+      writePercentEncoded(0x80 | (codePoint & 0x3F), out);
+    } else if (Character.isSurrogate(c)) {
+      // an unpaired surrogate, which String.getBytes replaces in the same way
+      writePercentEncoded('?', out);
+    } else {
+      writePercentEncoded(0xE0 | (c >> 12), out);
+      writePercentEncoded(0x80 | ((c >> 6) & 0x3F), out);
+      writePercentEncoded(0x80 | (c & 0x3F), out);
+    }
+    return index;
+  }
+
+  private static void writePercentEncoded(int b, @NotNull ByteArrayOutputStream out) {
+    out.write('%');
+    out.write(HEX_DIGITS[(b >> 4) & 0xF]);
+    out.write(HEX_DIGITS[b & 0xF]);
+  }
+
+  private static void writeDecimal(int value, @NotNull ByteArrayOutputStream out) {
+    if (value >= 10) {
+      writeDecimal(value / 10, out);
+    }
+    out.write('0' + value % 10);
+  }
+
+  /** Appends {@code &key=value}, or {@code &key} for a null value, with both form encoded. */
+  private static void appendField(
+      @NotNull StringBuilder builder, @NotNull String key, @Nullable String value) {
+    builder.append('&').append(formEncode(key));
+    if (value != null) {
+      builder.append('=').append(formEncode(value));
+    }
+  }
+
+  @NotNull
+  private static String formEncode(@NotNull String value) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeFormEncoded(value, out);
+    return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+  }
+
+  @NotNull
+  private static byte[] toBytes(@NotNull CharSequence encoded) {
+    return encoded.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.stats;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import org.apache.http.StatusLine;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts batches of hits over HTTP. The client is kept for the lifetime of the sink, so consecutive
+ * batches reuse the same connection.
+ */
+class HttpUsageEventSink implements UsageEventSink {
+
+  static final String ANALYTICS_BATCH_URL = "https://ssl.google-analytics.com/batch";
+  // Bounds connecting, waiting for a pooled connection and each read, so that an unresponsive
+  // server cannot hold up the thread that sends the queued hits.
+  private static final int TIMEOUT_MS = (int) TimeUnit.SECONDS.toMillis(10);
+
+  private static final Logger logger = Logger.getInstance(HttpUsageEventSink.class);
+
+  private final String url;
+  private final CloseableHttpClient client;
+
+  HttpUsageEventSink(@NotNull String url, @NotNull String userAgent) {
+    this(url, userAgent, TIMEOUT_MS);
+  }
+
+  @VisibleForTesting
+  HttpUsageEventSink(@NotNull String url, @NotNull String userAgent, int timeoutMs) {
+    this.url = url;
+    RequestConfig requestConfig =
+        RequestConfig.custom()
+            .setConnectTimeout(timeoutMs)
+            .setSocketTimeout(timeoutMs)
+            .setConnectionRequestTimeout(timeoutMs)
+            .build();
+    client =
+        HttpClientBuilder.create()
+            .setUserAgent(userAgent)
+            .setDefaultRequestConfig(requestConfig)
+            .build();
+  }
+
+  @Override
+  public void send(@NotNull byte[] payload) throws IOException {
+    HttpPost request = new HttpPost(url);
+    request.setEntity(new ByteArrayEntity(payload, ContentType.APPLICATION_FORM_URLENCODED));
+    try (CloseableHttpResponse response = client.execute(request)) {
+      StatusLine status = response.getStatusLine();
+      if (status.getStatusCode() >= 300) {
+        logger.debug(
+            "Non 200 status code : " + status.getStatusCode() + " - " + status.getReasonPhrase());
+      }
+      // Reading the body to the end returns the connection to the pool.
+      EntityUtils.consume(response.getEntity());
+    }
+  }
+}
@@ -30,7 +30,8 @@ class TrackingEventBuilder implements FluentTrackingEventWithMetadata {
   private SendsEvents eventSender;
   private String category;
   private String action;
-  private Map<String, String> metadataMap = Maps.newHashMap();
+  // created on first use, as most events carry no metadata
+  private Map<String, String> metadataMap;
 
   TrackingEventBuilder(SendsEvents eventSender, String category, String action) {
     this.eventSender = Preconditions.checkNotNull(eventSender);
@@ -40,6 +41,9 @@ class TrackingEventBuilder implements FluentTrackingEventWithMetadata {
 
   @Override
   public FluentTrackingEventWithMetadata addMetadata(String key, String value) {
+    if (metadataMap == null) {
+      metadataMap = Maps.newHashMap();
+    }
     metadataMap.put(Preconditions.checkNotNull(key), Preconditions.checkNotNull(value));
     return this;
   }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.stats;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+
+/** A usage event waiting to be sent. Events with equal fields are coalesced by the queue. */
+final class UsageEvent {
+
+  private final String category;
+  private final String action;
+  private final ImmutableMap<String, String> metadata;
+
+  UsageEvent(
+      @NotNull String category, @NotNull String action, @Nullable Map<String, String> metadata) {
+    this.category = category;
+    this.action = action;
+    this.metadata = metadata == null ? ImmutableMap.of() : ImmutableMap.copyOf(metadata);
+  }
+
+  @NotNull
+  String getCategory() {
+    return category;
+  }
+
+  @NotNull
+  String getAction() {
+    return action;
+  }
+
+  @NotNull
+  Map<String, String> getMetadata() {
+    return metadata;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof UsageEvent)) {
+      return false;
+    }
+    UsageEvent event = (UsageEvent) other;
+    return category.equals(event.category)
+        && action.equals(event.action)
+        && metadata.equals(event.metadata);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(category, action, metadata);
+  }
+}
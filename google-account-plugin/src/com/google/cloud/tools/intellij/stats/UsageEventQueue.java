@@ -0,0 +1,170 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.stats;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects usage events in memory and sends them in batches from a single background thread.
+ *
+ * <p>Events that are queued while a flush is pending are coalesced: identical events are sent as
+ * one hit carrying their count. The queue holds at most {@link #MAX_PENDING_EVENTS} distinct
+ * events; new events are dropped while it is full, so a burst of events never costs more than one
+ * thread and one request per batch.
+ */
+class UsageEventQueue {
+
+  // Limits of the Measurement Protocol batch endpoint.
+  @VisibleForTesting static final int MAX_HITS_PER_BATCH = 20;
+  @VisibleForTesting static final int MAX_HIT_BYTES = 8 * 1024;
+  @VisibleForTesting static final int MAX_BATCH_BYTES = 16 * 1024;
+
+  @VisibleForTesting static final int MAX_PENDING_EVENTS = 500;
+  private static final long DEFAULT_FLUSH_DELAY_MS = 5000;
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+  private static final Logger logger = Logger.getInstance(UsageEventQueue.class);
+
+  private final HitEncoder encoder;
+  private final UsageEventSink sink;
+  private final long flushDelayMs;
+  private final ScheduledThreadPoolExecutor sender;
+  // distinct events in arrival order with the number of times each was queued; guarded by this
+  private final Map<UsageEvent, Integer> pending = new LinkedHashMap<>();
+  private boolean flushScheduled;
+  private int droppedEvents;
+  // reused by every flush, which only runs on the sender thread
+  private final ByteArrayOutputStream hit = new ByteArrayOutputStream(MAX_HIT_BYTES);
+  private final ByteArrayOutputStream batch = new ByteArrayOutputStream(MAX_BATCH_BYTES);
+
+  UsageEventQueue(@NotNull HitEncoder encoder, @NotNull UsageEventSink sink) {
+    this(encoder, sink, DEFAULT_FLUSH_DELAY_MS);
+  }
+
+  @VisibleForTesting
+  UsageEventQueue(@NotNull HitEncoder encoder, @NotNull UsageEventSink sink, long flushDelayMs) {
+    this.encoder = encoder;
+    this.sink = sink;
+    this.flushDelayMs = flushDelayMs;
+    sender =
+        new ScheduledThreadPoolExecutor(
+            1,
+            ConcurrencyUtil.newNamedThreadFactory(
+                "usage event sender", true /* isDaemon */, Thread.MIN_PRIORITY));
+    sender.setKeepAliveTime(IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    sender.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Queues an event to be sent with the next batch.
+   *
+   * @return false if the event was dropped because the queue is full
+   */
+  synchronized boolean add(@NotNull UsageEvent event) {
+    Integer count = pending.get(event);
+    if (count != null) {
+      pending.put(event, count + 1);
+      return true;
+    }
+    if (pending.size() >= MAX_PENDING_EVENTS) {
+      droppedEvents++;
+      return false;
+    }
+
+    pending.put(event, 1);
+    if (!flushScheduled) {
+      flushScheduled = true;
+      sender.schedule(this::flush, flushDelayMs, TimeUnit.MILLISECONDS);
+    }
+    return true;
+  }
+
+  /** Sends all queued events. Called on the sender thread once the flush delay has passed. */
+  @VisibleForTesting
+  void flush() {
+    Map<UsageEvent, Integer> events;
+    int dropped;
+    synchronized (this) {
+      events = new LinkedHashMap<>(pending);
+      pending.clear();
+      flushScheduled = false;
+      dropped = droppedEvents;
+      droppedEvents = 0;
+    }
+    if (dropped > 0) {
+      logger.debug("Dropped " + dropped + " usage events because the queue was full");
+    }
+
+    int hitsInBatch = 0;
+    for (Map.Entry<UsageEvent, Integer> entry : events.entrySet()) {
+      hit.reset();
+      encoder.encode(entry.getKey(), entry.getValue(), hit);
+      if (hit.size() > MAX_HIT_BYTES) {
+        logger.debug("Dropped a usage event larger than " + MAX_HIT_BYTES + " bytes");
+        continue;
+      }
+      if (hitsInBatch == MAX_HITS_PER_BATCH
+          || batch.size() + 1 + hit.size() > MAX_BATCH_BYTES) {
+        send();
+        hitsInBatch = 0;
+      }
+      if (hitsInBatch > 0) {
+        batch.write('\n');
+      }
+      try {
+        hit.writeTo(batch);
+      } catch (IOException ex) {
+        // cannot happen when writing to memory
+        throw new IllegalStateException(ex);
+      }
+      hitsInBatch++;
+    }
+    if (hitsInBatch > 0) {
+      send();
+    }
+  }
+
+  private void send() {
+    try {
+      sink.send(batch.toByteArray());
+    } catch (IOException ex) {
+      logger.debug("IOException during Analytics Ping", ex.getMessage());
+    } finally {
+      batch.reset();
+    }
+  }
+
+  /** Turns a queued event into one form encoded hit. */
+  interface HitEncoder {
+
+    /**
+     * Appends the hit for an event that was queued {@code count} times since the last flush.
+     */
+    void encode(@NotNull UsageEvent event, int count, @NotNull ByteArrayOutputStream out);
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.stats;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/** Delivers batches of encoded analytics hits, for example to the Measurement Protocol. */
+interface UsageEventSink {
+
+  /**
+   * Sends one batch. The payload holds form encoded hits separated by newlines, as expected by the
+   * Measurement Protocol batch endpoint.
+   */
+  void send(@NotNull byte[] payload) throws IOException;
+}
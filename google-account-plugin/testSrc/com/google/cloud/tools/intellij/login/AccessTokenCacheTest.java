@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.login;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.gdt.eclipse.login.common.GoogleLoginState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link AccessTokenCache}. */
+public class AccessTokenCacheTest {
+
+  private static final long HOUR_MS = TimeUnit.HOURS.toMillis(1);
+
+  private final List<String> fetchedRefreshTokens = new ArrayList<>();
+  private IOException fetchFailure;
+  private long now = 1000;
+  private ScheduledExecutorService renewer;
+  private ScheduledFuture<?> renewal;
+  private GoogleLoginState state;
+  private CredentialedUser user;
+  private AccessTokenCache cache;
+
+  @Before
+  public void setUp() {
+    renewer = mock(ScheduledExecutorService.class);
+    renewal = mock(ScheduledFuture.class);
+    doReturn(renewal)
+        .when(renewer)
+        .schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    state = mock(GoogleLoginState.class);
+    when(state.fetchOAuth2RefreshToken()).thenReturn("refresh1");
+    user = mock(CredentialedUser.class);
+    when(user.getEmail()).thenReturn("user@example.com");
+    when(user.getGoogleLoginState()).thenReturn(state);
+
+    cache =
+        new AccessTokenCache(
+            loginState -> {
+              if (fetchFailure != null) {
+                throw fetchFailure;
+              }
+              String refreshToken = loginState.fetchOAuth2RefreshToken();
+              fetchedRefreshTokens.add(refreshToken);
+              return new AccessTokenCache.Token(
+                  "access-" + refreshToken + "-" + fetchedRefreshTokens.size(), HOUR_MS);
+            },
+            () -> now,
+            renewer);
+  }
+
+  @Test
+  public void testGetAccessToken_reusesValidToken() throws IOException {
+    assertEquals("access-refresh1-1", cache.getAccessToken(user));
+    now += HOUR_MS / 2;
+    assertEquals("access-refresh1-1", cache.getAccessToken(user));
+
+    assertEquals(1, fetchedRefreshTokens.size());
+  }
+
+  @Test
+  public void testGetAccessToken_refreshesTokenAboutToExpire() throws IOException {
+    cache.getAccessToken(user);
+    now += HOUR_MS - 1000;
+
+    assertEquals("access-refresh1-2", cache.getAccessToken(user));
+  }
+
+  @Test
+  public void testGetAccessToken_refreshesAfterSigningInAgain() throws IOException {
+    cache.getAccessToken(user);
+    when(state.fetchOAuth2RefreshToken()).thenReturn("refresh2");
+
+    assertEquals("access-refresh2-2", cache.getAccessToken(user));
+  }
+
+  @Test
+  public void testGetAccessToken_returnsNullForUserWithoutLoginState() throws IOException {
+    when(user.getGoogleLoginState()).thenReturn(null);
+
+    assertNull(cache.getAccessToken(user));
+    assertEquals(0, fetchedRefreshTokens.size());
+  }
+
+  @Test
+  public void testGetAccessToken_schedulesRenewalBeforeExpiry() throws IOException {
+    cache.getAccessToken(user);
+
+    ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+    verify(renewer).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+    assertEquals(HOUR_MS - TimeUnit.MINUTES.toMillis(5), (long) delay.getValue());
+  }
+
+  @Test
+  public void testRenew_replacesUsedToken() throws IOException {
+    cache.getAccessToken(user);
+    useCachedToken();
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+
+    runLastScheduledRenewal();
+
+    assertEquals(2, fetchedRefreshTokens.size());
+    assertEquals("access-refresh1-2", cache.getAccessToken(user));
+    assertEquals(2, fetchedRefreshTokens.size());
+  }
+
+  @Test
+  public void testRenew_skipsTokenUnusedSinceFetched() throws IOException {
+    cache.getAccessToken(user);
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+
+    runLastScheduledRenewal();
+
+    assertEquals(1, fetchedRefreshTokens.size());
+  }
+
+  @Test
+  public void testRenew_skipsTokenUnusedSinceLastRenewal() throws IOException {
+    cache.getAccessToken(user);
+    useCachedToken();
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+    runLastScheduledRenewal();
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+
+    runLastScheduledRenewal();
+
+    assertEquals(2, fetchedRefreshTokens.size());
+  }
+
+  @Test
+  public void testRenew_keepsCurrentTokenOnFailure() throws IOException {
+    cache.getAccessToken(user);
+    useCachedToken();
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+    fetchFailure = new IOException("offline");
+
+    runLastScheduledRenewal();
+
+    fetchFailure = null;
+    assertEquals("access-refresh1-1", cache.getAccessToken(user));
+    // the first renewal plus one retry
+    verify(renewer, times(2))
+        .schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testGetAccessToken_cancelsPendingRenewalAfterSigningInAgain() throws IOException {
+    cache.getAccessToken(user);
+    Runnable staleRenewal = getLastScheduledRenewal();
+    when(state.fetchOAuth2RefreshToken()).thenReturn("refresh2");
+    cache.getAccessToken(user);
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+
+    staleRenewal.run();
+
+    verify(renewal).cancel(false);
+    assertEquals(2, fetchedRefreshTokens.size());
+  }
+
+  @Test
+  public void testRenew_keepsOneRenewalChainAfterSigningInAgain() throws IOException {
+    cache.getAccessToken(user);
+    when(state.fetchOAuth2RefreshToken()).thenReturn("refresh2");
+    cache.getAccessToken(user);
+    useCachedToken();
+    now += HOUR_MS - TimeUnit.MINUTES.toMillis(5);
+
+    runLastScheduledRenewal();
+
+    assertEquals(3, fetchedRefreshTokens.size());
+    // the first fetch, the fetch after signing in again and the renewal each scheduled one
+    verify(renewer, times(3))
+        .schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    verify(renewal).cancel(false);
+  }
+
+  private void useCachedToken() throws IOException {
+    now += 1000;
+    cache.getAccessToken(user);
+  }
+
+  private Runnable getLastScheduledRenewal() {
+    ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+    verify(renewer, atLeastOnce())
+        .schedule(task.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+    return task.getValue();
+  }
+
+  private void runLastScheduledRenewal() {
+    getLastScheduledRenewal().run();
+  }
+}
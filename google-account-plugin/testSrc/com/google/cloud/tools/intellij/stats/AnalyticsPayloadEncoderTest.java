@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** Tests for {@link AnalyticsPayloadEncoder}. */
+public class AnalyticsPayloadEncoderTest {
+
+  private final AnalyticsPayloadEncoder encoder =
+      new AnalyticsPayloadEncoder(
+          "UA-12345-6",
+          "client id",
+          ImmutableMap.of("applicationName", "idea", "operatingSystem", "Linux=4,0"));
+
+  @Test
+  public void testEncode_matchesUrlEncodedUtils() {
+    UsageEvent event =
+        new UsageEvent("cloud tools", "deploy/flex", ImmutableMap.of("status", "ok"));
+
+    assertEquals(expectedHit("cloud tools", "deploy/flex", "status=ok"), encode(event, 1));
+  }
+
+  @Test
+  public void testEncode_escapesMetadata() {
+    UsageEvent event = new UsageEvent("category", "action", ImmutableMap.of("k,e=y", "va\\lue"));
+
+    assertEquals(expectedHit("category", "action", "k\\,e\\=y=va\\\\lue"), encode(event, 1));
+  }
+
+  @Test
+  public void testEncode_nonAsciiCharacters() {
+    String category = "caf\u00e9";
+    String action = "\u6f22\u5b57";
+    String emoji = "\ud83d\ude00";
+    UsageEvent event = new UsageEvent(category, action, ImmutableMap.of("emoji", emoji));
+
+    assertEquals(expectedHit(category, action, "emoji=" + emoji), encode(event, 1));
+  }
+
+  @Test
+  public void testEncode_addsCountOfCoalescedEvents() {
+    UsageEvent event = new UsageEvent("category", "action", null);
+
+    assertEquals(expectedHit("category", "action", "eventCount=42"), encode(event, 42));
+  }
+
+  @Test
+  public void testEncode_reusesBuffer() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(new UsageEvent("category", "first", null), 1, out);
+    out.reset();
+    encoder.encode(new UsageEvent("category", "second", null), 1, out);
+
+    assertEquals(
+        expectedHit("category", "second", null),
+        new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  private String encode(UsageEvent event, int count) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    encoder.encode(event, count, out);
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /** Encodes a hit the way the tracker did before hits were pre-encoded. */
+  private static String expectedHit(String category, String action, String escapedMetadata) {
+    String pageTitle = "applicationName=idea,operatingSystem=Linux\\=4\\,0";
+    if (escapedMetadata != null) {
+      pageTitle = pageTitle + "," + escapedMetadata;
+    }
+    return URLEncodedUtils.format(
+        Arrays.asList(
+            new BasicNameValuePair("v", "1"),
+            new BasicNameValuePair("t", "pageview"),
+            new BasicNameValuePair("ni", "0"),
+            new BasicNameValuePair("cid", "client id"),
+            new BasicNameValuePair("dh", "virtual.intellij"),
+            new BasicNameValuePair("tid", "UA-12345-6"),
+            new BasicNameValuePair("cd19", category),
+            new BasicNameValuePair("cd20", action),
+            new BasicNameValuePair("cd16", "0"),
+            new BasicNameValuePair("cd17", "0"),
+            new BasicNameValuePair("dp", "/virtual/" + category + "/" + action),
+            new BasicNameValuePair("cd21", "1"),
+            new BasicNameValuePair("dt", pageTitle)),
+        StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.intellij.openapi.util.io.StreamUtil;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/** Tests for {@link HttpUsageEventSink} against a local HTTP server. */
+public class HttpUsageEventSinkTest {
+
+  private final List<String> requests = new ArrayList<>();
+  private HttpServer server;
+  private String url;
+  private volatile String method;
+  private volatile String contentType;
+  private final CountDownLatch stopHanging = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(
+        "/batch",
+        exchange -> {
+          method = exchange.getRequestMethod();
+          contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+          synchronized (requests) {
+            requests.add(
+                new String(
+                    StreamUtil.loadFromStream(exchange.getRequestBody()), StandardCharsets.UTF_8));
+          }
+          exchange.sendResponseHeaders(200, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/hang",
+        exchange -> {
+          try {
+            stopHanging.await();
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.close();
+        });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/batch";
+  }
+
+  @After
+  public void tearDown() {
+    stopHanging.countDown();
+    server.stop(0);
+  }
+
+  @Test
+  public void testSend_postsPayloadAsForm() throws Exception {
+    HttpUsageEventSink sink = new HttpUsageEventSink(url, "test-agent");
+
+    sink.send("v=1&t=pageview\nv=1&t=pageview".getBytes(StandardCharsets.UTF_8));
+    sink.send("v=1&t=pageview".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(2, requests.size());
+    assertEquals("v=1&t=pageview\nv=1&t=pageview", requests.get(0));
+    assertEquals("POST", method);
+    assertTrue(contentType.startsWith("application/x-www-form-urlencoded"));
+  }
+
+  @Test(expected = SocketTimeoutException.class)
+  public void testSend_timesOutOnUnresponsiveServer() throws Exception {
+    String hangingUrl = url.replace("/batch", "/hang");
+    HttpUsageEventSink sink = new HttpUsageEventSink(hangingUrl, "test-agent", 100 /* timeoutMs */);
+
+    sink.send("v=1&t=pageview".getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests for {@link UsageEventQueue}. */
+public class UsageEventQueueTest {
+
+  private final List<String> batches = new ArrayList<>();
+  private UsageEventQueue queue;
+
+  @Before
+  public void setUp() {
+    UsageEventQueue.HitEncoder encoder =
+        (event, count, out) -> {
+          byte[] hit =
+              (event.getAction() + event.getMetadata() + "x" + count)
+                  .getBytes(StandardCharsets.UTF_8);
+          out.write(hit, 0, hit.length);
+        };
+    // Flushes are triggered by the tests.
+    queue =
+        new UsageEventQueue(
+            encoder,
+            payload -> batches.add(new String(payload, StandardCharsets.UTF_8)),
+            Long.MAX_VALUE);
+  }
+
+  @Test
+  public void testFlush_coalescesIdenticalEvents() {
+    queue.add(new UsageEvent("category", "create", ImmutableMap.of("k", "v")));
+    queue.add(new UsageEvent("category", "create", ImmutableMap.of("k", "v")));
+    queue.add(new UsageEvent("category", "delete", null));
+    queue.add(new UsageEvent("category", "create", ImmutableMap.of("k", "v")));
+    queue.add(new UsageEvent("category", "create", ImmutableMap.of("k", "other")));
+
+    queue.flush();
+
+    assertEquals(1, batches.size());
+    assertEquals("create{k=v}x3\ndelete{}x1\ncreate{k=other}x1", batches.get(0));
+  }
+
+  @Test
+  public void testFlush_splitsBatchesAtHitLimit() {
+    for (int i = 0; i < UsageEventQueue.MAX_HITS_PER_BATCH + 5; i++) {
+      queue.add(new UsageEvent("category", "action" + i, null));
+    }
+
+    queue.flush();
+
+    assertEquals(2, batches.size());
+    assertEquals(UsageEventQueue.MAX_HITS_PER_BATCH, batches.get(0).split("\n").length);
+    assertEquals(5, batches.get(1).split("\n").length);
+  }
+
+  @Test
+  public void testFlush_emptyQueueSendsNothing() {
+    queue.flush();
+
+    assertTrue(batches.isEmpty());
+  }
+
+  @Test
+  public void testAdd_dropsNewEventsWhenFull() {
+    for (int i = 0; i < UsageEventQueue.MAX_PENDING_EVENTS; i++) {
+      assertTrue(queue.add(new UsageEvent("category", "action" + i, null)));
+    }
+
+    assertFalse(queue.add(new UsageEvent("category", "one too many", null)));
+    // events that are already queued are still counted
+    assertTrue(queue.add(new UsageEvent("category", "action0", null)));
+  }
+
+  @Test
+  public void testFlush_dropsOversizedHits() {
+    queue.add(new UsageEvent("category", repeat('a', UsageEventQueue.MAX_HIT_BYTES), null));
+    queue.add(new UsageEvent("category", "small", null));
+
+    queue.flush();
+
+    assertEquals(1, batches.size());
+    assertEquals("small{}x1", batches.get(0));
+  }
+
+  @NotNull
+  private static String repeat(char c, int count) {
+    StringBuilder builder = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
@@ -25,9 +25,7 @@ import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListen
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
 import com.google.cloud.tools.intellij.appengine.sdk.CloudSdkVersionNotifier;
 import com.google.cloud.tools.intellij.util.GctBundle;
-import com.google.gson.Gson;
 import com.google.gson.JsonParseException;
-import com.google.gson.reflect.TypeToken;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
@@ -37,8 +35,9 @@ import com.intellij.remoteServer.runtime.log.LoggingHandler;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Type;
+import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -54,6 +53,7 @@ public class AppEngineDeploy {
   private AppEngineDeploymentConfiguration deploymentConfiguration;
   private AppEngineEnvironment environment;
   private DeploymentOperationCallback callback;
+  @Nullable private volatile DeploymentProgress progress;
 
   /**
    * Initialize the deployment dependencies.
@@ -77,11 +77,44 @@ public class AppEngineDeploy {
   public void deploy(
       @NotNull Path stagingDirectory,
       @NotNull ProcessStartListener deployStartListener) {
-    final StringBuilder rawDeployOutput = new StringBuilder();
+    deploy(Collections.singletonList(stagingDirectory), deployStartListener);
+  }
+
+  /**
+   * Given a staging directory, deploy the application to Google App Engine, and tell
+   * {@code deployExitListener} once the deploy process has exited and its outcome was reported. The
+   * listener is not called if this throws, as no process was started then.
+   */
+  public void deploy(
+      @NotNull Path stagingDirectory,
+      @NotNull ProcessStartListener deployStartListener,
+      @NotNull ProcessExitListener deployExitListener) {
+    deploy(Collections.singletonList(stagingDirectory), deployStartListener, deployExitListener);
+  }
+
+  /**
+   * Given the staging directories of several services, deploy them to Google App Engine with a
+   * single gcloud invocation. The first service is the one that the deployment runtime refers to.
+   */
+  public void deploy(
+      @NotNull List<Path> stagingDirectories,
+      @NotNull ProcessStartListener deployStartListener) {
+    deploy(stagingDirectories, deployStartListener, null /* deployExitListener */);
+  }
 
+  private void deploy(
+      @NotNull List<Path> stagingDirectories,
+      @NotNull ProcessStartListener deployStartListener,
+      @Nullable ProcessExitListener deployExitListener) {
+    enterPhase(DeploymentProgress.Phase.DEPLOY);
+    final DeployListener deployListener = new DeployListener(deployExitListener);
+
+    List<File> deployables = new ArrayList<>();
+    for (Path stagingDirectory : stagingDirectories) {
+      deployables.add(stagingDirectory.resolve("app.yaml").toFile());
+    }
     DefaultDeployConfiguration configuration = new DefaultDeployConfiguration();
-    configuration.setDeployables(
-        Collections.singletonList(stagingDirectory.resolve("app.yaml").toFile()));
+    configuration.setDeployables(deployables);
     configuration.setProject(deploymentConfiguration.getCloudProjectName());
 
     configuration.setPromote(deploymentConfiguration.isPromote());
@@ -101,22 +134,16 @@ public class AppEngineDeploy {
       @Override
       public void onOutputLine(String line) {
         loggingHandler.print(line + "\n");
+        deployListener.outputReader.onErrorLine(line);
       }
     };
-    ProcessOutputLineListener deployOutputListener = new ProcessOutputLineListener() {
-      @Override
-      public void onOutputLine(String output) {
-        rawDeployOutput.append(output);
-      }
-    };
-    ProcessExitListener deployExitListener = new DeployExitListener(rawDeployOutput);
 
     CloudSdk sdk = helper.createSdk(
         loggingHandler,
         deployStartListener,
         deployLogListener,
-        deployOutputListener,
-        deployExitListener);
+        deployListener.outputReader,
+        deployListener);
 
     // show a warning notification if the cloud sdk version is not supported
     CloudSdkVersionNotifier.getInstance().notifyIfUnsupportedVersion();
@@ -141,50 +168,118 @@ public class AppEngineDeploy {
     return callback;
   }
 
-  private class DeployExitListener implements ProcessExitListener {
-    final StringBuilder rawDeployOutput;
+  /**
+   * Sets the progress that the phases of this deployment are reported to. Without one, phases
+   * are not reported and the deployment cannot be cancelled between them.
+   */
+  public void setProgress(@Nullable DeploymentProgress progress) {
+    this.progress = progress;
+  }
+
+  /** Reports that the deployment entered {@code phase}. */
+  public void enterPhase(@NotNull DeploymentProgress.Phase phase) {
+    if (progress != null) {
+      progress.enter(phase);
+    }
+  }
+
+  /**
+   * Returns true if the user cancelled the deployment, after reporting it as failed. Called
+   * between phases, so that a cancelled deployment does not start its next phase.
+   */
+  public boolean checkCancelled() {
+    if (progress == null || !progress.isCanceled()) {
+      return false;
+    }
+    helper.deleteCredentials();
+    callback.errorOccurred(GctBundle.message("appengine.deployment.error.cancelled"));
+    return true;
+  }
+
+  /**
+   * Follows the output of the deploy process as it is written, and reports the outcome once the
+   * process exits.
+   */
+  private class DeployListener implements DeployOutputReader.Listener, ProcessExitListener {
+    final DeployOutput deployOutput = new DeployOutput();
+    final DeployOutputReader outputReader = new DeployOutputReader(this);
+    // created as soon as the first deployed version is known, and handed out once the process
+    // succeeds
+    @Nullable private volatile AppEngineDeploymentRuntime runtime;
+    @Nullable private final ProcessExitListener exitListener;
+
+    DeployListener(@Nullable ProcessExitListener exitListener) {
+      this.exitListener = exitListener;
+    }
 
-    DeployExitListener(StringBuilder rawDeployOutput) {
-      this.rawDeployOutput = rawDeployOutput;
+    @Override
+    public void onVersion(@NotNull DeployOutputReader.DeployedVersion version) {
+      deployOutput.onVersion(version);
+      if (version.getUrl() != null) {
+        loggingHandler.print(GctBundle.message("appengine.deployment.version.deployed.url",
+            version.getService(), version.getId(), version.getUrl()) + "\n");
+      } else {
+        loggingHandler.print(GctBundle.message("appengine.deployment.version.deployed",
+            version.getService(), version.getId()) + "\n");
+      }
+      if (outputReader.getVersionCount() == 1 && version.getId() != null && version.getService() != null) {
+        runtime = createRuntime(version.getService(), version.getId());
+      }
+    }
+
+    @Override
+    public void onError(@NotNull String message) {
+      deployOutput.onError(message);
     }
 
     @Override
     public void onExit(int exitCode) {
       try {
         if (exitCode == 0) {
-          DeployOutput deployOutput = null;
+          enterPhase(DeploymentProgress.Phase.PARSE);
+          AppEngineDeploymentRuntime deployedRuntime = runtime;
 
-          try {
-            deployOutput = parseDeployOutput(rawDeployOutput.toString());
-          } catch (JsonParseException ex) {
-            logger.error("Could not retrieve service/version info of deployed application", ex);
+          int versionCount = outputReader.getVersionCount();
+          if (versionCount > 1) {
+            loggingHandler.print(
+                GctBundle.message("appengine.deployment.services.deployed", versionCount) + "\n");
           }
-
-          if (deployOutput == null
-              || deployOutput.getService() == null || deployOutput.getVersion() == null) {
+          if (!outputReader.isComplete() || deployedRuntime == null) {
+            logger.warn("Could not retrieve service/version info of deployed application");
             loggingHandler.print(
                 GctBundle.message("appengine.deployment.version.extract.failure") + "\n"
                     + GctBundle.message("appengine.action.error.update.message") + "\n");
+            deployedRuntime = createRuntime(null /* service */, null /* version */);
           }
 
-          callback.succeeded(
-              new AppEngineDeploymentRuntime(
-                  loggingHandler, helper, deploymentConfiguration, environment,
-                  deployOutput != null ? deployOutput.getService() : null,
-                  deployOutput != null ? deployOutput.getVersion() : null));
+          callback.succeeded(deployedRuntime);
 
+        } else if (progress != null && progress.isCanceled()) {
+          callback.errorOccurred(GctBundle.message("appengine.deployment.error.cancelled"));
         } else {
           logger.warn("Deployment process exited with an error. Exit Code:" + exitCode);
+          String error = deployOutput.getError();
           callback.errorOccurred(
               GctBundle.message("appengine.deployment.error.with.code", exitCode) + "\n"
+                  + (error != null ? error + "\n" : "")
                   + GctBundle.message("appengine.action.error.update.message"));
         }
       } finally {
         helper.deleteCredentials();
+        if (exitListener != null) {
+          exitListener.onExit(exitCode);
+        }
       }
     }
   }
 
+  @NotNull
+  private AppEngineDeploymentRuntime createRuntime(
+      @Nullable String service, @Nullable String version) {
+    return new AppEngineDeploymentRuntime(
+        loggingHandler, helper, deploymentConfiguration, environment, service, version);
+  }
+
   /**
    * Parse the raw json output of the deployment.
    *
@@ -193,41 +288,55 @@ public class AppEngineDeploy {
    */
   @VisibleForTesting
   static DeployOutput parseDeployOutput(String jsonOutput) throws JsonParseException {
-    Type deployOutputType = new TypeToken<DeployOutput>() {}.getType();
-    DeployOutput deployOutput = new Gson().fromJson(jsonOutput, deployOutputType);
-    if (deployOutput == null
-        || deployOutput.versions == null || deployOutput.versions.size() != 1) {
+    DeployOutput deployOutput = new DeployOutput();
+    DeployOutputReader reader = new DeployOutputReader(deployOutput);
+    for (String line : jsonOutput.split("\n")) {
+      reader.onOutputLine(line);
+    }
+    if (!reader.isComplete() || deployOutput.getVersion() == null) {
       throw new JsonParseException("Cannot get app version: unexpected gcloud JSON output format");
     }
     return deployOutput;
   }
 
   /**
-   * Holds de-serialized JSON output of gcloud app deploy. Don't change the field names
-   * because Gson uses it for automatic de-serialization.
+   * Collects what gcloud reports about a deployment. A deployment of a single app.yaml reports
+   * exactly one version, a deployment of several services one version per service.
    */
-  static class DeployOutput {
-    private static class Version {
-      String id;
-      String service;
+  static class DeployOutput implements DeployOutputReader.Listener {
+    private final List<DeployOutputReader.DeployedVersion> versions = new ArrayList<>();
+    @Nullable private String error;
+
+    @Override
+    public synchronized void onVersion(@NotNull DeployOutputReader.DeployedVersion version) {
+      versions.add(version);
     }
 
-    List<Version> versions;
+    @Override
+    public synchronized void onError(@NotNull String message) {
+      error = message;
+    }
 
     @Nullable
-    public String getVersion() {
-      if (versions == null || versions.size() != 1) {
+    public synchronized String getVersion() {
+      if (versions.size() != 1) {
         return null;
       }
-      return versions.get(0).id;
+      return versions.get(0).getId();
     }
 
     @Nullable
-    public String getService() {
-      if (versions == null || versions.size() != 1) {
+    public synchronized String getService() {
+      if (versions.size() != 1) {
         return null;
       }
-      return versions.get(0).service;
+      return versions.get(0).getService();
+    }
+
+    /** The last error gcloud reported, if any. */
+    @Nullable
+    public synchronized String getError() {
+      return error;
     }
   }
 }
@@ -19,10 +19,15 @@ package com.google.cloud.tools.intellij.appengine.cloud;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.remoteServer.util.CloudDeploymentNameConfiguration;
+import com.intellij.util.xmlb.annotations.AbstractCollection;
 import com.intellij.util.xmlb.annotations.Attribute;
+import com.intellij.util.xmlb.annotations.Tag;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The model for a App Engine based deployment configuration.  This state is specific to the
  * artifact that's being deployed, as such there can be multiple per project.
@@ -68,6 +73,7 @@ public class AppEngineDeploymentConfiguration extends
   private boolean promote;
   private boolean stopPreviousVersion;
   private String version;
+  private List<String> additionalServiceArtifacts = new ArrayList<>();
 
   @Attribute("cloudProjectName")
   public String getCloudProjectName() {
@@ -124,6 +130,19 @@ public class AppEngineDeploymentConfiguration extends
     return version;
   }
 
+  /**
+   * Names of the exploded WAR artifacts of further App Engine standard services, which are built
+   * and deployed along with the deployment source.
+   */
+  @Tag("additionalServices")
+  @AbstractCollection(
+      surroundWithTag = false,
+      elementTag = "artifact",
+      elementValueAttribute = "name")
+  public List<String> getAdditionalServiceArtifacts() {
+    return additionalServiceArtifacts;
+  }
+
   public void setConfigType(@NotNull ConfigType configType) {
     this.configType = configType;
   }
@@ -168,6 +187,10 @@ public class AppEngineDeploymentConfiguration extends
     this.version = version;
   }
 
+  public void setAdditionalServiceArtifacts(List<String> additionalServiceArtifacts) {
+    this.additionalServiceArtifacts = additionalServiceArtifacts;
+  }
+
   public boolean isAuto() {
     return getConfigType() == ConfigType.AUTO;
   }
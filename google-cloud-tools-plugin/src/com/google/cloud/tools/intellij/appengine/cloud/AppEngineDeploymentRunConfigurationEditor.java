@@ -48,14 +48,26 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.packaging.artifacts.Artifact;
+import com.intellij.packaging.artifacts.ArtifactManager;
+import com.intellij.packaging.impl.run.BuildArtifactsBeforeRunTaskProvider;
+import com.intellij.packaging.impl.ui.ChooseArtifactsDialog;
+import com.intellij.remoteServer.configuration.deployment.ArtifactDeploymentSource;
 import com.intellij.remoteServer.configuration.deployment.DeploymentSource;
+import com.intellij.ui.AnActionButton;
+import com.intellij.ui.AnActionButtonRunnable;
+import com.intellij.ui.CollectionListModel;
 import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.ListCellRendererWrapper;
+import com.intellij.ui.ToolbarDecorator;
 import com.intellij.ui.awt.RelativePoint;
+import com.intellij.ui.components.JBList;
 
 import org.apache.commons.lang.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.awt.BorderLayout;
 import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -66,6 +78,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import javax.swing.DefaultComboBoxModel;
@@ -74,6 +88,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.JTextPane;
@@ -109,6 +124,10 @@ public class AppEngineDeploymentRunConfigurationEditor extends
   private JTextPane promoteInfoLabel;
   private AppEngineApplicationInfoPanel applicationInfoPanel;
   private JPanel regionLabel;
+  private JLabel additionalServicesLabel;
+  private JPanel additionalServicesPanel;
+  private JBList additionalServicesList;
+  private CollectionListModel<String> additionalServicesModel;
 
   private DeploymentSource deploymentSource;
   private AppEngineEnvironment environment;
@@ -173,6 +192,11 @@ public class AppEngineDeploymentRunConfigurationEditor extends
       stopPreviousVersionCheckbox.setVisible(false);
     }
 
+    // Only the standard environment deploys several services from one run configuration.
+    additionalServicesLabel.setVisible(environment.isStandard());
+    additionalServicesPanel.setVisible(environment.isStandard());
+    createAdditionalServicesList();
+
     configTypeComboBox.setModel(new DefaultComboBoxModel(ConfigType.values()));
     configTypeComboBox.setSelectedItem(ConfigType.AUTO);
     appEngineConfigFilesPanel.setVisible(false);
@@ -286,6 +310,87 @@ public class AppEngineDeploymentRunConfigurationEditor extends
     });
   }
 
+  private void createAdditionalServicesList() {
+    additionalServicesModel = new CollectionListModel<>();
+    additionalServicesList = new JBList(additionalServicesModel);
+    additionalServicesList.setToolTipText(
+        GctBundle.message("appengine.additional.services.tooltip"));
+    additionalServicesList.setCellRenderer(new ListCellRendererWrapper<String>() {
+      @Override
+      public void customize(JList list, String value, int index, boolean selected,
+          boolean hasFocus) {
+        Artifact artifact = findArtifact(value);
+        if (artifact != null) {
+          setIcon(artifact.getArtifactType().getIcon());
+        }
+        setText(value);
+      }
+    });
+
+    ToolbarDecorator decorator = ToolbarDecorator.createDecorator(additionalServicesList)
+        .disableUpDownActions()
+        .setAddAction(new AnActionButtonRunnable() {
+          @Override
+          public void run(AnActionButton button) {
+            addAdditionalServices();
+          }
+        })
+        .setRemoveAction(new AnActionButtonRunnable() {
+          @Override
+          public void run(AnActionButton button) {
+            removeAdditionalServices();
+          }
+        });
+    additionalServicesPanel.add(decorator.createPanel(), BorderLayout.CENTER);
+  }
+
+  /**
+   * Lets the user choose further exploded WAR artifacts to deploy, and builds them before the
+   * deployment like the deployment source.
+   */
+  private void addAdditionalServices() {
+    Artifact sourceArtifact = deploymentSource instanceof ArtifactDeploymentSource
+        ? ((ArtifactDeploymentSource) deploymentSource).getArtifact()
+        : null;
+    List<Artifact> candidates = new ArrayList<>();
+    for (Artifact artifact : ArtifactManager.getInstance(project).getArtifacts()) {
+      if (AppEngineProjectService.getInstance().isAppEngineStandardArtifactType(artifact)
+          && !artifact.equals(sourceArtifact)
+          && !additionalServicesModel.contains(artifact.getName())) {
+        candidates.add(artifact);
+      }
+    }
+
+    ChooseArtifactsDialog dialog = new ChooseArtifactsDialog(project, candidates,
+        GctBundle.message("appengine.additional.services.chooser.title"),
+        GctBundle.message("appengine.additional.services.chooser.description"));
+    if (!dialog.showAndGet()) {
+      return;
+    }
+    for (Artifact artifact : dialog.getChosenElements()) {
+      additionalServicesModel.add(artifact.getName());
+      BuildArtifactsBeforeRunTaskProvider.setBuildArtifactBeforeRunOption(
+          additionalServicesList, project, artifact, true /* enable */);
+    }
+  }
+
+  private void removeAdditionalServices() {
+    for (Object selected : additionalServicesList.getSelectedValuesList()) {
+      String artifactName = (String) selected;
+      additionalServicesModel.remove(artifactName);
+      Artifact artifact = findArtifact(artifactName);
+      if (artifact != null) {
+        BuildArtifactsBeforeRunTaskProvider.setBuildArtifactBeforeRunOption(
+            additionalServicesList, project, artifact, false /* enable */);
+      }
+    }
+  }
+
+  @Nullable
+  private Artifact findArtifact(@NotNull String artifactName) {
+    return ArtifactManager.getInstance(project).findArtifact(artifactName);
+  }
+
   private void refreshApplicationInfoPanel() {
     if (projectSelector.getProject() != null && projectSelector.getSelectedUser() != null) {
       applicationInfoPanel.refresh(projectSelector.getProject().getProjectId(),
@@ -310,6 +415,7 @@ public class AppEngineDeploymentRunConfigurationEditor extends
     if (versionOverrideCheckBox.isSelected()) {
       versionIdField.setText(configuration.getVersion());
     }
+    additionalServicesModel.replaceAll(configuration.getAdditionalServiceArtifacts());
   }
 
   @Override
@@ -332,6 +438,9 @@ public class AppEngineDeploymentRunConfigurationEditor extends
         versionOverrideCheckBox.isSelected() ? versionIdField.getText() : null);
     configuration.setPromote(promoteCheckbox.isSelected());
     configuration.setStopPreviousVersion(stopPreviousVersionCheckbox.isSelected());
+    configuration.setAdditionalServiceArtifacts(environment.isStandard()
+        ? new ArrayList<>(additionalServicesModel.getItems())
+        : new ArrayList<String>());
 
     setDeploymentProjectAndVersion();
     updateJarWarSelector();
@@ -418,6 +527,9 @@ public class AppEngineDeploymentRunConfigurationEditor extends
     } else if (versionOverrideCheckBox.isSelected()
         && StringUtils.isBlank(versionIdField.getText())) {
       throw new ConfigurationException(GctBundle.message("appengine.config.version.error"));
+    } else if (findMissingAdditionalService() != null) {
+      throw new ConfigurationException(GctBundle.message(
+          "appengine.config.additional.service.error", findMissingAdditionalService()));
     } else if (getConfigType() == ConfigType.CUSTOM) {
       if (StringUtils.isBlank(appYamlPathField.getText())) {
         throw new ConfigurationException(
@@ -441,6 +553,19 @@ public class AppEngineDeploymentRunConfigurationEditor extends
     }
   }
 
+  @Nullable
+  private String findMissingAdditionalService() {
+    if (!environment.isStandard()) {
+      return null;
+    }
+    for (String artifactName : additionalServicesModel.getItems()) {
+      if (findArtifact(artifactName) == null) {
+        return artifactName;
+      }
+    }
+    return null;
+  }
+
   private boolean isJarOrWar(String path) {
     File file = new File(path);
     if (file.isDirectory()) {
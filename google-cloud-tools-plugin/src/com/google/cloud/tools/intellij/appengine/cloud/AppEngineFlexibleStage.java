@@ -16,19 +16,42 @@
 
 package com.google.cloud.tools.intellij.appengine.cloud;
 
+import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.remoteServer.runtime.log.LoggingHandler;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Stages an application in preparation for deployment to the App Engine flexible environment.
  */
 public class AppEngineFlexibleStage {
+  private static final String APP_YAML = "app.yaml";
+  private static final String DOCKERFILE = "Dockerfile";
+
+  // Deployments of the same artifact stage into and deploy from the same directory one at a time.
+  // A semaphore rather than a monitor, as the deployment ends on the thread of the deploy process.
+  private static final ConcurrentMap<Path, Semaphore> reservations = new ConcurrentHashMap<>();
+
   private CloudSdkAppEngineHelper helper;
   private LoggingHandler loggingHandler;
   private Path deploymentArtifactPath;
@@ -48,29 +71,110 @@ public class AppEngineFlexibleStage {
     this.deploymentConfiguration = deploymentConfiguration;
   }
 
+  /**
+   * Reserves the directory that this artifact is staged into for one deployment, waiting while
+   * another deployment of the same artifact stages into it or deploys from it. The deployment must
+   * pass the directory to {@link #releaseStagingDirectory(Path)} once it is done with it, whether
+   * it succeeded or not.
+   *
+   * <p>The directory is kept between deployments, so that files which did not change are left in
+   * place. It lives in the "gae-flex-staging" folder of the IDE system directory. Files on another
+   * file system than that are copied into it, as they cannot be hard linked.
+   */
+  @NotNull
+  public Path reserveStagingDirectory() throws IOException {
+    Path artifact = deploymentArtifactPath.toAbsolutePath();
+    Path stagingDirectory = Paths.get(PathManager.getSystemPath()).resolve("gae-flex-staging")
+        .resolve(Hashing.sha1().hashString(artifact.toString(), Charsets.UTF_8).toString());
+
+    Semaphore reservation =
+        reservations.computeIfAbsent(stagingDirectory, key -> new Semaphore(1));
+    if (!reservation.tryAcquire()) {
+      loggingHandler.print(GctBundle.message("appengine.flex.staging.waiting") + "\n");
+      try {
+        reservation.acquire();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while waiting for " + stagingDirectory);
+      }
+    }
+
+    try {
+      Files.createDirectories(stagingDirectory);
+    } catch (IOException ioe) {
+      reservation.release();
+      throw ioe;
+    }
+    loggingHandler.print(
+        GctBundle.message("appengine.flex.staging.directory", stagingDirectory) + "\n");
+    return stagingDirectory;
+  }
+
+  /** Lets the next deployment of this artifact use the given reserved staging directory. */
+  public void releaseStagingDirectory(@NotNull Path stagingDirectory) {
+    Semaphore reservation = reservations.get(stagingDirectory);
+    if (reservation != null) {
+      reservation.release();
+    }
+  }
+
   /**
    * Given a local staging directory, stage the application in preparation for deployment to the
-   * App Engine flexible environment.
+   * App Engine flexible environment. Files are hard linked rather than copied where possible, files
+   * left from an earlier deployment are only replaced if they changed, and the time taken by each
+   * step is reported to the deployment log.
+   *
+   * <p>A directory returned by {@link #reserveStagingDirectory()} must stay reserved until the
+   * staged application has been deployed.
    */
   public void stage(@NotNull Path stagingDirectory) {
     try {
-      Path stagedArtifactPath = stagingDirectory.resolve(
-          "target" + AppEngineFlexDeploymentArtifactType.typeForPath(deploymentArtifactPath));
-      Files.copy(deploymentArtifactPath, stagedArtifactPath);
+      long startNanos = System.nanoTime();
+      String artifactName =
+          "target" + AppEngineFlexDeploymentArtifactType.typeForPath(deploymentArtifactPath);
+      deleteOtherFiles(stagingDirectory, artifactName, APP_YAML, DOCKERFILE);
+      stageFile(deploymentArtifactPath, stagingDirectory.resolve(artifactName));
 
       Path appYamlPath = deploymentConfiguration.isAuto()
           ? helper.defaultAppYaml()
           : Paths.get(deploymentConfiguration.getAppYamlPath());
-      Files.copy(appYamlPath, stagingDirectory.resolve("app.yaml"));
+      stageFile(appYamlPath, stagingDirectory.resolve(APP_YAML));
 
       Path dockerFilePath = deploymentConfiguration.isAuto()
           ? helper.defaultDockerfile(
           AppEngineFlexDeploymentArtifactType.typeForPath(deploymentArtifactPath))
           : Paths.get(deploymentConfiguration.getDockerFilePath());
-      Files.copy(dockerFilePath, stagingDirectory.resolve("Dockerfile"));
+      stageFile(dockerFilePath, stagingDirectory.resolve(DOCKERFILE));
+
+      loggingHandler.print(GctBundle.message("appengine.flex.staging.completed",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)) + "\n");
     } catch (IOException ex) {
       loggingHandler.print(ex.getMessage() + "\n");
       throw new RuntimeException(ex);
     }
   }
+
+  // Removes what an earlier deployment staged but this one does not, so it is not deployed too.
+  private static void deleteOtherFiles(@NotNull Path stagingDirectory, String... keptNames)
+      throws IOException {
+    Set<String> kept = new HashSet<>(Arrays.asList(keptNames));
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDirectory)) {
+      for (Path file : files) {
+        if (!kept.contains(file.getFileName().toString())) {
+          FileUtil.delete(file.toFile());
+        }
+      }
+    }
+  }
+
+  private void stageFile(@NotNull Path source, @NotNull Path target) throws IOException {
+    long startNanos = System.nanoTime();
+    FileStager.Action action = FileStager.stage(source, target);
+    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    loggingHandler.print(GctBundle.message(
+        "appengine.flex.staging.file." + action.name().toLowerCase(Locale.ROOT),
+        target.getFileName(),
+        Files.size(target),
+        elapsedMs) + "\n");
+  }
 }
@@ -62,13 +62,15 @@ public interface AppEngineHelper {
    * @param source the deployment source to be deployed
    * @param deploymentConfiguration the configuration specifying the deployment
    * @param callback a callback for handling completions of the operation
+   * @param progress the progress that the phases of the deployment are reported to
    * @return the runnable that will perform the deployment operation
    */
   CancellableRunnable createDeployRunner(
       LoggingHandler loggingHandler,
       DeploymentSource source,
       AppEngineDeploymentConfiguration deploymentConfiguration,
-      DeploymentOperationCallback callback);
+      DeploymentOperationCallback callback,
+      DeploymentProgress progress);
 
   /**
    * Creates a temporary staging directory on the local filesystem.
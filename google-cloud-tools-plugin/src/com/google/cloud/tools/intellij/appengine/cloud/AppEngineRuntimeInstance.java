@@ -20,13 +20,16 @@ import com.google.cloud.tools.intellij.login.Services;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.vcs.impl.CancellableRunnable;
 import com.intellij.remoteServer.configuration.deployment.DeploymentSource;
+import com.intellij.remoteServer.runtime.Deployment;
 import com.intellij.remoteServer.runtime.deployment.DeploymentLogManager;
+import com.intellij.remoteServer.runtime.deployment.DeploymentRuntime;
 import com.intellij.remoteServer.runtime.deployment.DeploymentTask;
 import com.intellij.remoteServer.runtime.deployment.ServerRuntimeInstance;
 
@@ -53,42 +56,96 @@ class AppEngineRuntimeInstance extends
       @NotNull final DeploymentLogManager logManager,
       @NotNull final DeploymentOperationCallback callback) {
 
-    FileDocumentManager.getInstance().saveAllDocuments();
+    // Saving documents and signing in are the only steps that need the UI thread; the deployment
+    // itself runs in the background task below.
+    ApplicationManager.getApplication().invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        FileDocumentManager.getInstance().saveAllDocuments();
+        Services.getLoginService().logInIfNot();
+      }
+    }, ModalityState.defaultModalityState());
 
-    Services.getLoginService().logInIfNot();
     if (!Services.getLoginService().isLoggedIn()) {
       callback.errorOccurred(GctBundle.message("appengine.deployment.error.not.logged.in"));
       return;
     }
 
-    AppEngineHelper appEngineHelper = new CloudSdkAppEngineHelper(task.getProject());
+    ProgressManager.getInstance()
+        .run(new Task.Backgroundable(task.getProject(), GctBundle.message(
+            "appengine.deployment.status.deploying"), true,
+            null) {
+          @Override
+          public void run(@NotNull ProgressIndicator indicator) {
+            runDeployment(task, logManager, callback, new DeploymentProgress(indicator));
+          }
+        });
+  }
 
-    AppEngineDeploymentConfiguration deploymentConfig = task.getConfiguration();
+  /**
+   * Validates, stages and deploys on the calling background thread, and waits for the deployment
+   * to complete so that it can be cancelled from the progress indicator.
+   */
+  private void runDeployment(@NotNull DeploymentTask<AppEngineDeploymentConfiguration> task,
+      @NotNull DeploymentLogManager logManager,
+      @NotNull DeploymentOperationCallback callback,
+      @NotNull DeploymentProgress progress) {
+    progress.enter(DeploymentProgress.Phase.VALIDATE);
+    AppEngineHelper appEngineHelper = new CloudSdkAppEngineHelper(task.getProject());
 
-    final CancellableRunnable deployRunner =  appEngineHelper.createDeployRunner(
+    CancellableRunnable deployRunner = appEngineHelper.createDeployRunner(
         logManager.getMainLoggingHandler(),
         task.getSource(),
-        deploymentConfig,
-        callback);
+        task.getConfiguration(),
+        completeProgressWith(callback, progress),
+        progress);
+
+    if (deployRunner == null) {
+      return;
+    }
 
-    if (deployRunner != null) {
-      // keep track of any active deployments
+    // keep track of any active deployments
+    synchronized (createdDeployments) {
+      createdDeployments.add(deployRunner);
+    }
+    try {
+      deployRunner.run();
+      progress.awaitCompletion(deployRunner);
+    } catch (InterruptedException ie) {
+      deployRunner.cancel();
+      Thread.currentThread().interrupt();
+    } finally {
       synchronized (createdDeployments) {
-        createdDeployments.add(deployRunner);
+        createdDeployments.remove(deployRunner);
       }
-
-      ProgressManager.getInstance()
-          .run(new Task.Backgroundable(task.getProject(), GctBundle.message(
-              "appengine.deployment.status.deploying"), true,
-              null) {
-            @Override
-            public void run(@NotNull ProgressIndicator indicator) {
-              ApplicationManager.getApplication().invokeLater(deployRunner);
-            }
-          });
     }
   }
 
+  @NotNull
+  private static DeploymentOperationCallback completeProgressWith(
+      @NotNull final DeploymentOperationCallback callback,
+      @NotNull final DeploymentProgress progress) {
+    return new DeploymentOperationCallback() {
+      @Override
+      public Deployment succeeded(@NotNull DeploymentRuntime deploymentRuntime) {
+        try {
+          return callback.succeeded(deploymentRuntime);
+        } finally {
+          progress.complete();
+        }
+      }
+
+      @Override
+      public void errorOccurred(@NotNull String errorMessage) {
+        try {
+          callback.errorOccurred(errorMessage);
+        } finally {
+          progress.complete();
+        }
+      }
+    };
+  }
+
   /**
    * Disambiguates running deployment line items by prepending a timestamp. Also appends the
    * cloud project and version id's to the deployment string.
@@ -22,17 +22,26 @@ import com.google.cloud.tools.appengine.cloudsdk.CloudSdkAppEngineStandardStagin
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
+import com.google.cloud.tools.intellij.appengine.sdk.CloudSdkService;
+import com.google.cloud.tools.intellij.util.GctBundle;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.remoteServer.runtime.log.LoggingHandler;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.function.Function;
 
 /**
  * Stages an application in preparation for deployment to the App Engine flexible environment.
  */
 public class AppEngineStandardStage {
+  private static final Logger logger = Logger.getInstance(AppEngineStandardStage.class);
+
   private CloudSdkAppEngineHelper helper;
   private LoggingHandler loggingHandler;
   private Path deploymentArtifactPath;
@@ -53,14 +62,71 @@ public class AppEngineStandardStage {
   /**
    * Stage the application in preparation for deployment to the App Engine standard environment.
    *
+   * <p>An exploded WAR is staged through a {@link StandardStagingCache}, which reuses the output of
+   * the previous deployment of the same WAR when little or nothing changed. Otherwise the
+   * application is staged into a new directory from {@code stagingDirectoryFactory}.
+   *
+   * @param stagingDirectoryFactory creates the local staging directory, only called when the cache
+   *     is not available
+   * @param onStageComplete given the directory that was staged into, returns the callback for
+   *     executing actions on completion of staging
+   * @throws IOException if the staging directory could not be created
+   */
+  public void stage(
+      @NotNull StagingDirectoryFactory stagingDirectoryFactory,
+      @NotNull ProcessStartListener startListener,
+      @NotNull Function<Path, ProcessExitListener> onStageComplete) throws IOException {
+    final StandardStagingCache.Session session = openStagingCache();
+    if (session == null) {
+      Path stagingDirectory = stagingDirectoryFactory.createStagingDirectory();
+      runStaging(stagingDirectory, startListener, onStageComplete.apply(stagingDirectory));
+      return;
+    }
+
+    final ProcessExitListener deploy = onStageComplete.apply(session.getDirectory());
+    if (!session.needsStaging()) {
+      String message = session.isPatched()
+          ? "appengine.staging.cache.patched"
+          : "appengine.staging.cache.reused";
+      loggingHandler.print(GctBundle.message(message, session.getDirectory()) + "\n");
+      commit(session);
+      deploy.onExit(0);
+      return;
+    }
+
+    try {
+      runStaging(session.getDirectory(), startListener, new ProcessExitListener() {
+        @Override
+        public void onExit(int exitCode) {
+          if (exitCode == 0) {
+            commit(session);
+          } else {
+            session.abort();
+          }
+          deploy.onExit(exitCode);
+        }
+      });
+    } catch (RuntimeException ex) {
+      session.abort();
+      throw ex;
+    }
+  }
+
+  @NotNull
+  public Path getDeploymentArtifactPath() {
+    return deploymentArtifactPath;
+  }
+
+  /**
+   * Stages the application into {@code stagingDirectory} from scratch.
+   *
    * @param stagingDirectory the local staging directory
    * @param onStageComplete a callback for executing actions on completion of staging
    */
-  public void stage(
+  private void runStaging(
       @NotNull Path stagingDirectory,
       @NotNull ProcessStartListener startListener,
       @NotNull ProcessExitListener onStageComplete) {
-
     ProcessOutputLineListener outputListener = new ProcessOutputLineListener() {
       @Override
       public void onOutputLine(String line) {
@@ -85,4 +151,42 @@ public class AppEngineStandardStage {
     CloudSdkAppEngineStandardStaging staging = new CloudSdkAppEngineStandardStaging(sdk);
     staging.stageStandard(stageConfig);
   }
+
+  @Nullable
+  private StandardStagingCache.Session openStagingCache() {
+    // Only exploded WARs are staged; anything else is left for staging to reject.
+    if (!Files.isDirectory(deploymentArtifactPath)) {
+      return null;
+    }
+    try {
+      return StandardStagingCache.forArtifact(deploymentArtifactPath, getStagingOptions())
+          .open(deploymentArtifactPath);
+    } catch (IOException ioe) {
+      logger.warn("Could not use the staging cache, staging from scratch", ioe);
+      return null;
+    }
+  }
+
+  // Everything besides the WAR itself that the staged output depends on.
+  @NotNull
+  private static String getStagingOptions() {
+    return CloudSdkService.getInstance().getSdkHomePath() + "\nenableJarSplitting=true";
+  }
+
+  private static void commit(@NotNull StandardStagingCache.Session session) {
+    try {
+      session.commit();
+    } catch (IOException ioe) {
+      logger.warn("Could not update the staging cache", ioe);
+    }
+  }
+
+  /**
+   * Creates the directory to stage an application into when it cannot be staged through the
+   * {@link StandardStagingCache}.
+   */
+  public interface StagingDirectoryFactory {
+    @NotNull
+    Path createStagingDirectory() throws IOException;
+  }
 }
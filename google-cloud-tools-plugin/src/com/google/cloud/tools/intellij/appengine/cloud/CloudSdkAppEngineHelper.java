@@ -40,12 +40,18 @@ import com.google.common.collect.ImmutableMap;
 import com.google.gdt.eclipse.login.common.GoogleLoginState;
 import com.google.gson.Gson;
 
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vcs.impl.CancellableRunnable;
+import com.intellij.packaging.artifacts.Artifact;
+import com.intellij.packaging.artifacts.ArtifactManager;
 import com.intellij.remoteServer.configuration.deployment.DeploymentSource;
 import com.intellij.remoteServer.runtime.Deployment;
 import com.intellij.remoteServer.runtime.deployment.DeploymentRuntime;
@@ -61,6 +67,9 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -117,7 +126,8 @@ public class CloudSdkAppEngineHelper implements AppEngineHelper {
       LoggingHandler loggingHandler,
       DeploymentSource source,
       AppEngineDeploymentConfiguration deploymentConfiguration,
-      DeploymentOperationCallback callback) {
+      DeploymentOperationCallback callback,
+      DeploymentProgress progress) {
 
     if (!(source instanceof AppEngineDeployable)) {
       callback.errorOccurred(GctBundle.message("appengine.deployment.invalid.source.error"));
@@ -138,7 +148,23 @@ public class CloudSdkAppEngineHelper implements AppEngineHelper {
       return null;
     }
 
-    AppEngineEnvironment targetEnvironment = ((AppEngineDeployable) source).getEnvironment();
+    // This runs on a background thread, and detecting the environment reads the project model and
+    // the descriptors of the deployed module.
+    final AppEngineDeployable deployable = (AppEngineDeployable) source;
+    AppEngineEnvironment targetEnvironment = ApplicationManager.getApplication()
+        .runReadAction(new Computable<AppEngineEnvironment>() {
+          @Override
+          public AppEngineEnvironment compute() {
+            return deployable.getEnvironment();
+          }
+        });
+    boolean isFlexCompat = targetEnvironment.isFlexible()
+        && ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+          @Override
+          public Boolean compute() {
+            return AppEngineProjectService.getInstance().isFlexCompat(project, deployable);
+          }
+        });
 
     AppEngineDeploy deploy = new AppEngineDeploy(
         this,
@@ -146,12 +172,18 @@ public class CloudSdkAppEngineHelper implements AppEngineHelper {
         deploymentConfiguration,
         targetEnvironment,
         wrapCallbackForUsageTracking(callback, deploymentConfiguration, targetEnvironment));
+    deploy.setProgress(progress);
 
-    boolean isFlexCompat = targetEnvironment.isFlexible()
-        && AppEngineProjectService.getInstance().isFlexCompat(project, source);
     if (targetEnvironment.isStandard() || isFlexCompat) {
-      return createStandardRunner(loggingHandler, Paths.get(source.getFilePath()), deploy,
-          isFlexCompat);
+      // Only the standard environment deploys several services from one run configuration.
+      List<Path> additionalServices = targetEnvironment.isStandard()
+          ? findAdditionalServices(deploymentConfiguration, callback)
+          : Collections.<Path>emptyList();
+      if (additionalServices == null) {
+        return null;
+      }
+      return createStandardRunner(loggingHandler, Paths.get(source.getFilePath()),
+          additionalServices, deploy, isFlexCompat);
     } else if (targetEnvironment.isFlexible()) {
       return createFlexRunner(loggingHandler, Paths.get(source.getFilePath()),
           deploymentConfiguration, deploy);
@@ -160,9 +192,38 @@ public class CloudSdkAppEngineHelper implements AppEngineHelper {
     }
   }
 
+  /**
+   * Returns the output directories of the additional service artifacts, or null after reporting
+   * one that no longer exists or has not been built.
+   */
+  @Nullable
+  private List<Path> findAdditionalServices(
+      AppEngineDeploymentConfiguration deploymentConfiguration,
+      DeploymentOperationCallback callback) {
+    List<Path> services = new ArrayList<>();
+    for (final String artifactName : deploymentConfiguration.getAdditionalServiceArtifacts()) {
+      String outputPath = ApplicationManager.getApplication().runReadAction(
+          new Computable<String>() {
+            @Override
+            public String compute() {
+              Artifact artifact = ArtifactManager.getInstance(project).findArtifact(artifactName);
+              return artifact != null ? artifact.getOutputFilePath() : null;
+            }
+          });
+      if (outputPath == null || !Files.isDirectory(Paths.get(outputPath))) {
+        callback.errorOccurred(
+            GctBundle.message("appengine.deployment.service.not.found.error", artifactName));
+        return null;
+      }
+      services.add(Paths.get(outputPath));
+    }
+    return services;
+  }
+
   private AppEngineExecutor createStandardRunner(
       LoggingHandler loggingHandler,
       Path artifactToDeploy,
+      List<Path> additionalServices,
       AppEngineDeploy deploy,
       boolean isFlexCompat) {
     AppEngineStandardStage standardStage = new AppEngineStandardStage(
@@ -170,8 +231,13 @@ public class CloudSdkAppEngineHelper implements AppEngineHelper {
           loggingHandler,
           artifactToDeploy);
 
-    return new AppEngineExecutor(
-        new AppEngineStandardDeployTask(deploy, standardStage, isFlexCompat));
+    List<AppEngineStandardStage> additionalStages = new ArrayList<>();
+    for (Path service : additionalServices) {
+      additionalStages.add(new AppEngineStandardStage(this, loggingHandler, service));
+    }
+
+    return new AppEngineExecutor(new AppEngineStandardDeployTask(
+        deploy, standardStage, additionalStages, isFlexCompat));
   }
 
   private AppEngineExecutor createFlexRunner(
@@ -245,19 +311,26 @@ public class CloudSdkAppEngineHelper implements AppEngineHelper {
       return credentials;
     }
 
-    int addUserResult = Messages.showOkCancelDialog(
-        GctBundle.message("appengine.staging.credentials.error.message"),
-        GctBundle.message("appengine.staging.credentials.error.dialog.title"),
-        GctBundle.message("appengine.staging.credentials.error.dialog.addaccount.button"),
-        GctBundle.message("appengine.staging.credentials.error.dialog.cancel.button"),
-        Messages.getWarningIcon());
-
-    if (addUserResult == Messages.OK) {
-      Services.getLoginService().logIn();
-      return doStageCredentials(googleUserName);
-    }
+    // Deployments stage credentials in the background; only asking the user needs the UI thread.
+    final Ref<Boolean> loggedIn = Ref.create(false);
+    ApplicationManager.getApplication().invokeAndWait(new Runnable() {
+      @Override
+      public void run() {
+        int addUserResult = Messages.showOkCancelDialog(
+            GctBundle.message("appengine.staging.credentials.error.message"),
+            GctBundle.message("appengine.staging.credentials.error.dialog.title"),
+            GctBundle.message("appengine.staging.credentials.error.dialog.addaccount.button"),
+            GctBundle.message("appengine.staging.credentials.error.dialog.cancel.button"),
+            Messages.getWarningIcon());
+
+        if (addUserResult == Messages.OK) {
+          Services.getLoginService().logIn();
+          loggedIn.set(true);
+        }
+      }
+    }, ModalityState.defaultModalityState());
 
-    return null;
+    return loggedIn.get() ? doStageCredentials(googleUserName) : null;
   }
 
   private Path doStageCredentials(String googleUsername) {
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessOutputLineListener;
+import com.google.common.annotations.VisibleForTesting;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the JSON that {@code gcloud app deploy --format=json} writes to its standard output while
+ * the process is still running, and reports each deployed version as soon as its entry in the
+ * {@code versions} array is complete.
+ *
+ * <p>Only the values the plugin uses are kept: the id, service, project and URL of each version.
+ * Everything else is skipped as it streams by, and strings are cut off at {@link
+ * #MAX_STRING_LENGTH}, so verbose output does not pile up in memory.
+ */
+class DeployOutputReader implements ProcessOutputLineListener {
+
+  @VisibleForTesting static final int MAX_STRING_LENGTH = 4096;
+  private static final int MAX_DEPTH = 64;
+  private static final String ERROR_PREFIX = "ERROR:";
+
+  /** Receives what the reader found in the output. */
+  interface Listener {
+
+    /** Called once for each entry of the {@code versions} array, in output order. */
+    void onVersion(@NotNull DeployedVersion version);
+
+    /** Called for each error that gcloud reports on its standard error. */
+    void onError(@NotNull String message);
+  }
+
+  /** One deployed version, as described by gcloud. */
+  static final class DeployedVersion {
+
+    @Nullable private String id;
+    @Nullable private String service;
+    @Nullable private String project;
+    @Nullable private String url;
+
+    @Nullable
+    String getId() {
+      return id;
+    }
+
+    @Nullable
+    String getService() {
+      return service;
+    }
+
+    @Nullable
+    String getProject() {
+      return project;
+    }
+
+    /** The URL the version is served at, if this gcloud version reports it. */
+    @Nullable
+    String getUrl() {
+      return url;
+    }
+  }
+
+  // An object or array that is open at the current position.
+  private static final class Frame {
+
+    private final boolean object;
+    // the key of the member being read, for objects
+    @Nullable private String key;
+    private boolean expectingKey;
+
+    private Frame(boolean object) {
+      this.object = object;
+      this.expectingKey = object;
+    }
+  }
+
+  private final Listener listener;
+  private final List<Frame> frames = new ArrayList<>();
+  private final StringBuilder string = new StringBuilder();
+  private boolean inString;
+  private boolean escaped;
+  // hex digits of a unicode escape still to come, or -1 outside of one
+  private int unicodeDigits = -1;
+  private int unicodeValue;
+  private boolean malformed;
+  private boolean sawDocument;
+  @Nullable private DeployedVersion version;
+  private int versionCount;
+
+  DeployOutputReader(@NotNull Listener listener) {
+    this.listener = listener;
+  }
+
+  /** Reads one line of standard output. */
+  @Override
+  public synchronized void onOutputLine(String line) {
+    if (malformed) {
+      return;
+    }
+    for (int i = 0; i < line.length() && !malformed; i++) {
+      read(line.charAt(i));
+    }
+  }
+
+  /** Reads one line of standard error, where gcloud reports why a deployment failed. */
+  void onErrorLine(@NotNull String line) {
+    if (line.startsWith(ERROR_PREFIX)) {
+      listener.onError(line.substring(ERROR_PREFIX.length()).trim());
+    }
+  }
+
+  /** Returns true if a complete and well formed JSON document was read. */
+  synchronized boolean isComplete() {
+    return sawDocument && !malformed && frames.isEmpty() && !inString;
+  }
+
+  /** Returns the number of versions reported so far. */
+  synchronized int getVersionCount() {
+    return versionCount;
+  }
+
+  private void read(char c) {
+    if (inString) {
+      readStringChar(c);
+      return;
+    }
+    switch (c) {
+      case '"':
+        inString = true;
+        string.setLength(0);
+        break;
+      case '{':
+      case '[':
+        if (frames.size() == MAX_DEPTH) {
+          malformed = true;
+          return;
+        }
+        if (frames.isEmpty()) {
+          sawDocument = true;
+        }
+        frames.add(new Frame(c == '{'));
+        if (isVersionEntry()) {
+          version = new DeployedVersion();
+        }
+        break;
+      case '}':
+      case ']':
+        close(c == '}');
+        break;
+      case ',':
+        Frame top = top();
+        if (top != null && top.object) {
+          top.expectingKey = true;
+          top.key = null;
+        }
+        break;
+      default:
+        // separators, white space and literals like numbers, true and null are not needed
+        break;
+    }
+  }
+
+  private void readStringChar(char c) {
+    if (unicodeDigits >= 0) {
+      int digit = Character.digit(c, 16);
+      if (digit < 0) {
+        malformed = true;
+        return;
+      }
+      unicodeValue = unicodeValue * 16 + digit;
+      if (--unicodeDigits < 0) {
+        append((char) unicodeValue);
+      }
+    } else if (escaped) {
+      escaped = false;
+      switch (c) {
+        case 'u':
+          unicodeDigits = 3;
+          unicodeValue = 0;
+          break;
+        case 'n':
+          append('\n');
+          break;
+        case 't':
+          append('\t');
+          break;
+        case 'r':
+          append('\r');
+          break;
+        case 'b':
+          append('\b');
+          break;
+        case 'f':
+          append('\f');
+          break;
+        default:
+          append(c);
+          break;
+      }
+    } else if (c == '\\') {
+      escaped = true;
+    } else if (c == '"') {
+      inString = false;
+      onString(string.toString());
+    } else {
+      append(c);
+    }
+  }
+
+  private void append(char c) {
+    if (string.length() < MAX_STRING_LENGTH) {
+      string.append(c);
+    }
+  }
+
+  private void onString(@NotNull String value) {
+    Frame top = top();
+    if (top == null || !top.object) {
+      return;
+    }
+    if (top.expectingKey) {
+      top.key = value;
+      top.expectingKey = false;
+      return;
+    }
+    if (version == null) {
+      return;
+    }
+
+    if (isVersionEntry()) {
+      if ("id".equals(top.key)) {
+        version.id = value;
+      } else if ("service".equals(top.key)) {
+        version.service = value;
+      } else if ("project".equals(top.key)) {
+        version.project = value;
+      }
+    } else if (frames.size() == 4
+        && "version".equals(frames.get(2).key)
+        && "versionUrl".equals(top.key)) {
+      // newer gcloud versions describe the version resource, including its URL
+      version.url = value;
+    }
+  }
+
+  private void close(boolean object) {
+    Frame top = top();
+    if (top == null || top.object != object) {
+      malformed = true;
+      return;
+    }
+    if (version != null && isVersionEntry()) {
+      DeployedVersion completed = version;
+      version = null;
+      versionCount++;
+      listener.onVersion(completed);
+    }
+    frames.remove(frames.size() - 1);
+  }
+
+  // Whether the innermost open value is an entry of the top level "versions" array.
+  private boolean isVersionEntry() {
+    return frames.size() == 3
+        && frames.get(0).object
+        && "versions".equals(frames.get(0).key)
+        && !frames.get(1).object
+        && frames.get(2).object;
+  }
+
+  @Nullable
+  private Frame top() {
+    return frames.isEmpty() ? null : frames.get(frames.size() - 1);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import com.google.cloud.tools.intellij.util.GctBundle;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vcs.impl.CancellableRunnable;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks a deployment through its phases on a progress indicator.
+ *
+ * <p>The phases run on different threads: validation and the start of staging on the background
+ * task of the deployment, and everything after on the threads that wait for the staging and
+ * deployment processes. The background task stays in {@link #awaitCompletion} until the
+ * deployment reports its outcome, so that the indicator can be cancelled until the very end.
+ */
+public class DeploymentProgress {
+
+  private static final Logger logger = Logger.getInstance(DeploymentProgress.class);
+
+  private static final long POLL_INTERVAL_MS = 100;
+  // How long a cancelled deployment may take to wind down before it is no longer waited for.
+  private static final long CANCEL_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(30);
+
+  /** The steps of a deployment, with the fraction of the work done when each starts. */
+  public enum Phase {
+    VALIDATE(0.0, "appengine.deployment.phase.validate"),
+    STAGE_CREDENTIALS(0.05, "appengine.deployment.phase.stage.credentials"),
+    STAGE(0.1, "appengine.deployment.phase.stage"),
+    DEPLOY(0.4, "appengine.deployment.phase.deploy"),
+    PARSE(0.95, "appengine.deployment.phase.parse");
+
+    private final double fraction;
+    private final String messageKey;
+
+    Phase(double fraction, @NotNull String messageKey) {
+      this.fraction = fraction;
+      this.messageKey = messageKey;
+    }
+  }
+
+  private final ProgressIndicator indicator;
+  private final CountDownLatch completed = new CountDownLatch(1);
+
+  public DeploymentProgress(@NotNull ProgressIndicator indicator) {
+    this.indicator = indicator;
+    indicator.setIndeterminate(false);
+  }
+
+  /** Shows that the deployment entered {@code phase}. May be called from any thread. */
+  public void enter(@NotNull Phase phase) {
+    indicator.setFraction(phase.fraction);
+    indicator.setText2(GctBundle.message(phase.messageKey));
+  }
+
+  /** Returns true if the user cancelled the deployment. */
+  public boolean isCanceled() {
+    return indicator.isCanceled();
+  }
+
+  /** Records that the deployment succeeded or failed, which ends {@link #awaitCompletion}. */
+  public void complete() {
+    indicator.setFraction(1.0);
+    completed.countDown();
+  }
+
+  /**
+   * Blocks until the deployment completes. If the user cancels the indicator meanwhile, {@code
+   * runner} is cancelled and given a while to report its outcome.
+   */
+  public void awaitCompletion(@NotNull CancellableRunnable runner) throws InterruptedException {
+    long cancelledAtMs = 0;
+    while (!completed.await(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+      if (cancelledAtMs == 0 && indicator.isCanceled()) {
+        cancelledAtMs = System.currentTimeMillis();
+        runner.cancel();
+      } else if (cancelledAtMs != 0
+          && System.currentTimeMillis() - cancelledAtMs > CANCEL_TIMEOUT_MS) {
+        logger.warn("Cancelled deployment did not complete, no longer waiting for it");
+        return;
+      }
+    }
+  }
+}
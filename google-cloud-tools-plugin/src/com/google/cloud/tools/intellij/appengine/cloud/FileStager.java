@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Puts files into a staging directory with as little I/O as possible: a file that is already
+ * staged is left alone, a file on the same file system is hard linked, and only otherwise is it
+ * copied.
+ */
+final class FileStager {
+
+  private static final Logger logger = Logger.getInstance(FileStager.class);
+
+  /** How a file ended up in the staging directory. */
+  enum Action {
+    UNCHANGED,
+    LINKED,
+    COPIED
+  }
+
+  private FileStager() {
+    // static utility class
+  }
+
+  /**
+   * Stages {@code source} as {@code target}, replacing a different file that is there already.
+   *
+   * <p>The staged file may share its content with the source, so it must not be written to.
+   */
+  @NotNull
+  static Action stage(@NotNull Path source, @NotNull Path target) throws IOException {
+    if (isStaged(source, target)) {
+      return Action.UNCHANGED;
+    }
+
+    Files.deleteIfExists(target);
+    try {
+      Files.createLink(target, source);
+      return Action.LINKED;
+    } catch (UnsupportedOperationException | FileSystemException ex) {
+      // typically another file system, or one without hard links
+      logger.debug("could not link " + target + " to " + source + ", copying it", ex);
+    }
+    Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+    return Action.COPIED;
+  }
+
+  // Compares size and time stamp first, and the content only if just the time stamp differs.
+  private static boolean isStaged(@NotNull Path source, @NotNull Path target) throws IOException {
+    if (!Files.isRegularFile(target)) {
+      return false;
+    }
+    if (Files.isSameFile(source, target)) {
+      return true;
+    }
+    if (Files.size(source) != Files.size(target)) {
+      return false;
+    }
+    if (Files.getLastModifiedTime(source).equals(Files.getLastModifiedTime(target))) {
+      return true;
+    }
+    return hash(source).equals(hash(target));
+  }
+
+  @NotNull
+  private static HashCode hash(@NotNull Path file) throws IOException {
+    return com.google.common.io.Files.asByteSource(file.toFile()).hash(Hashing.sha256());
+  }
+}
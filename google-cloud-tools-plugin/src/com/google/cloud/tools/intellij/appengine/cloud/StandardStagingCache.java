@@ -0,0 +1,534 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the staged output of an App Engine standard application between deployments, so that a
+ * repeated deployment only pays for what changed in the exploded WAR.
+ *
+ * <p>Every file of the WAR is recorded with a hash of its content; files whose size and
+ * modification time did not change are not hashed again. If no content changed, the previous
+ * staging directory is deployed as is. If only classes and libraries that staging copies verbatim
+ * changed, a new staging directory is assembled from hard links to the previous one, with just the
+ * changed files replaced. Anything else, like a changed deployment descriptor or JSP, needs a full
+ * staging run.
+ *
+ * <p>Staged directories are never modified once they are committed. A deployment always gets a new
+ * directory, and the cache switches over to it by atomically replacing a pointer file, so a
+ * directory that is being uploaded never changes underneath.
+ */
+class StandardStagingCache {
+
+  private static final Logger logger = Logger.getInstance(StandardStagingCache.class);
+
+  // Bumped whenever the layout of the cache changes, so old entries are not misread.
+  private static final int FORMAT_VERSION = 1;
+  // Staging splits jars larger than this into several smaller ones.
+  @VisibleForTesting static final long JAR_SPLITTING_THRESHOLD_BYTES = 10L * 1024 * 1024;
+  // Older staged directories kept besides the current one, in case a deployment still reads them.
+  private static final int KEPT_OLD_GENERATIONS = 1;
+  private static final String CURRENT_FILE = "current";
+  private static final String MANIFEST_SUFFIX = ".manifest";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final String GENERATION_PREFIX = "stage-";
+  private static final String[] VERBATIM_PREFIXES = {"WEB-INF/classes/", "WEB-INF/lib/"};
+
+  // Only one deployment at a time may stage from a cache directory.
+  private static final ConcurrentMap<Path, Semaphore> locks = new ConcurrentHashMap<>();
+
+  private final Path root;
+
+  @VisibleForTesting
+  StandardStagingCache(@NotNull Path root) {
+    this.root = root;
+  }
+
+  /**
+   * Returns the cache for an exploded WAR, in the "gae-staging" folder of the IDE system directory.
+   *
+   * @param stagingOptions everything besides the WAR that changes the staged output, such as the
+   *     Cloud SDK location and the staging flags
+   */
+  @NotNull
+  static StandardStagingCache forArtifact(@NotNull Path artifact, @NotNull String stagingOptions) {
+    String key =
+        Hashing.sha1()
+            .hashString(
+                FORMAT_VERSION + "\n" + artifact.toAbsolutePath() + "\n" + stagingOptions,
+                Charsets.UTF_8)
+            .toString();
+    return new StandardStagingCache(Paths.get(PathManager.getSystemPath(), "gae-staging", key));
+  }
+
+  /**
+   * Compares the exploded WAR with the last staged one and prepares a staging directory for it.
+   *
+   * @return the session, or {@code null} if another deployment of the same WAR is being staged
+   */
+  @Nullable
+  Session open(@NotNull Path sourceDirectory) throws IOException {
+    Semaphore lock = locks.computeIfAbsent(root, key -> new Semaphore(1));
+    if (!lock.tryAcquire()) {
+      return null;
+    }
+
+    try {
+      Files.createDirectories(root);
+      String current = readCurrent();
+      Map<String, Entry> previous =
+          current != null ? readManifest(current) : Collections.<String, Entry>emptyMap();
+      Map<String, Entry> inputs = scan(sourceDirectory, previous);
+
+      if (current != null && !previous.isEmpty()) {
+        Set<String> changed = getChangedPaths(previous, inputs);
+        if (changed.isEmpty()) {
+          return new Session(lock, current, current, inputs, false /* needsStaging */);
+        }
+        if (isCopiedVerbatim(changed, previous, inputs)) {
+          String generation = newGeneration();
+          patch(sourceDirectory, root.resolve(current), root.resolve(generation), changed, inputs);
+          for (String path : changed) {
+            if (inputs.containsKey(path)) {
+              inputs.put(path, inputs.get(path).withCopiedVerbatim(true));
+            }
+          }
+          return new Session(lock, current, generation, inputs, false /* needsStaging */);
+        }
+      }
+
+      String generation = newGeneration();
+      Files.createDirectory(root.resolve(generation));
+      return new Session(lock, current, generation, inputs, true /* needsStaging */);
+    } catch (IOException | RuntimeException ex) {
+      lock.release();
+      throw ex;
+    }
+  }
+
+  /** A staging directory handed out to one deployment. */
+  class Session {
+
+    private final Semaphore lock;
+    @Nullable private final String previousGeneration;
+    private final String generation;
+    private final Map<String, Entry> inputs;
+    private final boolean needsStaging;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Session(
+        @NotNull Semaphore lock,
+        @Nullable String previousGeneration,
+        @NotNull String generation,
+        @NotNull Map<String, Entry> inputs,
+        boolean needsStaging) {
+      this.lock = lock;
+      this.previousGeneration = previousGeneration;
+      this.generation = generation;
+      this.inputs = inputs;
+      this.needsStaging = needsStaging;
+    }
+
+    /** The directory to stage into, or to deploy from if {@link #needsStaging()} is false. */
+    @NotNull
+    Path getDirectory() {
+      return root.resolve(generation);
+    }
+
+    /** Returns true if the directory is empty and staging has to run into it. */
+    boolean needsStaging() {
+      return needsStaging;
+    }
+
+    /** Whether the directory was assembled from the previous one rather than reused as is. */
+    boolean isPatched() {
+      return !needsStaging && !generation.equals(previousGeneration);
+    }
+
+    /** Makes the staged directory the one that the next deployment starts from. */
+    void commit() throws IOException {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        if (needsStaging) {
+          markCopiedVerbatim(getDirectory(), inputs);
+        }
+        writeManifest(generation, inputs);
+        if (!generation.equals(previousGeneration)) {
+          writeCurrent(generation);
+          deleteOldGenerations(generation, previousGeneration);
+        }
+      } finally {
+        lock.release();
+      }
+    }
+
+    /** Discards the directory of a failed or cancelled staging run. */
+    void abort() {
+      if (!closed.compareAndSet(false, true)) {
+        return;
+      }
+      try {
+        if (!generation.equals(previousGeneration)) {
+          FileUtil.delete(getDirectory().toFile());
+        }
+      } finally {
+        lock.release();
+      }
+    }
+  }
+
+  // The paths that were added, removed or whose content changed.
+  @NotNull
+  private static Set<String> getChangedPaths(
+      @NotNull Map<String, Entry> previous, @NotNull Map<String, Entry> inputs) {
+    Set<String> changed = new HashSet<>();
+    for (Map.Entry<String, Entry> input : inputs.entrySet()) {
+      Entry before = previous.get(input.getKey());
+      if (before == null || !before.hash.equals(input.getValue().hash)) {
+        changed.add(input.getKey());
+      }
+    }
+    for (String path : previous.keySet()) {
+      if (!inputs.containsKey(path)) {
+        changed.add(path);
+      }
+    }
+    return changed;
+  }
+
+  // Whether staging would only copy the changed files, so they can be patched into the output.
+  @VisibleForTesting
+  static boolean isCopiedVerbatim(
+      @NotNull Set<String> changed,
+      @NotNull Map<String, Entry> previous,
+      @NotNull Map<String, Entry> inputs) {
+    for (String path : changed) {
+      if (!hasVerbatimPrefix(path)) {
+        return false;
+      }
+      Entry before = previous.get(path);
+      if (before != null && !before.copiedVerbatim) {
+        return false;
+      }
+      Entry after = inputs.get(path);
+      if (after != null && path.endsWith(".jar") && after.size > JAR_SPLITTING_THRESHOLD_BYTES) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasVerbatimPrefix(@NotNull String path) {
+    for (String prefix : VERBATIM_PREFIXES) {
+      if (path.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Assembles a new staging directory from hard links to the previous one plus the changed files.
+  private static void patch(
+      @NotNull Path sourceDirectory,
+      @NotNull Path previousDirectory,
+      @NotNull Path directory,
+      @NotNull Set<String> changed,
+      @NotNull Map<String, Entry> inputs)
+      throws IOException {
+    try {
+      linkTree(previousDirectory, directory);
+      for (String path : changed) {
+        Path target = directory.resolve(path);
+        // A linked file shares its content with the previous directory, so it is replaced rather
+        // than written to.
+        Files.deleteIfExists(target);
+        if (inputs.containsKey(path)) {
+          Files.createDirectories(target.getParent());
+          Files.copy(sourceDirectory.resolve(path), target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+      }
+    } catch (IOException | RuntimeException ex) {
+      FileUtil.delete(directory.toFile());
+      throw ex;
+    }
+  }
+
+  private static void linkTree(@NotNull final Path from, @NotNull final Path to)
+      throws IOException {
+    Files.walkFileTree(
+        from,
+        new SimpleFileVisitor<Path>() {
+          private boolean linksSupported = true;
+
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Path target = to.resolve(from.relativize(file).toString());
+            if (linksSupported) {
+              try {
+                Files.createLink(target, file);
+                return FileVisitResult.CONTINUE;
+              } catch (UnsupportedOperationException | FileSystemException ex) {
+                logger.debug("hard links not available, copying staged files instead", ex);
+                linksSupported = false;
+              }
+            }
+            Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  // Records which inputs the staging run copied unchanged into its output.
+  private static void markCopiedVerbatim(
+      @NotNull Path directory, @NotNull Map<String, Entry> inputs) throws IOException {
+    for (Map.Entry<String, Entry> input : inputs.entrySet()) {
+      Entry entry = input.getValue();
+      Path staged = directory.resolve(input.getKey());
+      boolean verbatim =
+          Files.isRegularFile(staged)
+              && Files.size(staged) == entry.size
+              && hash(staged).equals(entry.hash);
+      input.setValue(entry.withCopiedVerbatim(verbatim));
+    }
+  }
+
+  @NotNull
+  private static Map<String, Entry> scan(
+      @NotNull final Path sourceDirectory, @NotNull final Map<String, Entry> previous)
+      throws IOException {
+    final Map<String, Entry> entries = new LinkedHashMap<>();
+    Files.walkFileTree(
+        sourceDirectory,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            if (!attrs.isRegularFile()) {
+              return FileVisitResult.CONTINUE;
+            }
+            String path =
+                sourceDirectory.relativize(file).toString().replace(File.separatorChar, '/');
+            long size = attrs.size();
+            long modified = attrs.lastModifiedTime().toMillis();
+            Entry before = previous.get(path);
+            // Unchanged size and time stamp are taken to mean unchanged content.
+            String hash =
+                before != null && before.size == size && before.modified == modified
+                    ? before.hash
+                    : hash(file);
+            boolean copiedVerbatim =
+                before != null && before.copiedVerbatim && before.hash.equals(hash);
+            entries.put(path, new Entry(hash, size, modified, copiedVerbatim));
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return entries;
+  }
+
+  @NotNull
+  private static String hash(@NotNull Path file) throws IOException {
+    return com.google.common.io.Files.asByteSource(file.toFile())
+        .hash(Hashing.sha256())
+        .toString();
+  }
+
+  @NotNull
+  private String newGeneration() {
+    // Time based names sort in creation order, which old generation clean up relies on.
+    String name = GENERATION_PREFIX + System.currentTimeMillis();
+    for (int i = 1; Files.exists(root.resolve(name)); i++) {
+      name = GENERATION_PREFIX + System.currentTimeMillis() + "-" + i;
+    }
+    return name;
+  }
+
+  private void deleteOldGenerations(@NotNull String current, @Nullable String previous)
+      throws IOException {
+    List<String> generations = new ArrayList<>();
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+      for (Path child : children) {
+        String name = child.getFileName().toString();
+        if (Files.isDirectory(child) && name.startsWith(GENERATION_PREFIX)) {
+          generations.add(name);
+        }
+      }
+    }
+    Collections.sort(generations, Collections.<String>reverseOrder());
+
+    int kept = 0;
+    for (String name : generations) {
+      if (name.equals(current)) {
+        continue;
+      }
+      // Only the directories that were committed before are still worth keeping; others are left
+      // over from failed runs.
+      boolean committed = name.equals(previous) || Files.exists(manifestPath(name));
+      if (committed && kept < KEPT_OLD_GENERATIONS) {
+        kept++;
+        continue;
+      }
+      FileUtil.delete(root.resolve(name).toFile());
+      Files.deleteIfExists(manifestPath(name));
+    }
+  }
+
+  @Nullable
+  private String readCurrent() throws IOException {
+    Path file = root.resolve(CURRENT_FILE);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    String generation = new String(Files.readAllBytes(file), Charsets.UTF_8).trim();
+    return Files.isDirectory(root.resolve(generation)) ? generation : null;
+  }
+
+  private void writeCurrent(@NotNull String generation) throws IOException {
+    writeAtomically(root.resolve(CURRENT_FILE), generation);
+  }
+
+  @NotNull
+  private Path manifestPath(@NotNull String generation) {
+    return root.resolve(generation + MANIFEST_SUFFIX);
+  }
+
+  // Returns an empty map if the manifest is missing or unreadable, which forces a full staging run.
+  @NotNull
+  private Map<String, Entry> readManifest(@NotNull String generation) {
+    Path file = manifestPath(generation);
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    if (!Files.exists(file)) {
+      return entries;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", 5);
+        entries.put(
+            fields[4],
+            new Entry(
+                fields[0],
+                Long.parseLong(fields[1]),
+                Long.parseLong(fields[2]),
+                "1".equals(fields[3])));
+      }
+      return entries;
+    } catch (IOException | RuntimeException ex) {
+      logger.warn("could not read staging manifest " + file, ex);
+      return new LinkedHashMap<>();
+    }
+  }
+
+  private void writeManifest(@NotNull String generation, @NotNull Map<String, Entry> entries)
+      throws IOException {
+    StringBuilder manifest = new StringBuilder();
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      Entry value = entry.getValue();
+      manifest
+          .append(value.hash)
+          .append('\t')
+          .append(value.size)
+          .append('\t')
+          .append(value.modified)
+          .append('\t')
+          .append(value.copiedVerbatim ? '1' : '0')
+          .append('\t')
+          .append(entry.getKey())
+          .append('\n');
+    }
+    writeAtomically(manifestPath(generation), manifest.toString());
+  }
+
+  private static void writeAtomically(@NotNull Path file, @NotNull String content)
+      throws IOException {
+    Path tempFile = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, Charsets.UTF_8)) {
+      writer.write(content);
+    }
+    Files.move(
+        tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** A file of the exploded WAR as it was when it was last staged. */
+  @VisibleForTesting
+  static final class Entry {
+
+    private final String hash;
+    private final long size;
+    private final long modified;
+    // whether the staged output holds an identical copy of the file at the same path
+    private final boolean copiedVerbatim;
+
+    @VisibleForTesting
+    Entry(@NotNull String hash, long size, long modified, boolean copiedVerbatim) {
+      this.hash = hash;
+      this.size = size;
+      this.modified = modified;
+      this.copiedVerbatim = copiedVerbatim;
+    }
+
+    @NotNull
+    private Entry withCopiedVerbatim(boolean copiedVerbatim) {
+      return new Entry(hash, size, modified, copiedVerbatim);
+    }
+  }
+}
@@ -20,12 +20,16 @@ import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
 
 import com.intellij.openapi.vcs.impl.CancellableRunnable;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 /**
  * Executor of {@link AppEngineTask}'s.
  */
 public class AppEngineExecutor implements CancellableRunnable {
 
-  private Process process;
+  // a task may run several processes at once, e.g. when staging several services
+  private final List<Process> processes = new CopyOnWriteArrayList<>();
   private AppEngineTask task;
 
   public AppEngineExecutor(AppEngineTask task) {
@@ -44,9 +48,15 @@ public class AppEngineExecutor implements CancellableRunnable {
 
   @Override
   public void cancel() {
-    // Only destroy the process and signal cancellation if the process hasn't exited
-    if (process != null && isAlive(process)) {
-      process.destroy();
+    // Only destroy the processes and signal cancellation if a process hasn't exited
+    boolean cancelled = false;
+    for (Process process : processes) {
+      if (isAlive(process)) {
+        process.destroy();
+        cancelled = true;
+      }
+    }
+    if (cancelled) {
       task.onCancel();
     }
   }
@@ -63,10 +73,23 @@ public class AppEngineExecutor implements CancellableRunnable {
   }
 
   private void setProcess(Process process) {
-    this.process = process;
+    // exited processes are dropped, so that a long running task does not accumulate them
+    for (Process running : processes) {
+      if (!isAlive(running)) {
+        processes.remove(running);
+      }
+    }
+    processes.add(process);
   }
 
+  /**
+   * Returns the process that the task started last.
+   */
   public Process getProcess() {
-    return process;
+    Process last = null;
+    for (Process process : processes) {
+      last = process;
+    }
+    return last;
   }
 }
@@ -16,16 +16,20 @@
 
 package com.google.cloud.tools.intellij.appengine.cloud.executor;
 
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineDeploy;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineFlexibleStage;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineHelper;
+import com.google.cloud.tools.intellij.appengine.cloud.DeploymentProgress;
 import com.google.cloud.tools.intellij.stats.UsageTrackerProvider;
 import com.google.cloud.tools.intellij.util.GctBundle;
 import com.google.cloud.tools.intellij.util.GctTracking;
 
 import com.intellij.openapi.diagnostic.Logger;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.io.IOException;
 import java.nio.file.Path;
 
@@ -55,12 +59,8 @@ public class AppEngineFlexibleDeployTask extends AppEngineTask {
         .ping();
 
     Path stagingDirectory;
-    AppEngineHelper helper = deploy.getHelper();
-
     try {
-      stagingDirectory = helper.createStagingDirectory(
-          deploy.getLoggingHandler(),
-          deploy.getDeploymentConfiguration().getCloudProjectName());
+      stagingDirectory = flexibleStage.reserveStagingDirectory();
     } catch (IOException ioe) {
       deploy.getCallback().errorOccurred(
           GctBundle.message("appengine.deployment.error.creating.staging.directory"));
@@ -68,29 +68,78 @@ public class AppEngineFlexibleDeployTask extends AppEngineTask {
       return;
     }
 
+    // The directory stays reserved until the deploy process exits, as gcloud uploads from it.
+    boolean deploying = false;
     try {
-      flexibleStage.stage(stagingDirectory);
-    } catch (RuntimeException re) {
-      deploy.getCallback()
-          .errorOccurred(GctBundle.message("appengine.deployment.exception.during.staging"));
-      logger.error(re);
-      return;
+      deploying = stageAndDeploy(stagingDirectory, startListener);
+    } finally {
+      if (!deploying) {
+        flexibleStage.releaseStagingDirectory(stagingDirectory);
+      }
     }
+  }
 
+  /**
+   * Stages the application into the reserved directory and starts deploying it from there.
+   *
+   * @return true if the deploy process was started, which releases the directory once it exits
+   */
+  private boolean stageAndDeploy(
+      @NotNull final Path stagingDirectory, @NotNull ProcessStartListener startListener) {
+    AppEngineHelper helper = deploy.getHelper();
+
+    // Credentials are staged first, so that the progress only moves forward through the phases.
     try {
+      deploy.enterPhase(DeploymentProgress.Phase.STAGE_CREDENTIALS);
       if (helper.stageCredentials(
           deploy.getDeploymentConfiguration().getGoogleUsername()) == null) {
         deploy.getCallback().errorOccurred(
             GctBundle.message("appengine.staging.credentials.error.message"));
-        return;
+        return false;
       }
+    } catch (RuntimeException re) {
+      onDeployException(re);
+      return false;
+    }
 
-      deploy.deploy(stagingDirectory, startListener);
+    if (deploy.checkCancelled()) {
+      return false;
+    }
+
+    try {
+      deploy.enterPhase(DeploymentProgress.Phase.STAGE);
+      flexibleStage.stage(stagingDirectory);
     } catch (RuntimeException re) {
-      deploy.getCallback().errorOccurred(GctBundle.message("appengine.deployment.exception") + "\n"
-          + GctBundle.message("appengine.action.error.update.message"));
+      helper.deleteCredentials();
+      deploy.getCallback()
+          .errorOccurred(GctBundle.message("appengine.deployment.exception.during.staging"));
       logger.error(re);
+      return false;
+    }
+
+    if (deploy.checkCancelled()) {
+      return false;
     }
+
+    try {
+      deploy.deploy(stagingDirectory, startListener, new ProcessExitListener() {
+        @Override
+        public void onExit(int exitCode) {
+          flexibleStage.releaseStagingDirectory(stagingDirectory);
+        }
+      });
+      return true;
+    } catch (RuntimeException re) {
+      helper.deleteCredentials();
+      onDeployException(re);
+      return false;
+    }
+  }
+
+  private void onDeployException(@NotNull RuntimeException re) {
+    deploy.getCallback().errorOccurred(GctBundle.message("appengine.deployment.exception") + "\n"
+        + GctBundle.message("appengine.action.error.update.message"));
+    logger.error(re);
   }
 
   @Override
@@ -22,6 +22,8 @@ import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineDeploy;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineHelper;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage;
+import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage.StagingDirectoryFactory;
+import com.google.cloud.tools.intellij.appengine.cloud.DeploymentProgress;
 import com.google.cloud.tools.intellij.stats.UsageTrackerProvider;
 import com.google.cloud.tools.intellij.util.GctBundle;
 import com.google.cloud.tools.intellij.util.GctTracking;
@@ -33,6 +35,11 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Runnable that executes task responsible for deploying an application to the App Engine standard
@@ -44,6 +51,7 @@ public class AppEngineStandardDeployTask extends AppEngineTask {
 
   private AppEngineDeploy deploy;
   private AppEngineStandardStage stageStandard;
+  private List<AppEngineStandardStage> additionalStages;
   private boolean isFlexCompat;
 
   /**
@@ -54,33 +62,47 @@ public class AppEngineStandardDeployTask extends AppEngineTask {
       @NotNull AppEngineDeploy deploy,
       @NotNull AppEngineStandardStage stageStandard,
       boolean isFlexCompat) {
+    this(deploy, stageStandard, Collections.<AppEngineStandardStage>emptyList(), isFlexCompat);
+  }
+
+  /**
+   * @param additionalStages further services that are staged concurrently with
+   *                         {@code stageStandard} and deployed along with it
+   * @param isFlexCompat does not change any behavior of actual deployment. Provided solely for the
+   *                     purpose of Analytics usage reporting.
+   */
+  public AppEngineStandardDeployTask(
+      @NotNull AppEngineDeploy deploy,
+      @NotNull AppEngineStandardStage stageStandard,
+      @NotNull List<AppEngineStandardStage> additionalStages,
+      boolean isFlexCompat) {
     this.deploy = deploy;
     this.stageStandard = stageStandard;
+    this.additionalStages = additionalStages;
     this.isFlexCompat = isFlexCompat;
   }
 
   @Override
-  public void execute(ProcessStartListener startListener) {
+  public void execute(final ProcessStartListener startListener) {
     UsageTrackerProvider.getInstance()
         .trackEvent(GctTracking.APP_ENGINE_DEPLOY)
         .addMetadata(GctTracking.METADATA_LABEL_KEY, isFlexCompat ? "flex-compat" : "standard")
         .ping();
 
-    Path stagingDirectory;
-    AppEngineHelper helper = deploy.getHelper();
-
-    try {
-      stagingDirectory = helper.createStagingDirectory(
-          deploy.getLoggingHandler(),
-          deploy.getDeploymentConfiguration().getCloudProjectName());
-    } catch (IOException ioe) {
-      deploy.getCallback().errorOccurred(
-          GctBundle.message("appengine.deployment.error.creating.staging.directory"));
-      logger.error(ioe);
-      return;
-    }
+    final AppEngineHelper helper = deploy.getHelper();
+    // only services that cannot be staged through the staging cache get a directory of their own
+    StagingDirectoryFactory stagingDirectoryFactory = new StagingDirectoryFactory() {
+      @NotNull
+      @Override
+      public Path createStagingDirectory() throws IOException {
+        return helper.createStagingDirectory(
+            deploy.getLoggingHandler(),
+            deploy.getDeploymentConfiguration().getCloudProjectName());
+      }
+    };
 
     try {
+      deploy.enterPhase(DeploymentProgress.Phase.STAGE_CREDENTIALS);
       if (helper.stageCredentials(
           deploy.getDeploymentConfiguration().getGoogleUsername()) == null) {
         deploy.getCallback().errorOccurred(
@@ -88,16 +110,69 @@ public class AppEngineStandardDeployTask extends AppEngineTask {
         return;
       }
 
-      stageStandard.stage(
-          stagingDirectory,
-          startListener,
-          deploy(stagingDirectory, startListener));
-    } catch (AppEngineJavaComponentsNotInstalledException ex) {
+      if (deploy.checkCancelled()) {
+        return;
+      }
+      deploy.enterPhase(DeploymentProgress.Phase.STAGE);
+      if (additionalStages.isEmpty()) {
+        stageStandard.stage(
+            stagingDirectoryFactory,
+            startListener,
+            new Function<Path, ProcessExitListener>() {
+              @Override
+              public ProcessExitListener apply(Path stagedDirectory) {
+                return deploy(Collections.singletonList(stagedDirectory), startListener);
+              }
+            });
+      } else {
+        stageServices(stagingDirectoryFactory, startListener);
+      }
+    } catch (IOException ioe) {
+      onStagingDirectoryException(ioe);
+    } catch (RuntimeException re) {
+      onStagingException(re);
+    }
+  }
+
+  /**
+   * Stages the deployed services concurrently, and deploys them together once all of them are
+   * staged.
+   */
+  private void stageServices(
+      @NotNull StagingDirectoryFactory stagingDirectoryFactory,
+      @NotNull final ProcessStartListener startListener) {
+    List<AppEngineStandardStage> stages = new ArrayList<>();
+    stages.add(stageStandard);
+    stages.addAll(additionalStages);
+
+    new ParallelStandardStaging(stages, stagingDirectoryFactory, deploy.getLoggingHandler())
+        .stage(startListener, new Consumer<ParallelStandardStaging.Result>() {
+          @Override
+          public void accept(ParallelStandardStaging.Result result) {
+            if (result.getException() instanceof IOException) {
+              onStagingDirectoryException((IOException) result.getException());
+            } else if (result.getException() != null) {
+              onStagingException((RuntimeException) result.getException());
+            } else {
+              deploy(result.getStagedDirectories(), startListener).onExit(result.getExitCode());
+            }
+          }
+        });
+  }
+
+  private void onStagingDirectoryException(@NotNull IOException ioe) {
+    deploy.getCallback().errorOccurred(
+        GctBundle.message("appengine.deployment.error.creating.staging.directory"));
+    logger.error(ioe);
+  }
+
+  private void onStagingException(@NotNull RuntimeException re) {
+    if (re instanceof AppEngineJavaComponentsNotInstalledException) {
       deploy.getCallback().errorOccurred(
           GctBundle.message("appengine.cloudsdk.java.components.missing") + "\n"
               + GctBundle.message("appengine.cloudsdk.java.components.howtoinstall"));
-      logger.warn(ex);
-    } catch (RuntimeException re) {
+      logger.warn(re);
+    } else {
       deploy.getCallback()
           .errorOccurred(GctBundle.message("appengine.deployment.exception.during.staging") + "\n"
               + GctBundle.message("appengine.action.error.update.message"));
@@ -107,30 +182,41 @@ public class AppEngineStandardDeployTask extends AppEngineTask {
 
   @VisibleForTesting
   ProcessExitListener deploy(
-      @NotNull final Path stagingDirectory,
+      @NotNull final List<Path> stagingDirectories,
       @NotNull final ProcessStartListener startListener) {
     return new ProcessExitListener() {
       @Override
       public void onExit(int exitCode) {
+        if (deploy.checkCancelled()) {
+          return;
+        }
         if (exitCode == 0) {
           try {
-            deploy.deploy(stagingDirectory, startListener);
+            deploy.deploy(stagingDirectories, startListener);
           } catch (RuntimeException re) {
-            deploy.getCallback()
-                .errorOccurred(GctBundle.message("appengine.deployment.exception") + "\n"
-                    + GctBundle.message("appengine.action.error.update.message"));
-            logger.error(re);
+            onDeployException(re);
           }
         } else {
-          deploy.getCallback()
-              .errorOccurred(GctBundle.message("appengine.deployment.error.during.staging", exitCode));
-          logger.warn(
-              "App engine standard staging process exited with an error. Exit Code:" + exitCode);
+          onStagingFailed(exitCode);
         }
       }
     };
   }
 
+  private void onDeployException(@NotNull RuntimeException re) {
+    deploy.getCallback()
+        .errorOccurred(GctBundle.message("appengine.deployment.exception") + "\n"
+            + GctBundle.message("appengine.action.error.update.message"));
+    logger.error(re);
+  }
+
+  private void onStagingFailed(int exitCode) {
+    deploy.getCallback()
+        .errorOccurred(GctBundle.message("appengine.deployment.error.during.staging", exitCode));
+    logger.warn(
+        "App engine standard staging process exited with an error. Exit Code:" + exitCode);
+  }
+
   @Override
   void onCancel() {
     UsageTrackerProvider.getInstance()
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud.executor;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
+import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage;
+import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage.StagingDirectoryFactory;
+import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.remoteServer.runtime.log.LoggingHandler;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Stages the services of a multi-service deployment concurrently. At most
+ * {@link #MAX_PARALLEL_STAGING} staging processes run at a time, each service on a thread of its
+ * own that waits for its staging process to exit.
+ *
+ * <p>Once a service fails to stage, the services that have not started staging yet are skipped,
+ * which also covers a cancelled deployment whose staging processes were destroyed.
+ */
+class ParallelStandardStaging {
+
+  @VisibleForTesting static final int MAX_PARALLEL_STAGING = 3;
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 1;
+
+  private final List<AppEngineStandardStage> stages;
+  private final StagingDirectoryFactory stagingDirectoryFactory;
+  private final LoggingHandler loggingHandler;
+  private final int maxParallelStaging;
+
+  private final Path[] stagedDirectories;
+  private final AtomicInteger remaining;
+  // the first failure wins; guarded by this
+  private boolean failed;
+  private int exitCode;
+  @Nullable private Exception exception;
+
+  /**
+   * @param stages the services to stage, in the order they are deployed
+   * @param stagingDirectoryFactory creates the staging directory of a service that cannot reuse
+   *     the output of its previous staging
+   */
+  ParallelStandardStaging(
+      @NotNull List<AppEngineStandardStage> stages,
+      @NotNull StagingDirectoryFactory stagingDirectoryFactory,
+      @NotNull LoggingHandler loggingHandler) {
+    this(stages, stagingDirectoryFactory, loggingHandler, MAX_PARALLEL_STAGING);
+  }
+
+  @VisibleForTesting
+  ParallelStandardStaging(
+      @NotNull List<AppEngineStandardStage> stages,
+      @NotNull StagingDirectoryFactory stagingDirectoryFactory,
+      @NotNull LoggingHandler loggingHandler,
+      int maxParallelStaging) {
+    this.stages = stages;
+    this.stagingDirectoryFactory = stagingDirectoryFactory;
+    this.loggingHandler = loggingHandler;
+    this.maxParallelStaging = maxParallelStaging;
+    stagedDirectories = new Path[stages.size()];
+    remaining = new AtomicInteger(stages.size());
+  }
+
+  /**
+   * Starts staging every service and returns without waiting for staging to finish.
+   *
+   * @param onComplete called once on a staging thread when every service was staged or skipped
+   */
+  void stage(
+      @NotNull final ProcessStartListener startListener,
+      @NotNull final Consumer<Result> onComplete) {
+    int threads = Math.max(1, Math.min(maxParallelStaging, stages.size()));
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            IDLE_THREAD_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            ConcurrencyUtil.newNamedThreadFactory(
+                "App Engine staging", true /* isDaemon */, Thread.NORM_PRIORITY));
+    for (int i = 0; i < stages.size(); i++) {
+      final int service = i;
+      executor.execute(() -> {
+        try {
+          stageService(service, startListener);
+        } finally {
+          if (remaining.decrementAndGet() == 0) {
+            onComplete.accept(getResult());
+          }
+        }
+      });
+    }
+    // lets the threads end once the queued services are staged
+    executor.shutdown();
+  }
+
+  private void stageService(int service, @NotNull ProcessStartListener startListener) {
+    synchronized (this) {
+      if (failed) {
+        return;
+      }
+    }
+
+    final AppEngineStandardStage stage = stages.get(service);
+    final CountDownLatch exited = new CountDownLatch(1);
+    try {
+      stage.stage(
+          stagingDirectoryFactory,
+          startListener,
+          new Function<Path, ProcessExitListener>() {
+            @Override
+            public ProcessExitListener apply(final Path stagedDirectory) {
+              return new ProcessExitListener() {
+                @Override
+                public void onExit(int exitCode) {
+                  onServiceStaged(service, stage, stagedDirectory, exitCode);
+                  exited.countDown();
+                }
+              };
+            }
+          });
+      exited.await();
+    } catch (IOException | RuntimeException ex) {
+      onServiceFailed(-1, ex);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      onServiceFailed(-1, null);
+    }
+  }
+
+  private void onServiceStaged(
+      int service,
+      @NotNull AppEngineStandardStage stage,
+      @NotNull Path stagedDirectory,
+      int exitCode) {
+    String artifact = stage.getDeploymentArtifactPath().toString();
+    if (exitCode == 0) {
+      synchronized (this) {
+        stagedDirectories[service] = stagedDirectory;
+      }
+      loggingHandler.print(
+          GctBundle.message("appengine.deployment.service.staged", artifact, stagedDirectory)
+              + "\n");
+    } else {
+      loggingHandler.print(
+          GctBundle.message("appengine.deployment.service.staging.failed", artifact, exitCode)
+              + "\n");
+      onServiceFailed(exitCode, null);
+    }
+  }
+
+  private synchronized void onServiceFailed(int exitCode, @Nullable Exception exception) {
+    if (!failed) {
+      failed = true;
+      this.exitCode = exitCode;
+      this.exception = exception;
+    }
+  }
+
+  @NotNull
+  private synchronized Result getResult() {
+    if (failed) {
+      return new Result(Collections.<Path>emptyList(), exitCode, exception);
+    }
+    List<Path> staged = new ArrayList<>(stagedDirectories.length);
+    Collections.addAll(staged, stagedDirectories);
+    return new Result(staged, 0, null);
+  }
+
+  /** The outcome of staging all services. */
+  static final class Result {
+    private final List<Path> stagedDirectories;
+    private final int exitCode;
+    @Nullable private final Exception exception;
+
+    private Result(
+        @NotNull List<Path> stagedDirectories,
+        int exitCode,
+        @Nullable Exception exception) {
+      this.stagedDirectories = stagedDirectories;
+      this.exitCode = exitCode;
+      this.exception = exception;
+    }
+
+    /** The staged directory of every service in order, or none if a service failed to stage. */
+    @NotNull
+    List<Path> getStagedDirectories() {
+      return stagedDirectories;
+    }
+
+    /** 0 if every service was staged, otherwise the exit code of the first failed staging. */
+    int getExitCode() {
+      return exitCode;
+    }
+
+    /**
+     * The exception that staging the first failed service threw, if any: an {@link IOException}
+     * if its staging directory could not be created, otherwise a {@link RuntimeException}.
+     */
+    @Nullable
+    Exception getException() {
+      return exception;
+    }
+  }
+}
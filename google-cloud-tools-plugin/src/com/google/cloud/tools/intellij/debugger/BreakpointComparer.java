@@ -20,6 +20,8 @@ import com.google.api.client.repackaged.com.google.common.base.Strings;
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
 import com.google.api.services.clouddebugger.v2.model.SourceLocation;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.Comparator;
 import java.util.Date;
 
@@ -38,9 +40,25 @@ public class BreakpointComparer implements Comparator<Breakpoint> {
     return DEFAULT_INSTANCE;
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
   public int compare(Breakpoint o1, Breakpoint o2) {
+    if (o1.getFinalTime() != null && o2.getFinalTime() != null) {
+      return compare(o1, BreakpointUtil.parseDateTime(o1.getFinalTime()),
+          o2, BreakpointUtil.parseDateTime(o2.getFinalTime()));
+    }
+    return compare(o1, null, o2, null);
+  }
+
+  /**
+   * Compares two breakpoints whose final times have already been parsed, so that callers sorting
+   * the same breakpoints repeatedly don't pay for parsing on every comparison.
+   *
+   * @param finalTime1 the parsed final time of {@code o1}, only used if both breakpoints are final
+   * @param finalTime2 the parsed final time of {@code o2}, only used if both breakpoints are final
+   */
+  @SuppressWarnings("ConstantConditions")
+  static int compare(Breakpoint o1, @Nullable Date finalTime1,
+      Breakpoint o2, @Nullable Date finalTime2) {
     if (o2.getFinalTime() == null && o1.getFinalTime() != null) {
       return 1;
     }
@@ -75,8 +93,8 @@ public class BreakpointComparer implements Comparator<Breakpoint> {
       }
       return s1.getPath().compareTo(s2.getPath());
     }
-    Date d1 = BreakpointUtil.parseDateTime(o1.getFinalTime());
-    Date d2 = BreakpointUtil.parseDateTime(o2.getFinalTime());
+    Date d1 = finalTime1;
+    Date d2 = finalTime2;
     if (d1 == null) {
       d1 = MINIMUM_DATE;
     }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+
+import com.intellij.util.containers.ImmutableList;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes between two successive server breakpoint lists of a {@link CloudDebugProcessState}.
+ *
+ * <p>A breakpoint seen for the first time is reported as added. If it is (or became) final, it is
+ * also reported as finalized, or as errored if its final status is an error.
+ */
+public final class BreakpointListDiff {
+
+  private final ImmutableList<Breakpoint> breakpoints;
+  private final List<Breakpoint> added;
+  private final List<Breakpoint> finalized;
+  private final List<Breakpoint> errored;
+  private final List<Breakpoint> removed;
+
+  BreakpointListDiff(@NotNull ImmutableList<Breakpoint> breakpoints,
+      @NotNull List<Breakpoint> added,
+      @NotNull List<Breakpoint> finalized,
+      @NotNull List<Breakpoint> errored,
+      @NotNull List<Breakpoint> removed) {
+    this.breakpoints = breakpoints;
+    this.added = Collections.unmodifiableList(added);
+    this.finalized = Collections.unmodifiableList(finalized);
+    this.errored = Collections.unmodifiableList(errored);
+    this.removed = Collections.unmodifiableList(removed);
+  }
+
+  /**
+   * Returns a diff without changes, used when listeners need to refresh for local reasons.
+   */
+  @NotNull
+  public static BreakpointListDiff unchanged(@NotNull ImmutableList<Breakpoint> breakpoints) {
+    List<Breakpoint> none = Collections.emptyList();
+    return new BreakpointListDiff(breakpoints, none, none, none, none);
+  }
+
+  /**
+   * Returns the complete, sorted breakpoint list after the change.
+   */
+  @NotNull
+  public ImmutableList<Breakpoint> getBreakpoints() {
+    return breakpoints;
+  }
+
+  @NotNull
+  public List<Breakpoint> getAdded() {
+    return added;
+  }
+
+  @NotNull
+  public List<Breakpoint> getFinalized() {
+    return finalized;
+  }
+
+  @NotNull
+  public List<Breakpoint> getErrored() {
+    return errored;
+  }
+
+  @NotNull
+  public List<Breakpoint> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Returns true if no breakpoint was added, removed or changed its final state.
+   */
+  public boolean isEmpty() {
+    return added.isEmpty() && finalized.isEmpty() && errored.isEmpty() && removed.isEmpty();
+  }
+}
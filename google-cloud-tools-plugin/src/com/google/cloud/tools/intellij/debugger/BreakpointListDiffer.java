@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+
+import com.intellij.util.containers.ContainerUtil;
+import com.intellij.util.containers.ImmutableList;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes {@link BreakpointListDiff}s between successive server breakpoint lists, keyed by
+ * breakpoint id.
+ *
+ * <p>Breakpoints that did not change since the previous list keep their position, so only the
+ * changed ones are sorted and merged in. Final times are parsed once per breakpoint change rather
+ * than on every comparison. Not thread safe; callers synchronize externally.
+ */
+class BreakpointListDiffer {
+
+  private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+    @Override
+    public int compare(Entry e1, Entry e2) {
+      return BreakpointComparer.compare(e1.breakpoint, e1.finalTime, e2.breakpoint, e2.finalTime);
+    }
+  };
+
+  private Map<String, Entry> entriesById = new HashMap<String, Entry>();
+  private List<Entry> sortedEntries = new ArrayList<Entry>();
+  private ImmutableList<Breakpoint> breakpoints =
+      ContainerUtil.immutableList(new ArrayList<Breakpoint>());
+
+  /**
+   * Returns the sorted list produced by the last update.
+   */
+  @NotNull
+  ImmutableList<Breakpoint> getBreakpoints() {
+    return breakpoints;
+  }
+
+  /**
+   * Replaces the tracked list with {@code newBreakpoints} and returns what changed.
+   *
+   * @param newBreakpoints the breakpoints returned by the server in any order, or null if there are
+   *     none
+   */
+  @NotNull
+  BreakpointListDiff update(@Nullable List<Breakpoint> newBreakpoints) {
+    if (newBreakpoints == null) {
+      newBreakpoints = Collections.emptyList();
+    }
+
+    Map<String, Entry> newEntriesById = new HashMap<String, Entry>(newBreakpoints.size() * 2);
+    List<Entry> changedEntries = new ArrayList<Entry>();
+    List<Breakpoint> added = new ArrayList<Breakpoint>();
+    List<Breakpoint> finalized = new ArrayList<Breakpoint>();
+    List<Breakpoint> errored = new ArrayList<Breakpoint>();
+
+    for (Breakpoint breakpoint : newBreakpoints) {
+      Entry previous = entriesById.get(breakpoint.getId());
+      if (previous != null && previous.breakpoint.equals(breakpoint)) {
+        newEntriesById.put(breakpoint.getId(), previous);
+        continue;
+      }
+
+      Entry entry = new Entry(breakpoint);
+      newEntriesById.put(breakpoint.getId(), entry);
+      changedEntries.add(entry);
+      if (previous == null) {
+        added.add(breakpoint);
+      }
+      if (entry.isFinal && entry.isError) {
+        if (previous == null || !previous.isFinal || !previous.isError) {
+          errored.add(breakpoint);
+        }
+      } else if (entry.isFinal) {
+        if (previous == null || !previous.isFinal || previous.isError) {
+          finalized.add(breakpoint);
+        }
+      }
+    }
+
+    List<Breakpoint> removed = new ArrayList<Breakpoint>();
+    List<Entry> survivors = new ArrayList<Entry>(sortedEntries.size());
+    for (Entry entry : sortedEntries) {
+      Entry current = newEntriesById.get(entry.breakpoint.getId());
+      if (current == null) {
+        removed.add(entry.breakpoint);
+      } else if (current == entry) {
+        survivors.add(entry);
+      }
+    }
+
+    entriesById = newEntriesById;
+    if (!changedEntries.isEmpty() || !removed.isEmpty()) {
+      Collections.sort(changedEntries, ENTRY_COMPARATOR);
+      sortedEntries = merge(survivors, changedEntries);
+      List<Breakpoint> sorted = new ArrayList<Breakpoint>(sortedEntries.size());
+      for (Entry entry : sortedEntries) {
+        sorted.add(entry.breakpoint);
+      }
+      breakpoints = ContainerUtil.immutableList(sorted);
+    }
+
+    return new BreakpointListDiff(breakpoints, added, finalized, errored, removed);
+  }
+
+  /**
+   * Merges two lists that are each sorted by {@link #ENTRY_COMPARATOR}. On ties the entry from
+   * {@code first} is taken first, keeping existing rows in place.
+   */
+  @NotNull
+  private static List<Entry> merge(@NotNull List<Entry> first, @NotNull List<Entry> second) {
+    List<Entry> result = new ArrayList<Entry>(first.size() + second.size());
+    int i = 0;
+    int j = 0;
+    while (i < first.size() && j < second.size()) {
+      if (ENTRY_COMPARATOR.compare(second.get(j), first.get(i)) < 0) {
+        result.add(second.get(j++));
+      } else {
+        result.add(first.get(i++));
+      }
+    }
+    result.addAll(first.subList(i, first.size()));
+    result.addAll(second.subList(j, second.size()));
+    return result;
+  }
+
+  private static final class Entry {
+
+    final Breakpoint breakpoint;
+    final Date finalTime;
+    final boolean isFinal;
+    final boolean isError;
+
+    Entry(@NotNull Breakpoint breakpoint) {
+      this.breakpoint = breakpoint;
+      finalTime = breakpoint.getFinalTime() != null
+          ? BreakpointUtil.parseDateTime(breakpoint.getFinalTime()) : null;
+      isFinal = Boolean.TRUE.equals(breakpoint.getIsFinalState());
+      isError = breakpoint.getStatus() != null
+          && Boolean.TRUE.equals(breakpoint.getStatus().getIsError());
+    }
+  }
+}
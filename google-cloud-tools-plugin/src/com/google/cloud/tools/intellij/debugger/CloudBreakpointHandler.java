@@ -29,6 +29,7 @@ import com.intellij.debugger.ui.breakpoints.BreakpointManager;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -44,8 +45,11 @@ import com.intellij.xdebugger.breakpoints.XLineBreakpoint;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.SwingUtilities;
@@ -104,15 +108,47 @@ public class CloudBreakpointHandler
    * into register, it will register with the server. </ul>
    */
   public void cloneToNewBreakpoints(@NotNull final List<Breakpoint> serverBreakpoints) {
+    // The local files are resolved on a pooled thread, so only the breakpoint changes themselves
+    // run on the event dispatch thread.
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        final List<ResolvedBreakpoint> clones = ApplicationManager.getApplication()
+            .runReadAction(new Computable<List<ResolvedBreakpoint>>() {
+              @Override
+              public List<ResolvedBreakpoint> compute() {
+                return resolveClones(serverBreakpoints);
+              }
+            });
+        if (clones.isEmpty()) {
+          return;
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            applyClones(clones);
+          }
+        });
+      }
+    });
+
+    UsageTrackerProvider.getInstance()
+        .trackEvent(GctTracking.CLOUD_DEBUGGER_CLONE_BREAKPOINTS).ping();
+  }
+
+  /**
+   * Resolves the local files of the final state breakpoints to clone. Must be called inside a read
+   * action.
+   */
+  @NotNull
+  private List<ResolvedBreakpoint> resolveClones(@NotNull List<Breakpoint> serverBreakpoints) {
+    Project currentProject = process.getXDebugSession().getProject();
+    List<ResolvedBreakpoint> clones = new ArrayList<ResolvedBreakpoint>();
     for (Breakpoint serverBreakpoint : serverBreakpoints) {
       if (!Boolean.TRUE.equals(serverBreakpoint.getIsFinalState())) {
         continue;
       }
 
-      Project currentProject = process.getXDebugSession().getProject();
-      final XBreakpointManager manager =
-          XDebuggerManager.getInstance(process.getXDebugSession().getProject())
-              .getBreakpointManager();
       if (serverBreakpoint.getLocation() == null) {
         LOG.warn("attempted to clone a breakpoint without a source location: "
             + StringUtil.notNullize(serverBreakpoint.getId()));
@@ -124,83 +160,93 @@ public class CloudBreakpointHandler
         continue;
       }
 
-      final VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
-      final int line = serverBreakpoint.getLocation().getLine() - 1;
+      VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
       if (file == null) {
         LOG.warn("attempted to clone a breakpoint whose file doesn't exist locally: "
             + StringUtil.notNullize(serverBreakpoint.getLocation().getPath()));
         continue;
       }
+      clones.add(new ResolvedBreakpoint(
+          serverBreakpoint, file, serverBreakpoint.getLocation().getLine() - 1));
+    }
+    return clones;
+  }
 
-      final XLineBreakpoint existing = manager.findBreakpointAtLine(
-          CloudLineBreakpointType.getInstance(), file, line);
-      if (existing != null) {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
-          @Override
-          public void run() {
+  /**
+   * Creates new IDE breakpoints for the resolved clones in a single write action. Must be called
+   * on the event dispatch thread.
+   */
+  private void applyClones(@NotNull final List<ResolvedBreakpoint> clones) {
+    if (process.getXDebugSession().isStopped()) {
+      return;
+    }
+    final XBreakpointManager manager = XDebuggerManager
+        .getInstance(process.getXDebugSession().getProject()).getBreakpointManager();
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+        for (ResolvedBreakpoint clone : clones) {
+          XLineBreakpoint existing = manager.findBreakpointAtLine(
+              CloudLineBreakpointType.getInstance(), clone.file, clone.line);
+          if (existing != null) {
             manager.removeBreakpoint(existing);
           }
-        });
-      }
 
-      final CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
-      final Breakpoint finalserverBreakpoint = serverBreakpoint;
-      ApplicationManager.getApplication().runWriteAction(new Runnable() {
-        @Override
-        public void run() {
-          if (finalserverBreakpoint.getExpressions() != null
-              && finalserverBreakpoint.getExpressions().size() > 0) {
+          Breakpoint serverBreakpoint = clone.serverBreakpoint;
+          CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
+          if (serverBreakpoint.getExpressions() != null
+              && serverBreakpoint.getExpressions().size() > 0) {
             properties.setWatchExpressions(
-                finalserverBreakpoint.getExpressions().toArray(
-                    new String[finalserverBreakpoint.getExpressions().size()]));
+                serverBreakpoint.getExpressions().toArray(
+                    new String[serverBreakpoint.getExpressions().size()]));
           }
 
           XLineBreakpoint<CloudLineBreakpointProperties> newxIdeBreakpoint =
-              manager.addLineBreakpoint(
-                  CloudLineBreakpointType.getInstance(), file.getUrl(), line, properties);
+              manager.addLineBreakpoint(CloudLineBreakpointType.getInstance(),
+                  clone.file.getUrl(), clone.line, properties);
 
           // Condition, watches.
-          if (!Strings.isNullOrEmpty(finalserverBreakpoint.getCondition())) {
-            newxIdeBreakpoint.setCondition(finalserverBreakpoint.getCondition());
+          if (!Strings.isNullOrEmpty(serverBreakpoint.getCondition())) {
+            newxIdeBreakpoint.setCondition(serverBreakpoint.getCondition());
           }
         }
-      });
-    }
-
-    UsageTrackerProvider.getInstance()
-        .trackEvent(GctTracking.CLOUD_DEBUGGER_CLONE_BREAKPOINTS).ping();
+      }
+    });
   }
 
   /**
    * Called when new breakpoints are encountered in polling the server, this method possibly creates
    * local representations of those breakpoints if there isn't one already at that line.
+   *
+   * <p>Must be called on the event dispatch thread. Callers with many breakpoints should call
+   * {@link #computeIdeRepresentations} on a background thread and then {@link
+   * #applyIdeRepresentations} on the event dispatch thread instead.
    */
   public void createIdeRepresentationsIfNecessary(
       @NotNull final List<Breakpoint> serverBreakpoints) {
-    boolean addedBreakpoint = false;
-    for (final Breakpoint serverBreakpoint : serverBreakpoints) {
+    applyIdeRepresentations(computeIdeRepresentations(serverBreakpoints));
+  }
+
+  /**
+   * Resolves the local files of the given server breakpoints that have no IDE representation yet.
+   * This does not change IDE state and may be called from any thread inside a read action.
+   */
+  @NotNull
+  public IdeRepresentations computeIdeRepresentations(
+      @NotNull List<Breakpoint> serverBreakpoints) {
+    Project currentProject = process.getXDebugSession().getProject();
+    IdeRepresentations representations = new IdeRepresentations();
+    for (Breakpoint serverBreakpoint : serverBreakpoints) {
       if (Boolean.TRUE.equals(serverBreakpoint.getIsFinalState())) {
         continue;
       }
 
       if (ideBreakpoints.containsKey(serverBreakpoint.getId())) {
-        final XBreakpoint xIdeBreakpoint = ideBreakpoints.get(serverBreakpoint.getId());
-        com.intellij.debugger.ui.breakpoints.Breakpoint cloudIdeBreakpoint =
-            BreakpointManager.getJavaBreakpoint(xIdeBreakpoint);
-
-        if (cloudIdeBreakpoint instanceof CloudLineBreakpointType.CloudLineBreakpoint) {
-          CloudLineBreakpointType.CloudLineBreakpoint cloudIdeLineBreakpoint =
-              (CloudLineBreakpointType.CloudLineBreakpoint) cloudIdeBreakpoint;
-          cloudIdeLineBreakpoint.setVerified(true);
-          cloudIdeLineBreakpoint.setErrorMessage(null);
-          process.updateBreakpointPresentation(cloudIdeLineBreakpoint);
-        }
+        representations.existing.add(serverBreakpoint);
+        representations.resolvedIds.add(serverBreakpoint.getId());
         continue;
       }
 
-      Project currentProject = process.getXDebugSession().getProject();
-      final XBreakpointManager manager = XDebuggerManager.getInstance(
-          process.getXDebugSession().getProject()).getBreakpointManager();
       if (serverBreakpoint.getLocation() == null) {
         continue;
       }
@@ -210,48 +256,85 @@ public class CloudBreakpointHandler
         continue;
       }
 
-      final VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
-      final int line = serverBreakpoint.getLocation().getLine() - 1;
+      VirtualFile file = fileResolver.getFileFromPath(currentProject, path);
       if (file == null) {
         continue;
       }
-      final XLineBreakpoint existingXIdeBreakpoint =
-          manager.findBreakpointAtLine(CloudLineBreakpointType.getInstance(), file, line);
-      if (existingXIdeBreakpoint != null && existingXIdeBreakpoint.isEnabled()) {
+      representations.missing.add(new ResolvedBreakpoint(
+          serverBreakpoint, file, serverBreakpoint.getLocation().getLine() - 1));
+      representations.resolvedIds.add(serverBreakpoint.getId());
+    }
+    return representations;
+  }
+
+  /**
+   * Verifies the IDE breakpoints of known server breakpoints and creates the missing ones in a
+   * single write action. Must be called on the event dispatch thread.
+   */
+  public void applyIdeRepresentations(@NotNull IdeRepresentations representations) {
+    for (Breakpoint serverBreakpoint : representations.existing) {
+      verify(ideBreakpoints.get(serverBreakpoint.getId()));
+    }
+
+    final XBreakpointManager manager = XDebuggerManager.getInstance(
+        process.getXDebugSession().getProject()).getBreakpointManager();
+    final List<ResolvedBreakpoint> toCreate = new ArrayList<ResolvedBreakpoint>();
+    for (ResolvedBreakpoint missing : representations.missing) {
+      // The IDE may have changed since the representations were computed.
+      XBreakpoint created = ideBreakpoints.get(missing.serverBreakpoint.getId());
+      if (created != null) {
+        verify(created);
         continue;
       }
-      if (existingXIdeBreakpoint != null) {
-        ApplicationManager.getApplication().runWriteAction(new Runnable() {
-          @Override
-          public void run() {
+      XLineBreakpoint existingXIdeBreakpoint = manager.findBreakpointAtLine(
+          CloudLineBreakpointType.getInstance(), missing.file, missing.line);
+      if (existingXIdeBreakpoint == null || !existingXIdeBreakpoint.isEnabled()) {
+        toCreate.add(missing);
+      }
+    }
+
+    if (toCreate.isEmpty()) {
+      return;
+    }
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+        for (ResolvedBreakpoint missing : toCreate) {
+          XLineBreakpoint existingXIdeBreakpoint = manager.findBreakpointAtLine(
+              CloudLineBreakpointType.getInstance(), missing.file, missing.line);
+          if (existingXIdeBreakpoint != null) {
             manager.removeBreakpoint(existingXIdeBreakpoint);
           }
-        });
-      }
 
-      final CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
-      properties.setCreatedByServer(true);
-      addedBreakpoint = true;
-      ApplicationManager.getApplication()
-          .runWriteAction(new DoUpdateIdeWithBreakpoint(manager,
-              file,
-              line,
+          CloudLineBreakpointProperties properties = new CloudLineBreakpointProperties();
+          properties.setCreatedByServer(true);
+          new DoUpdateIdeWithBreakpoint(manager,
+              missing.file,
+              missing.line,
               properties,
-              serverBreakpoint,
+              missing.serverBreakpoint,
               ideBreakpoints,
-              process));
-    }
-
-    if (addedBreakpoint) {
-      // If we added a new breakpoint, the snapshot list needs to be refreshed.
-      // However, since adding is async depending on the ability to invoke a write action,
-      // we want to queue the refresh after all the write actions we just did.
-      ApplicationManager.getApplication().runWriteAction(new Runnable() {
-        @Override
-        public void run() {
-          process.fireBreakpointsChanged();
+              process).run();
         }
-      });
+      }
+    });
+    // The snapshot list shows the new breakpoints, so it is refreshed once for the whole batch.
+    process.fireBreakpointsChanged();
+  }
+
+  private void verify(@Nullable XBreakpoint xIdeBreakpoint) {
+    if (xIdeBreakpoint == null) {
+      return;
+    }
+    com.intellij.debugger.ui.breakpoints.Breakpoint cloudIdeBreakpoint =
+        BreakpointManager.getJavaBreakpoint(xIdeBreakpoint);
+
+    if (cloudIdeBreakpoint instanceof CloudLineBreakpointType.CloudLineBreakpoint) {
+      CloudLineBreakpointType.CloudLineBreakpoint cloudIdeLineBreakpoint =
+          (CloudLineBreakpointType.CloudLineBreakpoint) cloudIdeBreakpoint;
+      cloudIdeLineBreakpoint.setVerified(true);
+      cloudIdeLineBreakpoint.setErrorMessage(null);
+      process.updateBreakpointPresentation(cloudIdeLineBreakpoint);
     }
   }
 
@@ -456,4 +539,46 @@ public class CloudBreakpointHandler
     // both cases we need to add it again, if it is re-enabled
     ideBreakpoint.getProperties().setAddedOnServer(false);
   }
+
+  /**
+   * The IDE work needed to mirror a batch of server breakpoints. Created by {@link
+   * #computeIdeRepresentations} and consumed by {@link #applyIdeRepresentations}.
+   */
+  public static final class IdeRepresentations {
+
+    // server breakpoints that already have an IDE breakpoint
+    private final List<Breakpoint> existing = new ArrayList<Breakpoint>();
+    // server breakpoints without an IDE breakpoint whose file exists locally
+    private final List<ResolvedBreakpoint> missing = new ArrayList<ResolvedBreakpoint>();
+    // ids of the breakpoints in either of the above
+    private final Set<String> resolvedIds = new HashSet<String>();
+
+    private IdeRepresentations() {
+    }
+
+    /**
+     * Returns true if the server breakpoint already had an IDE breakpoint or its file was found
+     * locally. Computing its representation again gives the same result, even if applying it
+     * created no IDE breakpoint because an enabled one already sits on its line.
+     */
+    public boolean isResolved(@NotNull Breakpoint serverBreakpoint) {
+      return resolvedIds.contains(serverBreakpoint.getId());
+    }
+  }
+
+  /**
+   * A server breakpoint together with its location in the local project.
+   */
+  private static final class ResolvedBreakpoint {
+
+    private final Breakpoint serverBreakpoint;
+    private final VirtualFile file;
+    private final int line;
+
+    ResolvedBreakpoint(@NotNull Breakpoint serverBreakpoint, @NotNull VirtualFile file, int line) {
+      this.serverBreakpoint = serverBreakpoint;
+      this.file = file;
+      this.line = line;
+    }
+  }
 }
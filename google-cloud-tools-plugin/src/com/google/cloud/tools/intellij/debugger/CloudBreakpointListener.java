@@ -16,10 +16,18 @@
 
 package com.google.cloud.tools.intellij.debugger;
 
+import org.jetbrains.annotations.NotNull;
+
 /**
  * Implement this interface to listen on update events to the cloud state.
  */
 public interface CloudBreakpointListener {
 
-  void onBreakpointListChanged(CloudDebugProcessState state);
+  /**
+   * Called when the server breakpoint list of {@code state} was updated.
+   *
+   * @param diff the breakpoints added, finalized, errored or removed by the update; empty if the
+   *     listeners are refreshed for a local change
+   */
+  void onBreakpointListChanged(CloudDebugProcessState state, @NotNull BreakpointListDiff diff);
 }
@@ -17,41 +17,38 @@
 package com.google.cloud.tools.intellij.debugger;
 
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
-import com.google.api.client.repackaged.com.google.common.base.Strings;
-import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
-import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees;
-import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees.Breakpoints;
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
-import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
-import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler.BreakpointWatcher;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler.Subscription;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
-import com.intellij.openapi.application.ApplicationAdapter;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.util.containers.ContainerUtil;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.net.SocketTimeoutException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Timer;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ScheduledFuture;
 
 /**
- * Queries multiple states on a fixed interval for updates. It notifies listeners when updates
- * occur.
+ * Watches the states that listen in the background for updates. The queries themselves are run by
+ * the {@link CloudDebugWatchScheduler}, which shares them with active debug sessions watching the
+ * same debuggee. It notifies listeners when updates occur.
  */
 public class CloudDebugGlobalPoller {
 
   private static final int DELAY_MS = 5000;
+  // With the scheduler's backoff, this gives up after a few minutes of failing queries.
+  private static final int MAX_CONSECUTIVE_FAILURES = 8;
   private static final Logger LOG = Logger.getInstance(CloudDebugGlobalPoller.class);
 
   /**
@@ -62,7 +59,10 @@ public class CloudDebugGlobalPoller {
 
   private final List<CloudBreakpointListener> breakpointListChangedListeners =
       new ArrayList<CloudBreakpointListener>();
-  private Timer watchTimer = null;
+  // guarded by this
+  private final Map<CloudDebugProcessState, Subscription> subscriptions =
+      new HashMap<CloudDebugProcessState, Subscription>();
+  private ScheduledFuture<?> syncJob = null;
 
   public void addListener(@NotNull CloudBreakpointListener listener) {
     breakpointListChangedListeners.add(listener);
@@ -76,18 +76,9 @@ public class CloudDebugGlobalPoller {
    * Begins listening on changes in the background.
    */
   public synchronized void startBackgroundListening() {
-    if (watchTimer == null) {
-      watchTimer = new Timer("cloud debug watcher", true /* isDaemon */);
-      watchTimer.schedule(new CloudDebugGlobalPollerTimerTask(this), DELAY_MS, DELAY_MS);
-
-      ApplicationManager.getApplication().addApplicationListener(new ApplicationAdapter() {
-        @Override
-        public void applicationExiting() {
-          if (watchTimer != null) {
-            watchTimer.cancel();
-          }
-        }
-      });
+    if (syncJob == null) {
+      syncJob = CloudDebugWatchScheduler.getInstance()
+          .scheduleWithFixedDelay(new CloudDebugGlobalPollerTimerTask(this), DELAY_MS);
     }
   }
 
@@ -95,106 +86,53 @@ public class CloudDebugGlobalPoller {
    * Stops listening on changes in the background.
    */
   public synchronized void stopBackgroundListening() {
-    if (watchTimer != null) {
-      watchTimer.cancel();
-      watchTimer = null;
+    if (syncJob != null) {
+      syncJob.cancel(false);
+      syncJob = null;
     }
-  }
-
-  private void queryServerForBreakpoints(CloudDebugProcessState state, Debugger client)
-      throws IOException {
-    if (state.getDebuggeeId() == null) {
-      throw new IllegalStateException("CloudDebugProcessState.getDebuggeeId() was null");
-    }
-    Debuggees debuggees = client.debuggees();
-    Breakpoints breakpoints = debuggees.breakpoints();
-    Breakpoints.List listRequest = breakpoints.list(state.getDebuggeeId())
-        .setIncludeInactive(Boolean.TRUE)
-        .setActionValue("CAPTURE")
-        .setStripResults(Boolean.TRUE)
-        .setWaitToken(state.getWaitToken());
-
-    ListBreakpointsResponse response = listRequest
-        .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-            .getClientVersionForCloudDebugger())
-        .execute();
-    List<Breakpoint> currentList = response.getBreakpoints();
-    String responseWaitToken = response.getNextWaitToken();
-    state.setWaitToken(responseWaitToken);
-
-    if (currentList != null) {
-      Collections.sort(currentList, BreakpointComparer.getDefaultInstance());
-    }
-
-    state.setCurrentServerBreakpointList(currentList != null
-        ? ContainerUtil.immutableList(currentList)
-        : ContainerUtil.immutableList(new ArrayList<Breakpoint>()));
-  }
-
-  private void fireBreakpointsChanged(@NotNull CloudDebugProcessState state) {
-    for (CloudBreakpointListener listener : breakpointListChangedListeners) {
-      listener.onBreakpointListChanged(state);
+    for (Subscription subscription : subscriptions.values()) {
+      CloudDebugWatchScheduler.getInstance().unwatch(subscription);
     }
+    subscriptions.clear();
   }
 
   /**
-   * pollForChanges sends a synchronous, hanging query to the server and compares the result to see
-   * if there are changes from the current state. Explanation of <a href="https://en.wikipedia.org/wiki/Push_technology#Long_polling">hanging
-   * query (a.k.a. long poll)</a>
+   * Makes the watched states match the given background listening states. New states are
+   * subscribed with the {@link CloudDebugWatchScheduler} and states that no longer listen in the
+   * background are unsubscribed.
    *
-   * @param state represents the target debuggee to query
+   * @param states the states that currently listen in the background
    */
-  void pollForChanges(@NotNull final CloudDebugProcessState state) {
-    final Debugger client = CloudDebuggerClient.getShortTimeoutClient(state);
-    if (client == null) {
-      if (state.isListenInBackground()) {
-        // state is supposed to listen, but does not have access to the backend
-        LOG.warn("CloudDebugProcessState is listening in the background but no debugger client "
-            + "could be retrieved => stop listening");
-        handleBreakpointQueryError(state,
-            GctBundle.message("clouddebug.background.listener.access.error.message",
-                state.getProject().getName()));
-        return;
-      } else {
-        // We should poll only states that listen in the background, reaching this branch is
-        // unexpected
-        LOG.error("Polling changes for a debug state that is not set to listen in the background");
-        return;
+  synchronized void updateWatchedStates(@NotNull List<CloudDebugProcessState> states) {
+    Iterator<Entry<CloudDebugProcessState, Subscription>> iterator =
+        subscriptions.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Entry<CloudDebugProcessState, Subscription> entry = iterator.next();
+      if (!states.contains(entry.getKey())) {
+        CloudDebugWatchScheduler.getInstance().unwatch(entry.getValue());
+        iterator.remove();
       }
     }
 
-    boolean changed = false;
-    try {
-      String oldToken = state.getWaitToken();
-
-      queryServerForBreakpoints(state, client);
-
-      String responseWaitToken = state.getWaitToken();
-      if (!Strings.isNullOrEmpty(responseWaitToken)) {
-        changed = oldToken == null || !responseWaitToken.equals(oldToken);
-      } else {
-        changed = !Strings.isNullOrEmpty(oldToken);
-      }
-    } catch (SocketTimeoutException ex) {
-      //noop, this is expected behavior.
-    } catch (GoogleJsonResponseException ex) {
-      // HTTP 409 is expected when backend responds to "hanging query" either for timeout or because
-      // a result is available (which will be retrieved via the subsequent query)
-      if (ex.getStatusCode() != HttpURLConnection.HTTP_CONFLICT) {
-        handleBreakpointQueryError(state, ex);
+    for (CloudDebugProcessState state : states) {
+      if (!subscriptions.containsKey(state)) {
+        subscriptions.put(state, CloudDebugWatchScheduler.getInstance()
+            .watch(state, false /* foreground */, new BackgroundWatcher(state)));
       }
-    } catch (IOException ex) {
-      LOG.warn("exception listing breakpoints", ex);
-      handleBreakpointQueryError(state, ex);
-      return;
-    } catch (Exception ex) {
-      LOG.error("exception listing breakpoints", ex);
-      handleBreakpointQueryError(state, ex);
-      return;
     }
+  }
 
-    if (changed) {
-      fireBreakpointsChanged(state);
+  private synchronized void stopWatching(@NotNull CloudDebugProcessState state) {
+    Subscription subscription = subscriptions.remove(state);
+    if (subscription != null) {
+      CloudDebugWatchScheduler.getInstance().unwatch(subscription);
+    }
+  }
+
+  private void fireBreakpointsChanged(@NotNull CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    for (CloudBreakpointListener listener : breakpointListChangedListeners) {
+      listener.onBreakpointListChanged(state, diff);
     }
   }
 
@@ -202,17 +140,13 @@ public class CloudDebugGlobalPoller {
       @NotNull Exception ex) {
     String message;
     String projectName = state.getProject().getName();
-    if (ex instanceof GoogleJsonResponseException) {
-      GoogleJsonResponseException jsonResponseException = (GoogleJsonResponseException) ex;
-      if (jsonResponseException.getStatusCode() == HttpURLConnection.HTTP_FORBIDDEN
-          || jsonResponseException.getStatusCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
-        message = GctBundle.message("clouddebug.background.listener.access.error.message",
-            projectName);
-      } else {
-        message = GctBundle.message("clouddebug.background.listener.general.error.message",
-            projectName,
-            jsonResponseException.getDetails().getMessage());
-      }
+    if (isAccessError(ex)) {
+      message = GctBundle.message("clouddebug.background.listener.access.error.message",
+          projectName);
+    } else if (ex instanceof GoogleJsonResponseException) {
+      message = GctBundle.message("clouddebug.background.listener.general.error.message",
+          projectName,
+          ((GoogleJsonResponseException) ex).getDetails().getMessage());
     } else {
       message = GctBundle.message("clouddebug.background.listener.general.error.message",
           projectName,
@@ -221,6 +155,15 @@ public class CloudDebugGlobalPoller {
     handleBreakpointQueryError(state, message);
   }
 
+  private static boolean isAccessError(@NotNull Exception ex) {
+    if (!(ex instanceof GoogleJsonResponseException)) {
+      return false;
+    }
+    int statusCode = ((GoogleJsonResponseException) ex).getStatusCode();
+    return statusCode == HttpURLConnection.HTTP_FORBIDDEN
+        || statusCode == HttpURLConnection.HTTP_UNAUTHORIZED;
+  }
+
   private void handleBreakpointQueryError(@NotNull CloudDebugProcessState state, String message) {
     state.setListenInBackground(false);
     String title = GctBundle.message("clouddebug.background.listener.error.title");
@@ -231,4 +174,49 @@ public class CloudDebugGlobalPoller {
             NotificationType.ERROR);
     Notifications.Bus.notify(notification, state.getProject());
   }
+
+
+  /**
+   * Applies the updates of the {@link CloudDebugWatchScheduler} to a background listening state.
+   */
+  private class BackgroundWatcher implements BreakpointWatcher {
+
+    private final CloudDebugProcessState state;
+
+    BackgroundWatcher(@NotNull CloudDebugProcessState state) {
+      this.state = state;
+    }
+
+    @Override
+    public void onBreakpointsChanged(@NotNull List<Breakpoint> breakpoints,
+        @Nullable String waitToken) {
+      state.setWaitToken(waitToken);
+      fireBreakpointsChanged(state, state.updateServerBreakpointList(breakpoints));
+    }
+
+    @Override
+    public void onClientUnavailable() {
+      // state is supposed to listen, but does not have access to the backend
+      LOG.warn("CloudDebugProcessState is listening in the background but no debugger client "
+          + "could be retrieved => stop listening");
+      stopWatching(state);
+      handleBreakpointQueryError(state,
+          GctBundle.message("clouddebug.background.listener.access.error.message",
+              state.getProject().getName()));
+    }
+
+    @Override
+    public void onError(@NotNull Exception ex, int consecutiveFailures) {
+      // Other errors may be transient, like a dropped connection, so the scheduler retries them
+      // with backoff for a while before we give up on the state.
+      if (isAccessError(ex) || consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+        LOG.warn("exception listing breakpoints => stop listening", ex);
+        stopWatching(state);
+        handleBreakpointQueryError(state, ex);
+      } else {
+        LOG.info("exception listing breakpoints, retrying (failure " + consecutiveFailures
+            + " of " + MAX_CONSECUTIVE_FAILURES + ")", ex);
+      }
+    }
+  }
 }
@@ -16,12 +16,11 @@
 
 package com.google.cloud.tools.intellij.debugger;
 
-import java.util.TimerTask;
-
 /**
- * Polls for changes form the Cloud Debugger backend.
+ * Periodically hands the current set of background listening states to the
+ * {@link CloudDebugGlobalPoller}, so that it watches for changes from the Cloud Debugger backend.
  */
-class CloudDebugGlobalPollerTimerTask extends TimerTask {
+class CloudDebugGlobalPollerTimerTask implements Runnable {
 
   private final CloudDebugProcessStateCollector stateCollector;
   private CloudDebugGlobalPoller cloudDebugGlobalPoller;
@@ -33,8 +32,6 @@ class CloudDebugGlobalPollerTimerTask extends TimerTask {
 
   @Override
   public void run() {
-    for (CloudDebugProcessState state : stateCollector.getBackgroundListeningStates()) {
-      cloudDebugGlobalPoller.pollForChanges(state);
-    }
+    cloudDebugGlobalPoller.updateWatchedStates(stateCollector.getBackgroundListeningStates());
   }
 }
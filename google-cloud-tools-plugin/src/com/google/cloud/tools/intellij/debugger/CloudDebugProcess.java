@@ -19,6 +19,7 @@ package com.google.cloud.tools.intellij.debugger;
 import com.google.api.client.repackaged.com.google.common.annotations.VisibleForTesting;
 import com.google.api.client.repackaged.com.google.common.base.Strings;
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.cloud.tools.intellij.debugger.CloudBreakpointHandler.IdeRepresentations;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessStateController.ResolveBreakpointHandler;
 import com.google.cloud.tools.intellij.debugger.CloudLineBreakpointType.CloudLineBreakpoint;
 import com.google.cloud.tools.intellij.debugger.actions.CloudDebugHelpAction;
@@ -45,11 +46,13 @@ import com.intellij.openapi.actionSystem.Anchor;
 import com.intellij.openapi.actionSystem.Constraints;
 import com.intellij.openapi.actionSystem.DefaultActionGroup;
 import com.intellij.openapi.actionSystem.IdeActions;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.ui.ComponentWithActions;
 import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Computable;
 import com.intellij.ui.content.Content;
 import com.intellij.xdebugger.XDebugProcess;
 import com.intellij.xdebugger.XDebugSession;
@@ -70,8 +73,13 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.java.debugger.JavaDebuggerEditorsProvider;
 
 import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.swing.SwingUtilities;
 
@@ -98,6 +106,10 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
   private CloudDebugProcessStateController stateController;
   private XBreakpointHandler<?>[] breakpointHandlers;
   private volatile String navigatedSnapshotId;
+  // ids of pending server breakpoints whose local file could not be found yet, retried on every
+  // change
+  private final Set<String> unresolvedBreakpointIds =
+      Collections.synchronizedSet(new HashSet<String>());
 
   public CloudDebugProcess(@NotNull XDebugSession session) {
     super(session);
@@ -145,7 +157,8 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
         }
 
         CloudDebugHistoricalSnapshots timeline = new CloudDebugHistoricalSnapshots(handler);
-        timeline.onBreakpointListChanged(getProcessState());
+        timeline.onBreakpointListChanged(getProcessState(),
+            BreakpointListDiff.unchanged(getProcessState().getCurrentServerBreakpointList()));
         Content snapshots = layout
             .createContent(timeline.getTabTitle(), (ComponentWithActions) timeline,
                 timeline.getTabTitle(),
@@ -260,10 +273,46 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
     // Start breakpoints refresh job on first use.
     getStateController().addListener(this);
     getStateController().startBackgroundListening();
-    SwingUtilities.invokeLater(new Runnable() {
+    createIdeRepresentationsAsync(getCurrentBreakpointList());
+  }
+
+  /**
+   * Mirrors the given server breakpoints in the IDE. Their local files are resolved on a pooled
+   * thread, so only the breakpoint changes themselves run on the event dispatch thread.
+   *
+   * <p>Pending breakpoints stay marked as unresolved until their local file is found, so that a
+   * breakpoint whose file could not be resolved yet is retried on the next change. Once found, a
+   * breakpoint is not retried even if it got no IDE representation, such as when an enabled
+   * breakpoint already sits on its line.
+   */
+  private void createIdeRepresentationsAsync(@NotNull final List<Breakpoint> serverBreakpoints) {
+    for (Breakpoint serverBreakpoint : serverBreakpoints) {
+      if (!Boolean.TRUE.equals(serverBreakpoint.getIsFinalState())) {
+        unresolvedBreakpointIds.add(serverBreakpoint.getId());
+      }
+    }
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
       @Override
       public void run() {
-        getBreakpointHandler().createIdeRepresentationsIfNecessary(getCurrentBreakpointList());
+        final IdeRepresentations representations = ApplicationManager.getApplication()
+            .runReadAction(new Computable<IdeRepresentations>() {
+              @Override
+              public IdeRepresentations compute() {
+                return getBreakpointHandler().computeIdeRepresentations(serverBreakpoints);
+              }
+            });
+        SwingUtilities.invokeLater(new Runnable() {
+          @Override
+          public void run() {
+            getBreakpointHandler().applyIdeRepresentations(representations);
+            for (Breakpoint serverBreakpoint : serverBreakpoints) {
+              if (representations.isResolved(serverBreakpoint)
+                  || getBreakpointHandler().getXBreakpoint(serverBreakpoint) != null) {
+                unresolvedBreakpointIds.remove(serverBreakpoint.getId());
+              }
+            }
+          }
+        });
       }
     });
   }
@@ -288,6 +337,14 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
     });
   }
 
+  /**
+   * Loads the given final snapshots in the background so that navigating to them is immediate.
+   * Replaces any earlier prefetch request.
+   */
+  public void prefetchSnapshots(@NotNull Collection<String> ids) {
+    getStateController().prefetchFinalBreakpoints(ids);
+  }
+
   /**
    * Finds the snapshot associated with the given id and sets it as the active snapshot in the
    * current debug session.
@@ -352,43 +409,52 @@ public class CloudDebugProcess extends XDebugProcess implements CloudBreakpointL
    * breakpoint and move the debug session to that snapshot if nothing has yet been selected.
    */
   @Override
-  public void onBreakpointListChanged(CloudDebugProcessState state) {
-    // We always snap the current breakpoint list before working on it.
-    final List<Breakpoint> currentList = getCurrentBreakpointList();
-    if (currentList != null) {
-      SwingUtilities.invokeLater(new Runnable() {
-        @Override
-        public void run() {
-          getBreakpointHandler().createIdeRepresentationsIfNecessary(currentList);
-        }
-      });
-      for (Breakpoint breakpoint : currentList) {
-        final XBreakpoint breakpointHit = getBreakpointHandler().getEnabledXBreakpoint(breakpoint);
-        if (breakpointHit == null) {
-          continue;
-        }
-
-        if (Boolean.TRUE.equals(breakpoint.getIsFinalState())
-            && (breakpoint.getStatus() == null || !Boolean.TRUE
-                .equals(breakpoint.getStatus().getIsError()))) {
-          if (!getXDebugSession().isStopped()) {
-            getBreakpointHandler().setStateToDisabled(breakpoint);
-          }
-        } else if (Boolean.TRUE.equals(breakpoint.getIsFinalState())) {
-          // then this is an error state breakpoint.
-          com.intellij.debugger.ui.breakpoints.Breakpoint cloudBreakpoint =
-              BreakpointManager.getJavaBreakpoint(breakpointHit);
-          if (breakpoint.getStatus() != null
-              && Boolean.TRUE.equals(breakpoint.getStatus().getIsError())
-              && cloudBreakpoint instanceof CloudLineBreakpointType.CloudLineBreakpoint) {
-            CloudLineBreakpoint cloudLineBreakpoint = (CloudLineBreakpoint) cloudBreakpoint;
-            cloudLineBreakpoint
-                .setErrorMessage(BreakpointUtil.getUserErrorMessage(breakpoint.getStatus()));
-            updateBreakpointPresentation(cloudLineBreakpoint);
-          }
+  public void onBreakpointListChanged(CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    // Breakpoints that didn't change were handled by earlier notifications, so only the deltas
+    // need work here, plus the breakpoints that could not be mirrored in the IDE before.
+    for (Breakpoint breakpoint : diff.getRemoved()) {
+      unresolvedBreakpointIds.remove(breakpoint.getId());
+    }
+    for (Breakpoint breakpoint : diff.getFinalized()) {
+      unresolvedBreakpointIds.remove(breakpoint.getId());
+    }
+    List<Breakpoint> toResolve = new ArrayList<Breakpoint>(diff.getAdded());
+    if (!unresolvedBreakpointIds.isEmpty()) {
+      Set<String> addedIds = new HashSet<String>();
+      for (Breakpoint breakpoint : diff.getAdded()) {
+        addedIds.add(breakpoint.getId());
+      }
+      for (Breakpoint breakpoint : diff.getBreakpoints()) {
+        if (unresolvedBreakpointIds.contains(breakpoint.getId())
+            && !addedIds.contains(breakpoint.getId())) {
+          toResolve.add(breakpoint);
         }
       }
     }
+    if (!toResolve.isEmpty()) {
+      createIdeRepresentationsAsync(toResolve);
+    }
+    for (Breakpoint breakpoint : diff.getFinalized()) {
+      if (getBreakpointHandler().getEnabledXBreakpoint(breakpoint) != null
+          && !getXDebugSession().isStopped()) {
+        getBreakpointHandler().setStateToDisabled(breakpoint);
+      }
+    }
+    for (Breakpoint breakpoint : diff.getErrored()) {
+      final XBreakpoint breakpointHit = getBreakpointHandler().getEnabledXBreakpoint(breakpoint);
+      if (breakpointHit == null) {
+        continue;
+      }
+      com.intellij.debugger.ui.breakpoints.Breakpoint cloudBreakpoint =
+          BreakpointManager.getJavaBreakpoint(breakpointHit);
+      if (cloudBreakpoint instanceof CloudLineBreakpointType.CloudLineBreakpoint) {
+        CloudLineBreakpoint cloudLineBreakpoint = (CloudLineBreakpoint) cloudBreakpoint;
+        cloudLineBreakpoint
+            .setErrorMessage(BreakpointUtil.getUserErrorMessage(breakpoint.getStatus()));
+        updateBreakpointPresentation(cloudLineBreakpoint);
+      }
+    }
   }
 
   void updateBreakpointPresentation(CloudLineBreakpoint cloudLineBreakpoint) {
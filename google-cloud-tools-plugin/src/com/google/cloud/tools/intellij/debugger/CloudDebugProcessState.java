@@ -34,6 +34,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * CloudDebugProcessState is serializable state that stores the current set of snapshots for a given
@@ -46,6 +47,8 @@ public class CloudDebugProcessState extends UserDataHolderBase implements RunPro
   // retrieved on different threads with otherwise no synchronization.
   private volatile ImmutableList<Breakpoint> currentServerBreakpointList =
       ContainerUtil.immutableList(new ArrayList<Breakpoint>());
+  // Tracks the server list by breakpoint id so updates only sort and report what changed.
+  private final BreakpointListDiffer breakpointListDiffer = new BreakpointListDiffer();
   // DebuggeeId is defined by the cloud debugger service to represent a single target service
   // that we can debug.
   private String debuggeeId;
@@ -122,7 +125,22 @@ public class CloudDebugProcessState extends UserDataHolderBase implements RunPro
    * Updates the state (breakpoint list).
    */
   public void setCurrentServerBreakpointList(ImmutableList<Breakpoint> newBreakpointList) {
-    currentServerBreakpointList = newBreakpointList;
+    updateServerBreakpointList(newBreakpointList);
+  }
+
+  /**
+   * Updates the state with a breakpoint list as returned by the server and returns the changes
+   * relative to the previous list.
+   *
+   * @param newBreakpointList the server breakpoints in any order, or null if there are none
+   * @return the breakpoints added, finalized, errored or removed by this update
+   */
+  @NotNull
+  public synchronized BreakpointListDiff updateServerBreakpointList(
+      @Nullable List<Breakpoint> newBreakpointList) {
+    BreakpointListDiff diff = breakpointListDiffer.update(newBreakpointList);
+    currentServerBreakpointList = diff.getBreakpoints();
+    return diff;
   }
 
   /**
@@ -25,25 +25,28 @@ import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
 import com.google.api.services.clouddebugger.v2.model.SetBreakpointResponse;
 import com.google.api.services.clouddebugger.v2.model.SourceLocation;
 import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler.BreakpointWatcher;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler.Subscription;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.util.containers.ContainerUtil;
-import com.intellij.util.containers.HashSet;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.SocketTimeoutException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * A controller is responsible for keeping one {@link CloudDebugProcessState} object up to date and
@@ -52,14 +55,22 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class CloudDebugProcessStateController {
 
-  private static final int INITIAL_DELAY_MS = 2000;
   private static final Logger LOG = Logger.getInstance(CloudDebugProcessStateController.class);
-  private static final int PERIOD_MS = 500;
   private final List<CloudBreakpointListener> breakpointListChangedListeners =
       new ArrayList<CloudBreakpointListener>();
   private final ConcurrentHashMap<String, Breakpoint> fullFinalBreakpoints =
       new ConcurrentHashMap<String, Breakpoint>();
-  private volatile Timer listBreakpointsJob;
+  // Snapshot loads in progress, so that a click joins a running prefetch instead of repeating it.
+  private final ConcurrentHashMap<String, FutureTask<Breakpoint>> hydrations =
+      new ConcurrentHashMap<String, FutureTask<Breakpoint>>();
+  private final SnapshotPrefetcher snapshotPrefetcher =
+      new SnapshotPrefetcher(new SnapshotPrefetcher.SnapshotLoader() {
+        @Override
+        public void load(@NotNull String id) throws IOException {
+          hydrateFinalBreakpoint(id);
+        }
+      });
+  private volatile Subscription listBreakpointsSubscription;
   private CloudDebugProcessState state;
 
   protected CloudDebugProcessStateController() {
@@ -125,11 +136,21 @@ public class CloudDebugProcessStateController {
   }
 
   /**
-   * Fires a change notification to all subscribers.
+   * Fires a change notification to all subscribers for a local change that didn't alter the server
+   * breakpoint list.
    */
   public void fireBreakpointsChanged() {
+    fireBreakpointsChanged(BreakpointListDiff.unchanged(state.getCurrentServerBreakpointList()));
+  }
+
+  /**
+   * Fires a change notification to all subscribers.
+   *
+   * @param diff the changes to the server breakpoint list
+   */
+  public void fireBreakpointsChanged(@NotNull BreakpointListDiff diff) {
     for (CloudBreakpointListener listener : breakpointListChangedListeners) {
-      listener.onBreakpointListChanged(state);
+      listener.onBreakpointListChanged(state, diff);
     }
   }
 
@@ -155,7 +176,9 @@ public class CloudDebugProcessStateController {
   }
 
   /**
-   * Returns a fully realized {@link Breakpoint} with all results possibly asynchronously.
+   * Returns a fully realized {@link Breakpoint} with all results possibly asynchronously. Final
+   * snapshots are looked up in memory, then in the {@link CloudDebugSnapshotStore} and are only
+   * fetched from the server if neither has them.
    */
   public void resolveBreakpointAsync(@NotNull final String id,
       @NotNull final ResolveBreakpointHandler handler) {
@@ -168,12 +191,6 @@ public class CloudDebugProcessStateController {
       handler.onError(GctBundle.getString("clouddebug.invalid.state"));
       return;
     }
-    final Debugger client = CloudDebuggerClient.getLongTimeoutClient(state);
-    if (client == null) {
-      LOG.warn("no client available attempting to resolveBreakpointAsync");
-      handler.onError(GctBundle.getString("clouddebug.bad.login.message"));
-      return;
-    }
     List<Breakpoint> currentList = state.getCurrentServerBreakpointList();
     for (Breakpoint serverBreakpointCandidate : currentList) {
       if (serverBreakpointCandidate.getId().equals(id)
@@ -187,21 +204,17 @@ public class CloudDebugProcessStateController {
       @Override
       public void run() {
         //At this point, the user has selected a final state breakpoint which is not yet hydrated.
-        //So we query the server to get this final on a worker thread and then run the runnable
-        // back on ui
-        GetBreakpointResponse response;
+        //We load it on a worker thread, joining a prefetch of the same snapshot if one is running.
         try {
-          response = client.debuggees().breakpoints().get(state.getDebuggeeId(), id)
-              .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                  .getClientVersionForCloudDebugger())
-              .execute();
-          Breakpoint result = response.getBreakpoint();
+          Breakpoint result = hydrateFinalBreakpoint(id);
           if (result != null) {
-            fullFinalBreakpoints.put(id, result);
             handler.onSuccess(result);
           } else {
             handler.onError(GctBundle.getString("clouddebug.no.response"));
           }
+        } catch (MissingClientException ex) {
+          LOG.warn("no client available attempting to resolveBreakpointAsync");
+          handler.onError(GctBundle.getString("clouddebug.bad.login.message"));
         } catch (IOException ex) {
           LOG.warn("IOException hydrating a snapshot.  User may have deleted the snapshot", ex);
           handler.onError(ex.toString());
@@ -210,6 +223,101 @@ public class CloudDebugProcessStateController {
     });
   }
 
+  /**
+   * Loads the given final snapshots in the background so that selecting them later doesn't wait
+   * on the network. Queued loads of snapshots missing from {@code ids} are cancelled.
+   *
+   * @param ids the ids of the final snapshots that are currently of interest, e.g. visible rows
+   */
+  public void prefetchFinalBreakpoints(@NotNull Collection<String> ids) {
+    if (state == null || !isBackgroundListening()) {
+      return;
+    }
+    List<String> missing = new ArrayList<String>();
+    for (String id : ids) {
+      if (!fullFinalBreakpoints.containsKey(id)) {
+        missing.add(id);
+      }
+    }
+    snapshotPrefetcher.prefetch(missing);
+  }
+
+  /**
+   * Returns the hydrated final snapshot from memory, disk or the server, in that order. Concurrent
+   * calls for the same id share one load.
+   *
+   * @return the snapshot, or null if the server returned none
+   * @throws MissingClientException if the snapshot has to be fetched but no client is available
+   */
+  @Nullable
+  private Breakpoint hydrateFinalBreakpoint(@NotNull final String id) throws IOException {
+    FutureTask<Breakpoint> task = new FutureTask<Breakpoint>(new Callable<Breakpoint>() {
+      @Override
+      public Breakpoint call() throws IOException {
+        return loadFinalBreakpoint(id);
+      }
+    });
+    FutureTask<Breakpoint> inFlight = hydrations.putIfAbsent(id, task);
+    if (inFlight == null) {
+      inFlight = task;
+      try {
+        task.run();
+      } finally {
+        hydrations.remove(id, task);
+      }
+    }
+
+    try {
+      return inFlight.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted while hydrating snapshot " + id);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new IOException(ex.getCause());
+    }
+  }
+
+  @Nullable
+  private Breakpoint loadFinalBreakpoint(@NotNull String id) throws IOException {
+    Breakpoint cached = fullFinalBreakpoints.get(id);
+    if (cached != null) {
+      return cached;
+    }
+
+    //Final snapshots don't change, so one stored by an earlier session can be used as is.
+    String debuggeeId = state.getDebuggeeId();
+    if (debuggeeId != null) {
+      Breakpoint stored = CloudDebugSnapshotStore.getInstance().get(debuggeeId, id);
+      if (stored != null) {
+        fullFinalBreakpoints.put(id, stored);
+        return stored;
+      }
+    }
+
+    Debugger client = CloudDebuggerClient.getLongTimeoutClient(state);
+    if (client == null) {
+      throw new MissingClientException();
+    }
+    GetBreakpointResponse response = client.debuggees().breakpoints().get(debuggeeId, id)
+        .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+            .getClientVersionForCloudDebugger())
+        .execute();
+    Breakpoint result = response.getBreakpoint();
+    if (result != null) {
+      fullFinalBreakpoints.put(id, result);
+      if (debuggeeId != null) {
+        CloudDebugSnapshotStore.getInstance().put(debuggeeId, result);
+      }
+    }
+    return result;
+  }
+
   /**
    * Called from the {@link CloudDebugProcessHandler} to set a breakpoint.
    */
@@ -274,43 +382,54 @@ public class CloudDebugProcessStateController {
   }
 
   /**
-   * Begins background listening from the server.  When changes occur, listeners are notified.
+   * Begins background listening from the server.  When changes occur, listeners are notified. The
+   * queries are run by the {@link CloudDebugWatchScheduler}.
    */
-  public void startBackgroundListening() {
+  public synchronized void startBackgroundListening() {
     assert state != null;
-    if (listBreakpointsJob == null) {
-      listBreakpointsJob = new Timer("list breakpoints");
-      final Runnable runnable = new Runnable() {
-        @Override
-        public void run() {
-          waitForChanges();
-          Timer timer = listBreakpointsJob;
-          if (timer != null) {
-            try {
-              // We run after a short period to act as a throttle.
-              timer.schedule(new RunnableTimerTask(this), PERIOD_MS);
-            } catch (IllegalStateException ex) {
-              //This can happen in rare race conditions and isn't an error.  We just ignore it.
+    if (listBreakpointsSubscription == null) {
+      listBreakpointsSubscription = CloudDebugWatchScheduler.getInstance()
+          .watch(state, true /* foreground */, new BreakpointWatcher() {
+            @Override
+            public void onBreakpointsChanged(@NotNull List<Breakpoint> breakpoints,
+                @Nullable String waitToken) {
+              //The cancel can happen any time triggered on the ui thread from the user.  We don't
+              //want to change any state after that.
+              if (!isBackgroundListening()) {
+                return;
+              }
+              state.setWaitToken(waitToken);
+              BreakpointListDiff diff = state.updateServerBreakpointList(breakpoints);
+              pruneBreakpointCache(diff.getRemoved());
+              fireBreakpointsChanged(diff);
             }
-          }
-        }
-      };
-      listBreakpointsJob.schedule(new RunnableTimerTask(runnable), INITIAL_DELAY_MS);
+
+            @Override
+            public void onClientUnavailable() {
+              LOG.info("no client available attempting to checkForChanges");
+            }
+
+            @Override
+            public void onError(@NotNull Exception ex, int consecutiveFailures) {
+              LOG.warn("exception listing breakpoints", ex);
+            }
+          });
     }
   }
 
   /**
    * Stops background listening.
    */
-  public void stopBackgroundListening() {
-    if (listBreakpointsJob != null) {
-      listBreakpointsJob.cancel();
+  public synchronized void stopBackgroundListening() {
+    if (listBreakpointsSubscription != null) {
+      CloudDebugWatchScheduler.getInstance().unwatch(listBreakpointsSubscription);
     }
-    listBreakpointsJob = null;
+    listBreakpointsSubscription = null;
+    snapshotPrefetcher.cancelAll();
   }
 
   boolean isBackgroundListening() {
-    return listBreakpointsJob != null;
+    return listBreakpointsSubscription != null;
   }
 
   /**
@@ -328,9 +447,9 @@ public class CloudDebugProcessStateController {
     }
 
     String tokenToSend = state.getWaitToken();
-    List<Breakpoint> currentList;
+    BreakpointListDiff diff;
     try {
-      currentList = queryServerForBreakpoints(state, client, tokenToSend);
+      diff = queryServerForBreakpoints(state, client, tokenToSend);
     } catch (SocketTimeoutException ex) {
       // Timeout is expected on a hanging get.
       return;
@@ -339,7 +458,7 @@ public class CloudDebugProcessStateController {
       // we need to requery.
       if (ex.getDetails().getCode() == 409) {
         try {
-          currentList = queryServerForBreakpoints(state, client, tokenToSend);
+          diff = queryServerForBreakpoints(state, client, tokenToSend);
         } catch (IOException ioException) {
           LOG.warn("exception listing breakpoints", ioException);
           return;
@@ -353,88 +472,61 @@ public class CloudDebugProcessStateController {
       return;
     }
 
-    if (!isBackgroundListening()) {
+    if (diff == null || !isBackgroundListening()) {
       return;
     }
 
     //tokenToSend can be null on first initialization -- where we shouldn't fire events or need
     // to do pruning.
     if (!Strings.isNullOrEmpty(tokenToSend)) {
-      pruneBreakpointCache(currentList);
-      fireBreakpointsChanged();
+      pruneBreakpointCache(diff.getRemoved());
+      fireBreakpointsChanged(diff);
     }
   }
 
-  private List<Breakpoint> queryServerForBreakpoints(CloudDebugProcessState state,
+  /**
+   * Sends a single list query. Repeated polling is left to the {@link CloudDebugWatchScheduler}.
+   *
+   * @return the changes applied to the state, or null if listening was cancelled meanwhile
+   */
+  @Nullable
+  private BreakpointListDiff queryServerForBreakpoints(CloudDebugProcessState state,
       Debugger client,
       String tokenToSend) throws IOException {
-    List<Breakpoint> currentList = null;
-
-    String responseWaitToken = tokenToSend;
-
-    while (tokenToSend == null || tokenToSend.equals(responseWaitToken)) {
-      if (tokenToSend != null && !isBackgroundListening()) {
-        return null;
-      }
-
-      ListBreakpointsResponse response =
-          client.debuggees().breakpoints().list(state.getDebuggeeId())
-              .setIncludeInactive(Boolean.TRUE).setActionValue("CAPTURE")
-              .setStripResults(Boolean.TRUE)
-              .setWaitToken(CloudDebugConfigType.useWaitToken() ? tokenToSend : null)
-              .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                  .getClientVersionForCloudDebugger())
-              .execute();
-
-      //We are running on a background thread and the cancel can happen any time triggered
-      //on the ui thread from the user.  We want to short circuit immediately and not change
-      //any state.  If we processed this result, it could incorrectly update the state and mess
-      //up the background watcher.
-      if (tokenToSend != null && !isBackgroundListening()) {
-        return null;
-      }
-
-      currentList = response.getBreakpoints();
-      responseWaitToken = response.getNextWaitToken();
-      if (tokenToSend == null) {
-        break;
-      }
-
-      if (!CloudDebugConfigType.useWaitToken() && tokenToSend.equals(responseWaitToken)) {
-        try {
-          //our fallback polling mode has a 1 second loop.
-          Thread.currentThread().sleep(1000);
-        } catch (InterruptedException ex) {
-          return null;
-        }
-      }
+    ListBreakpointsResponse response =
+        client.debuggees().breakpoints().list(state.getDebuggeeId())
+            .setIncludeInactive(Boolean.TRUE).setActionValue("CAPTURE")
+            .setStripResults(Boolean.TRUE)
+            .setWaitToken(CloudDebugConfigType.useWaitToken() ? tokenToSend : null)
+            .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+                .getClientVersionForCloudDebugger())
+            .execute();
+
+    //The cancel can happen any time triggered on the ui thread from the user.  We want to short
+    //circuit immediately and not change any state.
+    if (tokenToSend != null && !isBackgroundListening()) {
+      return null;
     }
-    state.setWaitToken(responseWaitToken);
-
-    if (currentList != null) {
-      Collections.sort(currentList, BreakpointComparer.getDefaultInstance());
-    }
-
-    state.setCurrentServerBreakpointList(currentList != null
-        ? ContainerUtil.immutableList(currentList)
-        : ContainerUtil.immutableList(new ArrayList<Breakpoint>()));
 
-    return currentList;
+    state.setWaitToken(response.getNextWaitToken());
+    return state.updateServerBreakpointList(response.getBreakpoints());
   }
 
-  private void pruneBreakpointCache(List<Breakpoint> currentList) {
-    //Clear out the obsolete breakpoint cache for old items.
-    HashSet<String> toRemoveSet = new HashSet<String>();
-    toRemoveSet.addAll(fullFinalBreakpoints.keySet());
-    if (!toRemoveSet.isEmpty() && currentList != null) {
-      for (Breakpoint bp : currentList) {
-        toRemoveSet.remove(bp.getId());
+  private void pruneBreakpointCache(@NotNull List<Breakpoint> removedBreakpoints) {
+    //Clear out the obsolete breakpoint cache for items no longer on the server.
+    String debuggeeId = state.getDebuggeeId();
+    for (Breakpoint breakpoint : removedBreakpoints) {
+      fullFinalBreakpoints.remove(breakpoint.getId());
+      if (debuggeeId != null) {
+        CloudDebugSnapshotStore.getInstance().remove(debuggeeId, breakpoint.getId());
       }
     }
+  }
 
-    for (String idToRemove : toRemoveSet) {
-      fullFinalBreakpoints.remove(idToRemove);
-    }
+  /**
+   * Thrown when a snapshot has to be fetched from the server but no debugger client is available.
+   */
+  private static class MissingClientException extends IOException {
   }
 
   interface SetBreakpointHandler {
@@ -450,18 +542,4 @@ public class CloudDebugProcessStateController {
 
     void onError(String errorMessage);
   }
-
-  static class RunnableTimerTask extends TimerTask {
-
-    private final Runnable runnable;
-
-    public RunnableTimerTask(@NotNull Runnable runnable) {
-      this.runnable = runnable;
-    }
-
-    @Override
-    public void run() {
-      runnable.run();
-    }
-  }
 }
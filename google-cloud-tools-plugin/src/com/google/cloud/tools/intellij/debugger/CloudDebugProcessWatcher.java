@@ -83,7 +83,12 @@ public class CloudDebugProcessWatcher implements CloudBreakpointListener {
   }
 
   @Override
-  public void onBreakpointListChanged(final CloudDebugProcessState state) {
+  public void onBreakpointListChanged(final CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    if (diff.isEmpty()) {
+      // Only the wait token moved; there is nothing new to tell the user about.
+      return;
+    }
     SwingUtilities.invokeLater(new Runnable() {
       @Override
       public void run() {
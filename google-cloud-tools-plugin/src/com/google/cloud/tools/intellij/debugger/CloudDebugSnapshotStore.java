@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.StreamUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps fully hydrated final snapshots on disk under the IDE system directory, so that reopening a
+ * snapshot after a restart does not need a round trip to the server.
+ *
+ * <p>Final snapshots never change on the server, so entries are never refreshed. Snapshots are
+ * stored as gzipped JSON, one file per breakpoint in a directory per debuggee. The least recently
+ * used files are deleted once the store grows beyond its size cap.
+ */
+public class CloudDebugSnapshotStore {
+
+  private static final Logger LOG = Logger.getInstance(CloudDebugSnapshotStore.class);
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final long DEFAULT_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+  private static final String FILE_SUFFIX = ".json.gz";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private final File rootDirectory;
+  private final long maxSizeBytes;
+  // Sizes of the stored files in least to most recently used order, loaded on first access.
+  private LinkedHashMap<File, Long> index;
+  private long totalSizeBytes;
+
+  /**
+   * Creates the store in the "cloud-debugger/snapshots" folder of the IDE system directory.
+   */
+  public CloudDebugSnapshotStore() {
+    this(new File(PathManager.getSystemPath(), "cloud-debugger" + File.separator + "snapshots"),
+        DEFAULT_MAX_SIZE_BYTES);
+  }
+
+  @VisibleForTesting
+  CloudDebugSnapshotStore(@NotNull File rootDirectory, long maxSizeBytes) {
+    this.rootDirectory = rootDirectory;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Returns an instance of this from the container.
+   */
+  public static CloudDebugSnapshotStore getInstance() {
+    return ServiceManager.getService(CloudDebugSnapshotStore.class);
+  }
+
+  /**
+   * Returns the stored snapshot, or null if it was never stored, was evicted or can't be read.
+   */
+  @Nullable
+  public synchronized Breakpoint get(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    File file = getFile(debuggeeId, breakpointId);
+    if (!getIndex().containsKey(file)) {
+      return null;
+    }
+
+    InputStream in = null;
+    try {
+      in = new GZIPInputStream(new BufferedInputStream(new FileInputStream(file)));
+      Breakpoint breakpoint = JSON_FACTORY.fromInputStream(in, Breakpoint.class);
+      // The modification time records recency so that the LRU order survives restarts.
+      if (!file.setLastModified(System.currentTimeMillis())) {
+        LOG.debug("could not touch snapshot file " + file);
+      }
+      // marks the entry as most recently used
+      getIndex().get(file);
+      return breakpoint;
+    } catch (IOException ex) {
+      LOG.warn("could not read stored snapshot " + file, ex);
+      delete(file);
+      return null;
+    } finally {
+      StreamUtil.closeStream(in);
+    }
+  }
+
+  /**
+   * Stores a hydrated snapshot. Breakpoints that are not final are ignored because their contents
+   * still change.
+   */
+  public synchronized void put(@NotNull String debuggeeId, @NotNull Breakpoint breakpoint) {
+    if (!Boolean.TRUE.equals(breakpoint.getIsFinalState()) || breakpoint.getId() == null) {
+      return;
+    }
+
+    File file = getFile(debuggeeId, breakpoint.getId());
+    File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+    OutputStream out = null;
+    try {
+      FileUtil.createParentDirs(file);
+      out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      out.write(JSON_FACTORY.toByteArray(breakpoint));
+      out.close();
+      out = null;
+      delete(file);
+      FileUtil.rename(tempFile, file);
+    } catch (IOException ex) {
+      LOG.warn("could not store snapshot " + file, ex);
+      FileUtil.delete(tempFile);
+      return;
+    } finally {
+      StreamUtil.closeStream(out);
+    }
+
+    long size = file.length();
+    getIndex().put(file, size);
+    totalSizeBytes += size;
+    evictIfNecessary();
+  }
+
+  /**
+   * Deletes a stored snapshot, for example after it was deleted on the server.
+   */
+  public synchronized void remove(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    File file = getFile(debuggeeId, breakpointId);
+    if (getIndex().containsKey(file)) {
+      delete(file);
+    }
+  }
+
+  @VisibleForTesting
+  synchronized long getTotalSizeBytes() {
+    getIndex();
+    return totalSizeBytes;
+  }
+
+  private void evictIfNecessary() {
+    Iterator<Map.Entry<File, Long>> iterator = getIndex().entrySet().iterator();
+    while (totalSizeBytes > maxSizeBytes && iterator.hasNext()) {
+      Map.Entry<File, Long> eldest = iterator.next();
+      iterator.remove();
+      totalSizeBytes -= eldest.getValue();
+      FileUtil.delete(eldest.getKey());
+    }
+  }
+
+  private void delete(@NotNull File file) {
+    Long size = getIndex().remove(file);
+    if (size != null) {
+      totalSizeBytes -= size;
+    }
+    FileUtil.delete(file);
+  }
+
+  @NotNull
+  private LinkedHashMap<File, Long> getIndex() {
+    if (index == null) {
+      index = new LinkedHashMap<File, Long>(16, 0.75f, true /* accessOrder */);
+      totalSizeBytes = 0;
+
+      List<File> files = new ArrayList<File>();
+      File[] debuggeeDirectories = rootDirectory.listFiles();
+      if (debuggeeDirectories != null) {
+        for (File debuggeeDirectory : debuggeeDirectories) {
+          File[] snapshotFiles = debuggeeDirectory.listFiles();
+          if (snapshotFiles != null) {
+            files.addAll(Arrays.asList(snapshotFiles));
+          }
+        }
+      }
+      Collections.sort(files, new Comparator<File>() {
+        @Override
+        public int compare(File f1, File f2) {
+          long m1 = f1.lastModified();
+          long m2 = f2.lastModified();
+          return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+        }
+      });
+      for (File file : files) {
+        if (file.getName().endsWith(FILE_SUFFIX)) {
+          long size = file.length();
+          index.put(file, size);
+          totalSizeBytes += size;
+        } else {
+          // leftover from an interrupted write
+          FileUtil.delete(file);
+        }
+      }
+      evictIfNecessary();
+    }
+    return index;
+  }
+
+  @NotNull
+  private File getFile(@NotNull String debuggeeId, @NotNull String breakpointId) {
+    File debuggeeDirectory = new File(rootDirectory, encode(debuggeeId));
+    return new File(debuggeeDirectory, encode(breakpointId) + FILE_SUFFIX);
+  }
+
+  /**
+   * Turns a server id into a unique name that is valid on every file system.
+   */
+  @NotNull
+  private static String encode(@NotNull String id) {
+    try {
+      return URLEncoder.encode(id, "UTF-8").replace("*", "%2A");
+    } catch (UnsupportedEncodingException ex) {
+      throw new AssertionError(ex);
+    }
+  }
+}
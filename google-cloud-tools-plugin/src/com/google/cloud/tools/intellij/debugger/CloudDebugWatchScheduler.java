@@ -0,0 +1,455 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns all breakpoint list polling against the Cloud Debugger backend. Debug sessions and the
+ * background poller subscribe to a debuggee, and subscriptions to the same debuggee share a single
+ * query. Both the wait token mode and the fallback polling mode are driven from one bounded
+ * scheduled pool, so no thread sleeps on behalf of a single session.
+ */
+public class CloudDebugWatchScheduler implements Disposable {
+
+  @VisibleForTesting
+  static final int FOREGROUND_PERIOD_MS = 500;
+  @VisibleForTesting
+  static final int BACKGROUND_PERIOD_MS = 5000;
+  private static final int FOREGROUND_INITIAL_DELAY_MS = 2000;
+  // our fallback polling mode has a 1 second loop.
+  private static final int FALLBACK_PERIOD_MS = 1000;
+  private static final int MAX_BACKOFF_MS = 60 * 1000;
+  // Upper bound on the number of hanging queries in flight at the same time.
+  private static final int MAX_CONCURRENT_POLLS = 16;
+  private static final Logger LOG = Logger.getInstance(CloudDebugWatchScheduler.class);
+
+  // guarded by this
+  private final Map<String, DebuggeeWatch> watches = new HashMap<String, DebuggeeWatch>();
+  private ScheduledThreadPoolExecutor executor;
+  private boolean disposed;
+
+  /**
+   * Returns an instance of this from the container.
+   */
+  public static CloudDebugWatchScheduler getInstance() {
+    return ServiceManager.getService(CloudDebugWatchScheduler.class);
+  }
+
+  /**
+   * Starts watching the debuggee of the given state. If the debuggee is already watched by another
+   * subscriber, the existing query is shared.
+   *
+   * @param state the state identifying the user and the debuggee to watch
+   * @param foreground true for an active debug session, which uses the long timeout client and
+   *     polls more eagerly than the background poller
+   * @param watcher receives the breakpoint list whenever the server state changes
+   * @return the subscription to pass to {@link #unwatch(Subscription)}
+   */
+  @NotNull
+  public synchronized Subscription watch(@NotNull CloudDebugProcessState state,
+      boolean foreground, @NotNull BreakpointWatcher watcher) {
+    String key = getKey(state.getUserEmail(), state.getDebuggeeId());
+    DebuggeeWatch watch = watches.get(key);
+    boolean newWatch = watch == null;
+    if (newWatch) {
+      watch = new DebuggeeWatch(key, state.getUserEmail(), state.getDebuggeeId());
+      watch.waitToken = state.getWaitToken();
+      watches.put(key, watch);
+    }
+
+    Subscription subscription = new Subscription(watch, foreground, watcher, state.getWaitToken());
+    watch.subscriptions.add(subscription);
+
+    if (newWatch) {
+      schedule(watch, foreground ? FOREGROUND_INITIAL_DELAY_MS : BACKGROUND_PERIOD_MS);
+    }
+    return subscription;
+  }
+
+  /**
+   * Stops delivering updates to the given subscription. The query for the debuggee is stopped
+   * once its last subscription is removed.
+   */
+  public synchronized void unwatch(@NotNull Subscription subscription) {
+    subscription.active = false;
+    DebuggeeWatch watch = subscription.watch;
+    watch.subscriptions.remove(subscription);
+    if (watch.subscriptions.isEmpty()) {
+      watches.remove(watch.key);
+      if (watch.pending != null) {
+        watch.pending.cancel(false);
+        watch.pending = null;
+      }
+    }
+  }
+
+  /**
+   * Runs the given task on the watch pool with a fixed delay between runs.
+   *
+   * @return the handle to cancel the task, or null if the scheduler was disposed
+   */
+  @Nullable
+  public synchronized ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Runnable task,
+      long delayMs) {
+    ScheduledThreadPoolExecutor poolExecutor = getExecutor();
+    if (poolExecutor == null) {
+      return null;
+    }
+    return poolExecutor.scheduleWithFixedDelay(task, delayMs, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the duration of the most recent completed query for the debuggee of the given state,
+   * or null if it has not been polled yet. With a wait token, this includes the time the query
+   * hung on the server until something changed.
+   */
+  @Nullable
+  public synchronized Long getLastPollLatencyMs(@NotNull CloudDebugProcessState state) {
+    DebuggeeWatch watch = watches.get(getKey(state.getUserEmail(), state.getDebuggeeId()));
+    if (watch == null || watch.lastLatencyMs < 0) {
+      return null;
+    }
+    return watch.lastLatencyMs;
+  }
+
+  /**
+   * Returns the time left until the debuggee of the given state is queried again, or null if no
+   * query is scheduled.
+   */
+  @VisibleForTesting
+  @Nullable
+  synchronized Long getNextPollDelayMs(@NotNull CloudDebugProcessState state) {
+    DebuggeeWatch watch = watches.get(getKey(state.getUserEmail(), state.getDebuggeeId()));
+    if (watch == null || watch.pending == null) {
+      return null;
+    }
+    return watch.pending.getDelay(TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Synchronously queries the debuggee of the given state, if it is being watched.
+   */
+  @VisibleForTesting
+  void pollNow(@NotNull CloudDebugProcessState state) {
+    DebuggeeWatch watch;
+    synchronized (this) {
+      watch = watches.get(getKey(state.getUserEmail(), state.getDebuggeeId()));
+    }
+    if (watch != null) {
+      poll(watch);
+    }
+  }
+
+  @Override
+  public synchronized void dispose() {
+    disposed = true;
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    watches.clear();
+  }
+
+  private void poll(@NotNull DebuggeeWatch watch) {
+    List<Subscription> subscriptions;
+    boolean foreground = false;
+    synchronized (this) {
+      watch.pending = null;
+      if (watch.subscriptions.isEmpty()) {
+        return;
+      }
+      subscriptions = new ArrayList<Subscription>(watch.subscriptions);
+    }
+    for (Subscription subscription : subscriptions) {
+      foreground |= subscription.foreground;
+    }
+    long periodMs = foreground ? FOREGROUND_PERIOD_MS : BACKGROUND_PERIOD_MS;
+    // Timeouts and errors in an active debug session should not delay it for long.
+    long maxBackoffMs = foreground ? BACKGROUND_PERIOD_MS : MAX_BACKOFF_MS;
+
+    long delayMs = periodMs;
+    try {
+      delayMs = query(watch, subscriptions, foreground, periodMs, maxBackoffMs);
+    } finally {
+      synchronized (this) {
+        if (watches.get(watch.key) == watch && watch.pending == null) {
+          schedule(watch, delayMs);
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends a single (possibly hanging) list query for the watched debuggee and delivers the result
+   * to every subscription that has not seen it yet.
+   *
+   * @return the delay before the debuggee is queried again
+   */
+  private long query(@NotNull DebuggeeWatch watch, @NotNull List<Subscription> subscriptions,
+      boolean foreground, long periodMs, long maxBackoffMs) {
+    Debugger client = foreground
+        ? CloudDebuggerClient.getLongTimeoutClient(watch.userEmail)
+        : CloudDebuggerClient.getShortTimeoutClient(watch.userEmail);
+    if (client == null) {
+      for (Subscription subscription : subscriptions) {
+        if (subscription.active) {
+          subscription.watcher.onClientUnavailable();
+        }
+      }
+      return watch.nextBackoffMs(periodMs, maxBackoffMs);
+    }
+
+    // A subscription that joined an existing watch may not have seen the latest state yet. We
+    // skip the wait token in that case so that the server answers right away.
+    boolean catchUp = false;
+    for (Subscription subscription : subscriptions) {
+      catchUp |= !Objects.equal(subscription.lastDeliveredToken, watch.waitToken);
+    }
+    boolean useWaitToken = CloudDebugConfigType.useWaitToken();
+    String tokenToSend = useWaitToken && !catchUp ? watch.waitToken : null;
+
+    ListBreakpointsResponse response;
+    // The latency is recorded before the result is delivered, so that watchers see the current one.
+    long start = System.currentTimeMillis();
+    try {
+      if (watch.debuggeeId == null) {
+        throw new IllegalStateException("CloudDebugProcessState.getDebuggeeId() was null");
+      }
+      response = client.debuggees().breakpoints().list(watch.debuggeeId)
+          .setIncludeInactive(Boolean.TRUE)
+          .setActionValue("CAPTURE")
+          .setStripResults(Boolean.TRUE)
+          .setWaitToken(tokenToSend)
+          .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+              .getClientVersionForCloudDebugger())
+          .execute();
+      recordLatency(watch, start);
+    } catch (SocketTimeoutException ex) {
+      recordLatency(watch, start);
+      // Timeout is the normal outcome of a hanging get when nothing changed, so we requery right
+      // away instead of backing off.
+      watch.resetBackoff();
+      return periodMs;
+    } catch (GoogleJsonResponseException ex) {
+      // A 409 is used by the server to indicate to us a change happened (or the hanging query
+      // timed out) and we need to requery.
+      if (ex.getStatusCode() == HttpURLConnection.HTTP_CONFLICT) {
+        recordLatency(watch, start);
+        watch.resetBackoff();
+        return periodMs;
+      }
+      return onQueryFailed(watch, subscriptions, ex, periodMs, maxBackoffMs);
+    } catch (IOException ex) {
+      return onQueryFailed(watch, subscriptions, ex, periodMs, maxBackoffMs);
+    } catch (RuntimeException ex) {
+      return onQueryFailed(watch, subscriptions, ex, periodMs, maxBackoffMs);
+    }
+    watch.resetBackoff();
+
+    String responseWaitToken = response.getNextWaitToken();
+    boolean changed = !Objects.equal(watch.waitToken, responseWaitToken);
+    watch.waitToken = responseWaitToken;
+
+    List<Breakpoint> breakpoints = response.getBreakpoints() != null
+        ? Collections.unmodifiableList(response.getBreakpoints())
+        : Collections.<Breakpoint>emptyList();
+    for (Subscription subscription : subscriptions) {
+      if (!subscription.active
+          || Objects.equal(subscription.lastDeliveredToken, responseWaitToken)) {
+        continue;
+      }
+      subscription.lastDeliveredToken = responseWaitToken;
+      subscription.watcher.onBreakpointsChanged(breakpoints, responseWaitToken);
+    }
+
+    if (!useWaitToken && !changed) {
+      return Math.max(periodMs, FALLBACK_PERIOD_MS);
+    }
+    return periodMs;
+  }
+
+  private static void recordLatency(@NotNull DebuggeeWatch watch, long start) {
+    watch.lastLatencyMs = System.currentTimeMillis() - start;
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("polled debuggee " + watch.debuggeeId + " in " + watch.lastLatencyMs + "ms");
+    }
+  }
+
+  /**
+   * Backs off the watch and tells its subscriptions about the failure.
+   *
+   * @return the delay before the debuggee is queried again
+   */
+  private static long onQueryFailed(@NotNull DebuggeeWatch watch,
+      @NotNull List<Subscription> subscriptions, @NotNull Exception ex, long periodMs,
+      long maxBackoffMs) {
+    long delayMs = watch.nextBackoffMs(periodMs, maxBackoffMs);
+    for (Subscription subscription : subscriptions) {
+      if (subscription.active) {
+        subscription.watcher.onError(ex, watch.consecutiveFailures);
+      }
+    }
+    return delayMs;
+  }
+
+  // must be called while holding the lock on this
+  private void schedule(@NotNull final DebuggeeWatch watch, long delayMs) {
+    ScheduledThreadPoolExecutor poolExecutor = getExecutor();
+    if (poolExecutor == null) {
+      return;
+    }
+    try {
+      watch.pending = poolExecutor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          poll(watch);
+        }
+      }, delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ex) {
+      // The scheduler is shutting down.
+    }
+  }
+
+  // must be called while holding the lock on this
+  @Nullable
+  private ScheduledThreadPoolExecutor getExecutor() {
+    if (disposed) {
+      return null;
+    }
+    if (executor == null) {
+      executor = new ScheduledThreadPoolExecutor(MAX_CONCURRENT_POLLS,
+          ConcurrencyUtil.newNamedThreadFactory("cloud debug watcher", true /* isDaemon */,
+              Thread.NORM_PRIORITY));
+    }
+    return executor;
+  }
+
+  @NotNull
+  private static String getKey(@Nullable String userEmail, @Nullable String debuggeeId) {
+    return userEmail + "/" + debuggeeId;
+  }
+
+  /**
+   * Receives updates for a watched debuggee. Callbacks run on a pooled thread.
+   */
+  public interface BreakpointWatcher {
+
+    /**
+     * Called with the unsorted server breakpoint list when the server state differs from the last
+     * state delivered to this watcher. The list is shared between watchers and must not be
+     * modified.
+     */
+    void onBreakpointsChanged(@NotNull List<Breakpoint> breakpoints,
+        @Nullable String waitToken);
+
+    /**
+     * Called when no debugger client could be created for the watched user.
+     */
+    void onClientUnavailable();
+
+    /**
+     * Called when the query failed for a reason other than the expected hanging query timeout.
+     * The query is retried with backoff for as long as the watcher stays subscribed.
+     *
+     * @param consecutiveFailures the number of queries in a row that have failed, including this
+     *     one
+     */
+    void onError(@NotNull Exception ex, int consecutiveFailures);
+  }
+
+  /**
+   * A single subscriber of a watched debuggee.
+   */
+  public static final class Subscription {
+
+    private final DebuggeeWatch watch;
+    private final boolean foreground;
+    private final BreakpointWatcher watcher;
+    private volatile String lastDeliveredToken;
+    private volatile boolean active = true;
+
+    private Subscription(@NotNull DebuggeeWatch watch, boolean foreground,
+        @NotNull BreakpointWatcher watcher, @Nullable String lastDeliveredToken) {
+      this.watch = watch;
+      this.foreground = foreground;
+      this.watcher = watcher;
+      this.lastDeliveredToken = lastDeliveredToken;
+    }
+  }
+
+  /**
+   * The shared query state of a single debuggee.
+   */
+  static final class DebuggeeWatch {
+
+    private final String key;
+    private final String userEmail;
+    private final String debuggeeId;
+    // guarded by the scheduler
+    private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+    private ScheduledFuture<?> pending;
+    private volatile String waitToken;
+    private volatile long backoffMs;
+    private volatile int consecutiveFailures;
+    private volatile long lastLatencyMs = -1;
+
+    DebuggeeWatch(@NotNull String key, @Nullable String userEmail, @Nullable String debuggeeId) {
+      this.key = key;
+      this.userEmail = userEmail;
+      this.debuggeeId = debuggeeId;
+    }
+
+    long nextBackoffMs(long baseMs, long maxMs) {
+      consecutiveFailures++;
+      backoffMs = Math.min(maxMs, backoffMs == 0 ? baseMs : backoffMs * 2);
+      return backoffMs;
+    }
+
+    void resetBackoff() {
+      consecutiveFailures = 0;
+      backoffMs = 0;
+    }
+  }
+}
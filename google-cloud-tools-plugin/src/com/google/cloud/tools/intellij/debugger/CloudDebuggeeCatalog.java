@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.model.Debuggee;
+import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+
+import com.intellij.openapi.components.ServiceManager;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Lists the debuggees of a cloud project, and keeps each list for a short while. Attaching lists
+ * the debuggees in the attach dialog and again while validating the source repository right after,
+ * and the second listing is served from here.
+ */
+public class CloudDebuggeeCatalog {
+
+  private static final long FRESH_FOR_MS = TimeUnit.SECONDS.toMillis(30);
+  private static final int MAX_ENTRIES = 16;
+
+  private final long freshForMs;
+  private final LongSupplier clock;
+  // by user and project number, least recently used first; guarded by this
+  private final Map<String, CatalogEntry> entries =
+      new LinkedHashMap<String, CatalogEntry>(16, 0.75f, true /* accessOrder */) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CatalogEntry> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  public CloudDebuggeeCatalog() {
+    this(FRESH_FOR_MS, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  CloudDebuggeeCatalog(long freshForMs, @NotNull LongSupplier clock) {
+    this.freshForMs = freshForMs;
+    this.clock = clock;
+  }
+
+  public static CloudDebuggeeCatalog getInstance() {
+    return ServiceManager.getService(CloudDebuggeeCatalog.class);
+  }
+
+  /**
+   * Returns the debuggees of the project as seen by the user, listing them with {@code client}
+   * unless they were listed recently. Blocks on the network, so it must not be called on the event
+   * dispatch thread.
+   */
+  @NotNull
+  public List<Debuggee> getDebuggees(
+      @NotNull Debugger client, @Nullable String userEmail, @NotNull String projectNumber)
+      throws IOException {
+    String key = userEmail + '\n' + projectNumber;
+    synchronized (this) {
+      CatalogEntry entry = entries.get(key);
+      if (entry != null && clock.getAsLong() - entry.listedAtMs < freshForMs) {
+        return entry.debuggees;
+      }
+    }
+
+    ListDebuggeesResponse response = client.debuggees().list()
+        .setProject(projectNumber)
+        .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
+            .getClientVersionForCloudDebugger())
+        .execute();
+    List<Debuggee> debuggees = response != null && response.getDebuggees() != null
+        ? ImmutableList.copyOf(response.getDebuggees())
+        : ImmutableList.of();
+
+    synchronized (this) {
+      entries.put(key, new CatalogEntry(debuggees, clock.getAsLong()));
+    }
+    return debuggees;
+  }
+
+  private static final class CatalogEntry {
+
+    private final List<Debuggee> debuggees;
+    private final long listedAtMs;
+
+    private CatalogEntry(@NotNull List<Debuggee> debuggees, long listedAtMs) {
+      this.debuggees = debuggees;
+      this.listedAtMs = listedAtMs;
+    }
+  }
+}
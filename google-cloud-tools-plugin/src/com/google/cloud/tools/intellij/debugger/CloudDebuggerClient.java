@@ -17,11 +17,9 @@
 package com.google.cloud.tools.intellij.debugger;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.HttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.client.repackaged.com.google.common.base.Strings;
@@ -29,6 +27,7 @@ import com.google.api.services.clouddebugger.v2.Clouddebugger.Builder;
 import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
 import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
+import com.google.cloud.tools.intellij.login.HttpTransportProvider;
 import com.google.cloud.tools.intellij.login.Services;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.gdt.eclipse.login.common.LoginListener;
@@ -41,7 +40,6 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.io.IOException;
-import java.security.GeneralSecurityException;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -99,45 +97,39 @@ public class CloudDebuggerClient {
     final String hashkey = userEmail + timeout;
     Debugger cloudDebuggerClient = debuggerClientsFromUserEmail.get(hashkey);
     if (cloudDebuggerClient == null) {
-      try {
-        final CredentialedUser user = Services.getLoginService().getAllUsers().get(userEmail);
-        final Credential credential = (user != null ? user.getCredential() : null);
-        if (credential != null) {
-          user.getGoogleLoginState().addLoginListener(new LoginListener() {
-            @Override
-            public void statusChanged(boolean login) {
-              if (!login) {
-                // aggressively remove the cached item on any status change.
-                debuggerClientsFromUserEmail.remove(hashkey);
-              } else { // NOPMD
-                // user logged in, should we do something?
-              }
+      final CredentialedUser user = Services.getLoginService().getAllUsers().get(userEmail);
+      final Credential credential = (user != null ? user.getCredential() : null);
+      if (credential != null) {
+        user.getGoogleLoginState().addLoginListener(new LoginListener() {
+          @Override
+          public void statusChanged(boolean login) {
+            if (!login) {
+              // aggressively remove the cached item on any status change.
+              debuggerClientsFromUserEmail.remove(hashkey);
+            } else { // NOPMD
+              // user logged in, should we do something?
             }
-          });
-          HttpRequestInitializer initializer = new HttpRequestInitializer() {
-            @Override
-            public void initialize(HttpRequest httpRequest) throws IOException {
-              HttpHeaders headers = new HttpHeaders();
-              httpRequest.setConnectTimeout(timeout);
-              httpRequest.setReadTimeout(timeout);
-              httpRequest.setHeaders(headers);
-              credential.initialize(httpRequest);
-            }
-          };
-
-          HttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-          String userAgent = ServiceManager
-              .getService(CloudToolsPluginInfoService.class).getUserAgent();
-          cloudDebuggerClient = new Builder(httpTransport, JSON_FACTORY, initializer)
-              .setRootUrl(ROOT_URL)
-              // this ends up prefixed to user agent
-              .setApplicationName(userAgent)
-              .build().debugger();
-        }
-      } catch (IOException ex) {
-        LOG.warn("Error connecting to Cloud Debugger API", ex);
-      } catch (GeneralSecurityException ex) {
-        LOG.warn("Error connecting to Cloud Debugger API", ex);
+          }
+        });
+        HttpRequestInitializer initializer = new HttpRequestInitializer() {
+          @Override
+          public void initialize(HttpRequest httpRequest) throws IOException {
+            HttpHeaders headers = new HttpHeaders();
+            httpRequest.setConnectTimeout(timeout);
+            httpRequest.setReadTimeout(timeout);
+            httpRequest.setHeaders(headers);
+            credential.initialize(httpRequest);
+          }
+        };
+
+        String userAgent = ServiceManager
+            .getService(CloudToolsPluginInfoService.class).getUserAgent();
+        cloudDebuggerClient = new Builder(
+            HttpTransportProvider.getTransport(), JSON_FACTORY, initializer)
+            .setRootUrl(ROOT_URL)
+            // this ends up prefixed to user agent
+            .setApplicationName(userAgent)
+            .build().debugger();
       }
 
       if (cloudDebuggerClient != null) {
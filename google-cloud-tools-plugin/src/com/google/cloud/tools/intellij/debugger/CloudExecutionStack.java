@@ -19,6 +19,7 @@ package com.google.cloud.tools.intellij.debugger;
 import com.google.api.services.clouddebugger.v2.model.StackFrame;
 import com.google.api.services.clouddebugger.v2.model.Variable;
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.xdebugger.frame.XExecutionStack;
 
@@ -33,10 +34,22 @@ import java.util.List;
  * CloudExecutionStack represents an entire stack for a
  * {@link com.google.api.services.clouddebugger.v2.model.Breakpoint}. It stores the individual
  * frames, and also the variables and custom watch expressions.
+ *
+ * <p>Frames are only created when they are requested, and are handed to the frames view in pages
+ * from a pooled thread so that large stacks don't block the UI.
  */
 public class CloudExecutionStack extends XExecutionStack {
 
-  private final List<CloudStackFrame> frames = new ArrayList<CloudStackFrame>();
+  private static final int FRAMES_PAGE_SIZE = 20;
+
+  private final Project project;
+  private final List<StackFrame> nativeFrames;
+  private final List<Variable> variableTable;
+  @Nullable
+  private final List<Variable> evaluatedExpressions;
+  private final ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver();
+  // guarded by this; entries are created on demand
+  private final CloudStackFrame[] frames;
 
   /**
    * Initialize the execution stack.
@@ -49,31 +62,54 @@ public class CloudExecutionStack extends XExecutionStack {
       @Nullable List<Variable> evaluatedExpressions) {
     super(name);
 
-    if (frames != null) {
-      if (variableTable == null) {
-        variableTable = Collections.emptyList();
-      }
-      for (StackFrame nativeFrame : frames) {
-        this.frames
-            .add(new CloudStackFrame(project, nativeFrame, variableTable, evaluatedExpressions,
-                new ServerToIdeFileResolver()));
-        // We only show custom watches on the top frame.
-        evaluatedExpressions = null;
-      }
-    }
+    this.project = project;
+    this.nativeFrames = frames != null ? frames : Collections.<StackFrame>emptyList();
+    this.variableTable = variableTable != null ? variableTable : Collections.<Variable>emptyList();
+    this.evaluatedExpressions = evaluatedExpressions;
+    this.frames = new CloudStackFrame[nativeFrames.size()];
   }
 
   @Override
-  public void computeStackFrames(int firstFrameIndex, XStackFrameContainer container) {
-    if (firstFrameIndex <= frames.size()) {
-      container.addStackFrames(frames.subList(firstFrameIndex, frames.size()), true);
-    } else {
+  public void computeStackFrames(final int firstFrameIndex,
+      final XStackFrameContainer container) {
+    if (firstFrameIndex >= frames.length) {
       container.addStackFrames(Collections.<CloudStackFrame>emptyList(), true);
+      return;
     }
+
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        for (int start = firstFrameIndex; start < frames.length; start += FRAMES_PAGE_SIZE) {
+          if (container.isObsolete()) {
+            return;
+          }
+          int end = Math.min(start + FRAMES_PAGE_SIZE, frames.length);
+          List<CloudStackFrame> page = new ArrayList<CloudStackFrame>(end - start);
+          for (int index = start; index < end; index++) {
+            CloudStackFrame frame = getFrame(index);
+            // Resolve the file here rather than when the frame is rendered on the UI thread.
+            frame.getSourcePosition();
+            page.add(frame);
+          }
+          container.addStackFrames(page, end == frames.length);
+        }
+      }
+    });
   }
 
   @Override
   public CloudStackFrame getTopFrame() {
-    return frames.size() > 0 ? frames.get(0) : null;
+    return frames.length > 0 ? getFrame(0) : null;
+  }
+
+  @NotNull
+  private synchronized CloudStackFrame getFrame(int index) {
+    if (frames[index] == null) {
+      // We only show custom watches on the top frame.
+      frames[index] = new CloudStackFrame(project, nativeFrames.get(index), variableTable,
+          index == 0 ? evaluatedExpressions : null, fileResolver);
+    }
+    return frames[index];
   }
 }
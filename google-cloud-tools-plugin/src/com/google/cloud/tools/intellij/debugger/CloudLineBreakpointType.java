@@ -34,6 +34,7 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.fileTypes.StdFileTypes;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiCodeBlock;
@@ -45,6 +46,9 @@ import com.intellij.psi.PsiMethod;
 import com.intellij.psi.PsiModifierList;
 import com.intellij.psi.PsiStatement;
 import com.intellij.psi.PsiWhiteSpace;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.util.Processor;
 import com.intellij.xdebugger.XDebuggerUtil;
@@ -63,6 +67,8 @@ import org.jetbrains.java.debugger.JavaDebuggerEditorsProvider;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.swing.Icon;
 
@@ -74,6 +80,11 @@ import javax.swing.Icon;
 public class CloudLineBreakpointType extends XLineBreakpointType<CloudLineBreakpointProperties>
     implements JavaBreakpointType, Disposable {
 
+  // Lines of a file that can hold a cloud breakpoint, dropped whenever the file or its document
+  // changes. canPutAt is called for every visible line while painting the gutter.
+  private static final Key<CachedValue<ConcurrentMap<Integer, Boolean>>> LINE_ELIGIBILITY_KEY =
+      Key.create("CloudLineBreakpointType.lineEligibility");
+
   public CloudLineBreakpointType() {
     super("cloud-snapshotlocation", GctBundle.getString("clouddebug.breakpoint.description"));
   }
@@ -85,10 +96,12 @@ public class CloudLineBreakpointType extends XLineBreakpointType<CloudLineBreakp
   /**
    * We can only place a cloud breakpoint on a line if: 1) Its normally ok to do so with a java
    * breakpoint. 2) The selected run config is a {@link CloudDebugRunConfiguration}.
+   *
+   * <p>The result of the first check is cached per file until its PSI or document changes.
    */
   @Override
   public final boolean canPutAt(@NotNull final VirtualFile file, final int line,
-      @NotNull Project project) {
+      @NotNull final Project project) {
     RunManagerImpl runManager = RunManagerImpl.getInstanceImpl(project);
     if (runManager.getSelectedConfiguration() == null
         || !(runManager.getSelectedConfiguration()
@@ -108,8 +121,27 @@ public class CloudLineBreakpointType extends XLineBreakpointType<CloudLineBreakp
     }
 
     final Document document = FileDocumentManager.getInstance().getDocument(file);
-    final Ref<Class<? extends CloudLineBreakpointType>> result = Ref.create();
     assert document != null;
+    ConcurrentMap<Integer, Boolean> eligibleLines = CachedValuesManager.getCachedValue(psiFile,
+        LINE_ELIGIBILITY_KEY, new CachedValueProvider<ConcurrentMap<Integer, Boolean>>() {
+          @Nullable
+          @Override
+          public Result<ConcurrentMap<Integer, Boolean>> compute() {
+            return Result.<ConcurrentMap<Integer, Boolean>>create(
+                new ConcurrentHashMap<Integer, Boolean>(), psiFile, document);
+          }
+        });
+    Boolean eligible = eligibleLines.get(line);
+    if (eligible == null) {
+      eligible = isBreakpointLine(project, document, line);
+      eligibleLines.put(line, eligible);
+    }
+    return eligible;
+  }
+
+  private boolean isBreakpointLine(@NotNull Project project, @NotNull final Document document,
+      final int line) {
+    final Ref<Class<? extends CloudLineBreakpointType>> result = Ref.create();
     XDebuggerUtil.getInstance().iterateLine(project, document, line, new Processor<PsiElement>() {
       @Override
       public boolean process(PsiElement element) {
@@ -154,9 +186,6 @@ public class CloudLineBreakpointType extends XLineBreakpointType<CloudLineBreakp
       }
     });
 
-    UsageTrackerProvider.getInstance()
-        .trackEvent(GctTracking.CLOUD_DEBUGGER_CREATE_BREAKPOINT)
-        .ping();
     return result.get() == getClass();
   }
 
@@ -165,10 +194,17 @@ public class CloudLineBreakpointType extends XLineBreakpointType<CloudLineBreakp
     return EnumSet.noneOf(StandardPanels.class);
   }
 
+  /**
+   * Called by the IDE when the user creates a breakpoint of this type. Breakpoints mirrored from
+   * the server are created with their own properties and don't go through here.
+   */
   @Nullable
   @Override
   public CloudLineBreakpointProperties createBreakpointProperties(@NotNull VirtualFile file,
       int line) {
+    UsageTrackerProvider.getInstance()
+        .trackEvent(GctTracking.CLOUD_DEBUGGER_CREATE_BREAKPOINT)
+        .ping();
     return new CloudLineBreakpointProperties();
   }
 
@@ -22,7 +22,9 @@ import com.google.api.services.clouddebugger.v2.model.Variable;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.ui.ColoredTextContainer;
 import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.xdebugger.XDebuggerUtil;
@@ -38,11 +40,18 @@ import com.intellij.xdebugger.frame.XValuePlace;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * CloudStackFrame represents a single frame in a {@link CloudExecutionStack}. It returns the set of
  * variables and if appropriate, the set of watch expressions at that location.
+ *
+ * <p>The source file is resolved when the position is first needed. Variables are handed to the
+ * tree in pages of {@link XCompositeNode#MAX_CHILDREN_TO_SHOW}; the tree offers to load the rest.
  */
 public class CloudStackFrame extends XStackFrame {
 
@@ -50,7 +59,11 @@ public class CloudStackFrame extends XStackFrame {
   private final List<Variable> evaluatedExpressions;
   private final StackFrame frame;
   private final List<Variable> variableTable;
-  private final XSourcePosition sourcePosition;
+  private final Project project;
+  private final ServerToIdeFileResolver fileResolver;
+  private volatile boolean sourcePositionResolved;
+  private volatile XSourcePosition sourcePosition;
+  private final ChildrenCursor cursor = new ChildrenCursor();
 
   /**
    * Initialize the frame.
@@ -60,43 +73,60 @@ public class CloudStackFrame extends XStackFrame {
       @NotNull List<Variable> variableTable,
       @Nullable List<Variable> evaluatedExpressions,
       @NotNull ServerToIdeFileResolver fileResolver) {
+    this.project = project;
     this.frame = frame;
     this.variableTable = variableTable;
     this.evaluatedExpressions = evaluatedExpressions;
-    String path = frame.getLocation().getPath();
-    if (!Strings.isNullOrEmpty(path)) {
-      sourcePosition = XDebuggerUtil.getInstance().createPosition(
-          fileResolver.getFileFromPath(project, path),
-          frame.getLocation().getLine() - 1);
-    } else {
-      sourcePosition = null;
-    }
+    this.fileResolver = fileResolver;
   }
 
   @Override
   public void computeChildren(@NotNull XCompositeNode node) {
+    List<Variable> variables = new ArrayList<Variable>();
+    if (frame.getArguments() != null) {
+      variables.addAll(frame.getArguments());
+    }
+    if (frame.getLocals() != null) {
+      variables.addAll(frame.getLocals());
+    }
+
     final XValueChildrenList list = new XValueChildrenList();
-    List<Variable> arguments = frame.getArguments();
-    if (arguments != null && arguments.size() > 0) {
-      for (Variable variable : arguments) {
-        if (!Strings.isNullOrEmpty(variable.getName())) {
-          list.add(variable.getName(), new MyValue(variable, variableTable));
-        }
-      }
+    int start = cursor.get(node);
+    // The watch group is only added with the first page.
+    if (start == 0 && evaluatedExpressions != null && evaluatedExpressions.size() > 0) {
+      list.addTopGroup(new CustomWatchGroup());
     }
-    List<Variable> locals = frame.getLocals();
-    if (locals != null && locals.size() > 0) {
-      for (Variable variable : locals) {
-        if (!Strings.isNullOrEmpty(variable.getName())) {
-          list.add(variable.getName(), new MyValue(variable, variableTable));
-        }
+    cursor.set(node, addChildrenPage(node, list, variables, start, variableTable));
+  }
+
+  /**
+   * Adds up to {@link XCompositeNode#MAX_CHILDREN_TO_SHOW} named variables starting at {@code
+   * start} to the node. If more remain, the node is told so and offers to load them, which calls
+   * {@code computeChildren} again.
+   *
+   * @return the index to continue from on the next call
+   */
+  private static int addChildrenPage(@NotNull XCompositeNode node,
+      @NotNull XValueChildrenList list,
+      @NotNull List<Variable> variables,
+      int start,
+      @NotNull List<Variable> variableTable) {
+    int index = start;
+    int added = 0;
+    while (index < variables.size() && added < XCompositeNode.MAX_CHILDREN_TO_SHOW) {
+      Variable variable = variables.get(index++);
+      if (!Strings.isNullOrEmpty(variable.getName())) {
+        list.add(variable.getName(), new MyValue(variable, variableTable));
+        added++;
       }
     }
 
-    if (evaluatedExpressions != null && evaluatedExpressions.size() > 0) {
-      list.addTopGroup(new CustomWatchGroup());
+    int remaining = variables.size() - index;
+    node.addChildren(list, remaining == 0);
+    if (remaining > 0) {
+      node.tooManyChildren(remaining);
     }
-    node.addChildren(list, true);
+    return index;
   }
 
   @Override
@@ -118,7 +148,7 @@ public class CloudStackFrame extends XStackFrame {
     }
     component
         .append(functionName + "():" + frame.getLocation().getLine().toString() + ", " + className,
-            sourcePosition != null
+            getSourcePosition() != null
                 ? SimpleTextAttributes.REGULAR_ATTRIBUTES
                 : SimpleTextAttributes.GRAYED_ATTRIBUTES);
     component.append(" (" + packageName + ")", SimpleTextAttributes.GRAYED_ITALIC_ATTRIBUTES);
@@ -132,14 +162,39 @@ public class CloudStackFrame extends XStackFrame {
 
   @Override
   public XSourcePosition getSourcePosition() {
+    if (!sourcePositionResolved) {
+      synchronized (this) {
+        if (!sourcePositionResolved) {
+          sourcePosition = resolveSourcePosition();
+          sourcePositionResolved = true;
+        }
+      }
+    }
     return sourcePosition;
   }
 
+  @Nullable
+  private XSourcePosition resolveSourcePosition() {
+    final String path = frame.getLocation().getPath();
+    if (Strings.isNullOrEmpty(path)) {
+      return null;
+    }
+    return ApplicationManager.getApplication().runReadAction(new Computable<XSourcePosition>() {
+      @Override
+      public XSourcePosition compute() {
+        return XDebuggerUtil.getInstance().createPosition(
+            fileResolver.getFileFromPath(project, path),
+            frame.getLocation().getLine() - 1);
+      }
+    });
+  }
+
   private static class MyValue extends XValue {
 
     private final List<Variable> members;
     private final Variable variable;
     private final List<Variable> variableTable;
+    private final ChildrenCursor cursor = new ChildrenCursor();
 
     public MyValue(@NotNull Variable variable, @NotNull List<Variable> variableTable) {
       //Note that we have to examine the variable table for some cases depending on how the
@@ -158,15 +213,9 @@ public class CloudStackFrame extends XStackFrame {
 
     @Override
     public void computeChildren(@NotNull XCompositeNode node) {
-      final XValueChildrenList list = new XValueChildrenList();
-      if (members != null && members.size() > 0) {
-        for (Variable variable : members) {
-          if (!Strings.isNullOrEmpty(variable.getName())) {
-            list.add(variable.getName(), new MyValue(variable, variableTable));
-          }
-        }
-      }
-      node.addChildren(list, true);
+      cursor.set(node, addChildrenPage(node, new XValueChildrenList(),
+          members != null ? members : Collections.<Variable>emptyList(), cursor.get(node),
+          variableTable));
     }
 
     @Override
@@ -191,18 +240,13 @@ public class CloudStackFrame extends XStackFrame {
       super(GctBundle.getString("clouddebug.watchexpressiongrouptitle"));
     }
 
+    private final ChildrenCursor cursor = new ChildrenCursor();
+
     @Override
     public void computeChildren(@NotNull XCompositeNode node) {
-      final XValueChildrenList list = new XValueChildrenList();
-
-      if (evaluatedExpressions != null && evaluatedExpressions.size() > 0) {
-        for (Variable variable : evaluatedExpressions) {
-          if (!Strings.isNullOrEmpty(variable.getName())) {
-            list.add(variable.getName(), new MyValue(variable, variableTable));
-          }
-        }
-      }
-      node.addChildren(list, true);
+      cursor.set(node, addChildrenPage(node, new XValueChildrenList(),
+          evaluatedExpressions != null ? evaluatedExpressions : Collections.<Variable>emptyList(),
+          cursor.get(node), variableTable));
     }
 
     @Override
@@ -210,4 +254,24 @@ public class CloudStackFrame extends XStackFrame {
       return true;
     }
   }
+
+  /**
+   * Remembers how far each tree node got through its children. The tree asks the same node again
+   * when the user loads more children, while selecting the frame again or rebuilding the tree asks
+   * a new node, which starts from the first child.
+   */
+  private static final class ChildrenCursor {
+
+    private final Map<XCompositeNode, Integer> nextChildIndex =
+        new WeakHashMap<XCompositeNode, Integer>();
+
+    synchronized int get(@NotNull XCompositeNode node) {
+      Integer index = nextChildIndex.get(node);
+      return index != null ? index : 0;
+    }
+
+    synchronized void set(@NotNull XCompositeNode node, int index) {
+      nextChildIndex.put(node, index);
+    }
+  }
 }
@@ -24,9 +24,7 @@ import com.google.api.services.clouddebugger.v2.model.CloudRepoSourceContext;
 import com.google.api.services.clouddebugger.v2.model.Debuggee;
 import com.google.api.services.clouddebugger.v2.model.GerritSourceContext;
 import com.google.api.services.clouddebugger.v2.model.GitSourceContext;
-import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
 import com.google.api.services.clouddebugger.v2.model.SourceContext;
-import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
 import com.intellij.dvcs.DvcsUtil;
@@ -126,14 +124,11 @@ public class ProjectRepositoryValidator {
     boolean foundDebuggee = false;
     if (getCloudDebuggerClient() != null
         && !com.google.common.base.Strings.isNullOrEmpty(processState.getProjectNumber())) {
-      ListDebuggeesResponse debuggees;
       try {
-        debuggees = getCloudDebuggerClient().debuggees().list()
-            .setProject(processState.getProjectNumber())
-            .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                .getClientVersionForCloudDebugger())
-            .execute();
-        for (Debuggee debuggee : debuggees.getDebuggees()) {
+        // The attach dialog has usually just listed the debuggees, so this is served from cache.
+        List<Debuggee> debuggees = CloudDebuggeeCatalog.getInstance().getDebuggees(
+            getCloudDebuggerClient(), processState.getUserEmail(), processState.getProjectNumber());
+        for (Debuggee debuggee : debuggees) {
           if (processState.getDebuggeeId() != null && processState.getDebuggeeId()
               .equals(debuggee.getId())) {
             // implicit assumption this doesn't happen more than once
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.base.Optional;
+
+import com.intellij.ProjectTopics;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootAdapter;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.messages.MessageBusConnection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers which local file each Cloud Debugger source path resolved to in a project, including
+ * paths that did not resolve to any file.
+ *
+ * <p>The whole cache is dropped when a file is created, deleted, moved or renamed, when a Java file
+ * changes (its package may have changed) or when the project roots change. Those events are rare
+ * compared to the number of lookups made for every frame and breakpoint.
+ */
+public class ServerToIdeFileCache {
+
+  private final ConcurrentMap<String, Optional<VirtualFile>> files =
+      new ConcurrentHashMap<String, Optional<VirtualFile>>();
+  // incremented on every change so that a lookup racing with a change is not cached
+  private final AtomicLong modificationCount = new AtomicLong();
+
+  /**
+   * Creates the cache and subscribes it to changes for the lifetime of the project.
+   */
+  public ServerToIdeFileCache(@NotNull Project project) {
+    MessageBusConnection connection = project.getMessageBus().connect(project);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          if (affectsResolution(event)) {
+            clear();
+            return;
+          }
+        }
+      }
+    });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootAdapter() {
+      @Override
+      public void rootsChanged(ModuleRootEvent event) {
+        clear();
+      }
+    });
+  }
+
+  /**
+   * Returns an instance of this for the given project.
+   */
+  public static ServerToIdeFileCache getInstance(@NotNull Project project) {
+    return ServiceManager.getService(project, ServerToIdeFileCache.class);
+  }
+
+  /**
+   * Returns the cached resolution of {@code path}, which holds no file if the path did not resolve,
+   * or null if the path has not been resolved since the last change.
+   */
+  @Nullable
+  Optional<VirtualFile> get(@NotNull String path) {
+    Optional<VirtualFile> file = files.get(path);
+    if (file != null && file.isPresent() && !file.get().isValid()) {
+      files.remove(path, file);
+      return null;
+    }
+    return file;
+  }
+
+  /**
+   * Returns a stamp to pass to {@link #put} after resolving a path.
+   */
+  long getModificationCount() {
+    return modificationCount.get();
+  }
+
+  /**
+   * Caches the resolution of {@code path} unless something changed since {@code stamp} was taken.
+   */
+  void put(@NotNull String path, @Nullable VirtualFile file, long stamp) {
+    if (stamp == modificationCount.get()) {
+      files.put(path, Optional.fromNullable(file));
+      if (stamp != modificationCount.get()) {
+        files.remove(path);
+      }
+    }
+  }
+
+  void clear() {
+    modificationCount.incrementAndGet();
+    files.clear();
+  }
+
+  private static boolean affectsResolution(@NotNull VFileEvent event) {
+    if (event instanceof VFileContentChangeEvent) {
+      VirtualFile file = ((VFileContentChangeEvent) event).getFile();
+      return file.getFileType() == JavaFileType.INSTANCE;
+    }
+    return true;
+  }
+}
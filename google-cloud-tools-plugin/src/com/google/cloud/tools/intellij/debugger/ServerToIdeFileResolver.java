@@ -17,8 +17,9 @@
 package com.google.cloud.tools.intellij.debugger;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
 
-import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.StandardFileSystems;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -28,14 +29,11 @@ import com.intellij.psi.JavaPsiFacade;
 import com.intellij.psi.PsiClass;
 import com.intellij.psi.PsiJavaFile;
 import com.intellij.psi.PsiPackage;
-import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
-import com.intellij.util.indexing.FileBasedIndex;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Collection;
-
 /**
  * Provides a translation between file names sent from the CDB API and IntelliJ project files in the
  * local file system.
@@ -69,9 +67,26 @@ public class ServerToIdeFileResolver {
    * <p/>
    * This method tries to fetch a file in three ways. First, it uses its full path in the local file
    * system. Then, it tries the full class name form (com/google/gct/idea/debugger/
-   * CloudDebugProcess.java). Finally, it searches for possible file matches within the project.
+   * CloudDebugProcess.java). Finally, it searches for possible file name matches within the
+   * project. Results are cached per project in {@link ServerToIdeFileCache}.
    */
   public VirtualFile getFileFromPath(@NotNull Project project, @NotNull String path) {
+    ServerToIdeFileCache cache = ServerToIdeFileCache.getInstance(project);
+    Optional<VirtualFile> cached = cache.get(path);
+    if (cached != null) {
+      return cached.orNull();
+    }
+
+    long stamp = cache.getModificationCount();
+    VirtualFile file = resolveFileFromPath(project, path);
+    // Indices are incomplete while they are being updated, so only a definite answer is cached.
+    if (!DumbService.isDumb(project)) {
+      cache.put(path, file, stamp);
+    }
+    return file;
+  }
+
+  private VirtualFile resolveFileFromPath(@NotNull Project project, @NotNull String path) {
     // Try the relative full project path.
     VirtualFile file = fileSystem.findFileByPath(project.getBasePath() + "/" + path);
     // Try class name with package and class file name.
@@ -87,15 +102,17 @@ public class ServerToIdeFileResolver {
         }
       }
     }
-    // If we still couldn't find the file, search for possible file name matches and return the
-    // first.
+    // If we still couldn't find the file, look up project files with the same name and return the
+    // first one whose path ends with the given path, e.g. a source root that is not on the
+    // classpath.
     // We might want to improve string matching and return more than one possible match.
     if (file == null) {
-      Collection<VirtualFile> projectJavaFiles = FileBasedIndex.getInstance().getContainingFiles(
-          FileTypeIndex.NAME, JavaFileType.INSTANCE, GlobalSearchScope.projectScope(project));
-      for (VirtualFile projectFile : projectJavaFiles) {
-        if (projectFile.getName().equals(path)) {
-          file = projectFile;
+      String fileName = path.substring(path.lastIndexOf('/') + 1);
+      String pathSuffix = path.startsWith("/") ? path : "/" + path;
+      for (VirtualFile candidate : FilenameIndex.getVirtualFilesByName(
+          project, fileName, GlobalSearchScope.projectScope(project))) {
+        if (candidate.getPath().endsWith(pathSuffix)) {
+          file = candidate;
           break;
         }
       }
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads final snapshots in the background before the user selects them, with a bounded number of
+ * parallel requests.
+ *
+ * <p>Each call to {@link #prefetch(Collection)} replaces the set of wanted snapshots. Queued loads
+ * that are no longer wanted, e.g. because their row scrolled out of view, are cancelled. Loads that
+ * already started run to completion since their result is cached anyway.
+ */
+class SnapshotPrefetcher {
+
+  private static final Logger LOG = Logger.getInstance(SnapshotPrefetcher.class);
+  @VisibleForTesting
+  static final int MAX_PARALLEL_LOADS = 4;
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+  private final SnapshotLoader loader;
+  // keyed by breakpoint id; guarded by this
+  private final Map<String, PrefetchTask> pending = new HashMap<String, PrefetchTask>();
+  // ids whose load failed; not retried on every scroll, selecting them still reports the error
+  private final Set<String> failed = new HashSet<String>();
+  private ThreadPoolExecutor executor;
+
+  SnapshotPrefetcher(@NotNull SnapshotLoader loader) {
+    this.loader = loader;
+  }
+
+  /**
+   * Starts loading the given snapshots in iteration order and cancels queued loads of snapshots not
+   * in {@code ids}.
+   */
+  synchronized void prefetch(@NotNull Collection<String> ids) {
+    Set<String> wanted = new LinkedHashSet<String>(ids);
+    List<PrefetchTask> unwanted = new ArrayList<PrefetchTask>();
+    Iterator<Map.Entry<String, PrefetchTask>> iterator = pending.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, PrefetchTask> entry = iterator.next();
+      if (!wanted.contains(entry.getKey())) {
+        unwanted.add(entry.getValue());
+        iterator.remove();
+      }
+    }
+    for (PrefetchTask task : unwanted) {
+      cancel(task);
+    }
+
+    for (String id : wanted) {
+      if (!pending.containsKey(id) && !failed.contains(id)) {
+        PrefetchTask task = new PrefetchTask(id);
+        pending.put(id, task);
+        getExecutor().execute(task);
+      }
+    }
+  }
+
+  /**
+   * Cancels all queued loads and releases the threads, e.g. when the debug session stops.
+   */
+  synchronized void cancelAll() {
+    List<PrefetchTask> tasks = new ArrayList<PrefetchTask>(pending.values());
+    pending.clear();
+    failed.clear();
+    for (PrefetchTask task : tasks) {
+      cancel(task);
+    }
+    if (executor != null) {
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  @VisibleForTesting
+  synchronized Set<String> getPendingIds() {
+    return new HashSet<String>(pending.keySet());
+  }
+
+  private void cancel(@NotNull PrefetchTask task) {
+    task.cancel(false /* mayInterruptIfRunning */);
+    if (executor != null) {
+      executor.remove(task);
+    }
+  }
+
+  private synchronized void markFailed(@NotNull String id) {
+    failed.add(id);
+  }
+
+  private synchronized void finished(@NotNull PrefetchTask task) {
+    if (pending.get(task.id) == task) {
+      pending.remove(task.id);
+    }
+  }
+
+  // must be called while holding the lock on this
+  @NotNull
+  private ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(MAX_PARALLEL_LOADS, MAX_PARALLEL_LOADS,
+          IDLE_THREAD_TIMEOUT_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          ConcurrencyUtil.newNamedThreadFactory("cloud debug snapshot prefetch",
+              true /* isDaemon */, Thread.NORM_PRIORITY));
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+
+  /**
+   * Loads a snapshot into the caches of the caller.
+   */
+  interface SnapshotLoader {
+
+    void load(@NotNull String id) throws IOException;
+  }
+
+  private final class PrefetchTask extends FutureTask<Void> {
+
+    private final String id;
+
+    PrefetchTask(@NotNull final String id) {
+      super(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            loader.load(id);
+          } catch (IOException ex) {
+            // The user may have deleted the snapshot; selecting it will report any real problem.
+            LOG.debug("could not prefetch snapshot " + id, ex);
+            markFailed(id);
+          }
+        }
+      }, null);
+      this.id = id;
+    }
+
+    @Override
+    protected void done() {
+      finished(this);
+    }
+  }
+}
@@ -18,11 +18,13 @@ package com.google.cloud.tools.intellij.debugger.ui;
 
 import com.google.api.services.clouddebugger.v2.model.Breakpoint;
 import com.google.api.services.clouddebugger.v2.model.StatusMessage;
+import com.google.cloud.tools.intellij.debugger.BreakpointListDiff;
 import com.google.cloud.tools.intellij.debugger.BreakpointUtil;
 import com.google.cloud.tools.intellij.debugger.CloudBreakpointListener;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcess;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessHandler;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessState;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler;
 import com.google.cloud.tools.intellij.stats.UsageTrackerProvider;
 import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 import com.google.cloud.tools.intellij.util.GctBundle;
@@ -60,6 +62,8 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
@@ -69,8 +73,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.Icon;
 import javax.swing.JComponent;
@@ -120,6 +126,19 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
 
     process.getXDebugSession().addSessionListener(this);
     process.addListener(this);
+
+    // Scrolling moves the table inside its viewport, which changes the visible rows.
+    table.addComponentListener(new ComponentAdapter() {
+      @Override
+      public void componentMoved(ComponentEvent event) {
+        prefetchSnapshots();
+      }
+
+      @Override
+      public void componentResized(ComponentEvent event) {
+        prefetchSnapshots();
+      }
+    });
   }
 
   /**
@@ -189,9 +208,9 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
   }
 
   @Override
-  public void onBreakpointListChanged(CloudDebugProcessState state) {
-    // todo: I don't think anyone else implements this or uses CloudDebugProcessState here.
-    // verify and if so, remove that argument
+  public void onBreakpointListChanged(CloudDebugProcessState state,
+      @NotNull BreakpointListDiff diff) {
+    // The table shows the whole list, so it is reloaded even for local refreshes with no diff.
     onBreakpointsChanged();
   }
 
@@ -289,10 +308,66 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
     // Read the list of breakpoints and show them.
     // We always snap the current breakpoint list into a local to eliminate threading issues.
     final List<Breakpoint> breakpointList = process.getCurrentBreakpointList();
+    final String pollStatus = getPollStatus();
 
     // Setting the model must happen on the UI thread, while most of this method executes on the
     // background.
     SwingUtilities.invokeLater(new ModelSetter(breakpointList, getSelection()));
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        // shown wherever a row has no tooltip of its own
+        table.setToolTipText(pollStatus);
+      }
+    });
+  }
+
+  /**
+   * Describes how long the last query for the snapshots of this session took, or returns null if
+   * it is not known.
+   */
+  @Nullable
+  private String getPollStatus() {
+    CloudDebugProcessState state = process.getProcessState();
+    if (state == null) {
+      return null;
+    }
+    Long latencyMs = CloudDebugWatchScheduler.getInstance().getLastPollLatencyMs(state);
+    return latencyMs != null
+        ? GctBundle.message("clouddebug.snapshots.poll.latency", latencyMs)
+        : null;
+  }
+
+  /**
+   * Loads the final snapshots of the visible rows and the newly received snapshots in the
+   * background, so that selecting them doesn't wait on the server. Rows that scrolled out of view
+   * are no longer loaded.
+   */
+  private void prefetchSnapshots() {
+    SnapshotsModel model = getModel();
+    Set<String> ids = new LinkedHashSet<String>();
+    Rectangle visibleRect = table.getVisibleRect();
+    if (model.getRowCount() > 0 && !visibleRect.isEmpty()) {
+      int firstRow = table.rowAtPoint(visibleRect.getLocation());
+      int lastRow = table.rowAtPoint(
+          new Point(visibleRect.x, visibleRect.y + visibleRect.height - 1));
+      if (firstRow == -1) {
+        firstRow = 0;
+      }
+      if (lastRow == -1) {
+        lastRow = model.getRowCount() - 1;
+      }
+      for (int row = firstRow; row <= lastRow; row++) {
+        Breakpoint breakpoint = model.getBreakpoints().get(row);
+        if (Boolean.TRUE.equals(breakpoint.getIsFinalState())
+            && (breakpoint.getStatus() == null
+                || !Boolean.TRUE.equals(breakpoint.getStatus().getIsError()))) {
+          ids.add(breakpoint.getId());
+        }
+      }
+    }
+    ids.addAll(model.getNewlyReceivedIds());
+    process.prefetchSnapshots(ids);
   }
 
   /**
@@ -685,6 +760,8 @@ public class CloudDebugHistoricalSnapshots extends AdditionalTabComponent
           .getBreakpoints().size()) {
         process.clearExecutionStack();
       }
+
+      prefetchSnapshots();
     }
 
     /**
@@ -19,29 +19,31 @@ package com.google.cloud.tools.intellij.debugger.ui;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
 import com.google.api.services.clouddebugger.v2.model.Debuggee;
-import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
-import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.debugger.CloudDebugProcessState;
+import com.google.cloud.tools.intellij.debugger.CloudDebuggeeCatalog;
 import com.google.cloud.tools.intellij.debugger.CloudDebuggerClient;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
 import com.google.cloud.tools.intellij.resources.ProjectSelector;
 import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 
 import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.ui.DocumentAdapter;
-import com.intellij.util.containers.HashMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.Action;
+import javax.swing.DefaultComboBoxModel;
 import javax.swing.JComboBox;
 import javax.swing.SwingUtilities;
 import javax.swing.event.DocumentEvent;
@@ -66,6 +68,8 @@ class ProjectDebuggeeBinding {
   // TODO(joaomartins,eshaul): understand why the first invocation of refreshDebugTargetList
   //   has projectSelector.getProjectNumber() set to null.
   private boolean isCdbQueried = false;
+  // Incremented on every refresh, so that only the latest one updates the target selector.
+  private int refreshGeneration;
 
   public ProjectDebuggeeBinding(@NotNull ProjectSelector projectSelector,
       @NotNull JComboBox targetSelector,
@@ -149,66 +153,62 @@ class ProjectDebuggeeBinding {
   @SuppressWarnings("unchecked")
   private void refreshDebugTargetList() {
     targetSelector.removeAllItems();
+    final int generation = ++refreshGeneration;
+    final Long projectNumber = projectSelector.getProjectNumber();
+    final Debugger client = getCloudDebuggerClient();
+    if (projectNumber == null || client == null) {
+      return;
+    }
+    final String userEmail = credentialedUser != null ? credentialedUser.getEmail() : null;
+    final String projectName = projectSelector.getText();
+
     ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
       @Override
       public void run() {
         try {
-          if (projectSelector.getProjectNumber() != null && getCloudDebuggerClient() != null) {
-            final ListDebuggeesResponse debuggees = getCloudDebuggerClient().debuggees().list()
-                .setProject(projectSelector.getProjectNumber().toString())
-                .setClientVersion(ServiceManager.getService(CloudToolsPluginInfoService.class)
-                    .getClientVersionForCloudDebugger())
-                .execute();
-            isCdbQueried = true;
-
-            SwingUtilities.invokeLater(new Runnable() {
-              @Override
-              public void run() {
-                DebugTarget targetSelection = null;
-
-                if (debuggees == null || debuggees.getDebuggees() == null || debuggees
-                    .getDebuggees().isEmpty()) {
-                  disableTargetSelector(GctBundle.getString("clouddebug.nomodulesfound"));
-                } else {
-                  targetSelector.setEnabled(true);
-                  Map<String, DebugTarget> perModuleCache = new HashMap<String, DebugTarget>();
-
-                  for (Debuggee debuggee : debuggees.getDebuggees()) {
-                    DebugTarget item = new DebugTarget(debuggee, projectSelector.getText());
-                    if (!Strings.isNullOrEmpty(item.getModule())
-                        && !Strings.isNullOrEmpty(item.getVersion())) {
-                      //If we already have an existing item for that module+version, compare the
-                      // minor versions and only use the latest minor version.
-                      String key = String.format("%s:%s", item.getModule(), item.getVersion());
-                      DebugTarget existing = perModuleCache.get(key);
-                      if (existing != null && existing.getMinorVersion() > item.getMinorVersion()) {
-                        continue;
-                      }
-                      if (existing != null) {
-                        targetSelector.removeItem(existing);
-                      }
-                      perModuleCache.put(key, item);
-                    }
-                    if (inputState != null && !Strings.isNullOrEmpty(inputState.getDebuggeeId())) {
-                      if (inputState.getDebuggeeId().equals(item.getId())) {
-                        targetSelection = item;
-                      }
-                    }
-                    targetSelector.addItem(item);
-                    okAction.setEnabled(true);
+          List<Debuggee> debuggees = CloudDebuggeeCatalog.getInstance()
+              .getDebuggees(client, userEmail, projectNumber.toString());
+          isCdbQueried = true;
+          final List<DebugTarget> targets = toDebugTargets(debuggees, projectName);
+
+          SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+              if (generation != refreshGeneration) {
+                return;
+              }
+              if (targets.isEmpty()) {
+                disableTargetSelector(GctBundle.getString("clouddebug.nomodulesfound"));
+                return;
+              }
+
+              DebugTarget targetSelection = null;
+              if (inputState != null && !Strings.isNullOrEmpty(inputState.getDebuggeeId())) {
+                for (DebugTarget target : targets) {
+                  if (inputState.getDebuggeeId().equals(target.getId())) {
+                    targetSelection = target;
                   }
                 }
-                if (targetSelection != null) {
-                  targetSelector.setSelectedItem(targetSelection);
-                }
               }
-            });
-          }
+
+              targetSelector.setEnabled(true);
+              // All targets are added in one model change instead of one per item. Selecting
+              // afterwards notifies the selector's listeners, as adding the first item used to.
+              DefaultComboBoxModel model = new DefaultComboBoxModel(targets.toArray());
+              model.setSelectedItem(null);
+              targetSelector.setModel(model);
+              targetSelector.setSelectedItem(
+                  targetSelection != null ? targetSelection : targets.get(0));
+              okAction.setEnabled(true);
+            }
+          });
         } catch (final IOException ex) {
           SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-              disableTargetSelector(ex);
+              if (generation == refreshGeneration) {
+                disableTargetSelector(ex);
+              }
             }
           });
 
@@ -218,6 +218,34 @@ class ProjectDebuggeeBinding {
     });
   }
 
+  /**
+   * Turns debuggees into debug targets, keeping only the latest minor version of each module and
+   * version. A newer minor version takes the place of the older one at the end of the list.
+   */
+  @NotNull
+  @VisibleForTesting
+  static List<DebugTarget> toDebugTargets(
+      @NotNull List<Debuggee> debuggees, @Nullable String projectName) {
+    Map<Object, DebugTarget> targets = new LinkedHashMap<Object, DebugTarget>();
+    for (Debuggee debuggee : debuggees) {
+      DebugTarget item = new DebugTarget(debuggee, Strings.nullToEmpty(projectName));
+      if (!Strings.isNullOrEmpty(item.getModule())
+          && !Strings.isNullOrEmpty(item.getVersion())) {
+        String key = String.format("%s:%s", item.getModule(), item.getVersion());
+        DebugTarget existing = targets.get(key);
+        if (existing != null && existing.getMinorVersion() > item.getMinorVersion()) {
+          continue;
+        }
+        targets.remove(key);
+        targets.put(key, item);
+      } else {
+        // without a module and version, every target is kept
+        targets.put(item, item);
+      }
+    }
+    return new ArrayList<DebugTarget>(targets.values());
+  }
+
   private void disableTargetSelector(Throwable reason) {
     targetSelector.setEnabled(false);
 
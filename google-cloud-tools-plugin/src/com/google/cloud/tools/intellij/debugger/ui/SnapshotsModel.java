@@ -24,6 +24,7 @@ import com.google.cloud.tools.intellij.util.GctBundle;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -119,6 +120,11 @@ class SnapshotsModel extends AbstractTableModel {
     return !pendingDeletes.isEmpty();
   }
 
+  @NotNull
+  Set<String> getNewlyReceivedIds() {
+    return Collections.unmodifiableSet(newlyReceived);
+  }
+
   boolean isNewlyReceived(String id) {
     return newlyReceived.contains(id);
   }
@@ -17,13 +17,12 @@
 package com.google.cloud.tools.intellij.resources;
 
 import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson.JacksonFactory;
 import com.google.api.services.appengine.v1.Appengine;
 import com.google.api.services.cloudresourcemanager.CloudResourceManager;
 import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.login.HttpTransportProvider;
 
 import com.intellij.openapi.components.ServiceManager;
 
@@ -31,14 +30,13 @@ import org.jetbrains.annotations.Nullable;
 
 public class DefaultGoogleApiClientFactory extends GoogleApiClientFactory {
 
-  private static final HttpTransport httpTransport = new NetHttpTransport();
   private static final JsonFactory jsonFactory = new JacksonFactory();
 
   @Override
   public CloudResourceManager getCloudResourceManagerClient(@Nullable HttpRequestInitializer
       httpRequestInitializer) {
     return new CloudResourceManager.Builder(
-        httpTransport, jsonFactory, httpRequestInitializer)
+        HttpTransportProvider.getTransport(), jsonFactory, httpRequestInitializer)
         .setApplicationName(getApplicationName())
         .build();
   }
@@ -47,7 +45,7 @@ public class DefaultGoogleApiClientFactory extends GoogleApiClientFactory {
   public Appengine getAppEngineApiClient(@Nullable HttpRequestInitializer
       httpRequestInitializer) {
     return new Appengine.Builder(
-        httpTransport, jsonFactory, httpRequestInitializer)
+        HttpTransportProvider.getTransport(), jsonFactory, httpRequestInitializer)
         .setApplicationName(getApplicationName())
         .build();
   }
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import com.google.api.client.repackaged.com.google.common.base.Strings;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreeNode;
+import javax.swing.tree.TreePath;
+
+/**
+ * A view of the project selector tree that only shows the projects matching a query, and the users
+ * they belong to. Without a query, it shows the whole tree and forwards the events of the
+ * underlying model as they are.
+ *
+ * <p>The search index is built lazily from the underlying model and dropped whenever it changes,
+ * so pages of projects that arrive while the user types are filtered too. Must only be used on the
+ * event dispatch thread.
+ */
+class FilteringProjectTreeModel implements TreeModel {
+
+  private final DefaultTreeModel delegate;
+  // Listeners are notified in the order they were added, so the tree updates its rows before
+  // anyone that expands or selects them.
+  private final List<TreeModelListener> listeners = new CopyOnWriteArrayList<>();
+  private final TreeModelListener delegateListener = new DelegateListener();
+
+  private String query;
+  private ProjectSearchIndex index;
+  private ProjectSearchIndex.SearchResult result;
+  // the visible children of the root and of the user nodes while filtering
+  private final Map<TreeNode, List<TreeNode>> filteredChildren = new HashMap<>();
+
+  FilteringProjectTreeModel(@NotNull DefaultTreeModel delegate) {
+    this.delegate = delegate;
+    delegate.addTreeModelListener(delegateListener);
+  }
+
+  /** Stops following the underlying model. */
+  void dispose() {
+    delegate.removeTreeModelListener(delegateListener);
+  }
+
+  /** Shows only the projects that match {@code query}, or all of them if it is empty. */
+  void setQuery(@Nullable String query) {
+    String newQuery = Strings.isNullOrEmpty(query) ? null : query;
+    if (newQuery == null ? this.query == null : newQuery.equals(this.query)) {
+      return;
+    }
+    this.query = newQuery;
+    refilter();
+  }
+
+  boolean isFiltering() {
+    return query != null;
+  }
+
+  /** Returns the model whose nodes this one shows. */
+  @NotNull
+  DefaultTreeModel getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * Returns the model that holds the nodes shown through {@code model}: the underlying model if
+   * {@code model} filters one, or {@code model} itself otherwise.
+   */
+  @NotNull
+  static TreeModel unwrap(@NotNull TreeModel model) {
+    return model instanceof FilteringProjectTreeModel
+        ? ((FilteringProjectTreeModel) model).getDelegate() : model;
+  }
+
+  /**
+   * Returns the project that best matches the query, or {@code null} if nothing matches or there
+   * is no query.
+   */
+  @Nullable
+  ResourceProjectModelItem getBestMatch() {
+    return result != null ? result.getBestMatch() : null;
+  }
+
+  /** Returns the project with the given ID, ignoring case, whether or not it is filtered out. */
+  @Nullable
+  ResourceProjectModelItem findProject(@NotNull String projectId) {
+    return getIndex().findById(projectId);
+  }
+
+  @Override
+  public Object getRoot() {
+    return delegate.getRoot();
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    return isFiltering() ? getFilteredChildren(parent).get(index)
+        : delegate.getChild(parent, index);
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    return isFiltering() ? getFilteredChildren(parent).size() : delegate.getChildCount(parent);
+  }
+
+  @Override
+  public boolean isLeaf(Object node) {
+    return delegate.isLeaf(node);
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object newValue) {
+    delegate.valueForPathChanged(path, newValue);
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    return isFiltering() ? getFilteredChildren(parent).indexOf(child)
+        : delegate.getIndexOfChild(parent, child);
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener listener) {
+    listeners.remove(listener);
+  }
+
+  @NotNull
+  private ProjectSearchIndex getIndex() {
+    if (index == null) {
+      index = new ProjectSearchIndex((TreeNode) delegate.getRoot());
+    }
+    return index;
+  }
+
+  private void refilter() {
+    filteredChildren.clear();
+    result = query != null ? getIndex().search(query) : null;
+    fireStructureChanged();
+  }
+
+  @NotNull
+  private List<TreeNode> getFilteredChildren(Object parent) {
+    TreeNode node = (TreeNode) parent;
+    List<TreeNode> children = filteredChildren.get(node);
+    if (children == null) {
+      children = new ArrayList<>();
+      for (int i = 0; i < node.getChildCount(); i++) {
+        TreeNode child = node.getChildAt(i);
+        if (isVisible(child)) {
+          children.add(child);
+        }
+      }
+      filteredChildren.put(node, children);
+    }
+    return children;
+  }
+
+  private boolean isVisible(@NotNull TreeNode node) {
+    if (node instanceof GoogleUserModelItem) {
+      // Users without matches are hidden, unless their projects are still coming in.
+      for (int i = 0; i < node.getChildCount(); i++) {
+        if (isVisible(node.getChildAt(i))) {
+          return true;
+        }
+      }
+      return false;
+    }
+    // Loading and error items stay, so that a missing match can be told from a failed load.
+    return node instanceof ResourceLoadingModelItem
+        || node instanceof ResourceErrorModelItem
+        || (node instanceof ResourceProjectModelItem && result.getMatches().contains(node));
+  }
+
+  private void fireStructureChanged() {
+    TreeModelEvent event = new TreeModelEvent(this, new Object[] {delegate.getRoot()});
+    for (TreeModelListener listener : listeners) {
+      listener.treeStructureChanged(event);
+    }
+  }
+
+  private class DelegateListener implements TreeModelListener {
+
+    @Override
+    public void treeNodesChanged(TreeModelEvent event) {
+      if (!onDelegateChanged()) {
+        for (TreeModelListener listener : listeners) {
+          listener.treeNodesChanged(event);
+        }
+      }
+    }
+
+    @Override
+    public void treeNodesInserted(TreeModelEvent event) {
+      if (!onDelegateChanged()) {
+        for (TreeModelListener listener : listeners) {
+          listener.treeNodesInserted(event);
+        }
+      }
+    }
+
+    @Override
+    public void treeNodesRemoved(TreeModelEvent event) {
+      if (!onDelegateChanged()) {
+        for (TreeModelListener listener : listeners) {
+          listener.treeNodesRemoved(event);
+        }
+      }
+    }
+
+    @Override
+    public void treeStructureChanged(TreeModelEvent event) {
+      if (!onDelegateChanged()) {
+        for (TreeModelListener listener : listeners) {
+          listener.treeStructureChanged(event);
+        }
+      }
+    }
+
+    // Returns true if the change was handled by filtering again.
+    private boolean onDelegateChanged() {
+      index = null;
+      if (!isFiltering()) {
+        return false;
+      }
+      refilter();
+      return true;
+    }
+  }
+}
@@ -24,22 +24,23 @@ import com.google.cloud.tools.intellij.login.CredentialedUser;
 import com.google.cloud.tools.intellij.login.IntellijGoogleLoginService;
 import com.google.cloud.tools.intellij.util.GctBundle;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.Image;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.SwingUtilities;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
 
 /**
  * This model item represents a {@link IntellijGoogleLoginService} credentialed user in the treeview
@@ -50,11 +51,23 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
   private static final Logger LOG = Logger.getInstance(GoogleUserModelItem.class);
   private static final int PROJECTS_MAX_PAGE_SIZE = 300;
   private static final String PROJECT_DELETE_REQUESTED = "DELETE_REQUESTED";
+  private static final String PROJECTS_RESOURCE = "projects";
+  private static final Comparator<Project> PROJECT_NAME_ORDER =
+      Comparator.comparing(
+              (Project project) -> Strings.nullToEmpty(project.getName()),
+              String.CASE_INSENSITIVE_ORDER)
+          .thenComparing(Project::getProjectId);
 
   private final CredentialedUser user;
   private final DefaultTreeModel treeModel;
-  private volatile boolean isSynchronizing;
-  private volatile boolean needsSynchronizing;
+  // The synchronization state is changed on the event dispatch thread only. Loads run on the
+  // threads of the ResourceLoadCoordinator, and their results are dropped once the generation they
+  // were started with is gone.
+  private boolean isSynchronizing;
+  private boolean needsSynchronizing;
+  private boolean bypassCache;
+  private volatile int loadGeneration;
+  private CompletableFuture<FetchedProjects> pendingLoad;
   private CloudResourceManager cloudResourceManagerClient;
 
   GoogleUserModelItem(@NotNull CredentialedUser user, @NotNull DefaultTreeModel treeModel) {
@@ -84,15 +97,25 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
 
   // This method "dirties" the node, indicating that it needs another call to resource manager to
   // get its projects. The call may not happen immediately if the google login is collapsed in the
-  // tree view.
+  // tree view. A load that is still running is abandoned.
   public void setNeedsSynchronizing() {
     needsSynchronizing = true;
+    isSynchronizing = false;
+    loadGeneration++;
+    cancelPendingLoad();
 
     removeAllChildren();
     add(new ResourceLoadingModelItem());
     treeModel.reload(this);
   }
 
+  // Like setNeedsSynchronizing, but the next synchronization asks resource manager even if the
+  // projects of this user were cached recently.
+  public void setNeedsRefreshing() {
+    bypassCache = true;
+    setNeedsSynchronizing();
+  }
+
   /*
    * This method kicks off synchronization of this user asynchronously.
    * If synchronization is already in progress, this call is ignored.
@@ -102,26 +125,104 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
       return;
     }
     isSynchronizing = true;
+    final int generation = ++loadGeneration;
+    final boolean ignoreCache = bypassCache;
+    bypassCache = false;
 
-    ApplicationManager.getApplication().executeOnPooledThread(() -> {
-      try {
-        loadUserProjects();
-        needsSynchronizing = false;
-      } finally {
+    ProjectListCache cache = ProjectListCache.getInstance();
+    final String email = user.getEmail();
+    final List<Project> cachedProjects = ignoreCache ? null : cache.getProjects(email);
+    if (cachedProjects != null) {
+      // Show the projects we know of right away, and refresh them below if they may be outdated.
+      showProjects(generation, cachedProjects);
+      if (cache.isFresh(email)) {
         isSynchronizing = false;
+        needsSynchronizing = false;
+        return;
       }
+    }
+
+    // Without cached projects to show, each page is shown as soon as it arrives. If another
+    // selector is loading the projects of this user already, this one waits for the whole list.
+    final boolean streaming = cachedProjects == null;
+    final AtomicBoolean loadedHere = new AtomicBoolean();
+    pendingLoad = ResourceLoadCoordinator.getInstance().load(email, PROJECTS_RESOURCE, () -> {
+      loadedHere.set(true);
+      return fetchProjects(generation, streaming);
     });
+    pendingLoad.whenComplete((fetched, error) -> SwingUtilities.invokeLater(() -> {
+      if (generation != loadGeneration) {
+        return;
+      }
+      isSynchronizing = false;
+      needsSynchronizing = false;
+      pendingLoad = null;
+      if (error != null) {
+        onLoadFailed(generation, error, cachedProjects != null);
+      } else if (fetched != null
+          && !(streaming && loadedHere.get())
+          && (cachedProjects == null || fetched.changed)) {
+        // Rebuilding the tree loses the selection and scroll position, so only do it on changes.
+        showProjects(generation, fetched.projects);
+      }
+    }));
+  }
+
+  /*
+   * Stops a synchronization in progress, e.g. because the project selector popup was closed. The
+   * node stays dirty, so the next call to synchronize() starts over.
+   */
+  public void cancelSynchronizing() {
+    if (!isSynchronizing) {
+      return;
+    }
+    isSynchronizing = false;
+    loadGeneration++;
+    cancelPendingLoad();
+
+    // Don't leave a partially loaded list behind that looks as if it was still loading.
+    if (getChildCount() > 0 && getLastChild() instanceof ResourceLoadingModelItem) {
+      removeAllChildren();
+      add(new ResourceLoadingModelItem());
+      treeModel.reload(this);
+    }
   }
 
   public boolean isSynchronizing() {
     return isSynchronizing;
   }
 
+  private void cancelPendingLoad() {
+    if (pendingLoad != null) {
+      pendingLoad.cancel(false /* mayInterruptIfRunning */);
+      pendingLoad = null;
+    }
+  }
+
+  private void onLoadFailed(int generation, @NotNull Throwable error, boolean showsCachedProjects) {
+    if (error instanceof IOException) {
+      if (!showsCachedProjects) {
+        // https://github.com/GoogleCloudPlatform/gcloud-intellij/issues/323
+        loadErrorState(generation, GctBundle.getString("clouddebug.couldnotconnect"));
+      } else {
+        LOG.info("Could not refresh projects for " + user.getName() + ": " + error.getMessage());
+      }
+    } else {
+      LOG.error("Exception loading projects for " + user.getName(), error);
+      if (!showsCachedProjects) {
+        loadErrorState(generation, error.getMessage());
+      }
+    }
+  }
+
   // If an error occurs during the resource manager call, we load a model that shows the error.
-  private void loadErrorState(@NotNull final String errorMessage) {
+  private void loadErrorState(final int generation, @NotNull final String errorMessage) {
     SwingUtilities.invokeLater(new Runnable() {
       @Override
       public void run() {
+        if (generation != loadGeneration) {
+          return;
+        }
         GoogleUserModelItem.this.removeAllChildren();
         GoogleUserModelItem.this.add(new ResourceErrorModelItem("Error: " + errorMessage));
         treeModel.reload(GoogleUserModelItem.this);
@@ -129,71 +230,143 @@ class GoogleUserModelItem extends DefaultMutableTreeNode {
     });
   }
 
-  private void loadUserProjects() {
-    final List<DefaultMutableTreeNode> result = new ArrayList<>();
-
-    try {
-
+  /**
+   * Pages through all projects of the user, leaving out those that are scheduled for deletion,
+   * sorts them by name and caches them. Stops when the thread is interrupted because nobody waits
+   * for the projects anymore.
+   *
+   * @param streaming whether to add each page to the tree as soon as it arrives
+   * @return the projects, or {@code null} if the load was abandoned
+   */
+  @Nullable
+  private FetchedProjects fetchProjects(int generation, boolean streaming) throws IOException {
+    List<Project> projects = new ArrayList<>();
+    String pageToken = null;
+    boolean firstPage = true;
+    boolean lastPage;
+    do {
+      if (Thread.currentThread().isInterrupted()) {
+        return null;
+      }
       ListProjectsResponse response = cloudResourceManagerClient.projects().list()
-          .setPageSize(PROJECTS_MAX_PAGE_SIZE).execute();
-
+          .setPageToken(pageToken)
+          .setPageSize(PROJECTS_MAX_PAGE_SIZE)
+          .execute();
+      List<Project> page = new ArrayList<>();
       if (response != null && response.getProjects() != null) {
-        // Create a sorted set to sort the projects list by project ID.
-        Set<Project> allProjects = new TreeSet<>((Project p1, Project p2) ->
-            p1.getName().toLowerCase().compareTo(p2.getName().toLowerCase()));
-
-        response.getProjects().stream()
-            // Filter out any projects that are scheduled for deletion.
-            .filter((project) -> !PROJECT_DELETE_REQUESTED.equals(project.getLifecycleState()))
-            // Add remaining projects to the set.
-            .forEach(allProjects::add);
-
-        while (!Strings.isNullOrEmpty(response.getNextPageToken())) {
-          response = cloudResourceManagerClient.projects().list()
-              .setPageToken(response.getNextPageToken())
-              .setPageSize(PROJECTS_MAX_PAGE_SIZE)
-              .execute();
-          allProjects.addAll(response.getProjects());
-        }
-        for (Project pantheonProject : allProjects) {
-          if (!Strings.isNullOrEmpty(pantheonProject.getProjectId())) {
-            result.add(new ResourceProjectModelItem(pantheonProject));
+        for (Project project : response.getProjects()) {
+          if (!PROJECT_DELETE_REQUESTED.equals(project.getLifecycleState())
+              && !Strings.isNullOrEmpty(project.getProjectId())) {
+            page.add(project);
           }
         }
       }
-    } catch (IOException ex) {
-      // https://github.com/GoogleCloudPlatform/gcloud-intellij/issues/323
-      loadErrorState(GctBundle.getString("clouddebug.couldnotconnect"));
-      return;
-    } catch (RuntimeException ex) {
-      LOG.error("Exception loading projects for " + user.getName(), ex);
-      loadErrorState(ex.getMessage());
-      return;
+      page.sort(PROJECT_NAME_ORDER);
+      pageToken = response != null ? response.getNextPageToken() : null;
+      lastPage = Strings.isNullOrEmpty(pageToken);
+
+      if (streaming) {
+        appendProjects(generation, page, firstPage, lastPage);
+      }
+      projects.addAll(page);
+      firstPage = false;
+    } while (!lastPage);
+
+    projects.sort(PROJECT_NAME_ORDER);
+    boolean changed = ProjectListCache.getInstance().update(user.getEmail(), projects);
+    return new FetchedProjects(projects, changed);
+  }
+
+  /**
+   * Merges a sorted page of projects into the children of this node. Until the last page has been
+   * added, a loading item at the end shows that more projects are on the way.
+   */
+  private void appendProjects(
+      final int generation,
+      @NotNull final List<Project> page,
+      final boolean firstPage,
+      final boolean lastPage) {
+    SwingUtilities.invokeLater(() -> {
+      if (generation != loadGeneration) {
+        return;
+      }
+      if (firstPage) {
+        removeAllChildren();
+        add(new ResourceLoadingModelItem());
+        treeModel.reload(this);
+      }
+
+      // Both the page and the children are sorted, so each project goes after the previous one.
+      int[] insertedIndices = new int[page.size()];
+      int searchFrom = 0;
+      for (int i = 0; i < page.size(); i++) {
+        int index = findInsertionIndex(page.get(i), searchFrom);
+        insert(new ResourceProjectModelItem(page.get(i)), index);
+        insertedIndices[i] = index;
+        searchFrom = index + 1;
+      }
+      if (insertedIndices.length > 0) {
+        treeModel.nodesWereInserted(this, insertedIndices);
+      }
+
+      if (lastPage) {
+        treeModel.removeNodeFromParent((MutableTreeNode) getLastChild());
+        treeModel.insertNodeInto(new ResourceNewProjectModelItem(), this, getChildCount());
+      }
+    });
+  }
+
+  // Finds where the project goes among the project children, which precede the loading item.
+  private int findInsertionIndex(@NotNull Project project, int fromIndex) {
+    int low = fromIndex;
+    int high = getChildCount() - 1;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      Project child = ((ResourceProjectModelItem) getChildAt(middle)).getProject();
+      if (PROJECT_NAME_ORDER.compare(child, project) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
     }
+    return low;
+  }
 
+  private void showProjects(final int generation, @NotNull List<Project> projects) {
+    final List<DefaultMutableTreeNode> result = new ArrayList<>(projects.size() + 1);
+    for (Project project : projects) {
+      result.add(new ResourceProjectModelItem(project));
+    }
     result.add(new ResourceNewProjectModelItem());
 
-    try {
-      // We invoke back to the UI thread to update the model and treeview.
-      SwingUtilities.invokeAndWait(new Runnable() {
-        @Override
-        public void run() {
-          GoogleUserModelItem.this.removeAllChildren();
-
-          for (DefaultMutableTreeNode item : result) {
-            GoogleUserModelItem.this.add(item);
-          }
+    // We invoke back to the UI thread to update the model and treeview.
+    SwingUtilities.invokeLater(new Runnable() {
+      @Override
+      public void run() {
+        if (generation != loadGeneration) {
+          return;
+        }
+        GoogleUserModelItem.this.removeAllChildren();
 
-          treeModel.reload(GoogleUserModelItem.this);
+        for (DefaultMutableTreeNode item : result) {
+          GoogleUserModelItem.this.add(item);
         }
-      });
-    } catch (InterruptedException ex) {
-      LOG.error("InterruptedException loading projects for " + user.getName(), ex);
-      loadErrorState(ex.getMessage());
-      Thread.currentThread().interrupt();
-    } catch (InvocationTargetException ex) {
-      LOG.error("InvocationTargetException loading projects for " + user.getName(), ex);
-      loadErrorState(ex.getMessage());
+
+        treeModel.reload(GoogleUserModelItem.this);
+      }
+    });
+  }
+
+  /** The projects of the user, as loaded from resource manager. */
+  private static final class FetchedProjects {
+
+    private final List<Project> projects;
+    // whether the projects differ from the cached ones
+    private final boolean changed;
+
+    private FetchedProjects(@NotNull List<Project> projects, boolean changed) {
+      this.projects = projects;
+      this.changed = changed;
     }
   }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import com.google.api.services.cloudresourcemanager.model.Project;
+
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.RoamingType;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.annotations.AbstractCollection;
+import com.intellij.util.xmlb.annotations.Tag;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the GCP projects of each signed in account across IDE restarts, so that the project
+ * selector can show them right away and refresh them in the background.
+ */
+@State(
+    name = "GoogleCloudProjectListCache",
+    storages = {@Storage(file = "googleCloudProjectCache.xml", roamingType = RoamingType.DISABLED)})
+public class ProjectListCache implements PersistentStateComponent<ProjectListCache.CacheState> {
+
+  // Within this time of the last refresh, cached projects are shown without asking the server.
+  private static final long FRESH_FOR_MS = TimeUnit.MINUTES.toMillis(1);
+
+  // guarded by this
+  private CacheState state = new CacheState();
+
+  public static ProjectListCache getInstance() {
+    return ServiceManager.getService(ProjectListCache.class);
+  }
+
+  /**
+   * Returns the projects last stored for the account, in display order, or {@code null} if none
+   * were stored.
+   */
+  @Nullable
+  public synchronized List<Project> getProjects(@NotNull String email) {
+    AccountProjects account = findAccount(email);
+    if (account == null) {
+      return null;
+    }
+    List<Project> projects = new ArrayList<>(account.projects.size());
+    for (CachedProject cachedProject : account.projects) {
+      projects.add(cachedProject.toProject());
+    }
+    return projects;
+  }
+
+  /** Returns true if the projects of the account were refreshed recently enough to be trusted. */
+  public synchronized boolean isFresh(@NotNull String email) {
+    AccountProjects account = findAccount(email);
+    return account != null
+        && System.currentTimeMillis() - account.refreshedAtMillis < FRESH_FOR_MS;
+  }
+
+  /**
+   * Stores the projects just fetched for the account.
+   *
+   * @return true if they differ from the ones stored before
+   */
+  public synchronized boolean update(@NotNull String email, @NotNull List<Project> projects) {
+    List<CachedProject> cachedProjects = new ArrayList<>(projects.size());
+    for (Project project : projects) {
+      cachedProjects.add(new CachedProject(project));
+    }
+
+    AccountProjects account = findAccount(email);
+    if (account == null) {
+      account = new AccountProjects();
+      account.email = email;
+      // the state may be serialized concurrently, so its lists are replaced rather than modified
+      List<AccountProjects> accounts = new ArrayList<>(state.accounts);
+      accounts.add(account);
+      state.accounts = accounts;
+    }
+    account.refreshedAtMillis = System.currentTimeMillis();
+    if (account.projects.equals(cachedProjects)) {
+      return false;
+    }
+    account.projects = cachedProjects;
+    return true;
+  }
+
+  @Nullable
+  private AccountProjects findAccount(@NotNull String email) {
+    for (AccountProjects account : state.accounts) {
+      if (email.equals(account.email)) {
+        return account;
+      }
+    }
+    return null;
+  }
+
+  @NotNull
+  @Override
+  public synchronized CacheState getState() {
+    return state;
+  }
+
+  @Override
+  public synchronized void loadState(CacheState state) {
+    this.state = state;
+  }
+
+  /** The persisted form of the cache. */
+  public static class CacheState {
+
+    // For serialization purposes, this cannot be final.
+    @AbstractCollection(surroundWithTag = false)
+    public List<AccountProjects> accounts = new ArrayList<>();
+  }
+
+  /** The projects of one account. */
+  @Tag("account")
+  public static class AccountProjects {
+
+    public String email;
+    public long refreshedAtMillis;
+
+    @AbstractCollection(surroundWithTag = false)
+    public List<CachedProject> projects = new ArrayList<>();
+  }
+
+  /** The fields of a {@link Project} that the project selector shows. */
+  @Tag("project")
+  public static class CachedProject {
+
+    public String projectId;
+    public String name;
+    public Long projectNumber;
+
+    /** This is used during deserialization. */
+    public CachedProject() {}
+
+    CachedProject(@NotNull Project project) {
+      projectId = project.getProjectId();
+      name = project.getName();
+      projectNumber = project.getProjectNumber();
+    }
+
+    @NotNull
+    Project toProject() {
+      return new Project().setProjectId(projectId).setName(name).setProjectNumber(projectNumber);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof CachedProject)) {
+        return false;
+      }
+      CachedProject that = (CachedProject) other;
+      return Objects.equals(projectId, that.projectId)
+          && Objects.equals(name, that.name)
+          && Objects.equals(projectNumber, that.projectNumber);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(projectId, name, projectNumber);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.cloud.tools.intellij.resources;
 
+import com.google.api.services.source.model.ListReposResponse;
 import com.google.api.services.source.model.Repo;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
 import com.google.cloud.tools.intellij.util.GctBundle;
@@ -27,6 +28,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import javax.swing.tree.DefaultMutableTreeNode;
 
@@ -37,6 +39,7 @@ import javax.swing.tree.DefaultMutableTreeNode;
 public class ProjectRepositoriesModelItem extends DefaultMutableTreeNode {
 
   private CloudRepositoryService cloudRepositoryService;
+  private CompletableFuture<ListReposResponse> pendingLoad;
 
   public ProjectRepositoriesModelItem() {
     cloudRepositoryService = ServiceManager.getService(CloudRepositoryService.class);
@@ -45,9 +48,12 @@ public class ProjectRepositoriesModelItem extends DefaultMutableTreeNode {
   public void loadRepositories(@NotNull String cloudProject, @NotNull CredentialedUser user,
       @Nullable Runnable onComplete) {
     setUserObject(cloudProject);
+    cancelLoading();
 
-    cloudRepositoryService
-        .listAsync(user, cloudProject)
+    CompletableFuture<ListReposResponse> load
+        = cloudRepositoryService.listAsync(user, cloudProject);
+    pendingLoad = load;
+    load
         .thenAccept(response -> {
           removeAllChildren();
 
@@ -67,7 +73,11 @@ public class ProjectRepositoriesModelItem extends DefaultMutableTreeNode {
             onComplete.run();
           }
         })
-        .exceptionally(response -> {
+        .exceptionally(error -> {
+          if (load.isCancelled()) {
+            // a newer load replaces this one, or nobody waits for it anymore
+            return null;
+          }
           removeAllChildren();
           add(new ResourceErrorModelItem(GctBundle.message("cloud.repository.list.error")));
 
@@ -78,4 +88,11 @@ public class ProjectRepositoriesModelItem extends DefaultMutableTreeNode {
         });
   }
 
+  /** Abandons the repositories that are being loaded, if any. */
+  public void cancelLoading() {
+    if (pendingLoad != null) {
+      pendingLoad.cancel(false /* mayInterruptIfRunning */);
+      pendingLoad = null;
+    }
+  }
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.tree.TreeNode;
+
+/**
+ * A case-insensitive substring index over the IDs, names and numbers of the projects of all users
+ * in the project selector tree.
+ *
+ * <p>The keys of all projects are lower-cased once and kept in one string, so a search is a single
+ * {@link String#indexOf} scan that skips to the next project after each hit. A query that extends
+ * the previous one, as happens while typing, only rechecks the projects that matched before.
+ */
+class ProjectSearchIndex {
+
+  // Separates the keys of a project, and cannot be typed into a query.
+  private static final char KEY_SEPARATOR = '\n';
+
+  private final List<ResourceProjectModelItem> items = new ArrayList<>();
+  private final Map<String, ResourceProjectModelItem> itemsById = new HashMap<>();
+  private final String keys;
+  // where the keys of each item start, plus the end of the keys
+  private final int[] itemOffsets;
+  // where the name of each item starts
+  private final int[] nameOffsets;
+
+  // the previous search, to narrow down from while the query grows
+  private String lastQuery;
+  private int[] lastMatches;
+  private int lastMatchCount;
+
+  /** Indexes the projects of the user nodes under {@code root}. */
+  ProjectSearchIndex(@NotNull TreeNode root) {
+    for (int userIndex = 0; userIndex < root.getChildCount(); userIndex++) {
+      TreeNode userNode = root.getChildAt(userIndex);
+      for (int index = 0; index < userNode.getChildCount(); index++) {
+        if (userNode.getChildAt(index) instanceof ResourceProjectModelItem) {
+          items.add((ResourceProjectModelItem) userNode.getChildAt(index));
+        }
+      }
+    }
+
+    StringBuilder builder = new StringBuilder(items.size() * 48);
+    itemOffsets = new int[items.size() + 1];
+    nameOffsets = new int[items.size()];
+    for (int index = 0; index < items.size(); index++) {
+      ResourceProjectModelItem item = items.get(index);
+      String projectId = toKey(item.getProjectId());
+      itemsById.putIfAbsent(projectId, item);
+
+      itemOffsets[index] = builder.length();
+      builder.append(projectId).append(KEY_SEPARATOR);
+      nameOffsets[index] = builder.length();
+      builder.append(toKey(item.getDescription())).append(KEY_SEPARATOR);
+      if (item.getNumber() != null) {
+        builder.append(item.getNumber().longValue());
+      }
+      builder.append(KEY_SEPARATOR);
+    }
+    itemOffsets[items.size()] = builder.length();
+    keys = builder.toString();
+  }
+
+  /** Returns the project with the given ID, ignoring case, or {@code null} if there is none. */
+  @Nullable
+  ResourceProjectModelItem findById(@NotNull String projectId) {
+    return itemsById.get(toKey(projectId));
+  }
+
+  /**
+   * Finds the projects whose ID, name or number contains {@code query}, ignoring case. Not thread
+   * safe, as consecutive searches share state.
+   */
+  @NotNull
+  SearchResult search(@NotNull String query) {
+    String needle = toKey(query);
+    if (needle.indexOf(KEY_SEPARATOR) >= 0) {
+      return new SearchResult(Collections.emptySet(), null);
+    }
+
+    int[] matches = new int[items.size()];
+    int matchCount = 0;
+    if (lastQuery != null && needle.startsWith(lastQuery)) {
+      // Everything that matches now matched the shorter query before.
+      for (int i = 0; i < lastMatchCount; i++) {
+        if (itemContains(lastMatches[i], needle)) {
+          matches[matchCount++] = lastMatches[i];
+        }
+      }
+    } else {
+      int from = 0;
+      int hit;
+      while ((hit = keys.indexOf(needle, from)) >= 0) {
+        int item = findItem(hit);
+        matches[matchCount++] = item;
+        from = itemOffsets[item + 1];
+      }
+    }
+    lastQuery = needle;
+    lastMatches = matches;
+    lastMatchCount = matchCount;
+
+    Set<ResourceProjectModelItem> matchingItems =
+        Collections.newSetFromMap(new IdentityHashMap<>(matchCount * 2));
+    ResourceProjectModelItem bestMatch = null;
+    int bestRank = Integer.MAX_VALUE;
+    for (int i = 0; i < matchCount; i++) {
+      int item = matches[i];
+      matchingItems.add(items.get(item));
+      int rank = rank(item, needle);
+      if (rank < bestRank) {
+        bestRank = rank;
+        bestMatch = items.get(item);
+      }
+    }
+    return new SearchResult(matchingItems, bestMatch);
+  }
+
+  // Lower ranks are better matches: exact IDs, then ID prefixes, then name prefixes.
+  private int rank(int item, @NotNull String needle) {
+    int idEnd = nameOffsets[item] - 1;
+    if (keys.startsWith(needle, itemOffsets[item])) {
+      return itemOffsets[item] + needle.length() == idEnd ? 0 : 1;
+    }
+    return keys.startsWith(needle, nameOffsets[item]) ? 2 : 3;
+  }
+
+  private boolean itemContains(int item, @NotNull String needle) {
+    int last = itemOffsets[item + 1] - needle.length();
+    for (int offset = itemOffsets[item]; offset <= last; offset++) {
+      if (keys.startsWith(needle, offset)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Returns the item whose keys contain the offset.
+  private int findItem(int offset) {
+    int low = 0;
+    int high = items.size() - 1;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (itemOffsets[middle] <= offset) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  @NotNull
+  private static String toKey(@Nullable String value) {
+    return value == null ? "" : value.toLowerCase(Locale.ROOT);
+  }
+
+  /** The projects that match a query. */
+  static final class SearchResult {
+
+    private final Set<ResourceProjectModelItem> matches;
+    private final ResourceProjectModelItem bestMatch;
+
+    private SearchResult(
+        @NotNull Set<ResourceProjectModelItem> matches,
+        @Nullable ResourceProjectModelItem bestMatch) {
+      this.matches = matches;
+      this.bestMatch = bestMatch;
+    }
+
+    /** Returns the matching projects, which compare by identity. */
+    @NotNull
+    Set<ResourceProjectModelItem> getMatches() {
+      return matches;
+    }
+
+    /** Returns the project the user most likely looks for, or {@code null} if none matched. */
+    @Nullable
+    ResourceProjectModelItem getBestMatch() {
+      return bestMatch;
+    }
+  }
+}
@@ -29,7 +29,10 @@ import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 
 import com.intellij.openapi.ui.popup.ComponentPopupBuilder;
 import com.intellij.openapi.ui.popup.JBPopup;
+import com.intellij.openapi.ui.popup.JBPopupAdapter;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
+import com.intellij.openapi.ui.popup.LightweightWindowEvent;
+import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.awt.RelativePoint;
 import com.intellij.ui.treeStructure.Tree;
 import com.intellij.util.ui.UIUtil;
@@ -49,7 +52,6 @@ import java.awt.event.FocusListener;
 import java.awt.event.HierarchyEvent;
 import java.awt.event.HierarchyListener;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +62,7 @@ import javax.swing.JComponent;
 import javax.swing.JTree;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
 import javax.swing.event.TreeExpansionEvent;
 import javax.swing.event.TreeExpansionListener;
 import javax.swing.event.TreeModelEvent;
@@ -96,6 +99,8 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
   private JBPopup popup;
   private PopupPanel popupPanel;
   private List<ProjectSelectionListener> projectSelectionListeners;
+  // set while a selection in the popup updates the text, which is not a query to filter by
+  private boolean selectingFromPopup;
 
   public ProjectSelector() {
     this(false);
@@ -118,6 +123,8 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
 
       @Override
       public void treeNodesInserted(TreeModelEvent event) {
+        // projects are inserted page by page while they load
+        selectCurrentProject(event);
       }
 
       @Override
@@ -126,6 +133,10 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
 
       @Override
       public void treeStructureChanged(TreeModelEvent event) {
+        selectCurrentProject(event);
+      }
+
+      private void selectCurrentProject(TreeModelEvent event) {
         if (!Strings.isNullOrEmpty(getText())
             && popup != null && !popup.isDisposed() && popupPanel != null
             && event.getTreePath() != null
@@ -161,6 +172,16 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
       }
     });
 
+    // Typing into the field while the popup is open filters the projects shown in it.
+    getDocument().addDocumentListener(new DocumentAdapter() {
+      @Override
+      protected void textChanged(DocumentEvent event) {
+        if (!selectingFromPopup && isPopupVisible()) {
+          popupPanel.filter(getText());
+        }
+      }
+    });
+
     getTextField().setCursor(Cursor.getDefaultCursor());
     getTextField().getEmptyText().setText("Enter a cloud project ID...");
 
@@ -174,6 +195,11 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
       @Override
       public void hierarchyChanged(HierarchyEvent event) {
         if ((event.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+          if (!isShowing()) {
+            // The dialog was closed, so nobody waits for its projects anymore.
+            cancelSynchronizing();
+            return;
+          }
           SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
@@ -371,7 +397,7 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
       GoogleUserModelItem node = getNodeForUser(Services.getLoginService().getActiveUser());
       if (node != null) {
         if (forceUpdate) {
-          node.setNeedsSynchronizing();
+          node.setNeedsRefreshing();
         }
         node.synchronize();
       }
@@ -381,7 +407,7 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
           node = getNodeForUser(user);
           if (node != null) {
             if (forceUpdate) {
-              node.setNeedsSynchronizing();
+              node.setNeedsRefreshing();
             }
             if (!queryOnExpand ||
                 (popupPanel != null && popupPanel.tree.isExpanded(new TreePath(node.getPath())))) {
@@ -395,15 +421,35 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
     }
   }
 
+  private void cancelSynchronizing() {
+    for (int index = 0; index < modelRoot.getChildCount(); index++) {
+      TreeNode node = modelRoot.getChildAt(index);
+      if (node instanceof GoogleUserModelItem) {
+        ((GoogleUserModelItem) node).cancelSynchronizing();
+      }
+    }
+  }
+
   @Override
   public void showPopup(RelativePoint showTarget) {
     if (popup == null || popup.isDisposed()) {
-      popupPanel = new PopupPanel();
+      final PopupPanel popupPanel = new PopupPanel();
+      this.popupPanel = popupPanel;
 
       popupPanel.initializeContent(getText());
       ComponentPopupBuilder popup = JBPopupFactory.getInstance()
           .createComponentPopupBuilder(popupPanel, popupPanel.getInitialFocus());
       this.popup = popup.createPopup();
+      // Nobody is waiting for projects once the popup is gone.
+      this.popup.addListener(new JBPopupAdapter() {
+        @Override
+        public void onClosed(LightweightWindowEvent event) {
+          popupPanel.dispose();
+          cancelSynchronizing();
+        }
+      });
+      // Users whose loading was cancelled when the popup closed last time start over.
+      synchronize(false);
     }
     if (!popup.isVisible()) {
       popup.show(showTarget);
@@ -413,35 +459,68 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
   private class PopupPanel extends GoogleLoginEmptyPanel {
 
     private JTree tree;
+    private FilteringProjectTreeModel filteringModel;
 
-    @Nullable
-    private TreePath find(DefaultMutableTreeNode root, String str) {
-      @SuppressWarnings("unchecked") Enumeration<DefaultMutableTreeNode> nodes = root
-          .depthFirstEnumeration();
-      while (nodes.hasMoreElements()) {
-        DefaultMutableTreeNode node = nodes.nextElement();
-        if (node instanceof ResourceProjectModelItem
-            && str.equalsIgnoreCase(((ResourceProjectModelItem) node).getProjectId())) {
-          return new TreePath(node.getPath());
-        }
+    public JComponent getInitialFocus() {
+      return tree;
+    }
+
+    /**
+     * Shows only the projects matching {@code query} and scrolls to the best match. The match is
+     * not selected, as selecting a project commits it and closes the popup.
+     */
+    public void filter(String query) {
+      filteringModel.setQuery(query);
+      ResourceProjectModelItem bestMatch = filteringModel.getBestMatch();
+      if (bestMatch != null) {
+        tree.scrollPathToVisible(new TreePath(bestMatch.getPath()));
       }
-      return null;
     }
 
-    public JComponent getInitialFocus() {
-      return tree;
+    public void dispose() {
+      filteringModel.dispose();
+    }
+
+    // The tree collapses whenever the filtered structure changes, so the matches are shown again.
+    private void expandUsers() {
+      for (int i = 0; i < filteringModel.getChildCount(modelRoot); i++) {
+        tree.expandPath(new TreePath(
+            new Object[] {modelRoot, filteringModel.getChild(modelRoot, i)}));
+      }
     }
 
     public void initializeContent(String selectedProjectId) {
-      tree = new Tree(treeModel);
+      filteringModel = new FilteringProjectTreeModel(treeModel);
+      tree = new Tree(filteringModel);
       tree.setRowHeight(0);
 
       if (!Strings.isNullOrEmpty(selectedProjectId)) {
-        TreePath path = find(modelRoot, selectedProjectId);
-        if (path != null) {
-          tree.setSelectionPath(path);
+        ResourceProjectModelItem selectedProject = filteringModel.findProject(selectedProjectId);
+        if (selectedProject != null) {
+          tree.setSelectionPath(new TreePath(selectedProject.getPath()));
         }
       }
+      // Added after the tree's own listener, so that the rows exist by the time it runs.
+      filteringModel.addTreeModelListener(new TreeModelListener() {
+        @Override
+        public void treeNodesChanged(TreeModelEvent event) {
+        }
+
+        @Override
+        public void treeNodesInserted(TreeModelEvent event) {
+        }
+
+        @Override
+        public void treeNodesRemoved(TreeModelEvent event) {
+        }
+
+        @Override
+        public void treeStructureChanged(TreeModelEvent event) {
+          if (filteringModel.isFiltering()) {
+            expandUsers();
+          }
+        }
+      });
       tree.setRootVisible(false);
       tree.setOpaque(false);
       tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
@@ -463,7 +542,12 @@ public class ProjectSelector extends CustomizableComboBox implements Customizabl
               String oldSelection = ProjectSelector.this.getText();
               String newSelection = projectNode.getProject().getProjectId();
               if (Strings.isNullOrEmpty(oldSelection) || !oldSelection.equals(newSelection)) {
-                ProjectSelector.this.setText(newSelection);
+                selectingFromPopup = true;
+                try {
+                  ProjectSelector.this.setText(newSelection);
+                } finally {
+                  selectingFromPopup = false;
+                }
                 onSelectionChanged(projectNode);
                 SwingUtilities.invokeLater(new Runnable() {
                   @Override
@@ -18,6 +18,7 @@ package com.google.cloud.tools.intellij.resources;
 
 import com.google.cloud.tools.intellij.stats.UsageTrackerProvider;
 import com.google.cloud.tools.intellij.util.GctTracking;
+import com.google.common.annotations.VisibleForTesting;
 
 import com.intellij.ide.BrowserUtil;
 import com.intellij.ui.UI;
@@ -84,10 +85,7 @@ class ProjectSelectorNewProjectItem extends JPanel implements MouseListener, Mou
   @Override
   public void mousePressed(MouseEvent event) {
     if (isOverLink(event.getX(), event.getY())) {
-      TreeModel model = tree.getModel();
-      if (model instanceof ProjectSelector.SelectorTreeModel) {
-        ((ProjectSelector.SelectorTreeModel) model).setModelNeedsRefresh(true);
-      }
+      markModelForRefresh();
       BrowserUtil.browse("https://console.developers.google.com/project");
       UsageTrackerProvider.getInstance()
           .trackEvent(GctTracking.PROJECT_SELECTION_CREATE_NEW_PROJECT)
@@ -95,6 +93,15 @@ class ProjectSelectorNewProjectItem extends JPanel implements MouseListener, Mou
     }
   }
 
+  // The project list is reloaded the next time the selector opens, to pick up the new project.
+  @VisibleForTesting
+  void markModelForRefresh() {
+    TreeModel model = FilteringProjectTreeModel.unwrap(tree.getModel());
+    if (model instanceof ProjectSelector.SelectorTreeModel) {
+      ((ProjectSelector.SelectorTreeModel) model).setModelNeedsRefresh(true);
+    }
+  }
+
   @Override
   public void mouseReleased(MouseEvent event) {
   }
@@ -16,6 +16,8 @@
 
 package com.google.cloud.tools.intellij.resources;
 
+import com.google.common.annotations.VisibleForTesting;
+
 import com.intellij.ui.JBColor;
 import com.intellij.util.ConcurrencyUtil;
 
@@ -36,8 +38,8 @@ import java.util.concurrent.TimeUnit;
 import javax.swing.JTree;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeCellRenderer;
-import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeCellRenderer;
+import javax.swing.tree.TreeModel;
 import javax.swing.tree.TreePath;
 
 /**
@@ -98,16 +100,21 @@ class ProjectSelectorRenderer implements TreeCellRenderer, MouseListener, MouseM
 
   // This method causes all loading nodes to repaint (for animation purposes)
   // If there are no further loading nodes to paint, it turns off the ticker.
-  private void repaintLoadingNodes() {
+  // The tree may show a filtered view of the model, so the loading nodes are looked up in the model
+  // holding all of them.
+  @VisibleForTesting
+  void repaintLoadingNodes() {
     boolean hasLoadingNode = false;
-    DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+    TreeModel model = FilteringProjectTreeModel.unwrap(tree.getModel());
     DefaultMutableTreeNode rootNode = (DefaultMutableTreeNode) model.getRoot();
     for (int index = 0; index < rootNode.getChildCount(); index++) {
       GoogleUserModelItem userModelItem = (GoogleUserModelItem) rootNode.getChildAt(index);
+      // The loading node is either the only child, or follows the projects loaded so far.
       if (userModelItem.isSynchronizing()
-          && userModelItem.getChildCount() == 1 && userModelItem
-          .getChildAt(0) instanceof ResourceLoadingModelItem) {
-        TreePath path = new TreePath(model.getPathToRoot(userModelItem.getChildAt(0)));
+          && userModelItem.getChildCount() > 0 && userModelItem
+          .getLastChild() instanceof ResourceLoadingModelItem) {
+        TreePath path =
+            new TreePath(((DefaultMutableTreeNode) userModelItem.getLastChild()).getPath());
         Rectangle rect = tree.getPathBounds(path);
         if (rect != null) {
           tree.repaint(rect);
@@ -116,7 +123,7 @@ class ProjectSelectorRenderer implements TreeCellRenderer, MouseListener, MouseM
       }
     }
 
-    if (!hasLoadingNode) {
+    if (!hasLoadingNode && ticker != null) {
       ticker.cancel(false);
       ticker = null;
     }
@@ -21,10 +21,12 @@ import com.google.cloud.tools.intellij.ui.CustomizableComboBox;
 import com.google.cloud.tools.intellij.ui.CustomizableComboBoxPopup;
 import com.google.cloud.tools.intellij.ui.GoogleCloudToolsIcons;
 import com.google.cloud.tools.intellij.util.GctBundle;
+import com.google.cloud.tools.intellij.vcs.CloudRepositoryService;
 import com.google.common.annotations.VisibleForTesting;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.ui.popup.ComponentPopupBuilder;
 import com.intellij.openapi.ui.popup.JBPopup;
@@ -41,6 +43,7 @@ import java.awt.Color;
 import java.awt.Desktop;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.event.HierarchyEvent;
 import java.io.IOException;
 import java.net.URI;
 import java.util.Enumeration;
@@ -83,6 +86,14 @@ public class RepositorySelector extends CustomizableComboBox implements Customiz
 
     getTextField().getEmptyText()
         .setText(GctBundle.message("cloud.repository.selector.placeholder.text"));
+
+    // Once the dialog is closed, nobody waits for its repositories anymore.
+    addHierarchyListener(event -> {
+      if ((event.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0
+          && !isShowing() && repositories != null) {
+        repositories.cancelLoading();
+      }
+    });
   }
 
   @Nullable
@@ -275,6 +286,10 @@ public class RepositorySelector extends CustomizableComboBox implements Customiz
       JButton refreshButton = new JButton();
       refreshButton.setIcon(GoogleCloudToolsIcons.REFRESH);
       refreshButton.addActionListener(event -> {
+        if (user != null && cloudProject != null) {
+          // ask the server again, e.g. after a repository was created in the console
+          ServiceManager.getService(CloudRepositoryService.class).invalidate(user, cloudProject);
+        }
         refresh();
       });
 
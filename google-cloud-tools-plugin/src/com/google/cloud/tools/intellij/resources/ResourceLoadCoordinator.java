@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.util.ConcurrencyUtil;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the API calls that load cloud resources, such as the projects of an account or the
+ * repositories of a project, for the resource selectors of all open dialogs.
+ *
+ * <p>Loads run on a small dedicated pool, so that many accounts cannot flood the shared pooled
+ * threads with blocking network calls. A load that is requested while the same one is still
+ * running is not started again; the caller waits for the running one instead. Every caller can
+ * cancel its own request, e.g. when its dialog goes away, and the load itself is interrupted once
+ * nobody waits for it anymore.
+ */
+public class ResourceLoadCoordinator {
+
+  private static final int MAX_THREADS = 4;
+  private static final long IDLE_THREAD_TIMEOUT_SECONDS = 30;
+
+  private final ThreadPoolExecutor executor;
+  // loads that have not finished yet, by account and resource; guarded by this
+  private final Map<String, SharedLoad<?>> runningLoads = new HashMap<>();
+
+  public ResourceLoadCoordinator() {
+    this(MAX_THREADS);
+  }
+
+  @VisibleForTesting
+  ResourceLoadCoordinator(int maxThreads) {
+    executor =
+        new ThreadPoolExecutor(
+            maxThreads,
+            maxThreads,
+            IDLE_THREAD_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            ConcurrencyUtil.newNamedThreadFactory(
+                "Cloud resource loader", true /* isDaemon */, Thread.NORM_PRIORITY));
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  public static ResourceLoadCoordinator getInstance() {
+    return ServiceManager.getService(ResourceLoadCoordinator.class);
+  }
+
+  /**
+   * Loads a resource of an account, unless the same load is already running.
+   *
+   * @param account the account whose credentials the load uses
+   * @param resource identifies what is loaded for the account, e.g. "projects"
+   * @param loader makes the API calls. It is not called if the load is already running, and should
+   *     stop early when its thread is interrupted.
+   * @return the result of the load. Cancelling it only stops the load if no one else waits for it.
+   *     Dependent stages run on the loading thread.
+   */
+  @NotNull
+  public <T> CompletableFuture<T> load(
+      @NotNull String account, @NotNull String resource, @NotNull Callable<T> loader) {
+    String key = account + '\n' + resource;
+    SharedLoad<T> load;
+    synchronized (this) {
+      @SuppressWarnings("unchecked")
+      SharedLoad<T> runningLoad = (SharedLoad<T>) runningLoads.get(key);
+      load = runningLoad;
+      if (load == null) {
+        load = new SharedLoad<>(key, loader);
+        runningLoads.put(key, load);
+        load.task = executor.submit(load);
+      }
+      load.waiting++;
+    }
+
+    CompletableFuture<T> request = new CompletableFuture<>();
+    final SharedLoad<T> sharedLoad = load;
+    sharedLoad.result.whenComplete(
+        (value, error) -> {
+          if (error != null) {
+            request.completeExceptionally(error);
+          } else {
+            request.complete(value);
+          }
+        });
+    request.whenComplete(
+        (value, error) -> {
+          if (request.isCancelled()) {
+            onRequestCancelled(sharedLoad);
+          }
+        });
+    return request;
+  }
+
+  @VisibleForTesting
+  synchronized boolean isRunning(@NotNull String account, @NotNull String resource) {
+    return runningLoads.containsKey(account + '\n' + resource);
+  }
+
+  private synchronized void onRequestCancelled(@NotNull SharedLoad<?> load) {
+    if (--load.waiting == 0 && runningLoads.remove(load.key, load)) {
+      load.task.cancel(true /* mayInterruptIfRunning */);
+      load.result.cancel(false);
+    }
+  }
+
+  private synchronized void onLoadFinished(@NotNull SharedLoad<?> load) {
+    runningLoads.remove(load.key, load);
+  }
+
+  /** A load and the number of requests waiting for it, which are guarded by the coordinator. */
+  private final class SharedLoad<T> implements Runnable {
+
+    private final String key;
+    private final Callable<T> loader;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private Future<?> task;
+    private int waiting;
+
+    private SharedLoad(@NotNull String key, @NotNull Callable<T> loader) {
+      this.key = key;
+      this.loader = loader;
+    }
+
+    @Override
+    public void run() {
+      T value = null;
+      Throwable error = null;
+      try {
+        value = loader.call();
+      } catch (Throwable ex) {
+        error = ex;
+      }
+      // Requests that come in from now on start a new load, which may see newer data.
+      onLoadFinished(this);
+      if (error != null) {
+        result.completeExceptionally(error);
+      } else {
+        result.complete(value);
+      }
+    }
+  }
+}
@@ -17,10 +17,11 @@
 package com.google.cloud.tools.intellij.vcs;
 
 import com.google.api.client.auth.oauth2.Credential;
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
 import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpStatusCodes;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.client.util.Key;
 import com.google.api.client.util.Preconditions;
@@ -29,17 +30,23 @@ import com.google.api.services.source.SourceRequest;
 import com.google.api.services.source.model.ListReposResponse;
 import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
+import com.google.cloud.tools.intellij.login.HttpTransportProvider;
+import com.google.cloud.tools.intellij.resources.ResourceLoadCoordinator;
 
 import com.intellij.openapi.components.ServiceManager;
 
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for interacting with Google Cloud Source Repositories.
+ *
+ * <p>Repository listings are cached per account and project, so that switching back and forth
+ * between projects does not wait on the server every time.
  */
 public class CloudRepositoryService {
 
@@ -47,40 +54,105 @@ public class CloudRepositoryService {
   private static final String CLOUD_SOURCE_API_LIST_URL = "v1/projects/{projectId}/repos";
   private static int LIST_TIMEOUT_MS = 5000;
 
+  private final RepositoryListCache cache = new RepositoryListCache();
+  // the client of each account, with the credential it was built for; guarded by this
+  private final Map<String, Source> clients = new HashMap<>();
+  private final Map<String, Credential> clientCredentials = new HashMap<>();
+
+  /**
+   * Lists the repositories of the project, from the cache if they were listed recently. Otherwise
+   * the server is asked, conditionally if the cached listing came with an ETag.
+   */
   @NotNull
   public ListReposResponse list(CredentialedUser user, String cloudProject)
       throws CloudRepositoryServiceException {
+    String account = user.getEmail();
+    ListReposResponse cachedResponse = cache.getFresh(account, cloudProject);
+    if (cachedResponse != null) {
+      return cachedResponse;
+    }
+
     try {
-      Credential credential = user.getCredential();
-      HttpRequestInitializer initializer = httpRequest -> {
-        HttpHeaders headers = new HttpHeaders();
-        httpRequest.setConnectTimeout(LIST_TIMEOUT_MS);
-        httpRequest.setReadTimeout(LIST_TIMEOUT_MS);
-        httpRequest.setHeaders(headers);
-        credential.initialize(httpRequest);
-      };
-
-      HttpTransport httpTransport = GoogleNetHttpTransport.newTrustedTransport();
-      String userAgent = ServiceManager
-          .getService(CloudToolsPluginInfoService.class).getUserAgent();
-
-      Source source = new Source.Builder(httpTransport, JacksonFactory.getDefaultInstance(),
-          initializer)
-          .setRootUrl(CLOUD_SOURCE_API_ROOT_URL)
-          .setServicePath("")
-          // this ends up prefixed to user agent
-          .setApplicationName(userAgent)
-          .build();
-
-      return new CustomUrlSourceRequest(source, cloudProject).execute();
-    } catch (IOException | GeneralSecurityException ex) {
+      CustomUrlSourceRequest request = new CustomUrlSourceRequest(getClient(user), cloudProject);
+      String etag = cache.getETag(account, cloudProject);
+      if (etag != null) {
+        request.getRequestHeaders().setIfNoneMatch(etag);
+      }
+
+      HttpResponse response;
+      try {
+        response = request.executeUnparsed();
+      } catch (HttpResponseException ex) {
+        if (etag != null && ex.getStatusCode() == HttpStatusCodes.STATUS_CODE_NOT_MODIFIED) {
+          ListReposResponse unchangedResponse = cache.revalidate(account, cloudProject);
+          if (unchangedResponse != null) {
+            return unchangedResponse;
+          }
+          // evicted meanwhile, so it has to be listed in full
+          return list(user, cloudProject);
+        }
+        throw ex;
+      }
+
+      ListReposResponse listReposResponse = response.parseAs(ListReposResponse.class);
+      cache.put(account, cloudProject, listReposResponse, response.getHeaders().getETag());
+      return listReposResponse;
+    } catch (IOException ex) {
       throw new CloudRepositoryServiceException();
     }
   }
 
+  /** Makes the next listing of the project ask the server, e.g. after the user clicked refresh. */
+  public void invalidate(CredentialedUser user, String cloudProject) {
+    cache.invalidate(user.getEmail(), cloudProject);
+  }
+
+  // Clients are kept per account, so that connections are reused across listings. A new client is
+  // built when the account signs in again.
+  @NotNull
+  private synchronized Source getClient(@NotNull CredentialedUser user) {
+    Credential credential = user.getCredential();
+    Source source = clients.get(user.getEmail());
+    if (source != null && clientCredentials.get(user.getEmail()) == credential) {
+      return source;
+    }
+
+    HttpRequestInitializer initializer = httpRequest -> {
+      HttpHeaders headers = new HttpHeaders();
+      httpRequest.setConnectTimeout(LIST_TIMEOUT_MS);
+      httpRequest.setReadTimeout(LIST_TIMEOUT_MS);
+      httpRequest.setHeaders(headers);
+      credential.initialize(httpRequest);
+    };
+
+    String userAgent = ServiceManager
+        .getService(CloudToolsPluginInfoService.class).getUserAgent();
+
+    source = new Source.Builder(HttpTransportProvider.getTransport(),
+        JacksonFactory.getDefaultInstance(), initializer)
+        .setRootUrl(CLOUD_SOURCE_API_ROOT_URL)
+        .setServicePath("")
+        // this ends up prefixed to user agent
+        .setApplicationName(userAgent)
+        .build();
+    clients.put(user.getEmail(), source);
+    clientCredentials.put(user.getEmail(), credential);
+    return source;
+  }
+
+  /**
+   * Lists the repositories on the threads of the {@link ResourceLoadCoordinator}, sharing a listing
+   * of the same project that is already running. Cancelling the future abandons the listing unless
+   * another caller waits for it. A cached listing that is still fresh is returned right away.
+   */
   public CompletableFuture<ListReposResponse> listAsync(CredentialedUser user,
       String cloudProject) {
-    return CompletableFuture.supplyAsync(() -> list(user, cloudProject));
+    ListReposResponse cachedResponse = cache.getFresh(user.getEmail(), cloudProject);
+    if (cachedResponse != null) {
+      return CompletableFuture.completedFuture(cachedResponse);
+    }
+    return ResourceLoadCoordinator.getInstance()
+        .load(user.getEmail(), "repositories/" + cloudProject, () -> list(user, cloudProject));
   }
 
   /**
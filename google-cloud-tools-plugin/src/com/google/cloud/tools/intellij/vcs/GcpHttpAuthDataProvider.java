@@ -17,6 +17,7 @@
 package com.google.cloud.tools.intellij.vcs;
 
 import com.google.api.client.repackaged.com.google.common.base.Strings;
+import com.google.cloud.tools.intellij.login.AccessTokenCache;
 import com.google.cloud.tools.intellij.login.CredentialedUser;
 import com.google.cloud.tools.intellij.login.Services;
 import com.google.cloud.tools.intellij.resources.SelectUserDialog;
@@ -95,8 +96,11 @@ public class GcpHttpAuthDataProvider implements GitHttpAuthDataProvider {
 
       if (targetUser != null) {
         try {
-          return new AuthData(targetUser.getEmail(),
-              targetUser.getGoogleLoginState().fetchAccessToken());
+          // git asks for credentials on every fetch and push, so reuse the cached token
+          String accessToken = AccessTokenCache.getInstance().getAccessToken(targetUser);
+          if (accessToken != null) {
+            return new AuthData(targetUser.getEmail(), accessToken);
+          }
         } catch (IOException ex) {
           LOG.error("IOException creating authdata:" + ex.toString());
         }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.vcs;
+
+import com.google.api.services.source.model.ListReposResponse;
+import com.google.common.annotations.VisibleForTesting;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the repositories of the most recently listed projects, per account. Listings are
+ * trusted for a few minutes after they were last fetched or revalidated; after that, a listing
+ * that came with an ETag can still be revalidated with a conditional request.
+ */
+class RepositoryListCache {
+
+  private static final int MAX_ENTRIES = 64;
+  private static final long FRESH_FOR_MS = TimeUnit.MINUTES.toMillis(5);
+
+  private final int maxEntries;
+  private final long freshForMs;
+  private final LongSupplier clock;
+  // in access order, so that the least recently used listing is evicted first; guarded by this
+  private final Map<String, Listing> listings;
+
+  RepositoryListCache() {
+    this(MAX_ENTRIES, FRESH_FOR_MS, System::currentTimeMillis);
+  }
+
+  @VisibleForTesting
+  RepositoryListCache(int maxEntries, long freshForMs, @NotNull LongSupplier clock) {
+    this.maxEntries = maxEntries;
+    this.freshForMs = freshForMs;
+    this.clock = clock;
+    listings =
+        new LinkedHashMap<String, Listing>(16, 0.75f, true /* accessOrder */) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+            return size() > RepositoryListCache.this.maxEntries;
+          }
+        };
+  }
+
+  /** Returns the cached listing if it may be used without asking the server. */
+  @Nullable
+  synchronized ListReposResponse getFresh(@NotNull String account, @NotNull String cloudProject) {
+    Listing listing = listings.get(toKey(account, cloudProject));
+    return listing != null
+            && !listing.invalidated
+            && clock.getAsLong() - listing.validatedAtMs < freshForMs
+        ? listing.response
+        : null;
+  }
+
+  /** Returns the ETag of the cached listing, or {@code null} if there is none to revalidate. */
+  @Nullable
+  synchronized String getETag(@NotNull String account, @NotNull String cloudProject) {
+    Listing listing = listings.get(toKey(account, cloudProject));
+    return listing != null ? listing.etag : null;
+  }
+
+  /** Stores a listing just fetched from the server. */
+  synchronized void put(
+      @NotNull String account,
+      @NotNull String cloudProject,
+      @NotNull ListReposResponse response,
+      @Nullable String etag) {
+    listings.put(toKey(account, cloudProject), new Listing(response, etag, clock.getAsLong()));
+  }
+
+  /**
+   * Records that the server still has the cached listing, and returns it.
+   *
+   * @return the listing, or {@code null} if it was evicted meanwhile
+   */
+  @Nullable
+  synchronized ListReposResponse revalidate(@NotNull String account, @NotNull String cloudProject) {
+    Listing listing = listings.get(toKey(account, cloudProject));
+    if (listing == null) {
+      return null;
+    }
+    listing.validatedAtMs = clock.getAsLong();
+    listing.invalidated = false;
+    return listing.response;
+  }
+
+  /** Makes the next lookup ask the server, e.g. because the user asked for a refresh. */
+  synchronized void invalidate(@NotNull String account, @NotNull String cloudProject) {
+    Listing listing = listings.get(toKey(account, cloudProject));
+    if (listing != null) {
+      listing.invalidated = true;
+    }
+  }
+
+  @NotNull
+  private static String toKey(@NotNull String account, @NotNull String cloudProject) {
+    return account + '\n' + cloudProject;
+  }
+
+  private static final class Listing {
+
+    private final ListReposResponse response;
+    private final String etag;
+    private long validatedAtMs;
+    private boolean invalidated;
+
+    private Listing(
+        @NotNull ListReposResponse response, @Nullable String etag, long validatedAtMs) {
+      this.response = response;
+      this.etag = etag;
+      this.validatedAtMs = validatedAtMs;
+    }
+  }
+}
@@ -73,6 +73,8 @@ public class CloudSdkAppEngineHelperTest extends BasePluginTestCase {
   private DeploymentOperationCallback callback;
   @Mock
   private CloudSdkService sdkService;
+  @Mock
+  private DeploymentProgress progress;
 
   @Before
   public void initialize() {
@@ -114,7 +116,8 @@ public class CloudSdkAppEngineHelperTest extends BasePluginTestCase {
           loggingHandler,
           new SimpleDeploymentSource(),
           deploymentConfiguration,
-          callback);
+          callback,
+          progress);
       fail("Expected RuntimeException");
     } catch (RuntimeException re) {
       verify(callback, times(1)).errorOccurred("Invalid deployment source.");
@@ -129,7 +132,8 @@ public class CloudSdkAppEngineHelperTest extends BasePluginTestCase {
         loggingHandler,
         new DeployableDeploymentSource(),
         deploymentConfiguration,
-        callback);
+        callback,
+        progress);
 
     assertNull(runner);
     verify(callback, times(1)).errorOccurred("Deployment source not found: null.");
@@ -146,7 +150,8 @@ public class CloudSdkAppEngineHelperTest extends BasePluginTestCase {
         loggingHandler,
         new DeployableDeploymentSource(),
         deploymentConfiguration,
-        callback);
+        callback,
+        progress);
 
     assertNull(runner);
     verify(callback, times(1))
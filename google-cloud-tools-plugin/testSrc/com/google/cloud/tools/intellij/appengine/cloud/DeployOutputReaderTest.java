@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Strings;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link DeployOutputReader} unit tests.
+ */
+public class DeployOutputReaderTest {
+
+  private final List<DeployOutputReader.DeployedVersion> versions = new ArrayList<>();
+  private final List<String> errors = new ArrayList<>();
+  private DeployOutputReader reader;
+
+  @Before
+  public void setUp() {
+    reader = new DeployOutputReader(new DeployOutputReader.Listener() {
+      @Override
+      public void onVersion(@NotNull DeployOutputReader.DeployedVersion version) {
+        versions.add(version);
+      }
+
+      @Override
+      public void onError(@NotNull String message) {
+        errors.add(message);
+      }
+    });
+  }
+
+  @Test
+  public void testOnOutputLine_reportsVersionOnceItsEntryIsComplete() {
+    reader.onOutputLine("{");
+    reader.onOutputLine("  \"configs\": [],");
+    reader.onOutputLine("  \"versions\": [");
+    reader.onOutputLine("    {");
+    reader.onOutputLine("      \"id\": \"20160429t112518\",");
+    reader.onOutputLine("      \"project\": \"some-project\",");
+    reader.onOutputLine("      \"service\": \"default\",");
+    reader.onOutputLine("      \"traffic_split\": null,");
+    reader.onOutputLine("      \"version\": {");
+    reader.onOutputLine("        \"id\": \"ignored\",");
+    reader.onOutputLine("        \"versionUrl\": \"https://some-project.appspot.com\"");
+    reader.onOutputLine("      }");
+    assertTrue(versions.isEmpty());
+
+    reader.onOutputLine("    }");
+
+    assertEquals(1, versions.size());
+    assertEquals("20160429t112518", versions.get(0).getId());
+    assertEquals("default", versions.get(0).getService());
+    assertEquals("some-project", versions.get(0).getProject());
+    assertEquals("https://some-project.appspot.com", versions.get(0).getUrl());
+    assertFalse(reader.isComplete());
+
+    reader.onOutputLine("  ]");
+    reader.onOutputLine("}");
+    assertTrue(reader.isComplete());
+  }
+
+  @Test
+  public void testOnOutputLine_reportsEveryVersion() {
+    reader.onOutputLine("{\"versions\": [{\"id\": \"v1\", \"service\": \"default\"},"
+        + " {\"id\": \"v1\", \"service\": \"backend\", \"version\": null}]}");
+
+    assertEquals(2, versions.size());
+    assertEquals(2, reader.getVersionCount());
+    assertEquals("backend", versions.get(1).getService());
+    assertNull(versions.get(1).getUrl());
+    assertTrue(reader.isComplete());
+  }
+
+  @Test
+  public void testOnOutputLine_ignoresValuesOutsideVersions() {
+    reader.onOutputLine(
+        "{\"configs\": [{\"id\": \"cron\"}], \"default\": \"https://a.appspot.com\"}");
+
+    assertTrue(versions.isEmpty());
+    assertEquals(0, reader.getVersionCount());
+    assertTrue(reader.isComplete());
+  }
+
+  @Test
+  public void testOnOutputLine_decodesEscapes() {
+    reader.onOutputLine("{\"versions\": [{\"id\": \"a\\\"b\\u0041\\\\\", \"service\": \"s\"}]}");
+
+    assertEquals("a\"bA\\", versions.get(0).getId());
+  }
+
+  @Test
+  public void testOnOutputLine_capsLongStrings() {
+    String longValue = Strings.repeat("x", DeployOutputReader.MAX_STRING_LENGTH * 2);
+
+    reader.onOutputLine("{\"versions\": [{\"id\": \"" + longValue + "\"}]}");
+
+    assertEquals(DeployOutputReader.MAX_STRING_LENGTH, versions.get(0).getId().length());
+    assertTrue(reader.isComplete());
+  }
+
+  @Test
+  public void testIsComplete_falseForMismatchedBrackets() {
+    reader.onOutputLine("{\"versions\": [}");
+
+    assertFalse(reader.isComplete());
+  }
+
+  @Test
+  public void testOnErrorLine_reportsGcloudErrors() {
+    reader.onErrorLine("Updating service [default]...");
+    reader.onErrorLine("ERROR: (gcloud.app.deploy) Permission denied.");
+
+    assertEquals(1, errors.size());
+    assertEquals("(gcloud.app.deploy) Permission denied.", errors.get(0));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vcs.impl.CancellableRunnable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+/**
+ * {@link DeploymentProgress} unit tests.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class DeploymentProgressTest {
+
+  @Mock private ProgressIndicator indicator;
+  @Mock private CancellableRunnable runner;
+  private DeploymentProgress progress;
+
+  @Before
+  public void setUp() {
+    progress = new DeploymentProgress(indicator);
+  }
+
+  @Test
+  public void testAwaitCompletion_returnsOnceCompleted() throws InterruptedException {
+    new Thread(new Runnable() {
+      @Override
+      public void run() {
+        progress.complete();
+      }
+    }).start();
+
+    progress.awaitCompletion(runner);
+
+    verify(runner, never()).cancel();
+    verify(indicator).setFraction(1.0);
+  }
+
+  @Test
+  public void testAwaitCompletion_cancelsRunnerWhenIndicatorIsCancelled()
+      throws InterruptedException {
+    when(indicator.isCanceled()).thenReturn(true);
+    // a cancelled deployment reports its outcome through the callback, which completes it
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        progress.complete();
+        return null;
+      }
+    }).when(runner).cancel();
+
+    progress.awaitCompletion(runner);
+
+    verify(runner).cancel();
+  }
+
+  @Test
+  public void testEnter_setsFraction() {
+    progress.enter(DeploymentProgress.Phase.DEPLOY);
+
+    verify(indicator).setIndeterminate(false);
+    verify(indicator).setFraction(0.4);
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * {@link FileStager} unit tests.
+ */
+public class FileStagerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path source;
+  private Path target;
+
+  @Before
+  public void setUp() throws IOException {
+    source = temporaryFolder.newFile("app.jar").toPath();
+    Files.write(source, "content".getBytes(Charsets.UTF_8));
+    target = temporaryFolder.newFolder("staging").toPath().resolve("target.jar");
+  }
+
+  @Test
+  public void testStage_linksFileOnSameFileSystem() throws IOException {
+    assertEquals(FileStager.Action.LINKED, FileStager.stage(source, target));
+
+    assertTrue(Files.isSameFile(source, target));
+  }
+
+  @Test
+  public void testStage_skipsLinkedFile() throws IOException {
+    FileStager.stage(source, target);
+
+    assertEquals(FileStager.Action.UNCHANGED, FileStager.stage(source, target));
+  }
+
+  @Test
+  public void testStage_skipsCopyWithSameContent() throws IOException {
+    Files.write(target, "content".getBytes(Charsets.UTF_8));
+    Files.setLastModifiedTime(target, FileTime.fromMillis(0));
+
+    assertEquals(FileStager.Action.UNCHANGED, FileStager.stage(source, target));
+    assertFalse(Files.isSameFile(source, target));
+  }
+
+  @Test
+  public void testStage_replacesFileWithDifferentContent() throws IOException {
+    Files.write(target, "CONTENT".getBytes(Charsets.UTF_8));
+    Files.setLastModifiedTime(target, FileTime.fromMillis(0));
+
+    assertEquals(FileStager.Action.LINKED, FileStager.stage(source, target));
+    assertEquals("content", new String(Files.readAllBytes(target), Charsets.UTF_8));
+  }
+}
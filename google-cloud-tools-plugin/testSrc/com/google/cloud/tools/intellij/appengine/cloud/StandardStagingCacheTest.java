@@ -0,0 +1,249 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * {@link StandardStagingCache} unit tests.
+ */
+public class StandardStagingCacheTest {
+
+  private static final String CLASS_FILE = "WEB-INF/classes/com/example/Servlet.class";
+  private static final String DESCRIPTOR = "WEB-INF/appengine-web.xml";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path war;
+  private StandardStagingCache cache;
+
+  @Before
+  public void setUp() throws IOException {
+    war = temporaryFolder.newFolder("war").toPath();
+    write(war, CLASS_FILE, "class v1");
+    write(war, DESCRIPTOR, "<appengine-web-app/>");
+    write(war, "index.html", "hello");
+    cache = new StandardStagingCache(temporaryFolder.newFolder("cache").toPath());
+  }
+
+  @Test
+  public void testOpen_firstDeploymentNeedsStaging() throws IOException {
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertNotNull(session);
+    assertTrue(session.needsStaging());
+    assertTrue(Files.isDirectory(session.getDirectory()));
+    session.abort();
+  }
+
+  @Test
+  public void testOpen_unchangedWarReusesStagedDirectory() throws IOException {
+    Path staged = stageAndCommit();
+
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertFalse(session.needsStaging());
+    assertFalse(session.isPatched());
+    assertEquals(staged, session.getDirectory());
+    session.commit();
+  }
+
+  @Test
+  public void testOpen_touchedButUnchangedFileReusesStagedDirectory() throws IOException {
+    Path staged = stageAndCommit();
+    write(war, DESCRIPTOR, "<appengine-web-app/>");
+
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertFalse(session.needsStaging());
+    assertEquals(staged, session.getDirectory());
+    session.commit();
+  }
+
+  @Test
+  public void testOpen_changedClassIsPatchedIntoNewDirectory() throws IOException {
+    Path staged = stageAndCommit();
+    write(war, CLASS_FILE, "class v2");
+    write(war, "WEB-INF/lib/new.jar", "jar");
+
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertFalse(session.needsStaging());
+    assertTrue(session.isPatched());
+    assertNotEquals(staged, session.getDirectory());
+    assertEquals("class v2", read(session.getDirectory(), CLASS_FILE));
+    assertEquals("jar", read(session.getDirectory(), "WEB-INF/lib/new.jar"));
+    assertEquals("generated", read(session.getDirectory(), "app.yaml"));
+    // the directory of the previous deployment is left as it was
+    assertEquals("class v1", read(staged, CLASS_FILE));
+    session.commit();
+  }
+
+  @Test
+  public void testOpen_removedClassIsRemovedFromNewDirectory() throws IOException {
+    stageAndCommit();
+    Files.delete(war.resolve(CLASS_FILE));
+
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertTrue(session.isPatched());
+    assertFalse(Files.exists(session.getDirectory().resolve(CLASS_FILE)));
+    session.commit();
+  }
+
+  @Test
+  public void testOpen_changedDescriptorNeedsStaging() throws IOException {
+    stageAndCommit();
+    write(war, DESCRIPTOR, "<appengine-web-app><threadsafe>true</threadsafe></appengine-web-app>");
+
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertTrue(session.needsStaging());
+    session.abort();
+  }
+
+  @Test
+  public void testOpen_classTransformedByStagingNeedsStaging() throws IOException {
+    StandardStagingCache.Session first = cache.open(war);
+    copyTree(war, first.getDirectory());
+    write(first.getDirectory(), CLASS_FILE, "class v1, transformed");
+    first.commit();
+    write(war, CLASS_FILE, "class v2");
+
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertTrue(session.needsStaging());
+    session.abort();
+  }
+
+  @Test
+  public void testOpen_isExclusiveUntilCommitted() throws IOException {
+    StandardStagingCache.Session session = cache.open(war);
+
+    assertNull(cache.open(war));
+    session.abort();
+    StandardStagingCache.Session next = cache.open(war);
+    assertNotNull(next);
+    next.abort();
+  }
+
+  @Test
+  public void testAbort_deletesDirectoryAndKeepsPreviousOne() throws IOException {
+    Path staged = stageAndCommit();
+    write(war, DESCRIPTOR, "<appengine-web-app>changed</appengine-web-app>");
+    StandardStagingCache.Session failed = cache.open(war);
+
+    failed.abort();
+
+    assertFalse(Files.exists(failed.getDirectory()));
+    write(war, DESCRIPTOR, "<appengine-web-app/>");
+    StandardStagingCache.Session session = cache.open(war);
+    assertEquals(staged, session.getDirectory());
+    session.commit();
+  }
+
+  @Test
+  public void testCommit_deletesOlderGenerations() throws IOException {
+    Path first = stageAndCommit();
+    write(war, CLASS_FILE, "class v2");
+    Path second = commitPatched();
+    write(war, CLASS_FILE, "class v3");
+    Path third = commitPatched();
+
+    assertFalse(Files.exists(first));
+    assertTrue(Files.exists(second));
+    assertTrue(Files.exists(third));
+  }
+
+  @Test
+  public void testIsCopiedVerbatim_rejectsJarsThatWouldBeSplit() {
+    String jar = "WEB-INF/lib/big.jar";
+    StandardStagingCache.Entry small = new StandardStagingCache.Entry("a", 10, 0, true);
+    StandardStagingCache.Entry big =
+        new StandardStagingCache.Entry(
+            "b", StandardStagingCache.JAR_SPLITTING_THRESHOLD_BYTES + 1, 0, false);
+
+    assertTrue(
+        StandardStagingCache.isCopiedVerbatim(
+            ImmutableSet.of(jar), ImmutableMap.of(jar, small), ImmutableMap.of(jar, small)));
+    assertFalse(
+        StandardStagingCache.isCopiedVerbatim(
+            ImmutableSet.of(jar), ImmutableMap.of(jar, small), ImmutableMap.of(jar, big)));
+  }
+
+  // Stages the WAR like staging would: a copy plus generated configuration.
+  private Path stageAndCommit() throws IOException {
+    StandardStagingCache.Session session = cache.open(war);
+    assertTrue(session.needsStaging());
+    copyTree(war, session.getDirectory());
+    write(session.getDirectory(), "app.yaml", "generated");
+    session.commit();
+    return session.getDirectory();
+  }
+
+  private Path commitPatched() throws IOException {
+    StandardStagingCache.Session session = cache.open(war);
+    assertTrue(session.isPatched());
+    session.commit();
+    return session.getDirectory();
+  }
+
+  private static void copyTree(final Path from, final Path to) throws IOException {
+    Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+        Path target = to.resolve(from.relativize(file).toString());
+        Files.createDirectories(target.getParent());
+        Files.copy(file, target);
+        return FileVisitResult.CONTINUE;
+      }
+    });
+  }
+
+  private static void write(Path directory, String path, String content) throws IOException {
+    Path file = directory.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(Charsets.UTF_8));
+  }
+
+  private static String read(Path directory, String path) throws IOException {
+    return new String(Files.readAllBytes(directory.resolve(path)), Charsets.UTF_8);
+  }
+}
@@ -19,25 +19,30 @@ package com.google.cloud.tools.intellij.appengine.cloud.executor;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineDeploy;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineDeploymentConfiguration;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineFlexibleStage;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineHelper;
+import com.google.cloud.tools.intellij.appengine.cloud.DeploymentProgress;
 import com.google.cloud.tools.intellij.appengine.cloud.executor.AppEngineFlexibleDeployTask;
 
 import com.intellij.remoteServer.runtime.deployment.ServerRuntimeInstance.DeploymentOperationCallback;
-import com.intellij.remoteServer.runtime.log.LoggingHandler;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
@@ -65,8 +70,7 @@ public class AppEngineFlexibleDeployTaskTest {
 
   @Before
   public void setUp() throws IOException {
-    when(helper.createStagingDirectory(any(LoggingHandler.class), anyString()))
-        .thenReturn(Paths.get("myFile.jar"));
+    when(stage.reserveStagingDirectory()).thenReturn(Paths.get("myFile.jar"));
     when(deploy.getHelper()).thenReturn(helper);
     when(deploy.getCallback()).thenReturn(callback);
     when(deploy.getDeploymentConfiguration()).thenReturn(deploymentConfiguration);
@@ -86,8 +90,7 @@ public class AppEngineFlexibleDeployTaskTest {
 
   @Test
   public void testCreateStagingDirectory_error() throws IOException {
-    when(helper.createStagingDirectory(any(LoggingHandler.class), anyString()))
-        .thenThrow(new IOException());
+    when(stage.reserveStagingDirectory()).thenThrow(new IOException());
 
     task.execute(startListener);
     verify(callback, times(1))
@@ -102,6 +105,8 @@ public class AppEngineFlexibleDeployTaskTest {
     } catch (AssertionError ae) {
       verify(callback, times(1))
           .errorOccurred("Deployment failed due to an exception while staging the project.");
+      verify(stage).releaseStagingDirectory(Paths.get("myFile.jar"));
+      verify(helper).deleteCredentials();
       return;
     }
 
@@ -115,11 +120,45 @@ public class AppEngineFlexibleDeployTaskTest {
     verify(callback, never()).errorOccurred(anyString());
   }
 
+  @Test
+  public void deploy_entersPhasesInOrder() {
+    task.execute(startListener);
+
+    InOrder inOrder = inOrder(deploy, stage);
+    inOrder.verify(deploy).enterPhase(DeploymentProgress.Phase.STAGE_CREDENTIALS);
+    inOrder.verify(deploy).enterPhase(DeploymentProgress.Phase.STAGE);
+    inOrder.verify(stage).stage(Paths.get("myFile.jar"));
+    inOrder.verify(deploy)
+        .deploy(any(Path.class), any(ProcessStartListener.class), any(ProcessExitListener.class));
+  }
+
+  @Test
+  public void deploy_keepsStagingDirectoryUntilExit() {
+    task.execute(startListener);
+
+    ArgumentCaptor<ProcessExitListener> exitListener =
+        ArgumentCaptor.forClass(ProcessExitListener.class);
+    verify(deploy).deploy(
+        eq(Paths.get("myFile.jar")), any(ProcessStartListener.class), exitListener.capture());
+    verify(stage, never()).releaseStagingDirectory(any(Path.class));
+
+    exitListener.getValue().onExit(0);
+    verify(stage).releaseStagingDirectory(Paths.get("myFile.jar"));
+  }
+
+  @Test
+  public void stageCredentials_error_releasesStagingDirectory() {
+    when(deploy.getHelper().stageCredentials(anyString())).thenReturn(null);
+    task.execute(startListener);
+
+    verify(stage).releaseStagingDirectory(Paths.get("myFile.jar"));
+  }
+
   @Test
   public void deploy_exception() {
     doThrow(new RuntimeException())
         .when(deploy)
-        .deploy(any(Path.class), any(ProcessStartListener.class));
+        .deploy(any(Path.class), any(ProcessStartListener.class), any(ProcessExitListener.class));
 
     try {
       task.execute(startListener);
@@ -129,6 +168,7 @@ public class AppEngineFlexibleDeployTaskTest {
           + "Please make sure that you are using the latest version of the Google Cloud SDK.\n"
           + "Run ''gcloud components update'' to update the SDK. "
           + "(See: https://cloud.google.com/sdk/gcloud/reference/components/update.)");
+      verify(stage).releaseStagingDirectory(Paths.get("myFile.jar"));
       return;
     }
 
@@ -18,7 +18,9 @@ package com.google.cloud.tools.intellij.appengine.cloud.executor;
 
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -26,12 +28,12 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.cloud.tools.appengine.cloudsdk.AppEngineJavaComponentsNotInstalledException;
-import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
 import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineDeploy;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineDeploymentConfiguration;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineHelper;
 import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage;
+import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage.StagingDirectoryFactory;
 import com.google.cloud.tools.intellij.appengine.cloud.executor.AppEngineStandardDeployTask;
 import com.google.cloud.tools.intellij.appengine.sdk.CloudSdkValidationResult;
 
@@ -42,11 +44,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.function.Function;
 
 /**
  * Unit tests for {@link AppEngineStandardDeployTask}
@@ -102,10 +108,29 @@ public class AppEngineStandardDeployTaskTest {
         .errorOccurred("Failed to prepare credentials. Please make sure you are logged in with the correct account.");
   }
 
+  @Test
+  public void stage_stagingCacheUsed_createsNoStagingDirectory() throws IOException {
+    task.execute(startListener);
+
+    verify(stage)
+        .stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+            any(Function.class));
+    verify(helper, never()).createStagingDirectory(any(LoggingHandler.class), anyString());
+  }
+
   @Test
   public void createStagingDirectory_exception() throws IOException {
     when(helper.createStagingDirectory(any(LoggingHandler.class), anyString()))
         .thenThrow(new IOException());
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        ((StagingDirectoryFactory) invocation.getArguments()[0]).createStagingDirectory();
+        return null;
+      }
+    }).when(stage)
+        .stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+            any(Function.class));
 
     try {
       task.execute(startListener);
@@ -119,10 +144,11 @@ public class AppEngineStandardDeployTaskTest {
   }
 
   @Test
-  public void stage_runtime_exception() {
+  public void stage_runtime_exception() throws IOException {
     doThrow(new RuntimeException())
         .when(stage)
-        .stage(any(Path.class), any(ProcessStartListener.class), any(ProcessExitListener.class));
+        .stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+            any(Function.class));
     try {
       task.execute(startListener);
     } catch (AssertionError ae) {
@@ -134,10 +160,11 @@ public class AppEngineStandardDeployTaskTest {
   }
 
   @Test
-  public void stage_missingJavaComponents_error() {
+  public void stage_missingJavaComponents_error() throws IOException {
     doThrow(new AppEngineJavaComponentsNotInstalledException(""))
         .when(stage)
-        .stage(any(Path.class), any(ProcessStartListener.class), any(ProcessExitListener.class));
+        .stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+            any(Function.class));
 
     task.execute(startListener);
     verify(callback, times(1)).errorOccurred(JAVA_COMPONENTS_MISSING_FAIL_MSG);
@@ -145,7 +172,7 @@ public class AppEngineStandardDeployTaskTest {
 
   @Test
   public void deploy_success() {
-    task.deploy(Paths.get("myFile.jar"), startListener).onExit(0);
+    task.deploy(Collections.singletonList(Paths.get("myFile.jar")), startListener).onExit(0);
 
     verify(callback, never()).errorOccurred(anyString());
   }
@@ -153,9 +180,9 @@ public class AppEngineStandardDeployTaskTest {
   @Test
   public void deploy_exception() {
     doThrow(new RuntimeException())
-        .when(deploy).deploy(any(Path.class), any(ProcessStartListener.class));
+        .when(deploy).deploy(anyListOf(Path.class), any(ProcessStartListener.class));
     try {
-      task.deploy(Paths.get("myFile.jar"), startListener).onExit(0);
+      task.deploy(Collections.singletonList(Paths.get("myFile.jar")), startListener).onExit(0);
     } catch (AssertionError ae) {
       verify(callback, times(1)).errorOccurred(DEPLOY_EXCEPTION_MSG);
       return;
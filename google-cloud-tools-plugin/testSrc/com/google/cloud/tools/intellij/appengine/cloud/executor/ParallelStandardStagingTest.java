@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.appengine.cloud.executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessExitListener;
+import com.google.cloud.tools.appengine.cloudsdk.process.ProcessStartListener;
+import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage;
+import com.google.cloud.tools.intellij.appengine.cloud.AppEngineStandardStage.StagingDirectoryFactory;
+import com.google.common.collect.ImmutableList;
+
+import com.intellij.remoteServer.runtime.log.LoggingHandler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Unit tests for {@link ParallelStandardStaging}.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ParallelStandardStagingTest {
+
+  @Mock private LoggingHandler loggingHandler;
+  @Mock private ProcessStartListener startListener;
+  @Mock private StagingDirectoryFactory stagingDirectoryFactory;
+
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  @Test
+  public void stage_allServicesStaged_returnsStagedDirectoriesInOrder() throws Exception {
+    List<AppEngineStandardStage> stages = new ArrayList<>();
+    List<Path> stagedDirectories = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      stagedDirectories.add(Paths.get("staging" + i));
+      stages.add(stageExitingWith(0, 20 * (5 - i), stagedDirectories.get(i)));
+    }
+
+    ParallelStandardStaging.Result result = stageAndWait(
+        new ParallelStandardStaging(stages, stagingDirectoryFactory, loggingHandler, 2));
+
+    assertEquals(0, result.getExitCode());
+    assertNull(result.getException());
+    assertEquals(stagedDirectories, result.getStagedDirectories());
+    assertTrue(maxRunning.get() <= 2);
+  }
+
+  @Test
+  public void stage_serviceFails_reportsExitCodeAndSkipsServicesNotStarted() throws Exception {
+    AppEngineStandardStage failing = stageExitingWith(3, 0, Paths.get("a"));
+    AppEngineStandardStage notStarted = stageExitingWith(0, 0, Paths.get("b"));
+
+    ParallelStandardStaging.Result result = stageAndWait(new ParallelStandardStaging(
+        ImmutableList.of(failing, notStarted),
+        stagingDirectoryFactory,
+        loggingHandler,
+        1));
+
+    assertEquals(3, result.getExitCode());
+    assertTrue(result.getStagedDirectories().isEmpty());
+    verify(notStarted, never())
+        .stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+            any(Function.class));
+  }
+
+  @Test
+  public void stage_stagingThrows_reportsException() throws Exception {
+    RuntimeException exception = new RuntimeException();
+    AppEngineStandardStage throwing = mockStage();
+    doThrow(exception)
+        .when(throwing)
+        .stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+            any(Function.class));
+
+    ParallelStandardStaging.Result result = stageAndWait(new ParallelStandardStaging(
+        ImmutableList.of(stageExitingWith(0, 0, Paths.get("a")), throwing),
+        stagingDirectoryFactory,
+        loggingHandler));
+
+    assertSame(exception, result.getException());
+    assertTrue(result.getStagedDirectories().isEmpty());
+  }
+
+  @Test
+  public void stage_stagingDirectoryNotCreated_reportsException() throws Exception {
+    IOException exception = new IOException();
+    when(stagingDirectoryFactory.createStagingDirectory()).thenThrow(exception);
+
+    ParallelStandardStaging.Result result = stageAndWait(new ParallelStandardStaging(
+        ImmutableList.of(stageIntoNewDirectory()),
+        stagingDirectoryFactory,
+        loggingHandler));
+
+    assertSame(exception, result.getException());
+    assertTrue(result.getStagedDirectories().isEmpty());
+  }
+
+  @Test
+  public void stage_createsStagingDirectoryOnlyForServicesNotCached() throws Exception {
+    when(stagingDirectoryFactory.createStagingDirectory()).thenReturn(Paths.get("created"));
+
+    ParallelStandardStaging.Result result = stageAndWait(new ParallelStandardStaging(
+        ImmutableList.of(stageIntoNewDirectory(), stageExitingWith(0, 0, Paths.get("cache"))),
+        stagingDirectoryFactory,
+        loggingHandler));
+
+    assertEquals(ImmutableList.of(Paths.get("created"), Paths.get("cache")),
+        result.getStagedDirectories());
+    verify(stagingDirectoryFactory, times(1)).createStagingDirectory();
+  }
+
+  private ParallelStandardStaging.Result stageAndWait(ParallelStandardStaging staging)
+      throws InterruptedException {
+    final CountDownLatch completed = new CountDownLatch(1);
+    final AtomicReference<ParallelStandardStaging.Result> result = new AtomicReference<>();
+    staging.stage(startListener, new Consumer<ParallelStandardStaging.Result>() {
+      @Override
+      public void accept(ParallelStandardStaging.Result stagingResult) {
+        result.set(stagingResult);
+        completed.countDown();
+      }
+    });
+    assertTrue(completed.await(10, TimeUnit.SECONDS));
+    return result.get();
+  }
+
+  /**
+   * Returns a stage whose staging process exits with {@code exitCode} after {@code durationMs} on
+   * a thread of its own, like an asynchronous Cloud SDK process, reporting
+   * {@code stagedDirectory} as if it came from the staging cache.
+   */
+  private AppEngineStandardStage stageExitingWith(
+      final int exitCode, final long durationMs, final Path stagedDirectory) throws IOException {
+    AppEngineStandardStage stage = mockStage();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        final Function<Path, ProcessExitListener> onStageComplete =
+            (Function<Path, ProcessExitListener>) invocation.getArguments()[2];
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Thread.sleep(durationMs);
+            } catch (InterruptedException ie) {
+              Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            onStageComplete.apply(stagedDirectory).onExit(exitCode);
+          }
+        }).start();
+        return null;
+      }
+    }).when(stage).stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+        any(Function.class));
+    return stage;
+  }
+
+  /**
+   * Returns a stage that cannot use the staging cache, and so stages successfully into a directory
+   * from the given factory.
+   */
+  private static AppEngineStandardStage stageIntoNewDirectory() throws IOException {
+    AppEngineStandardStage stage = mockStage();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Path stagingDirectory =
+            ((StagingDirectoryFactory) invocation.getArguments()[0]).createStagingDirectory();
+        Function<Path, ProcessExitListener> onStageComplete =
+            (Function<Path, ProcessExitListener>) invocation.getArguments()[2];
+        onStageComplete.apply(stagingDirectory).onExit(0);
+        return null;
+      }
+    }).when(stage).stage(any(StagingDirectoryFactory.class), any(ProcessStartListener.class),
+        any(Function.class));
+    return stage;
+  }
+
+  private static AppEngineStandardStage mockStage() {
+    AppEngineStandardStage stage = mock(AppEngineStandardStage.class);
+    when(stage.getDeploymentArtifactPath()).thenReturn(Paths.get("service.war"));
+    return stage;
+  }
+}
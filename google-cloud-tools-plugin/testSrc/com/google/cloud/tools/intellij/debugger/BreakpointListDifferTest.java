@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.SourceLocation;
+import com.google.api.services.clouddebugger.v2.model.StatusMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link BreakpointListDiffer} unit tests.
+ */
+public class BreakpointListDifferTest {
+
+  private BreakpointListDiffer differ;
+
+  @Before
+  public void setUp() {
+    differ = new BreakpointListDiffer();
+  }
+
+  @Test
+  public void testFirstUpdate_reportsAllAsAddedInSortedOrder() {
+    BreakpointListDiff diff = differ.update(Arrays.asList(
+        createFinal("final-old", "2016-09-21T16:39:00.000Z", false),
+        createActive("active-b", "com/google/B.java", 3),
+        createFinal("final-new", "2016-09-21T16:40:00.000Z", false),
+        createActive("active-a", "com/google/A.java", 7)));
+
+    assertIds(diff.getBreakpoints(), "active-a", "active-b", "final-new", "final-old");
+    assertEquals(4, diff.getAdded().size());
+    assertIds(diff.getFinalized(), "final-old", "final-new");
+    assertTrue(diff.getErrored().isEmpty());
+    assertTrue(diff.getRemoved().isEmpty());
+  }
+
+  @Test
+  public void testSameList_isEmptyAndReusesSortedList() {
+    List<Breakpoint> breakpoints = Arrays.asList(
+        createActive("active-b", "com/google/B.java", 3),
+        createActive("active-a", "com/google/A.java", 7));
+    BreakpointListDiff first = differ.update(breakpoints);
+
+    BreakpointListDiff second = differ.update(Arrays.asList(
+        createActive("active-a", "com/google/A.java", 7),
+        createActive("active-b", "com/google/B.java", 3)));
+
+    assertTrue(second.isEmpty());
+    assertSame(first.getBreakpoints(), second.getBreakpoints());
+  }
+
+  @Test
+  public void testActiveBreakpointHit_reportsFinalizedAndResorts() {
+    differ.update(Arrays.asList(
+        createActive("active-a", "com/google/A.java", 7),
+        createActive("active-b", "com/google/B.java", 3),
+        createFinal("final-old", "2016-09-21T16:39:00.000Z", false)));
+
+    BreakpointListDiff diff = differ.update(Arrays.asList(
+        createFinal("active-a", "2016-09-21T16:45:00.000Z", false),
+        createActive("active-b", "com/google/B.java", 3),
+        createFinal("final-old", "2016-09-21T16:39:00.000Z", false)));
+
+    assertTrue(diff.getAdded().isEmpty());
+    assertIds(diff.getFinalized(), "active-a");
+    assertIds(diff.getBreakpoints(), "active-b", "active-a", "final-old");
+  }
+
+  @Test
+  public void testBreakpointFailed_reportsErrored() {
+    differ.update(Arrays.asList(createActive("bp", "com/google/A.java", 7)));
+
+    BreakpointListDiff diff =
+        differ.update(Arrays.asList(createFinal("bp", "2016-09-21T16:45:00.000Z", true)));
+
+    assertTrue(diff.getFinalized().isEmpty());
+    assertIds(diff.getErrored(), "bp");
+  }
+
+  @Test
+  public void testMissingBreakpoint_reportsRemoved() {
+    differ.update(Arrays.asList(
+        createActive("active-a", "com/google/A.java", 7),
+        createActive("active-b", "com/google/B.java", 3)));
+
+    BreakpointListDiff diff = differ.update(Arrays.asList(
+        createActive("active-b", "com/google/B.java", 3)));
+
+    assertFalse(diff.isEmpty());
+    assertIds(diff.getRemoved(), "active-a");
+    assertIds(diff.getBreakpoints(), "active-b");
+  }
+
+  @Test
+  public void testNullList_removesEverything() {
+    differ.update(Arrays.asList(createActive("active-a", "com/google/A.java", 7)));
+
+    BreakpointListDiff diff = differ.update(null);
+
+    assertIds(diff.getRemoved(), "active-a");
+    assertTrue(diff.getBreakpoints().isEmpty());
+  }
+
+  private static void assertIds(List<Breakpoint> breakpoints, String... ids) {
+    List<String> actual = new ArrayList<String>();
+    for (Breakpoint breakpoint : breakpoints) {
+      actual.add(breakpoint.getId());
+    }
+    assertEquals(Arrays.asList(ids), actual);
+  }
+
+  private static Breakpoint createActive(String id, String path, int line) {
+    return new Breakpoint()
+        .setId(id)
+        .setIsFinalState(Boolean.FALSE)
+        .setLocation(new SourceLocation().setPath(path).setLine(line));
+  }
+
+  private static Breakpoint createFinal(String id, String finalTime, boolean isError) {
+    return new Breakpoint()
+        .setId(id)
+        .setIsFinalState(Boolean.TRUE)
+        .setFinalTime(finalTime)
+        .setStatus(new StatusMessage().setIsError(isError));
+  }
+}
@@ -383,4 +383,29 @@ public class CloudBreakpointHandlerTest extends UsefulTestCase {
     verify(breakpointManager, times(1)).addLineBreakpoint(isA(XLineBreakpointType.class),
         anyString(), anyInt(), isA(XBreakpointProperties.class));
   }
+
+  public void testComputeIdeRepresentations_resolvesBreakpointOnLineWithEnabledBreakpoint() {
+    Breakpoint onEnabledLine = new Breakpoint().setId("enabled_line").setLocation(
+        new SourceLocation().setLine(1).setPath("app/mod/src/main/java/b/f/pkg/Class.java"));
+    Breakpoint unknownFile = new Breakpoint().setId("unknown_file").setLocation(
+        new SourceLocation().setLine(2).setPath("b/f/pkg/Class.java"));
+    XLineBreakpoint enabledBreakpoint = mock(XLineBreakpoint.class);
+    when(enabledBreakpoint.isEnabled()).thenReturn(true);
+    when(breakpointManager.findBreakpointAtLine(
+        isA(XLineBreakpointType.class), isA(VirtualFile.class), anyInt()))
+        .thenReturn(enabledBreakpoint);
+    VirtualFile classFile = mock(VirtualFile.class);
+    when(fileResolver.getFileFromPath(
+        isA(Project.class), eq("app/mod/src/main/java/b/f/pkg/Class.java")))
+        .thenReturn(classFile);
+
+    CloudBreakpointHandler.IdeRepresentations representations =
+        handler.computeIdeRepresentations(ImmutableList.of(onEnabledLine, unknownFile));
+    handler.applyIdeRepresentations(representations);
+
+    assertTrue(representations.isResolved(onEnabledLine));
+    assertFalse(representations.isResolved(unknownFile));
+    verify(breakpointManager, never()).addLineBreakpoint(isA(XLineBreakpointType.class),
+        anyString(), anyInt(), isA(XBreakpointProperties.class));
+  }
 }
@@ -34,11 +34,13 @@ import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
 
 import org.jetbrains.annotations.NotNull;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
+import java.util.Collections;
 
 public class CloudDebugGlobalPollerTest extends BasePluginTestCase {
 
@@ -47,28 +49,37 @@ public class CloudDebugGlobalPollerTest extends BasePluginTestCase {
 
   private CloudDebugProcessState cloudDebugProcessState;
   private CloudDebugGlobalPoller cloudDebugGlobalPoller;
+  private CloudDebugWatchScheduler watchScheduler;
   private Notifications notificationsHandler;
 
   @Before
   public void setUp() throws Exception {
     cloudDebugProcessState = new CloudDebugProcessState();
     cloudDebugGlobalPoller = new CloudDebugGlobalPoller();
+    watchScheduler = new CloudDebugWatchScheduler();
+    registerService(CloudDebugWatchScheduler.class, watchScheduler);
     notificationsHandler = setupNotificationHandlerForVerification();
   }
 
+  @After
+  public void tearDownScheduler() {
+    watchScheduler.dispose();
+  }
+
   @Test
-  public void testPollForChanges_firesNotificationIfNoDebugClientObtained() {
+  public void testUpdateWatchedStates_firesNotificationIfNoDebugClientObtained() {
     cloudDebugProcessState.setListenInBackground(true);
     cloudDebugProcessState.setProject(getProject());
 
-    cloudDebugGlobalPoller.pollForChanges(cloudDebugProcessState);
+    cloudDebugGlobalPoller.updateWatchedStates(Collections.singletonList(cloudDebugProcessState));
+    watchScheduler.pollNow(cloudDebugProcessState);
 
     assertFalse(cloudDebugProcessState.isListenInBackground());
     verifyNotificationFired();
   }
 
   @Test
-  public void testPollForChanges_firesNotificationOnIOException() throws IOException {
+  public void testUpdateWatchedStates_firesNotificationOnIOException() throws IOException {
     cloudDebugProcessState.setListenInBackground(true);
     cloudDebugProcessState.setUserEmail(FAKE_USER_EMAIL);
     cloudDebugProcessState.setDebuggeeId(FAKE_DEBUGGEE_ID);
@@ -76,7 +87,8 @@ public class CloudDebugGlobalPollerTest extends BasePluginTestCase {
 
     setupCloudDebuggerBackendMockWithException(FAKE_USER_EMAIL, new IOException());
 
-    cloudDebugGlobalPoller.pollForChanges(cloudDebugProcessState);
+    cloudDebugGlobalPoller.updateWatchedStates(Collections.singletonList(cloudDebugProcessState));
+    watchScheduler.pollNow(cloudDebugProcessState);
 
     assertFalse(cloudDebugProcessState.isListenInBackground());
     verifyNotificationFired();
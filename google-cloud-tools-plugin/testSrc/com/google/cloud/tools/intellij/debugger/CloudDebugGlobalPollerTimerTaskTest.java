@@ -44,7 +44,7 @@ public class CloudDebugGlobalPollerTimerTaskTest extends BasePluginTestCase {
   }
 
   @Test
-  public void testRunCallsPollforChangesForAllStates() throws Exception {
+  public void testRunUpdatesWatchedStates() throws Exception {
     List<CloudDebugProcessState> states = new ArrayList<CloudDebugProcessState>();
     states.add(mock(CloudDebugProcessState.class));
     states.add(mock(CloudDebugProcessState.class));
@@ -52,8 +52,6 @@ public class CloudDebugGlobalPollerTimerTaskTest extends BasePluginTestCase {
 
     new CloudDebugGlobalPollerTimerTask(cloudDebugGlobalPoller).run();
 
-    for (CloudDebugProcessState cloudDebugProcessState : states) {
-      verify(cloudDebugGlobalPoller).pollForChanges(cloudDebugProcessState);
-    }
+    verify(cloudDebugGlobalPoller).updateWatchedStates(states);
   }
 }
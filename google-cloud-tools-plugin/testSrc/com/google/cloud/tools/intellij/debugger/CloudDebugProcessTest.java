@@ -322,7 +322,8 @@ public class CloudDebugProcessTest extends PlatformTestCase {
         process.setBreakpointHandler(breakpointHandler);
         process.initialize(processState);
 
-        process.onBreakpointListChanged(mock(CloudDebugProcessState.class));
+        process.onBreakpointListChanged(mock(CloudDebugProcessState.class),
+            new BreakpointListDiffer().update(breakpoints));
 
         verify(cloudLineBreakpoint).setErrorMessage(eq("General error"));
         verify(cloudLineBreakpoint).getXBreakpoint();
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.StackFrame;
+import com.google.api.services.clouddebugger.v2.model.Variable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+/**
+ * {@link CloudDebugSnapshotStore} unit tests.
+ */
+public class CloudDebugSnapshotStoreTest {
+
+  private static final String DEBUGGEE_ID = "gcp:1234:debuggee";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testPutAndGet_survivesNewInstance() throws Exception {
+    File root = temporaryFolder.newFolder();
+    new CloudDebugSnapshotStore(root, Long.MAX_VALUE).put(DEBUGGEE_ID, createSnapshot("bp1"));
+
+    Breakpoint stored = new CloudDebugSnapshotStore(root, Long.MAX_VALUE).get(DEBUGGEE_ID, "bp1");
+
+    assertNotNull(stored);
+    assertEquals("bp1", stored.getId());
+    assertEquals("main", stored.getStackFrames().get(0).getFunction());
+    assertEquals("42", stored.getStackFrames().get(0).getLocals().get(0).getValue());
+  }
+
+  @Test
+  public void testPut_ignoresActiveBreakpoints() throws Exception {
+    CloudDebugSnapshotStore store =
+        new CloudDebugSnapshotStore(temporaryFolder.newFolder(), Long.MAX_VALUE);
+
+    store.put(DEBUGGEE_ID, new Breakpoint().setId("bp1").setIsFinalState(Boolean.FALSE));
+
+    assertNull(store.get(DEBUGGEE_ID, "bp1"));
+  }
+
+  @Test
+  public void testGet_isKeyedByDebuggee() throws Exception {
+    CloudDebugSnapshotStore store =
+        new CloudDebugSnapshotStore(temporaryFolder.newFolder(), Long.MAX_VALUE);
+
+    store.put(DEBUGGEE_ID, createSnapshot("bp1"));
+
+    assertNull(store.get("other-debuggee", "bp1"));
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    CloudDebugSnapshotStore store =
+        new CloudDebugSnapshotStore(temporaryFolder.newFolder(), Long.MAX_VALUE);
+    store.put(DEBUGGEE_ID, createSnapshot("bp1"));
+
+    store.remove(DEBUGGEE_ID, "bp1");
+
+    assertNull(store.get(DEBUGGEE_ID, "bp1"));
+    assertEquals(0, store.getTotalSizeBytes());
+  }
+
+  @Test
+  public void testPut_evictsLeastRecentlyUsed() throws Exception {
+    File root = temporaryFolder.newFolder();
+    CloudDebugSnapshotStore unbounded = new CloudDebugSnapshotStore(root, Long.MAX_VALUE);
+    unbounded.put(DEBUGGEE_ID, createSnapshot("bp1"));
+    long snapshotSize = unbounded.getTotalSizeBytes();
+
+    CloudDebugSnapshotStore store = new CloudDebugSnapshotStore(root, snapshotSize * 2 + 16);
+    store.put(DEBUGGEE_ID, createSnapshot("bp2"));
+    assertNotNull(store.get(DEBUGGEE_ID, "bp1"));
+    store.put(DEBUGGEE_ID, createSnapshot("bp3"));
+
+    assertNotNull(store.get(DEBUGGEE_ID, "bp1"));
+    assertNull(store.get(DEBUGGEE_ID, "bp2"));
+    assertNotNull(store.get(DEBUGGEE_ID, "bp3"));
+    assertTrue(store.getTotalSizeBytes() <= snapshotSize * 2 + 16);
+  }
+
+  private static Breakpoint createSnapshot(String id) {
+    StackFrame frame = new StackFrame()
+        .setFunction("main")
+        .setLocals(Collections.singletonList(new Variable().setName("answer").setValue("42")));
+    return new Breakpoint()
+        .setId(id)
+        .setIsFinalState(Boolean.TRUE)
+        .setFinalTime("2016-09-21T16:39:00.000Z")
+        .setStackFrames(Collections.singletonList(frame));
+  }
+}
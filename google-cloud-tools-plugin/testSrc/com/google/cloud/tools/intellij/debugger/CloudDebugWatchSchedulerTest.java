@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees.Breakpoints;
+import com.google.api.services.clouddebugger.v2.model.Breakpoint;
+import com.google.api.services.clouddebugger.v2.model.ListBreakpointsResponse;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler.BreakpointWatcher;
+import com.google.cloud.tools.intellij.debugger.CloudDebugWatchScheduler.DebuggeeWatch;
+import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+
+public class CloudDebugWatchSchedulerTest extends BasePluginTestCase {
+
+  private static final String USER_EMAIL = "watcher@example.com";
+  private static final String DEBUGGEE_ID = "debuggee-id-1";
+
+  @Mock
+  private CloudToolsPluginInfoService pluginInfoService;
+  @Mock
+  private BreakpointWatcher foregroundWatcher;
+  @Mock
+  private BreakpointWatcher backgroundWatcher;
+
+  private Breakpoints.List listRequest;
+  private CloudDebugWatchScheduler scheduler;
+
+  @Before
+  public void setUp() throws Exception {
+    registerService(CloudToolsPluginInfoService.class, pluginInfoService);
+    scheduler = new CloudDebugWatchScheduler();
+
+    listRequest = mock(Breakpoints.List.class);
+    when(listRequest.setIncludeInactive(anyBoolean())).thenReturn(listRequest);
+    when(listRequest.setActionValue(anyString())).thenReturn(listRequest);
+    when(listRequest.setStripResults(anyBoolean())).thenReturn(listRequest);
+    when(listRequest.setWaitToken(anyString())).thenReturn(listRequest);
+    when(listRequest.setClientVersion(anyString())).thenReturn(listRequest);
+    Breakpoints breakpoints = mock(Breakpoints.class);
+    when(breakpoints.list(DEBUGGEE_ID)).thenReturn(listRequest);
+    Debuggees debuggees = mock(Debuggees.class);
+    when(debuggees.breakpoints()).thenReturn(breakpoints);
+    Debugger debugger = mock(Debugger.class);
+    when(debugger.debuggees()).thenReturn(debuggees);
+    CloudDebuggerClient.setClient(
+        USER_EMAIL + CloudDebuggerClient.LONG_CONNECTION_TIMEOUT_MS, debugger);
+    CloudDebuggerClient.setClient(
+        USER_EMAIL + CloudDebuggerClient.SHORT_CONNECTION_TIMEOUT_MS, debugger);
+  }
+
+  @After
+  public void tearDownScheduler() {
+    scheduler.dispose();
+  }
+
+  @Test
+  public void testWatchSameDebuggee_sharesSingleQuery() throws IOException {
+    when(listRequest.execute()).thenReturn(createResponse("token-2"));
+
+    scheduler.watch(createState("token-1"), true /* foreground */, foregroundWatcher);
+    scheduler.watch(createState("token-1"), false /* foreground */, backgroundWatcher);
+    scheduler.pollNow(createState(null));
+
+    verify(listRequest, times(1)).execute();
+    verify(listRequest).setWaitToken("token-1");
+    verify(foregroundWatcher).onBreakpointsChanged(anyListOf(Breakpoint.class), eq("token-2"));
+    verify(backgroundWatcher).onBreakpointsChanged(anyListOf(Breakpoint.class), eq("token-2"));
+  }
+
+  @Test
+  public void testWatchWithStaleToken_catchesUpWithoutWaitToken() throws IOException {
+    when(listRequest.execute()).thenReturn(createResponse("token-2"));
+    scheduler.watch(createState("token-2"), true /* foreground */, foregroundWatcher);
+    scheduler.watch(createState("token-1"), false /* foreground */, backgroundWatcher);
+
+    scheduler.pollNow(createState(null));
+
+    verify(listRequest).setWaitToken(null);
+    verify(foregroundWatcher, never())
+        .onBreakpointsChanged(anyListOf(Breakpoint.class), anyString());
+    verify(backgroundWatcher).onBreakpointsChanged(anyListOf(Breakpoint.class), eq("token-2"));
+  }
+
+  @Test
+  public void testUnwatch_stopsDelivery() throws IOException {
+    when(listRequest.execute()).thenReturn(createResponse("token-2"));
+    scheduler.unwatch(
+        scheduler.watch(createState("token-1"), true /* foreground */, foregroundWatcher));
+
+    scheduler.pollNow(createState(null));
+
+    verify(listRequest, never()).execute();
+    verify(foregroundWatcher, never())
+        .onBreakpointsChanged(anyListOf(Breakpoint.class), anyString());
+  }
+
+  @Test
+  public void testQueryError_notifiesWatchers() throws IOException {
+    IOException exception = new IOException();
+    when(listRequest.execute()).thenThrow(exception);
+    scheduler.watch(createState("token-1"), false /* foreground */, backgroundWatcher);
+
+    scheduler.pollNow(createState(null));
+    verify(backgroundWatcher).onError(exception, 1);
+
+    scheduler.pollNow(createState(null));
+    verify(backgroundWatcher).onError(exception, 2);
+  }
+
+  @Test
+  public void testQueryError_successResetsFailureCount() throws IOException {
+    IOException exception = new IOException();
+    when(listRequest.execute())
+        .thenThrow(exception)
+        .thenReturn(createResponse("token-2"))
+        .thenThrow(exception);
+    scheduler.watch(createState("token-1"), false /* foreground */, backgroundWatcher);
+
+    scheduler.pollNow(createState(null));
+    scheduler.pollNow(createState(null));
+    scheduler.pollNow(createState(null));
+
+    verify(backgroundWatcher, times(2)).onError(exception, 1);
+  }
+
+  @Test
+  public void testGetLastPollLatencyMs_setOnceQueried() throws IOException {
+    when(listRequest.execute()).thenReturn(createResponse("token-2"));
+    scheduler.watch(createState("token-1"), false /* foreground */, backgroundWatcher);
+    assertNull(scheduler.getLastPollLatencyMs(createState(null)));
+
+    scheduler.pollNow(createState(null));
+
+    assertNotNull(scheduler.getLastPollLatencyMs(createState(null)));
+  }
+
+  @Test
+  public void testQueryTimeout_requeriesAfterPeriodWithoutBackoff() throws IOException {
+    IOException exception = new IOException();
+    when(listRequest.execute())
+        .thenThrow(exception)
+        .thenThrow(new SocketTimeoutException())
+        .thenThrow(exception);
+    scheduler.watch(createState("token-1"), false /* foreground */, backgroundWatcher);
+
+    scheduler.pollNow(createState(null));
+    verify(backgroundWatcher).onError(exception, 1);
+
+    // the hanging query timed out, which is no failure
+    scheduler.pollNow(createState(null));
+    verify(backgroundWatcher, times(1)).onError(any(Exception.class), anyInt());
+    assertNextPollDelay(CloudDebugWatchScheduler.BACKGROUND_PERIOD_MS);
+
+    // the next failure starts the backoff over
+    scheduler.pollNow(createState(null));
+    verify(backgroundWatcher, times(2)).onError(exception, 1);
+    assertNextPollDelay(CloudDebugWatchScheduler.BACKGROUND_PERIOD_MS);
+  }
+
+  @Test
+  public void testBackoff_doublesUpToMaximumAndResets() {
+    DebuggeeWatch watch = new DebuggeeWatch("key", USER_EMAIL, DEBUGGEE_ID);
+
+    assertEquals(100, watch.nextBackoffMs(100, 300));
+    assertEquals(200, watch.nextBackoffMs(100, 300));
+    assertEquals(300, watch.nextBackoffMs(100, 300));
+
+    watch.resetBackoff();
+    assertEquals(100, watch.nextBackoffMs(100, 300));
+  }
+
+  private void assertNextPollDelay(long periodMs) {
+    Long delayMs = scheduler.getNextPollDelayMs(createState(null));
+    assertNotNull(delayMs);
+    // a doubled backoff would be twice the period
+    assertTrue("next poll in " + delayMs + "ms", delayMs > periodMs / 2 && delayMs <= periodMs);
+  }
+
+  private static CloudDebugProcessState createState(String waitToken) {
+    CloudDebugProcessState state = new CloudDebugProcessState();
+    state.setUserEmail(USER_EMAIL);
+    state.setDebuggeeId(DEBUGGEE_ID);
+    state.setWaitToken(waitToken);
+    return state;
+  }
+
+  private static ListBreakpointsResponse createResponse(String waitToken) {
+    ListBreakpointsResponse response = new ListBreakpointsResponse();
+    response.setBreakpoints(new ArrayList<Breakpoint>());
+    response.setNextWaitToken(waitToken);
+    return response;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger;
+import com.google.api.services.clouddebugger.v2.Clouddebugger.Debugger.Debuggees;
+import com.google.api.services.clouddebugger.v2.model.Debuggee;
+import com.google.api.services.clouddebugger.v2.model.ListDebuggeesResponse;
+import com.google.cloud.tools.intellij.CloudToolsPluginInfoService;
+import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+public class CloudDebuggeeCatalogTest extends BasePluginTestCase {
+
+  private static final long FRESH_FOR_MS = 1000;
+
+  private long now = 5000;
+  private CloudDebuggeeCatalog catalog;
+  private Debugger debugger;
+  private Debuggees.List listRequest;
+
+  @Before
+  public void setUp() throws IOException {
+    registerService(CloudToolsPluginInfoService.class, mock(CloudToolsPluginInfoService.class));
+    catalog = new CloudDebuggeeCatalog(FRESH_FOR_MS, () -> now);
+
+    listRequest = mock(Debuggees.List.class);
+    when(listRequest.setProject(anyString())).thenReturn(listRequest);
+    when(listRequest.setClientVersion(anyString())).thenReturn(listRequest);
+    when(listRequest.execute()).thenReturn(
+        new ListDebuggeesResponse()
+            .setDebuggees(Collections.singletonList(new Debuggee().setId("debuggee"))));
+    Debuggees debuggees = mock(Debuggees.class);
+    when(debuggees.list()).thenReturn(listRequest);
+    debugger = mock(Debugger.class);
+    when(debugger.debuggees()).thenReturn(debuggees);
+  }
+
+  @Test
+  public void testGetDebuggees_listsOncePerFreshPeriod() throws IOException {
+    List<Debuggee> first = catalog.getDebuggees(debugger, "foo@example.com", "123");
+    now += FRESH_FOR_MS - 1;
+    List<Debuggee> second = catalog.getDebuggees(debugger, "foo@example.com", "123");
+
+    assertEquals("debuggee", first.get(0).getId());
+    assertEquals(first, second);
+
+    verify(listRequest, times(1)).execute();
+  }
+
+  @Test
+  public void testGetDebuggees_listsAgainOnceExpired() throws IOException {
+    catalog.getDebuggees(debugger, "foo@example.com", "123");
+    now += FRESH_FOR_MS;
+    catalog.getDebuggees(debugger, "foo@example.com", "123");
+
+    verify(listRequest, times(2)).execute();
+  }
+
+  @Test
+  public void testGetDebuggees_keyedByUserAndProject() throws IOException {
+    catalog.getDebuggees(debugger, "foo@example.com", "123");
+    catalog.getDebuggees(debugger, "bar@example.com", "123");
+    catalog.getDebuggees(debugger, "foo@example.com", "456");
+
+    verify(listRequest, times(3)).execute();
+  }
+
+  @Test
+  public void testGetDebuggees_emptyResponse() throws IOException {
+    when(listRequest.execute()).thenReturn(new ListDebuggeesResponse());
+
+    assertTrue(catalog.getDebuggees(debugger, "foo@example.com", "123").isEmpty());
+  }
+}
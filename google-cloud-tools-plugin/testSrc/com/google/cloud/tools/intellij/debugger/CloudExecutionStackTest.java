@@ -81,6 +81,30 @@ public class CloudExecutionStackTest {
     Assert.assertEquals("foo", node.seenChildren.get(0));
   }
 
+  @Test
+  public void testComputeChildren_newNodeStartsFromFirstChild() {
+    StackFrame frame = new StackFrame();
+    SourceLocation location = new SourceLocation();
+    location.setLine(1);
+    frame.setLocation(location);
+    List<Variable> variables = new ArrayList<Variable>();
+    Variable variable = new Variable();
+    variable.setName("foo");
+    variables.add(variable);
+    frame.setLocals(variables);
+    List<StackFrame> frames = new ArrayList<StackFrame>();
+    frames.add(frame);
+
+    CloudExecutionStack stack = new CloudExecutionStack(project, "name", frames, null, null);
+    CloudStackFrame localFrame = stack.getTopFrame();
+    Assert.assertNotNull(localFrame);
+    localFrame.computeChildren(new SpyNode());
+    SpyNode node = new SpyNode();
+    localFrame.computeChildren(node);
+    Assert.assertEquals(1, node.seenChildren.size());
+    Assert.assertEquals("foo", node.seenChildren.get(0));
+  }
+
   private static class SpyNode implements XCompositeNode {
 
     List<String> seenChildren = new ArrayList<String>();
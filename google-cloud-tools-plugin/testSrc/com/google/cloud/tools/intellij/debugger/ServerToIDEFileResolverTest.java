@@ -96,6 +96,17 @@ public class ServerToIDEFileResolverTest extends JavaCodeInsightFixtureTestCase
         fileResolver.getFileFromPath(project, "Class.java"));
   }
 
+  @Test
+  public void testGetFileFromPath_cachedMissIsDroppedWhenFileIsAdded() {
+    ServerToIdeFileResolver fileResolver = new ServerToIdeFileResolver();
+    assertNull(fileResolver.getFileFromPath(project, "com/java/pkg/Added.java"));
+
+    PsiClass added = this.myFixture.addClass("package com.java.pkg; class Added {}");
+
+    assertEquals(added.getContainingFile().getVirtualFile(),
+        fileResolver.getFileFromPath(project, "com/java/pkg/Added.java"));
+  }
+
   @Test
   public void testGetPackageFromPath() {
     assertEquals("com.java.package",
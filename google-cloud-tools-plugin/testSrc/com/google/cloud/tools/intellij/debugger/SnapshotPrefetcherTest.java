@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.debugger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.cloud.tools.intellij.debugger.SnapshotPrefetcher.SnapshotLoader;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SnapshotPrefetcher} unit tests.
+ */
+public class SnapshotPrefetcherTest {
+
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final List<String> loaded = Collections.synchronizedList(new ArrayList<String>());
+  private SnapshotPrefetcher prefetcher;
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    if (prefetcher != null) {
+      prefetcher.cancelAll();
+    }
+  }
+
+  @Test
+  public void testPrefetch_loadsWithBoundedParallelism() throws Exception {
+    final CountDownLatch started = new CountDownLatch(SnapshotPrefetcher.MAX_PARALLEL_LOADS);
+    prefetcher = new SnapshotPrefetcher(new BlockingLoader(started));
+
+    prefetcher.prefetch(Arrays.asList("1", "2", "3", "4", "5", "6"));
+
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(SnapshotPrefetcher.MAX_PARALLEL_LOADS, loaded.size());
+    assertEquals(6, prefetcher.getPendingIds().size());
+  }
+
+  @Test
+  public void testPrefetch_cancelsQueuedLoadsNoLongerWanted() throws Exception {
+    final CountDownLatch started = new CountDownLatch(SnapshotPrefetcher.MAX_PARALLEL_LOADS);
+    prefetcher = new SnapshotPrefetcher(new BlockingLoader(started));
+    prefetcher.prefetch(Arrays.asList("1", "2", "3", "4", "5", "6"));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+
+    prefetcher.prefetch(Arrays.asList("1", "2", "3", "4"));
+    release.countDown();
+
+    waitUntilIdle();
+    assertFalse(loaded.contains("5"));
+    assertFalse(loaded.contains("6"));
+  }
+
+  @Test
+  public void testPrefetch_doesNotRetryFailedLoads() throws Exception {
+    final CountDownLatch attempted = new CountDownLatch(1);
+    prefetcher = new SnapshotPrefetcher(new SnapshotLoader() {
+      @Override
+      public void load(@NotNull String id) throws IOException {
+        loaded.add(id);
+        attempted.countDown();
+        throw new IOException("snapshot deleted");
+      }
+    });
+    prefetcher.prefetch(Collections.singletonList("1"));
+    assertTrue(attempted.await(10, TimeUnit.SECONDS));
+    waitUntilIdle();
+
+    prefetcher.prefetch(Collections.singletonList("1"));
+
+    assertTrue(prefetcher.getPendingIds().isEmpty());
+    assertEquals(1, loaded.size());
+  }
+
+  private void waitUntilIdle() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!prefetcher.getPendingIds().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(prefetcher.getPendingIds().isEmpty());
+  }
+
+  private class BlockingLoader implements SnapshotLoader {
+
+    private final CountDownLatch started;
+
+    BlockingLoader(CountDownLatch started) {
+      this.started = started;
+    }
+
+    @Override
+    public void load(@NotNull String id) throws IOException {
+      loaded.add(id);
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.debugger.ui;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.services.clouddebugger.v2.model.Debuggee;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ProjectDebuggeeBindingTest {
+
+  @Test
+  public void testToDebugTargets_keepsLatestMinorVersion() {
+    List<DebugTarget> targets = ProjectDebuggeeBinding.toDebugTargets(
+        Arrays.asList(
+            createDebuggee("a", "default", "v1", "2"),
+            createDebuggee("b", "default", "v1", "1"),
+            createDebuggee("c", "backend", "v1", "1"),
+            createDebuggee("d", "default", "v1", "3")),
+        "projectname");
+
+    assertEquals(2, targets.size());
+    assertEquals("c", targets.get(0).getId());
+    assertEquals("d", targets.get(1).getId());
+  }
+
+  @Test
+  public void testToDebugTargets_keepsTargetsWithoutVersion() {
+    List<DebugTarget> targets = ProjectDebuggeeBinding.toDebugTargets(
+        Arrays.asList(
+            new Debuggee().setId("a").setDescription("projectname-first"),
+            new Debuggee().setId("b").setDescription("projectname-second")),
+        "projectname");
+
+    assertEquals(2, targets.size());
+    assertEquals("first", targets.get(0).toString());
+    assertEquals("second", targets.get(1).toString());
+  }
+
+  private static Debuggee createDebuggee(
+      String id, String module, String version, String minorVersion) {
+    return new Debuggee()
+        .setId(id)
+        .setLabels(
+            ImmutableMap.of("module", module, "version", version, "minorversion", minorVersion));
+  }
+}
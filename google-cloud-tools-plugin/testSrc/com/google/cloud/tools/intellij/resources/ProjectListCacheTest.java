@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.cloudresourcemanager.model.Project;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/** Tests for {@link ProjectListCache}. */
+public class ProjectListCacheTest {
+
+  private final ProjectListCache cache = new ProjectListCache();
+
+  @Test
+  public void testGetProjects_unknownAccount() {
+    assertNull(cache.getProjects("foo@example.com"));
+    assertFalse(cache.isFresh("foo@example.com"));
+  }
+
+  @Test
+  public void testUpdate_storesProjectsPerAccount() {
+    assertTrue(cache.update("foo@example.com", ImmutableList.of(project("a", "Alpha", 1L))));
+    assertTrue(cache.update("bar@example.com", ImmutableList.of(project("b", "Beta", 2L))));
+
+    List<Project> projects = cache.getProjects("foo@example.com");
+    assertEquals(1, projects.size());
+    assertEquals("a", projects.get(0).getProjectId());
+    assertEquals("Alpha", projects.get(0).getName());
+    assertEquals(Long.valueOf(1L), projects.get(0).getProjectNumber());
+    assertTrue(cache.isFresh("foo@example.com"));
+  }
+
+  @Test
+  public void testUpdate_reportsWhetherProjectsChanged() {
+    cache.update("foo@example.com", ImmutableList.of(project("a", "Alpha", 1L)));
+
+    assertFalse(cache.update("foo@example.com", ImmutableList.of(project("a", "Alpha", 1L))));
+    assertTrue(cache.update("foo@example.com", ImmutableList.of(project("a", "Renamed", 1L))));
+    assertTrue(
+        cache.update(
+            "foo@example.com",
+            ImmutableList.of(project("a", "Renamed", 1L), project("b", "Beta", 2L))));
+  }
+
+  @Test
+  public void testLoadState_restoresPersistedProjects() {
+    cache.update("foo@example.com", ImmutableList.of(project("a", "Alpha", 1L)));
+
+    ProjectListCache restored = new ProjectListCache();
+    restored.loadState(cache.getState());
+
+    assertEquals("a", restored.getProjects("foo@example.com").get(0).getProjectId());
+  }
+
+  private static Project project(String id, String name, Long number) {
+    return new Project().setProjectId(id).setName(name).setProjectNumber(number);
+  }
+}
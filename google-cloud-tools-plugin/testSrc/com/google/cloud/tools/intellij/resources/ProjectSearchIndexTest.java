@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.services.cloudresourcemanager.model.Project;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/** Tests for {@link ProjectSearchIndex}. */
+public class ProjectSearchIndexTest {
+
+  private ResourceProjectModelItem alpha;
+  private ResourceProjectModelItem alphabet;
+  private ResourceProjectModelItem beta;
+  private ProjectSearchIndex index;
+
+  @Before
+  public void setUp() {
+    alpha = project("alpha-1", "Alpha", 1234L);
+    alphabet = project("letters", "Alphabet Soup", 5678L);
+    beta = project("beta-2", "Beta", null);
+
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode();
+    DefaultMutableTreeNode firstUser = new DefaultMutableTreeNode();
+    firstUser.add(alpha);
+    firstUser.add(alphabet);
+    firstUser.add(new ResourceLoadingModelItem());
+    DefaultMutableTreeNode secondUser = new DefaultMutableTreeNode();
+    secondUser.add(beta);
+    root.add(firstUser);
+    root.add(secondUser);
+    index = new ProjectSearchIndex(root);
+  }
+
+  @Test
+  public void testSearch_matchesIdsNamesAndNumbers() {
+    assertEquals(1, index.search("TA-2").getMatches().size());
+    assertTrue(index.search("TA-2").getMatches().contains(beta));
+    assertTrue(index.search("soup").getMatches().contains(alphabet));
+    assertTrue(index.search("567").getMatches().contains(alphabet));
+    assertEquals(3, index.search("a").getMatches().size());
+  }
+
+  @Test
+  public void testSearch_doesNotMatchAcrossKeys() {
+    // "alpha-1" is followed by "alpha" in the keys of the first project
+    assertEquals(0, index.search("1alpha").getMatches().size());
+    assertEquals(0, index.search("1\nalpha").getMatches().size());
+  }
+
+  @Test
+  public void testSearch_narrowsAsTheQueryGrows() {
+    assertEquals(2, index.search("alph").getMatches().size());
+    assertEquals(2, index.search("alpha").getMatches().size());
+    assertEquals(1, index.search("alphab").getMatches().size());
+    assertEquals(0, index.search("alphabx").getMatches().size());
+    // a new query starts over
+    assertEquals(2, index.search("alp").getMatches().size());
+  }
+
+  @Test
+  public void testSearch_prefersIdPrefixes() {
+    assertSame(alpha, index.search("alpha").getBestMatch());
+    assertSame(alphabet, index.search("lett").getBestMatch());
+    assertSame(alphabet, index.search("alphabet").getBestMatch());
+    assertNull(index.search("gamma").getBestMatch());
+  }
+
+  @Test
+  public void testFindById_ignoresCase() {
+    assertSame(beta, index.findById("Beta-2"));
+    assertNull(index.findById("beta"));
+  }
+
+  private static ResourceProjectModelItem project(String id, String name, Long number) {
+    return new ResourceProjectModelItem(
+        new Project().setProjectId(id).setName(name).setProjectNumber(number));
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.resources;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/** Tests for {@link ProjectSelectorNewProjectItem}. */
+public class ProjectSelectorNewProjectItemTest extends BasePluginTestCase {
+
+  @Mock private JTree tree;
+
+  private ProjectSelector.SelectorTreeModel model;
+  private ProjectSelectorNewProjectItem item;
+
+  @Before
+  public void setUp() {
+    model = new ProjectSelector.SelectorTreeModel(new DefaultMutableTreeNode());
+    item = new ProjectSelectorNewProjectItem(tree);
+  }
+
+  @Test
+  public void testMarkModelForRefresh_throughFilteringModel() {
+    when(tree.getModel()).thenReturn(new FilteringProjectTreeModel(model));
+    assertFalse(model.isModelNeedsRefresh());
+
+    item.markModelForRefresh();
+
+    assertTrue(model.isModelNeedsRefresh());
+  }
+
+  @Test
+  public void testMarkModelForRefresh_selectorModel() {
+    when(tree.getModel()).thenReturn(model);
+
+    item.markModelForRefresh();
+
+    assertTrue(model.isModelNeedsRefresh());
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.tools.intellij.resources;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.tools.intellij.login.CredentialedUser;
+import com.google.cloud.tools.intellij.testing.BasePluginTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.awt.Rectangle;
+
+import javax.swing.JTree;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreePath;
+
+/** Tests for {@link ProjectSelectorRenderer}. */
+public class ProjectSelectorRendererTest extends BasePluginTestCase {
+
+  @Mock private CredentialedUser user;
+  @Mock private GoogleApiClientFactory apiClientFactory;
+  @Mock private JTree tree;
+
+  private GoogleUserModelItem userItem;
+  private ResourceLoadingModelItem loadingItem;
+  private ProjectSelectorRenderer renderer;
+
+  @Before
+  public void setUp() {
+    registerService(GoogleApiClientFactory.class, apiClientFactory);
+    when(user.getEmail()).thenReturn("foo@example.com");
+
+    DefaultMutableTreeNode root = new DefaultMutableTreeNode();
+    ProjectSelector.SelectorTreeModel model = new ProjectSelector.SelectorTreeModel(root);
+    userItem = spy(new GoogleUserModelItem(user, model));
+    root.add(userItem);
+    // a user that has not loaded its projects yet only holds the loading node
+    loadingItem = (ResourceLoadingModelItem) userItem.getLastChild();
+
+    // the popup shows the projects through a filtering view of the selector model
+    when(tree.getModel()).thenReturn(new FilteringProjectTreeModel(model));
+    renderer = new ProjectSelectorRenderer(tree);
+  }
+
+  @Test
+  public void testRepaintLoadingNodes_throughFilteringModel() {
+    Rectangle bounds = new Rectangle(0, 20, 100, 20);
+    doReturn(true).when(userItem).isSynchronizing();
+    when(tree.getPathBounds(any(TreePath.class))).thenReturn(bounds);
+
+    renderer.repaintLoadingNodes();
+
+    ArgumentCaptor<TreePath> path = ArgumentCaptor.forClass(TreePath.class);
+    verify(tree).getPathBounds(path.capture());
+    assertSame(loadingItem, path.getValue().getLastPathComponent());
+    verify(tree).repaint(bounds);
+  }
+
+  @Test
+  public void testRepaintLoadingNodes_nothingLoading() {
+    doReturn(false).when(userItem).isSynchronizing();
+
+    renderer.repaintLoadingNodes();
+    // a second pass with the ticker already stopped must not fail either
+    renderer.repaintLoadingNodes();
+
+    verify(tree, never()).repaint(any(Rectangle.class));
+  }
+}
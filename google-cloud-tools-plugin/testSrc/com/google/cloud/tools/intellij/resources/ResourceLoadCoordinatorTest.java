@@ -0,0 +1,140 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for {@link ResourceLoadCoordinator}. */
+public class ResourceLoadCoordinatorTest {
+
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private final ResourceLoadCoordinator coordinator = new ResourceLoadCoordinator(2);
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  public void testLoad_sharesRunningLoad() throws Exception {
+    CompletableFuture<String> first = coordinator.load("foo@example.com", "projects", this::await);
+    CompletableFuture<String> second = coordinator.load("foo@example.com", "projects", this::await);
+    release.countDown();
+
+    assertEquals("loaded", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals("loaded", second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  public void testLoad_separatesAccountsAndResources() throws Exception {
+    CompletableFuture<String> foo = coordinator.load("foo@example.com", "projects", this::await);
+    CompletableFuture<String> bar = coordinator.load("bar@example.com", "projects", this::await);
+    CompletableFuture<String> repositories =
+        coordinator.load("foo@example.com", "repositories/my-project", this::await);
+    release.countDown();
+
+    foo.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    bar.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    repositories.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  public void testLoad_startsOverOnceFinished() throws Exception {
+    release.countDown();
+    coordinator.load("foo@example.com", "projects", this::await)
+        .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    coordinator.load("foo@example.com", "projects", this::await)
+        .get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+    assertEquals(2, calls.get());
+    assertFalse(coordinator.isRunning("foo@example.com", "projects"));
+  }
+
+  @Test
+  public void testLoad_passesErrorsToAllRequests() throws Exception {
+    IOException error = new IOException("offline");
+    CompletableFuture<String> first = coordinator.load("foo@example.com", "projects", () -> {
+      await();
+      throw error;
+    });
+    CompletableFuture<String> second = coordinator.load("foo@example.com", "projects", this::await);
+    release.countDown();
+
+    for (CompletableFuture<String> request : Arrays.asList(first, second)) {
+      try {
+        request.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException ex) {
+        assertSame(error, ex.getCause());
+      }
+    }
+  }
+
+  @Test
+  public void testCancel_keepsLoadWhileOthersWait() throws Exception {
+    CompletableFuture<String> first = coordinator.load("foo@example.com", "projects", this::await);
+    CompletableFuture<String> second = coordinator.load("foo@example.com", "projects", this::await);
+
+    first.cancel(false);
+    assertTrue(coordinator.isRunning("foo@example.com", "projects"));
+    release.countDown();
+
+    assertEquals("loaded", second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancel_interruptsLoadWhenNobodyWaits() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    CompletableFuture<String> request = coordinator.load("foo@example.com", "projects", () -> {
+      started.countDown();
+      try {
+        return await();
+      } catch (InterruptedException ex) {
+        interrupted.countDown();
+        throw ex;
+      }
+    });
+    assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    request.cancel(false);
+
+    assertTrue(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertFalse(coordinator.isRunning("foo@example.com", "projects"));
+  }
+
+  private String await() throws InterruptedException {
+    calls.incrementAndGet();
+    release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    return "loaded";
+  }
+}
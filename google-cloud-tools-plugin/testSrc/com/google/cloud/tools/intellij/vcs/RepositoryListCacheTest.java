@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.tools.intellij.vcs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.google.api.services.source.model.ListReposResponse;
+
+import org.junit.Test;
+
+/** Tests for {@link RepositoryListCache}. */
+public class RepositoryListCacheTest {
+
+  private static final long FRESH_FOR_MS = 1000;
+
+  private long now = 5000;
+  private final RepositoryListCache cache = new RepositoryListCache(2, FRESH_FOR_MS, () -> now);
+  private final ListReposResponse response = new ListReposResponse();
+
+  @Test
+  public void testGetFresh_withinFreshPeriod() {
+    cache.put("foo@example.com", "my-project", response, "\"etag\"");
+    now += FRESH_FOR_MS - 1;
+
+    assertSame(response, cache.getFresh("foo@example.com", "my-project"));
+    assertNull(cache.getFresh("bar@example.com", "my-project"));
+    assertNull(cache.getFresh("foo@example.com", "other-project"));
+  }
+
+  @Test
+  public void testGetFresh_expiresButKeepsETag() {
+    cache.put("foo@example.com", "my-project", response, "\"etag\"");
+    now += FRESH_FOR_MS;
+
+    assertNull(cache.getFresh("foo@example.com", "my-project"));
+    assertEquals("\"etag\"", cache.getETag("foo@example.com", "my-project"));
+  }
+
+  @Test
+  public void testRevalidate_makesListingFreshAgain() {
+    cache.put("foo@example.com", "my-project", response, "\"etag\"");
+    now += FRESH_FOR_MS;
+
+    assertSame(response, cache.revalidate("foo@example.com", "my-project"));
+    assertSame(response, cache.getFresh("foo@example.com", "my-project"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    cache.put("foo@example.com", "my-project", response, null);
+    cache.invalidate("foo@example.com", "my-project");
+
+    assertNull(cache.getFresh("foo@example.com", "my-project"));
+    assertSame(response, cache.revalidate("foo@example.com", "my-project"));
+  }
+
+  @Test
+  public void testPut_evictsLeastRecentlyUsed() {
+    cache.put("foo@example.com", "first", response, null);
+    cache.put("foo@example.com", "second", response, null);
+    cache.getFresh("foo@example.com", "first");
+    cache.put("foo@example.com", "third", response, null);
+
+    assertSame(response, cache.getFresh("foo@example.com", "first"));
+    assertNull(cache.getFresh("foo@example.com", "second"));
+    assertSame(response, cache.getFresh("foo@example.com", "third"));
+  }
+}